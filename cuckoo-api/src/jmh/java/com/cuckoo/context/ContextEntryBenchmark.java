@@ -0,0 +1,71 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.context;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+import com.cuckoo.tags.EmptyTagMap;
+import com.cuckoo.tags.TagMap;
+import com.cuckoo.trace.Span;
+import com.cuckoo.trace.unsafe.ContextUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks installing a span and a {@code TagMap} in the current context with one attach of a
+ * {@link ContextEntry} against one attach per value.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ContextEntryBenchmark {
+    private final Span span = (Span) Proxy.newProxyInstance(
+        Span.class.getClassLoader(),
+        new Class<?>[] {Span.class},
+        new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                return null;
+            }
+        });
+    private final TagMap tagMap = EmptyTagMap.INSTANCE;
+
+    /** Installs the span and the tags with one {@code withValue} and one attach. */
+    @Benchmark
+    public Span combinedEntry() {
+        try (com.cuckoo.context.Scope scope = ContextUtils.withSpanAndTagMap(span, tagMap)) {
+            return ContextUtils.getValue();
+        }
+    }
+
+    /** Installs the span and then the tags, each with its own attach. */
+    @Benchmark
+    public Span separateAttaches() {
+        try (com.cuckoo.context.Scope spanScope = ContextUtils.withSpan(span);
+            com.cuckoo.context.Scope tagScope =
+                com.cuckoo.tags.unsafe.ContextUtils.withTagMap(tagMap)) {
+            return ContextUtils.getValue();
+        }
+    }
+}
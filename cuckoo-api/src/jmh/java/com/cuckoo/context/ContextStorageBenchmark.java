@@ -0,0 +1,79 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.context;
+
+import java.util.concurrent.TimeUnit;
+
+import com.cuckoo.context.unsafe.GrpcContextStorage;
+import com.cuckoo.tags.EmptyTagMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks for the {@link ContextStorage} implementations. The {@code debug} storage is a {@link
+ * DebugContextStorage} over the {@code threadlocal} one that samples 1% of the attach sites.
+ */
+@State(org.openjdk.jmh.annotations.Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ContextStorageBenchmark {
+    @Param({"threadlocal", "grpc", "debug"})
+    String storageType;
+
+    private ContextStorage storage;
+    private final ContextEntry entry = ContextEntry.EMPTY;
+    private final ContextEntry nestedEntry = ContextEntry.create(null, EmptyTagMap.INSTANCE);
+
+    @Setup
+    public void setup() {
+        if ("grpc".equals(storageType)) {
+            storage = new GrpcContextStorage();
+        } else if ("debug".equals(storageType)) {
+            storage = new DebugContextStorage(new ThreadLocalContextStorage(), 0.01);
+        } else {
+            storage = new ThreadLocalContextStorage();
+        }
+    }
+
+    /** Attaches an entry and closes its scope. */
+    @Benchmark
+    public Scope attachDetach() {
+        Scope scope = storage.attach(entry);
+        scope.close();
+        return scope;
+    }
+
+    /** Attaches two nested entries, reads the current one and closes both scopes. */
+    @Benchmark
+    public ContextEntry attachNestedAndGet() {
+        try (Scope outer = storage.attach(entry);
+            Scope inner = storage.attach(nestedEntry)) {
+            return storage.current();
+        }
+    }
+
+    /** Reads the current entry. */
+    @Benchmark
+    public ContextEntry current() {
+        return storage.current();
+    }
+}
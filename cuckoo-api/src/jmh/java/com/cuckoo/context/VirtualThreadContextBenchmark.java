@@ -0,0 +1,103 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.context;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.cuckoo.tags.EmptyTagMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Runs {@code requests} tasks, each on a new virtual thread, that open a {@link Scope} and read the
+ * current entry, with each {@link ContextStorage} that does not depend on another library.
+ *
+ * <p>Virtual threads require Java 21. On older runtimes the setup fails rather than running the
+ * tasks on reused platform threads, which would not show the cost of per-thread state.
+ */
+@State(org.openjdk.jmh.annotations.Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class VirtualThreadContextBenchmark {
+    @Param({"threadlocal", "linked"})
+    String storageType;
+
+    @Param({"1000000"})
+    int requests;
+
+    private ContextStorage storage;
+    private ExecutorService executor;
+    private final ContextEntry entry = ContextEntry.create(null, EmptyTagMap.INSTANCE);
+
+    @Setup
+    public void setup() {
+        storage =
+            "linked".equals(storageType)
+                ? new LinkedScopeContextStorage()
+                : new ThreadLocalContextStorage();
+        executor = newVirtualThreadPerTaskExecutor();
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    /** Runs all the requests and waits for them to complete. */
+    @Benchmark
+    public void requests() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(requests);
+        Runnable request = new Runnable() {
+            @Override
+            public void run() {
+                try (Scope scope = storage.attach(entry)) {
+                    if (storage.current() != entry) {
+                        throw new AssertionError();
+                    }
+                }
+                done.countDown();
+            }
+        };
+        for (int i = 0; i < requests; i++) {
+            executor.execute(request);
+        }
+        done.await();
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() is called reflectively to compile for Java 8.
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService)
+                Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Virtual threads require Java 21.", e);
+        }
+    }
+}
@@ -16,10 +16,117 @@
 
 package com.cuckoo;
 
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.cuckoo.tags.DefaultTagger;
+import com.cuckoo.tags.Tagger;
+import com.cuckoo.tags.spi.TaggerProvider;
+import com.cuckoo.trace.DefaultTracer;
+import com.cuckoo.trace.Tracer;
+import com.cuckoo.trace.spi.TracerProvider;
+
 /**
- * TODO .
+ * The entry point to the OpenCuckoo components.
+ *
+ * <p>Each component is loaded through its service provider interface the first time it is
+ * requested, and the result is kept in a {@code static final} field, so later calls are a constant
+ * load. If several providers are registered, the one named by the system property with the fully
+ * qualified name of the provider interface is used, for example {@code
+ * -Dcom.cuckoo.tags.spi.TaggerProvider=com.cuckoo.sdk.tags.TaggerSdkProvider}. Without any
+ * provider the no-op implementation of the component is used. It is also used, and the failure
+ * logged, if the selected provider is not found or a provider cannot be loaded.
+ *
+ * @since 0.0.1
  */
+@ThreadSafe
 public final class OpenCuckoo {
+    private static final Logger logger = Logger.getLogger(OpenCuckoo.class.getName());
+
+    private OpenCuckoo() {}
+
+    /**
+     * Returns the {@link Tagger} registered through {@link TaggerProvider}, or {@link
+     * DefaultTagger#getInstance()} if there is none or it cannot be loaded.
+     *
+     * @return the registered {@code Tagger}.
+     * @since 0.0.1
+     */
+    public static Tagger getTagger() {
+        return TaggerHolder.TAGGER;
+    }
+
+    /**
+     * Returns the {@link Tracer} registered through {@link TracerProvider}, or {@link
+     * DefaultTracer#getInstance()} if there is none or it cannot be loaded.
+     *
+     * @return the registered {@code Tracer}.
+     * @since 0.0.1
+     */
+    public static Tracer getTracer() {
+        return TracerHolder.TRACER;
+    }
+
+    // Loads the Tagger from the providers visible to the given class loader. Never throws, even if
+    // the provider fails to create the Tagger, as it runs in the initializer of TaggerHolder: an
+    // exception there would make every later call to getTagger() fail with a NoClassDefFoundError.
+    static Tagger loadTagger(@Nullable ClassLoader classLoader) {
+        try {
+            TaggerProvider provider = loadSpi(TaggerProvider.class, classLoader);
+            if (provider != null) {
+                return provider.create();
+            }
+        } catch (ServiceConfigurationError | RuntimeException e) {
+            logger.log(Level.SEVERE, "Cannot load the TaggerProvider, using the no-op Tagger.", e);
+        }
+        return DefaultTagger.getInstance();
+    }
+
+    // Loads the Tracer from the providers visible to the given class loader. Never throws, like
+    // loadTagger.
+    static Tracer loadTracer(@Nullable ClassLoader classLoader) {
+        try {
+            TracerProvider provider = loadSpi(TracerProvider.class, classLoader);
+            if (provider != null) {
+                return provider.create();
+            }
+        } catch (ServiceConfigurationError | RuntimeException e) {
+            logger.log(Level.SEVERE, "Cannot load the TracerProvider, using the no-op Tracer.", e);
+        }
+        return DefaultTracer.getInstance();
+    }
+
+    // Returns the provider selected by the system property named after the provider interface, or
+    // the first provider if the property is not set. Throws IllegalStateException if the selected
+    // provider is not found, and ServiceConfigurationError if a provider cannot be loaded.
+    @Nullable
+    static <T> T loadSpi(Class<T> providerClass, @Nullable ClassLoader classLoader) {
+        String specifiedProvider = System.getProperty(providerClass.getName());
+        for (T provider : ServiceLoader.load(providerClass, classLoader)) {
+            if (specifiedProvider == null
+                || specifiedProvider.equals(provider.getClass().getName())) {
+                return provider;
+            }
+        }
+        if (specifiedProvider != null) {
+            throw new IllegalStateException(
+                "Service provider " + specifiedProvider + " for " + providerClass.getName()
+                    + " not found.");
+        }
+        return null;
+    }
 
+    // The Tagger is only loaded when getTagger() is first called, and the JVM guarantees that
+    // this happens once.
+    private static final class TaggerHolder {
+        static final Tagger TAGGER = loadTagger(OpenCuckoo.class.getClassLoader());
+    }
 
+    private static final class TracerHolder {
+        static final Tracer TRACER = loadTracer(OpenCuckoo.class.getClassLoader());
+    }
 }
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.common;
+
+/**
+ * Supplies a value on demand. Used instead of {@code java.util.function.Supplier} because the API
+ * needs to be Java 1.7 compatible.
+ *
+ * @param <T> the type of the supplied value.
+ * @since 0.0.1
+ */
+public interface Supplier<T> {
+    /**
+     * Returns the value.
+     *
+     * @return the value.
+     * @since 0.0.1
+     */
+    T get();
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.context;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import com.cuckoo.internal.Utils;
+import com.cuckoo.tags.EmptyTagMap;
+import com.cuckoo.tags.TagMap;
+import com.cuckoo.trace.Span;
+
+/**
+ * The values OpenCuckoo keeps in the current context: the current {@link Span} and the current
+ * {@link TagMap}.
+ *
+ * <p>Both values are stored together under a single context key, so a request that sets both the
+ * span and the tags creates one context and attaches it once.
+ *
+ * @since 0.0.1
+ */
+@Immutable
+public final class ContextEntry {
+    /**
+     * The entry of a context without a span and with an empty {@code TagMap}.
+     *
+     * @since 0.0.1
+     */
+    public static final ContextEntry EMPTY = new ContextEntry(null, EmptyTagMap.INSTANCE);
+
+    @Nullable
+    private final Span span;
+    private final TagMap tagMap;
+
+    private ContextEntry(@Nullable Span span, TagMap tagMap) {
+        this.span = span;
+        this.tagMap = tagMap;
+    }
+
+    /**
+     * Returns a {@code ContextEntry} with the given span and tags.
+     *
+     * @param span the current span, or {@code null} if there is none.
+     * @param tagMap the current tags.
+     * @return a {@code ContextEntry} with the given span and tags.
+     * @since 0.0.1
+     */
+    public static ContextEntry create(@Nullable Span span, TagMap tagMap) {
+        return new ContextEntry(span, Utils.checkNotNull(tagMap, "tagMap"));
+    }
+
+    /**
+     * Returns the current span, or {@code null} if there is none.
+     *
+     * @return the current span, or {@code null} if there is none.
+     * @since 0.0.1
+     */
+    @Nullable
+    public Span getSpan() {
+        return span;
+    }
+
+    /**
+     * Returns the current tags.
+     *
+     * @return the current tags.
+     * @since 0.0.1
+     */
+    public TagMap getTagMap() {
+        return tagMap;
+    }
+
+    /**
+     * Returns a {@code ContextEntry} with the given span and the tags of this entry.
+     *
+     * @param span the new current span, or {@code null} if there is none.
+     * @return a {@code ContextEntry} with the given span, or this entry if the span is the same.
+     * @since 0.0.1
+     */
+    public ContextEntry withSpan(@Nullable Span span) {
+        return span == this.span ? this : new ContextEntry(span, tagMap);
+    }
+
+    /**
+     * Returns a {@code ContextEntry} with the given tags and the span of this entry.
+     *
+     * @param tagMap the new current tags.
+     * @return a {@code ContextEntry} with the given tags, or this entry if the tags are the same.
+     * @since 0.0.1
+     */
+    public ContextEntry withTagMap(TagMap tagMap) {
+        Utils.checkNotNull(tagMap, "tagMap");
+        return tagMap == this.tagMap ? this : new ContextEntry(span, tagMap);
+    }
+
+    @Override
+    public String toString() {
+        return "ContextEntry{span=" + span + ", tagMap=" + tagMap + "}";
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.context;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Stores the {@link ContextEntry} of the current context.
+ *
+ * <p>The storage used by OpenCuckoo is selected once, the first time {@link #get()} is called. By
+ * default it is a {@link ThreadLocalContextStorage}, which does not depend on any other context
+ * library. A different implementation can be selected by setting the system property {@value
+ * #STORAGE_PROPERTY} to the fully qualified name of a subclass with a public no-argument
+ * constructor, for example {@code com.cuckoo.context.LinkedScopeContextStorage} for applications
+ * that run on many short-lived threads, or {@code
+ * com.cuckoo.context.unsafe.GrpcContextStorage} to keep the entry in the {@code io.grpc.Context}.
+ * Setting the system property {@value #DEBUG_PROPERTY} also wraps the storage in a {@link
+ * DebugContextStorage} that reports scopes that are not closed properly. If a property is
+ * invalid, the error is logged and the property is ignored.
+ *
+ * @since 0.0.1
+ */
+@ThreadSafe
+public abstract class ContextStorage {
+    private static final Logger logger = Logger.getLogger(ContextStorage.class.getName());
+
+    /**
+     * The system property that selects the {@code ContextStorage} implementation. The value is
+     * {@value #STORAGE_PROPERTY}.
+     *
+     * @since 0.0.1
+     */
+    public static final String STORAGE_PROPERTY = "com.cuckoo.context.ContextStorage";
+
+    /**
+     * The system property that enables the {@link DebugContextStorage} checks when it is set to
+     * the fraction of scopes whose attach stack trace is captured. The value is {@value
+     * #DEBUG_PROPERTY}.
+     *
+     * @since 0.0.1
+     */
+    public static final String DEBUG_PROPERTY = "com.cuckoo.context.ContextStorage.debug";
+
+    /**
+     * Returns the {@code ContextStorage} used by OpenCuckoo.
+     *
+     * @return the {@code ContextStorage} used by OpenCuckoo.
+     * @since 0.0.1
+     */
+    public static ContextStorage get() {
+        return StorageHolder.STORAGE;
+    }
+
+    /**
+     * Returns the {@code ContextEntry} of the current context.
+     *
+     * @return the {@code ContextEntry} of the current context, {@link ContextEntry#EMPTY} if none
+     *     was attached.
+     * @since 0.0.1
+     */
+    public abstract ContextEntry current();
+
+    /**
+     * Makes the given {@code ContextEntry} the current one until the returned {@code Scope} is
+     * closed, which restores the entry that was current before. The {@code Scope} must be closed
+     * on the thread that attached the entry.
+     *
+     * @param entry the {@code ContextEntry} to make current.
+     * @return the {@code Scope} that restores the previous entry when closed.
+     * @since 0.0.1
+     */
+    public abstract Scope attach(ContextEntry entry);
+
+    // Returns the storage used when the system property is not set.
+    static ContextStorage createDefault() {
+        return new ThreadLocalContextStorage();
+    }
+
+    static ContextStorage load(String className) {
+        try {
+            Class<?> storageClass =
+                Class.forName(className, true, ContextStorage.class.getClassLoader());
+            return (ContextStorage) storageClass.getConstructor().newInstance();
+        } catch (Exception | LinkageError e) {
+            throw new IllegalStateException("Cannot create ContextStorage " + className, e);
+        }
+    }
+
+    static ContextStorage debug(ContextStorage storage, String sampleRate) {
+        try {
+            return new DebugContextStorage(storage, Double.parseDouble(sampleRate));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Invalid " + DEBUG_PROPERTY + ": " + sampleRate, e);
+        }
+    }
+
+    // Returns the storage selected by the values of the system properties. Never throws, as it
+    // runs in the initializer of StorageHolder: an exception there would make every later call to
+    // get() fail with a NoClassDefFoundError.
+    static ContextStorage create(@Nullable String className, @Nullable String sampleRate) {
+        ContextStorage storage = null;
+        if (className != null) {
+            try {
+                storage = load(className);
+            } catch (IllegalStateException e) {
+                logger.log(Level.SEVERE, "Using the default ContextStorage.", e);
+            }
+        }
+        if (storage == null) {
+            storage = createDefault();
+        }
+        if (sampleRate != null) {
+            try {
+                storage = debug(storage, sampleRate);
+            } catch (IllegalStateException e) {
+                logger.log(Level.SEVERE, "Not using the DebugContextStorage.", e);
+            }
+        }
+        return storage;
+    }
+
+    // The storage is only selected when get() is first called.
+    private static final class StorageHolder {
+        static final ContextStorage STORAGE =
+            create(System.getProperty(STORAGE_PROPERTY), System.getProperty(DEBUG_PROPERTY));
+    }
+}
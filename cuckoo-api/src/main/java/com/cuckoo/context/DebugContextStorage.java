@@ -0,0 +1,216 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.context;
+
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Nullable;
+
+import com.cuckoo.internal.Utils;
+
+/**
+ * {@link ContextStorage} that checks how the scopes of another storage are closed, and logs a
+ * warning when a scope is closed out of order, closed twice or closed on another thread.
+ *
+ * <p>A scope that is never closed leaves its entry current on the thread, which on a pooled thread
+ * leaks into the next task. This is detected as soon as an enclosing scope is closed, for example
+ * the one that propagated the context to the task: the scopes attached after it that are still
+ * open are reported as leaked.
+ *
+ * <p>Each thread numbers its attaches with a generation counter and keeps the generations of its
+ * open scopes in an array indexed by depth, so checking a close is a single comparison. Capturing
+ * the stack trace of an attach is the only expensive part, so it is only done for one out of every
+ * {@code 1 / sampleRate} scopes of a thread, and the warnings for the other scopes do not say
+ * where they were attached.
+ *
+ * <p>The storage used by OpenCuckoo is wrapped in a {@code DebugContextStorage} when the system
+ * property {@value ContextStorage#DEBUG_PROPERTY} is set to the sample rate, for example {@code
+ * 0.01}.
+ *
+ * @since 0.0.1
+ */
+public final class DebugContextStorage extends ContextStorage {
+    private static final Logger logger = Logger.getLogger(DebugContextStorage.class.getName());
+    private static final int INITIAL_CAPACITY = 8;
+
+    private final ContextStorage delegate;
+    private final int sampleInterval;
+    private final ThreadLocal<OpenScopes> openScopes =
+        new ThreadLocal<OpenScopes>() {
+            @Override
+            protected OpenScopes initialValue() {
+                return new OpenScopes();
+            }
+        };
+
+    /**
+     * Creates a {@code DebugContextStorage} that checks the scopes of the given storage.
+     *
+     * @param delegate the storage that keeps the current entry.
+     * @param sampleRate the fraction of scopes for which the stack trace of the attach is captured,
+     *     between 0 and 1.
+     * @throws IllegalArgumentException if {@code sampleRate} is not between 0 and 1.
+     * @since 0.0.1
+     */
+    public DebugContextStorage(ContextStorage delegate, double sampleRate) {
+        Utils.checkArgument(
+            sampleRate >= 0 && sampleRate <= 1, "sampleRate must be between 0 and 1.");
+        this.delegate = Utils.checkNotNull(delegate, "delegate");
+        this.sampleInterval = sampleRate == 0 ? 0 : (int) Math.max(1, Math.round(1 / sampleRate));
+    }
+
+    @Override
+    public ContextEntry current() {
+        return delegate.current();
+    }
+
+    @Override
+    public Scope attach(ContextEntry entry) {
+        Scope scope = delegate.attach(entry);
+        return openScopes.get().push(scope);
+    }
+
+    private static void warn(String message, @Nullable AttachSite attachSite) {
+        if (logger.isLoggable(Level.WARNING)) {
+            logger.log(Level.WARNING, message, attachSite == null ? null : attachSite.trim());
+        }
+    }
+
+    private static String describeSite(@Nullable AttachSite attachSite) {
+        return attachSite == null
+            ? " (its stack trace was not sampled)"
+            : " (the stack trace shows where it was attached)";
+    }
+
+    // Stack trace of the code that attached a scope. The frames of this class are only removed
+    // when it is reported, because creating the StackTraceElements is the expensive part.
+    private static final class AttachSite extends Throwable {
+        private static final long serialVersionUID = 0L;
+
+        private boolean trimmed;
+
+        AttachSite(Thread thread) {
+            super("Scope attached on thread " + thread.getName());
+        }
+
+        // Removes the frames above the caller of attach().
+        synchronized AttachSite trim() {
+            if (!trimmed) {
+                String className = DebugContextStorage.class.getName();
+                StackTraceElement[] stackTrace = getStackTrace();
+                int first = 0;
+                while (first < stackTrace.length
+                    && (stackTrace[first].getClassName().equals(className)
+                        || stackTrace[first].getClassName().startsWith(className + '$'))) {
+                    first++;
+                }
+                setStackTrace(Arrays.copyOfRange(stackTrace, first, stackTrace.length));
+                trimmed = true;
+            }
+            return this;
+        }
+    }
+
+    // The open scopes of one thread, only accessed by that thread.
+    private final class OpenScopes {
+        private final Thread owner = Thread.currentThread();
+        // generations[i] is the generation of the i-th open scope, and sites[i] its sampled
+        // attach site.
+        private long[] generations = new long[INITIAL_CAPACITY];
+        private AttachSite[] sites = new AttachSite[INITIAL_CAPACITY];
+        private int depth;
+        private long nextGeneration;
+        private int untilSample = sampleInterval;
+
+        DebugScope push(Scope scope) {
+            if (depth == generations.length) {
+                generations = Arrays.copyOf(generations, depth * 2);
+                sites = Arrays.copyOf(sites, depth * 2);
+            }
+            AttachSite site = null;
+            if (untilSample > 0 && --untilSample == 0) {
+                untilSample = sampleInterval;
+                site = new AttachSite(owner);
+            }
+            long generation = ++nextGeneration;
+            generations[depth] = generation;
+            sites[depth] = site;
+            return new DebugScope(this, scope, depth++, generation, site);
+        }
+
+        void pop(DebugScope scope) {
+            if (Thread.currentThread() != owner) {
+                warn(
+                    "Scope closed on thread "
+                        + Thread.currentThread().getName()
+                        + " instead of "
+                        + owner.getName()
+                        + describeSite(scope.site),
+                    scope.site);
+                return;
+            }
+            int index = scope.index;
+            if (index >= depth || generations[index] != scope.generation) {
+                warn(
+                    "Scope closed twice or after an enclosing scope" + describeSite(scope.site),
+                    scope.site);
+                return;
+            }
+            if (index != depth - 1) {
+                AttachSite leakedSite = sites[index + 1];
+                warn(
+                    (depth - 1 - index)
+                        + " scope(s) still open when an enclosing scope was closed on thread "
+                        + owner.getName()
+                        + ", the first one was leaked"
+                        + describeSite(leakedSite),
+                    leakedSite);
+            }
+            Arrays.fill(sites, index, depth, null);
+            depth = index;
+            scope.delegate.close();
+        }
+    }
+
+    private static final class DebugScope implements Scope {
+        private final OpenScopes openScopes;
+        private final Scope delegate;
+        private final int index;
+        private final long generation;
+        @Nullable
+        private final AttachSite site;
+
+        DebugScope(
+            OpenScopes openScopes,
+            Scope delegate,
+            int index,
+            long generation,
+            @Nullable AttachSite site) {
+            this.openScopes = openScopes;
+            this.delegate = delegate;
+            this.index = index;
+            this.generation = generation;
+            this.site = site;
+        }
+
+        @Override
+        public void close() {
+            openScopes.pop(this);
+        }
+    }
+}
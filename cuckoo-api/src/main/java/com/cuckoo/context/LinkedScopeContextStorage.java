@@ -0,0 +1,90 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.context;
+
+import javax.annotation.Nullable;
+
+import com.cuckoo.internal.Utils;
+
+/**
+ * {@link ContextStorage} that links each open scope to the scope it replaced, and only keeps the
+ * innermost open scope of each thread in a {@link ThreadLocal}.
+ *
+ * <p>Like a {@code ScopedValue} binding, each scope holds the entry it made current and the scope
+ * it replaced, so a thread does not own any other state: there is nothing to allocate the first
+ * time a thread attaches an entry besides its {@code ThreadLocal} slot, and nothing is retained
+ * once its last scope is closed. It is meant for applications that run on many short-lived
+ * threads, such as virtual threads, but it is not selected by default: it is selected by setting
+ * the system property {@value ContextStorage#STORAGE_PROPERTY} to the name of this class.
+ *
+ * <p>Closing a scope also closes the scopes attached after it that are still open, and closing a
+ * scope again has no effect.
+ *
+ * @since 0.0.1
+ */
+public final class LinkedScopeContextStorage extends ContextStorage {
+    private static final ThreadLocal<LinkedScope> INNERMOST = new ThreadLocal<LinkedScope>();
+
+    /**
+     * Creates a {@code LinkedScopeContextStorage}. All the instances share the same per-thread
+     * state.
+     */
+    public LinkedScopeContextStorage() {}
+
+    @Override
+    public ContextEntry current() {
+        LinkedScope innermost = INNERMOST.get();
+        return innermost == null ? ContextEntry.EMPTY : innermost.entry;
+    }
+
+    @Override
+    public Scope attach(ContextEntry entry) {
+        Utils.checkNotNull(entry, "entry");
+        LinkedScope scope = new LinkedScope(entry, INNERMOST.get());
+        INNERMOST.set(scope);
+        return scope;
+    }
+
+    private static final class LinkedScope implements Scope {
+        private final ContextEntry entry;
+        // The scope that was innermost when this one was attached.
+        @Nullable
+        private final LinkedScope outer;
+
+        LinkedScope(ContextEntry entry, @Nullable LinkedScope outer) {
+            this.entry = entry;
+            this.outer = outer;
+        }
+
+        @Override
+        public void close() {
+            LinkedScope innermost = INNERMOST.get();
+            // Usually this is the innermost scope, otherwise it must still be open to be closed.
+            for (LinkedScope scope = innermost; scope != null; scope = scope.outer) {
+                if (scope == this) {
+                    if (outer == null) {
+                        // Removes the entry, so nothing is retained for the thread.
+                        INNERMOST.remove();
+                    } else {
+                        INNERMOST.set(outer);
+                    }
+                    return;
+                }
+            }
+        }
+    }
+}
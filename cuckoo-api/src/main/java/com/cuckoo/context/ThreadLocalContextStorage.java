@@ -0,0 +1,111 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.context;
+
+import java.util.Arrays;
+
+import com.cuckoo.internal.Utils;
+
+/**
+ * {@link ContextStorage} that keeps the current {@link ContextEntry} of each thread in a {@link
+ * ThreadLocal}.
+ *
+ * <p>Each thread has an array of the entries that were current before each attach that is still
+ * open, so attaching is a write to the next slot and closing a scope restores the slot of that
+ * scope. Closing a scope also closes the scopes attached after it that are still open, and closing
+ * a scope again has no effect.
+ *
+ * @since 0.0.1
+ */
+public final class ThreadLocalContextStorage extends ContextStorage {
+    private static final int INITIAL_CAPACITY = 8;
+
+    private static final ThreadLocal<Slots> SLOTS =
+        new ThreadLocal<Slots>() {
+            @Override
+            protected Slots initialValue() {
+                return new Slots();
+            }
+        };
+
+    /**
+     * Creates a {@code ThreadLocalContextStorage}. All the instances share the same per-thread
+     * state.
+     */
+    public ThreadLocalContextStorage() {}
+
+    @Override
+    public ContextEntry current() {
+        return SLOTS.get().current;
+    }
+
+    @Override
+    public Scope attach(ContextEntry entry) {
+        Utils.checkNotNull(entry, "entry");
+        return SLOTS.get().push(entry);
+    }
+
+    // The attached entries of one thread, only accessed by that thread.
+    private static final class Slots {
+        private ContextEntry current = ContextEntry.EMPTY;
+        // previous[i] is the entry that was current before the i-th open attach, and ids[i] the
+        // id of its scope.
+        private ContextEntry[] previous = new ContextEntry[INITIAL_CAPACITY];
+        private int[] ids = new int[INITIAL_CAPACITY];
+        private int depth;
+        private int nextId;
+
+        Scope push(ContextEntry entry) {
+            if (depth == previous.length) {
+                previous = Arrays.copyOf(previous, depth * 2);
+                ids = Arrays.copyOf(ids, depth * 2);
+            }
+            int id = ++nextId;
+            previous[depth] = current;
+            ids[depth] = id;
+            current = entry;
+            return new SlotScope(this, depth++, id);
+        }
+
+        void restore(int index, int id) {
+            if (index >= depth || ids[index] != id) {
+                // Already closed.
+                return;
+            }
+            current = previous[index];
+            Arrays.fill(previous, index, depth, null);
+            depth = index;
+        }
+    }
+
+    private static final class SlotScope implements Scope {
+        private final Slots slots;
+        private final int index;
+        private final int id;
+
+        SlotScope(Slots slots, int index, int id) {
+            this.slots = slots;
+            this.index = index;
+            this.id = id;
+        }
+
+        @Override
+        public void close() {
+            slots.restore(index, id);
+        }
+    }
+}
@@ -14,32 +14,33 @@
  * limitations under the License.
  */
 
-package com.cuckoo.tags.unsafe;
+package com.cuckoo.context.unsafe;
 
+import com.cuckoo.context.ContextEntry;
 import com.cuckoo.context.Scope;
-import com.cuckoo.tags.TagMap;
 import io.grpc.Context;
 
 /**
- * A scope that manages the {@link Context} for a {@link TagMap}.
+ * A scope that manages the {@link Context} for a {@link ContextEntry}.
  *
  * @since 0.0.1
  */
-class TagMapInScope implements Scope {
+class ContextEntryInScope implements Scope {
     private final Context orig;
 
-    private TagMapInScope(TagMap tags) {
-        this.orig = ContextUtils.withValue(tags).attach();
+    private ContextEntryInScope(ContextEntry entry) {
+        this.orig = ContextEntryUtils.withValue(entry, Context.current()).attach();
     }
 
     /**
-     * Constructs a new {@link TagMapInScope}.
+     * Constructs a new {@link ContextEntryInScope}.
      *
-     * @param tags the {@code TagMap} to be added to the current {@code Context}.
-     * @return
+     * @param entry the {@code ContextEntry} to be added to the current {@code Context}.
+     * @return a {@code ContextEntryInScope} that restores the previous {@code Context} when
+     *     closed.
      */
-    static TagMapInScope create(TagMap tags) {
-        return new TagMapInScope(tags);
+    static ContextEntryInScope create(ContextEntry entry) {
+        return new ContextEntryInScope(entry);
     }
 
     @Override
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.context.unsafe;
+
+import com.cuckoo.context.ContextEntry;
+import com.cuckoo.context.Scope;
+import io.grpc.Context;
+
+/**
+ * Utility methods for accessing the {@link ContextEntry} contained in the {@link io.grpc.Context}.
+ *
+ * <p>These methods always use the {@code io.grpc.Context}, whatever the selected {@link
+ * com.cuckoo.context.ContextStorage}. Most code should interact with the current context via the
+ * public APIs in {@link com.cuckoo.tags.Tagger} and avoid accessing this class directly.
+ *
+ * @since 0.0.1
+ */
+public final class ContextEntryUtils {
+    private static final Context.Key<ContextEntry> CONTEXT_ENTRY_KEY =
+        Context.keyWithDefault("opencuckoo-context-entry-key", ContextEntry.EMPTY);
+
+    private ContextEntryUtils() {}
+
+    /**
+     * Creates a new {@code Context} with the given value set.
+     *
+     * @param entry the value to be set.
+     * @param context the parent {@code Context}.
+     * @return a new context with the given value set.
+     */
+    public static Context withValue(ContextEntry entry, Context context) {
+        return context.withValue(CONTEXT_ENTRY_KEY, entry);
+    }
+
+    /**
+     * Returns the value from the current {@code Context}.
+     *
+     * @return the value from the current {@code Context}.
+     */
+    public static ContextEntry getValue() {
+        return CONTEXT_ENTRY_KEY.get();
+    }
+
+    /**
+     * Returns the value from the specified {@code Context}.
+     *
+     * @param context the specified {@code Context}.
+     * @return the value from the specified {@code Context}.
+     */
+    public static ContextEntry getValue(Context context) {
+        return CONTEXT_ENTRY_KEY.get(context);
+    }
+
+    /**
+     * Returns a new {@link Scope} encapsulating the provided {@code ContextEntry} added to the
+     * current {@code Context}. The new {@code Context} is created with a single {@code withValue}
+     * and attached once.
+     *
+     * @param entry the {@code ContextEntry} to be added to the current {@code Context}.
+     * @return the {@link Scope} for the updated {@code Context}.
+     */
+    public static Scope withContextEntry(ContextEntry entry) {
+        return ContextEntryInScope.create(entry);
+    }
+}
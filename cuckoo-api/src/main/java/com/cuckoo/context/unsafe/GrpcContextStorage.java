@@ -0,0 +1,45 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.context.unsafe;
+
+import com.cuckoo.context.ContextEntry;
+import com.cuckoo.context.ContextStorage;
+import com.cuckoo.context.Scope;
+import com.cuckoo.internal.Utils;
+
+/**
+ * {@link ContextStorage} that keeps the current {@link ContextEntry} in the {@link
+ * io.grpc.Context}, so the entry follows the {@code io.grpc.Context} when it is propagated, for
+ * example with {@link io.grpc.Context#wrap(Runnable)}.
+ *
+ * @since 0.0.1
+ */
+public final class GrpcContextStorage extends ContextStorage {
+
+    /** Creates a {@code GrpcContextStorage}. */
+    public GrpcContextStorage() {}
+
+    @Override
+    public ContextEntry current() {
+        return ContextEntryUtils.getValue();
+    }
+
+    @Override
+    public Scope attach(ContextEntry entry) {
+        return ContextEntryUtils.withContextEntry(Utils.checkNotNull(entry, "entry"));
+    }
+}
@@ -21,6 +21,8 @@ import java.util.Iterator;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 
+import com.cuckoo.internal.Utils;
+
 /**
  * An immutable implementation of the {@link TagMap} that does not contain any tags.
  */
@@ -44,5 +46,30 @@ public class EmptyTagMap implements TagMap {
         return null;
     }
 
+    @Override
+    public int size() {
+        return 0;
+    }
+
+    @Override
+    public TagKey getKey(int index) {
+        throw new IndexOutOfBoundsException("Index out of bounds: size=0, index=" + index);
+    }
+
+    @Override
+    public TagValue getValue(int index) {
+        throw new IndexOutOfBoundsException("Index out of bounds: size=0, index=" + index);
+    }
+
+    @Override
+    public TagMetadata getTagMetadata(int index) {
+        throw new IndexOutOfBoundsException("Index out of bounds: size=0, index=" + index);
+    }
+
+    @Override
+    public void forEach(TagConsumer consumer) {
+        Utils.checkNotNull(consumer, "consumer");
+    }
+
     private EmptyTagMap() {}
 }
@@ -42,6 +42,10 @@ public abstract class TagKey {
      */
     public static final int MAX_LENGTH = 255;
 
+    // Already validated keys, in a direct-mapped cache that works like the one of Status.
+    private static final int CACHE_SIZE = 1024;
+    private static final TagKey[] CACHE = new TagKey[CACHE_SIZE];
+
     TagKey() {}
 
     /**
@@ -52,9 +56,28 @@ public abstract class TagKey {
      */
     public abstract String getName();
 
+    /**
+     * Constructs a {@code TagKey} with the given name.
+     *
+     * <p>Recently created keys are cached, so creating a key with a name that was seen before
+     * usually returns the same instance without validating the name again.
+     *
+     * @param name the name of the key.
+     * @return a {@code TagKey} with the given name.
+     * @throws IllegalArgumentException if the name is not valid.
+     * @since 0.0.1
+     */
     public static TagKey create(String name) {
+        int hash = name.hashCode();
+        int index = (hash ^ (hash >>> 16)) & (CACHE_SIZE - 1);
+        TagKey cached = CACHE[index];
+        if (cached != null && name.equals(cached.getName())) {
+            return cached;
+        }
         Utils.checkArgument(isValid(name), "Invalid TagKey name: %s", name);
-        return new AutoValue_TagKey(name);
+        TagKey key = new AutoValue_TagKey(name);
+        CACHE[index] = key;
+        return key;
     }
 
     /**
@@ -52,6 +52,80 @@ public interface TagMap {
     @Nullable
     TagValue getTagValue(TagKey tagKey);
 
+    /**
+     * Returns the number of tags in this {@code TagMap}.
+     *
+     * @return the number of tags in this {@code TagMap}.
+     * @since 0.0.1
+     */
+    int size();
+
+    /**
+     * Returns the {@code TagKey} of the tag at the given index. Tags are indexed from {@code 0} to
+     * {@code size() - 1} in the same order as they are returned by {@link #getIterator()}.
+     *
+     * @param index the index of the tag.
+     * @return the {@code TagKey} of the tag at the given index.
+     * @throws IndexOutOfBoundsException if {@code index} is negative or not less than {@link
+     *     #size()}.
+     * @since 0.0.1
+     */
+    TagKey getKey(int index);
+
+    /**
+     * Returns the {@code TagValue} of the tag at the given index.
+     *
+     * @param index the index of the tag.
+     * @return the {@code TagValue} of the tag at the given index.
+     * @throws IndexOutOfBoundsException if {@code index} is negative or not less than {@link
+     *     #size()}.
+     * @see #getKey(int)
+     * @since 0.0.1
+     */
+    TagValue getValue(int index);
+
+    /**
+     * Returns the {@code TagMetadata} of the tag at the given index.
+     *
+     * @param index the index of the tag.
+     * @return the {@code TagMetadata} of the tag at the given index.
+     * @throws IndexOutOfBoundsException if {@code index} is negative or not less than {@link
+     *     #size()}.
+     * @see #getKey(int)
+     * @since 0.0.1
+     */
+    TagMetadata getTagMetadata(int index);
+
+    /**
+     * Passes each tag in this {@code TagMap} to the given consumer, in the same order as they are
+     * returned by {@link #getIterator()}.
+     *
+     * <p>Unlike {@link #getIterator()} this does not allocate an {@code Iterator} or a {@link Tag}
+     * per tag, so it should be preferred on hot paths such as serialization and aggregation.
+     *
+     * @param consumer the consumer to pass the tags to.
+     * @throws NullPointerException if {@code consumer} is {@code null}.
+     * @since 0.0.1
+     */
+    void forEach(TagConsumer consumer);
+
+    /**
+     * Receives the tags of a {@link TagMap} passed to {@link TagMap#forEach(TagConsumer)}.
+     *
+     * @since 0.0.1
+     */
+    interface TagConsumer {
+        /**
+         * Accepts one tag.
+         *
+         * @param key the {@code TagKey} of the tag.
+         * @param value the {@code TagValue} of the tag.
+         * @param tagMetadata the {@code TagMetadata} of the tag.
+         * @since 0.0.1
+         */
+        void accept(TagKey key, TagValue value, TagMetadata tagMetadata);
+    }
+
     /**
      * Builder for the {@link TagMap} class.
      *
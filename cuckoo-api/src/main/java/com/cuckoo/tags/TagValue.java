@@ -33,6 +33,10 @@ public abstract class TagValue {
      */
     public static final int MAX_LENGTH = 255;
 
+    // Already validated values, in a direct-mapped cache that works like the one of Status.
+    private static final int CACHE_SIZE = 1024;
+    private static final TagValue[] CACHE = new TagValue[CACHE_SIZE];
+
     TagValue() {}
 
     /**
@@ -44,14 +48,25 @@ public abstract class TagValue {
      *     <li>It can only contain printable ASCII characters.</li>
      * </ol>
      *
+     * <p>Recently created values are cached, so creating a value that was seen before usually
+     * returns the same instance without validating it again.
+     *
      * @param value the tag value.
      * @return a {@code TagValue} from the given string.
      * @throws IllegalArgumentException if the {@code String} is not valid.
      * @since 0.0.1
      */
     public static TagValue create(String value) {
+        int hash = value.hashCode();
+        int index = (hash ^ (hash >>> 16)) & (CACHE_SIZE - 1);
+        TagValue cached = CACHE[index];
+        if (cached != null && value.equals(cached.asString())) {
+            return cached;
+        }
         Utils.checkArgument(isValid(value), "Invalid TagValue: %s", value);
-        return new AutoValue_TagValue(value);
+        TagValue tagValue = new AutoValue_TagValue(value);
+        CACHE[index] = tagValue;
+        return tagValue;
     }
 
     /**
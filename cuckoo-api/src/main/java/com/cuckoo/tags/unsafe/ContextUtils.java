@@ -16,13 +16,22 @@
 
 package com.cuckoo.tags.unsafe;
 
+import javax.annotation.Nullable;
+
+import com.cuckoo.context.ContextEntry;
+import com.cuckoo.context.ContextStorage;
 import com.cuckoo.context.Scope;
+import com.cuckoo.context.unsafe.ContextEntryUtils;
 import com.cuckoo.tags.EmptyTagMap;
 import com.cuckoo.tags.TagMap;
 import io.grpc.Context;
 
 /**
- * Utility methods for accessing the {@link TagMap} contained in the {@link io.grpc.Context}.
+ * Utility methods for accessing the current {@link TagMap}.
+ *
+ * <p>The {@code TagMap} is stored in the {@link ContextEntry} of the context, together with the
+ * current span. The current entry is kept by the {@link ContextStorage}. The methods that take or
+ * return an {@link io.grpc.Context} always use the {@code io.grpc.Context}.
  *
  * <p>Most code should interact with the current context  via the public APIs in {@link TagMap}
  * and avoid accessing this class directly.
@@ -30,19 +39,25 @@ import io.grpc.Context;
  * @since 0.0.1
  */
 public final class ContextUtils {
-    private static final Context.Key<TagMap> TAG_MAP_KEY =
-        Context.keyWithDefault("opencuckoo-tag-map-key", EmptyTagMap.INSTANCE);
 
     private ContextUtils() {}
 
     /**
-     * Creates a new {@code Context} with the given value set.
+     * Creates a new {@code Context} with the given value set, based on the current {@code
+     * Context}.
+     *
+     * <p>Attaching the returned {@code Context} only changes the value returned by {@link
+     * #getValue()} if the {@link ContextStorage} keeps the current entry in the {@code
+     * io.grpc.Context}, like {@link com.cuckoo.context.unsafe.GrpcContextStorage}.
      *
      * @param tagMap the value to be set.
      * @return a new context with the given value set.
+     * @deprecated use {@link #withTagMap(TagMap)}, which works with every {@code ContextStorage},
+     *     or {@link #withValue(TagMap, Context)} with an explicit {@code Context}.
      */
+    @Deprecated
     public static Context withValue(TagMap tagMap) {
-        return Context.current().withValue(TAG_MAP_KEY, tagMap);
+        return withValue(tagMap, Context.current());
     }
 
     /**
@@ -53,16 +68,17 @@ public final class ContextUtils {
      * @return a new Context with the given value set.
      */
     public static Context withValue(TagMap tagMap, Context context) {
-        return context.withValue(TAG_MAP_KEY, tagMap);
+        return ContextEntryUtils.withValue(
+            ContextEntryUtils.getValue(context).withTagMap(orEmpty(tagMap)), context);
     }
 
     /**
-     * Returns the value from the current {@code Context}.
+     * Returns the value from the current context.
      *
-     * @return the value form the current {@code Context}
+     * @return the value form the current context.
      */
     public static TagMap getValue() {
-        return TAG_MAP_KEY.get();
+        return ContextStorage.get().current().getTagMap();
     }
 
     /**
@@ -72,17 +88,23 @@ public final class ContextUtils {
      * @return the value from the specified {@code Context}.
      */
     public static TagMap getValue(Context context) {
-        return TAG_MAP_KEY.get(context);
+        return ContextEntryUtils.getValue(context).getTagMap();
     }
 
     /**
      * Returns a new {@link Scope} encapsulating the provided {@code TagMap} added to the current
-     * {@code Context}.
+     * context.
      *
-     * @param tagMap the {@code TagMap} to be added to the current {@code Context}.
-     * @return the {@link Scope} for the updated {@code Context}.
+     * @param tagMap the {@code TagMap} to be added to the current context.
+     * @return the {@link Scope} for the updated context.
      */
     public static Scope withTagMap(TagMap tagMap) {
-        return TagMapInScope.create(tagMap);
+        ContextStorage storage = ContextStorage.get();
+        return storage.attach(storage.current().withTagMap(orEmpty(tagMap)));
+    }
+
+    // A null TagMap is stored as an empty one, like the default value of the context.
+    private static TagMap orEmpty(@Nullable TagMap tagMap) {
+        return tagMap == null ? EmptyTagMap.INSTANCE : tagMap;
     }
 }
@@ -16,5 +16,203 @@
 
 package com.cuckoo.trace;
 
+import javax.annotation.concurrent.Immutable;
+
+import com.cuckoo.internal.Utils;
+import com.google.auto.value.AutoValue;
+
+/**
+ * A class that represents all the possible values for an attribute. An attribute can have 4 types
+ * of values: {@code String}, {@code boolean}, {@code long} or {@code double}, represented through
+ * {@link AttributeValue.Type}.
+ *
+ * @since 0.0.1
+ */
+@Immutable
 public abstract class AttributeValue {
+    private static final AttributeValue TRUE = AttributeValueBoolean.create(true);
+    private static final AttributeValue FALSE = AttributeValueBoolean.create(false);
+
+    /**
+     * The type of an {@code AttributeValue}.
+     *
+     * @since 0.0.1
+     */
+    public enum Type {
+        STRING,
+        BOOLEAN,
+        LONG,
+        DOUBLE
+    }
+
+    /**
+     * Returns an {@code AttributeValue} with a string value.
+     *
+     * @param stringValue the new string attribute value.
+     * @return an {@code AttributeValue} with a string value.
+     * @throws NullPointerException if {@code stringValue} is {@code null}.
+     * @since 0.0.1
+     */
+    public static AttributeValue stringAttributeValue(String stringValue) {
+        return AttributeValueString.create(Utils.checkNotNull(stringValue, "stringValue"));
+    }
+
+    /**
+     * Returns an {@code AttributeValue} with a boolean value.
+     *
+     * @param booleanValue the new boolean attribute value.
+     * @return an {@code AttributeValue} with a boolean value.
+     * @since 0.0.1
+     */
+    public static AttributeValue booleanAttributeValue(boolean booleanValue) {
+        return booleanValue ? TRUE : FALSE;
+    }
+
+    /**
+     * Returns an {@code AttributeValue} with a long value.
+     *
+     * @param longValue the new long attribute value.
+     * @return an {@code AttributeValue} with a long value.
+     * @since 0.0.1
+     */
+    public static AttributeValue longAttributeValue(long longValue) {
+        return AttributeValueLong.create(longValue);
+    }
+
+    /**
+     * Returns an {@code AttributeValue} with a double value.
+     *
+     * @param doubleValue the new double attribute value.
+     * @return an {@code AttributeValue} with a double value.
+     * @since 0.0.1
+     */
+    public static AttributeValue doubleAttributeValue(double doubleValue) {
+        return AttributeValueDouble.create(doubleValue);
+    }
+
+    AttributeValue() {}
+
+    /**
+     * Returns the type of this {@code AttributeValue}.
+     *
+     * @return the type of this {@code AttributeValue}.
+     * @since 0.0.1
+     */
+    public abstract Type getType();
+
+    /**
+     * Returns the string value of this {@code AttributeValue}.
+     *
+     * @return the string value of this {@code AttributeValue}.
+     * @throws UnsupportedOperationException if the type is not {@link Type#STRING}.
+     * @since 0.0.1
+     */
+    public String getStringValue() {
+        throw new UnsupportedOperationException("This type can only return " + getType() + ".");
+    }
+
+    /**
+     * Returns the boolean value of this {@code AttributeValue}.
+     *
+     * @return the boolean value of this {@code AttributeValue}.
+     * @throws UnsupportedOperationException if the type is not {@link Type#BOOLEAN}.
+     * @since 0.0.1
+     */
+    public boolean getBooleanValue() {
+        throw new UnsupportedOperationException("This type can only return " + getType() + ".");
+    }
+
+    /**
+     * Returns the long value of this {@code AttributeValue}.
+     *
+     * @return the long value of this {@code AttributeValue}.
+     * @throws UnsupportedOperationException if the type is not {@link Type#LONG}.
+     * @since 0.0.1
+     */
+    public long getLongValue() {
+        throw new UnsupportedOperationException("This type can only return " + getType() + ".");
+    }
+
+    /**
+     * Returns the double value of this {@code AttributeValue}.
+     *
+     * @return the double value of this {@code AttributeValue}.
+     * @throws UnsupportedOperationException if the type is not {@link Type#DOUBLE}.
+     * @since 0.0.1
+     */
+    public double getDoubleValue() {
+        throw new UnsupportedOperationException("This type can only return " + getType() + ".");
+    }
+
+    @Immutable
+    @AutoValue
+    abstract static class AttributeValueString extends AttributeValue {
+        AttributeValueString() {}
+
+        static AttributeValue create(String stringValue) {
+            return new AutoValue_AttributeValue_AttributeValueString(stringValue);
+        }
+
+        @Override
+        public final Type getType() {
+            return Type.STRING;
+        }
+
+        @Override
+        public abstract String getStringValue();
+    }
+
+    @Immutable
+    @AutoValue
+    abstract static class AttributeValueBoolean extends AttributeValue {
+        AttributeValueBoolean() {}
+
+        static AttributeValue create(boolean booleanValue) {
+            return new AutoValue_AttributeValue_AttributeValueBoolean(booleanValue);
+        }
+
+        @Override
+        public final Type getType() {
+            return Type.BOOLEAN;
+        }
+
+        @Override
+        public abstract boolean getBooleanValue();
+    }
+
+    @Immutable
+    @AutoValue
+    abstract static class AttributeValueLong extends AttributeValue {
+        AttributeValueLong() {}
+
+        static AttributeValue create(long longValue) {
+            return new AutoValue_AttributeValue_AttributeValueLong(longValue);
+        }
+
+        @Override
+        public final Type getType() {
+            return Type.LONG;
+        }
+
+        @Override
+        public abstract long getLongValue();
+    }
+
+    @Immutable
+    @AutoValue
+    abstract static class AttributeValueDouble extends AttributeValue {
+        AttributeValueDouble() {}
+
+        static AttributeValue create(double doubleValue) {
+            return new AutoValue_AttributeValue_AttributeValueDouble(doubleValue);
+        }
+
+        @Override
+        public final Type getType() {
+            return Type.DOUBLE;
+        }
+
+        @Override
+        public abstract double getDoubleValue();
+    }
 }
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.trace;
+
+import java.util.Map;
+import javax.annotation.concurrent.Immutable;
+
+import com.cuckoo.common.Supplier;
+import com.cuckoo.internal.Utils;
+
+/**
+ * A {@link Span} that does not record anything and only carries a {@link SpanContext}, so that
+ * the trace is still propagated to its children and to other processes.
+ *
+ * <p>This is the span of requests that are not sampled. All the recording methods return
+ * immediately without checking or evaluating their arguments, and {@link #isRecordingEvents()}
+ * returns {@code false}.
+ *
+ * @since 0.0.1
+ */
+@Immutable
+public final class DefaultSpan implements Span {
+    private static final DefaultSpan INVALID = new DefaultSpan(SpanContext.getInvalid());
+
+    private final SpanContext context;
+
+    private DefaultSpan(SpanContext context) {
+        this.context = context;
+    }
+
+    /**
+     * Returns the {@code DefaultSpan} with the invalid {@code SpanContext}, which is used when
+     * there is no current span.
+     *
+     * @return the {@code DefaultSpan} with the invalid {@code SpanContext}.
+     * @since 0.0.1
+     */
+    public static DefaultSpan getInvalid() {
+        return INVALID;
+    }
+
+    /**
+     * Returns a {@code DefaultSpan} with the given {@code SpanContext}.
+     *
+     * @param context the {@code SpanContext} of the span.
+     * @return a {@code DefaultSpan} with the given {@code SpanContext}.
+     * @throws NullPointerException if {@code context} is {@code null}.
+     * @since 0.0.1
+     */
+    public static DefaultSpan create(SpanContext context) {
+        Utils.checkNotNull(context, "context");
+        return context == INVALID.context ? INVALID : new DefaultSpan(context);
+    }
+
+    @Override
+    public void setAttribute(String key, String value) {}
+
+    @Override
+    public void setAttribute(String key, long value) {}
+
+    @Override
+    public void setAttribute(String key, double value) {}
+
+    @Override
+    public void setAttribute(String key, boolean value) {}
+
+    @Override
+    public void setAttribute(String key, AttributeValue value) {}
+
+    @Override
+    public void setAttribute(String key, Supplier<AttributeValue> value) {}
+
+    @Override
+    public void addEvent(String name) {}
+
+    @Override
+    public void addEvent(String name, Map<String, AttributeValue> attributes) {}
+
+    @Override
+    public void addEvent(Event event) {}
+
+    @Override
+    public void addEvent(String name, Supplier<Map<String, AttributeValue>> attributes) {}
+
+    @Override
+    public void addEvent(Supplier<Event> event) {}
+
+    @Override
+    public void addLink(SpanContext spanContext) {}
+
+    @Override
+    public void addLink(SpanContext spanContext, Map<String, AttributeValue> attributes) {}
+
+    @Override
+    public void addLink(Link link) {}
+
+    @Override
+    public void setStatus(Status status) {}
+
+    @Override
+    public void end() {}
+
+    @Override
+    public void updateName(String name) {}
+
+    @Override
+    public SpanContext getContext() {
+        return context;
+    }
+
+    @Override
+    public boolean isRecordingEvents() {
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "DefaultSpan{context=" + context + "}";
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.trace;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.cuckoo.context.Scope;
+import com.cuckoo.internal.Utils;
+import com.cuckoo.trace.unsafe.ContextUtils;
+
+/**
+ * No-op implementation of {@link Tracer}. It propagates the current {@link Span}, and the spans
+ * it starts are {@link DefaultSpan}s with the {@link SpanContext} of their parent.
+ *
+ * @since 0.0.1
+ */
+@ThreadSafe
+public final class DefaultTracer implements Tracer {
+    private static final DefaultTracer INSTANCE = new DefaultTracer();
+
+    /**
+     * Returns a {@code Tracer} singleton that is the default implementation for {@link Tracer}.
+     *
+     * @return a {@code Tracer} singleton that is the default implementation for {@link Tracer}.
+     * @since 0.0.1
+     */
+    public static DefaultTracer getInstance() {
+        return INSTANCE;
+    }
+
+    private DefaultTracer() {}
+
+    @Override
+    public Span getCurrentSpan() {
+        Span span = ContextUtils.getValue();
+        return span == null ? DefaultSpan.getInvalid() : span;
+    }
+
+    @Override
+    public Scope withSpan(Span span) {
+        return ContextUtils.withSpan(Utils.checkNotNull(span, "span"));
+    }
+
+    @Override
+    public Span.Builder spanBuilder(String spanName) {
+        Utils.checkNotNull(spanName, "spanName");
+        return new NoopSpanBuilder();
+    }
+
+    private static final class NoopSpanBuilder implements Span.Builder {
+        // The parent is the current span unless one of the setParent methods is called.
+        private boolean currentParent = true;
+        @Nullable
+        private SpanContext parentContext;
+
+        @Override
+        public Span.Builder setParent(Span parent) {
+            Utils.checkNotNull(parent, "parent");
+            currentParent = false;
+            parentContext = parent.getContext();
+            return this;
+        }
+
+        @Override
+        public Span.Builder setParent(SpanContext remoteParent) {
+            Utils.checkNotNull(remoteParent, "remoteParent");
+            currentParent = false;
+            parentContext = remoteParent;
+            return this;
+        }
+
+        @Override
+        public Span.Builder setNoParent() {
+            currentParent = false;
+            parentContext = null;
+            return this;
+        }
+
+        @Override
+        public Span.Builder setSampler(Sampler sampler) {
+            Utils.checkNotNull(sampler, "sampler");
+            return this;
+        }
+
+        @Override
+        public Span.Builder addLink(Link link) {
+            Utils.checkNotNull(link, "link");
+            return this;
+        }
+
+        @Override
+        public Span.Builder setSpanKind(Span.Kind spanKind) {
+            Utils.checkNotNull(spanKind, "spanKind");
+            return this;
+        }
+
+        @Override
+        public Span.Builder setStartTimestamp(long startEpochNanos) {
+            return this;
+        }
+
+        @Override
+        public Span.Builder setRecordEvents(boolean recordEvents) {
+            return this;
+        }
+
+        @Override
+        public Span startSpan() {
+            SpanContext context =
+                currentParent ? getInstance().getCurrentSpan().getContext() : parentContext;
+            return context == null ? DefaultSpan.getInvalid() : DefaultSpan.create(context);
+        }
+    }
+}
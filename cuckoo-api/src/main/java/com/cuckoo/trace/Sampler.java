@@ -16,7 +16,9 @@
 
 package com.cuckoo.trace;
 
+import java.util.List;
 import java.util.Map;
+import javax.annotation.Nullable;
 
 /**
  * Sampler is used to make decisions on {@link Span} sampling.
@@ -34,7 +36,31 @@ public interface Sampler {
     String getDescription();
 
     /**
-     * Sampling decision returned by {@link }
+     * Called during {@link Span} creation to make a sampling decision.
+     *
+     * <p>Samplers are called for every span that is started, so they should return shared
+     * {@code Decision} instances rather than allocate one for each call.
+     *
+     * @param parentContext the parent {@code Span}'s {@code SpanContext}. {@code null} if this is a
+     *     root span.
+     * @param traceId the {@link TraceId} for the new {@code Span}. This will be identical to that
+     *     in the parentContext, unless this is a root span.
+     * @param spanId the {@link SpanId} for the new {@code Span}.
+     * @param name the name of the new {@code Span}.
+     * @param links the links of the new {@code Span}. The list may be reused once this method
+     *     returns, so it must not be retained.
+     * @return the sampling decision.
+     * @since 0.0.1
+     */
+    Decision shouldSample(
+        @Nullable SpanContext parentContext,
+        TraceId traceId,
+        SpanId spanId,
+        String name,
+        List<Link> links);
+
+    /**
+     * Sampling decision returned by {@link Sampler#shouldSample}.
      */
     interface Decision {
 
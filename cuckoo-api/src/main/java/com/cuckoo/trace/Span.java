@@ -18,10 +18,12 @@ package com.cuckoo.trace;
 
 import java.util.Map;
 
+import com.cuckoo.common.Supplier;
+
 /**
  * An interface that represents a span. It has an associated {@link SpanContext}.
  *
- * <p>Spans are created by the {@link Builder#startSapn()} method.
+ * <p>Spans are created by the {@link Builder#startSpan()} method.
  *
  * <p>{@code Span} <b>must</b> be ended by calling {@link #end()}.
  *
@@ -120,6 +122,20 @@ public interface Span {
      */
     void setAttribute(String key, AttributeValue value);
 
+    /**
+     * Sets an attribute to the {@code Span}, with a value that is only computed if the {@code
+     * Span} records events. If the {@code Span} previously contained a mapping for the key, the
+     * old value is replaced by the specified value.
+     *
+     * <p>Use this method when the value is expensive to compute, so that spans that are not
+     * sampled do not pay for it.
+     *
+     * @param key the key for this attribute.
+     * @param value the supplier of the value for this attribute.
+     * @since 0.0.1
+     */
+    void setAttribute(String key, Supplier<AttributeValue> value);
+
     /**
      * Adds an event to the {@code Span}.
      *
@@ -143,6 +159,27 @@ public interface Span {
      */
     void addEvent(Event event);
 
+    /**
+     * Adds an event to the {@code Span}, with attributes that are only computed if the {@code
+     * Span} records events.
+     *
+     * @param name the name of the event.
+     * @param attributes the supplier of the attributes of this event.
+     * @since 0.0.1
+     */
+    void addEvent(String name, Supplier<Map<String, AttributeValue>> attributes);
+
+    /**
+     * Adds an event that is only created if the {@code Span} records events.
+     *
+     * <p>Pre-built {@link Event}s, for example constants, can be passed to {@link
+     * #addEvent(Event)} directly.
+     *
+     * @param event the supplier of the event to add.
+     * @since 0.0.1
+     */
+    void addEvent(Supplier<Event> event);
+
     /**
      * Adds a {@link Link} to the {@code Span}.
      *
@@ -222,7 +259,7 @@ public interface Span {
     interface Builder {
         /**
          * Sets the parent {@code Span} to use. If not set, the value of
-         * {@code Tracer.GetCurrentSpan()} at {@link #startSapn()} time will be used as parent.
+         * {@code Tracer.GetCurrentSpan()} at {@link #startSpan()} time will be used as parent.
          *
          * <p>This <b>must</b> be used to create a {@code Span} when manual Context propagation is
          * used OR when creating a root {@code Span} with a parent with an invalid
@@ -244,7 +281,7 @@ public interface Span {
 
         /**
          * Sets the parent {@link SpanContext} to use. If not set, the value of
-         * {@code Tracer.getCurrentSpan()} at {@link #startSapn()} time will be used as parent.
+         * {@code Tracer.getCurrentSpan()} at {@link #startSpan()} time will be used as parent.
          *
          * <p>Similar to {@link #setParent(Span parent)} but this <b>must</b> be used to create a
          * {@code Span} when the parent is in a different process. This is only intended for use by
@@ -266,7 +303,7 @@ public interface Span {
 
         /**
          * sets the option to become a root {@code Span} for a new trace. If not set, the value of
-         * {@code Tracer.getCurrentSpan()} at {@link #startSapn()} time will be used as parent.
+         * {@code Tracer.getCurrentSpan()} at {@link #startSpan()} time will be used as parent.
          *
          * <p>Observe that any previously set parent will be discarded.
          *
@@ -274,8 +311,74 @@ public interface Span {
          */
         Builder setNoParent();
 
-        Builder setSampler();
+        /**
+         * Sets the {@link Sampler} to use. If not set, the implementation will provide a default.
+         *
+         * @param sampler the {@code Sampler} to use when determining sampling for a {@code Span}.
+         * @return this.
+         * @throws NullPointerException if {@code sampler} is {@code null}.
+         * @since 0.0.1
+         */
+        Builder setSampler(Sampler sampler);
+
+        /**
+         * Adds a {@link Link} to the newly created {@code Span}. The links are also passed to the
+         * {@code Sampler}.
+         *
+         * @param link the {@code Link} to be added.
+         * @return this.
+         * @throws NullPointerException if {@code link} is {@code null}.
+         * @since 0.0.1
+         */
+        Builder addLink(Link link);
+
+        /**
+         * Sets the {@link Kind} of the newly created {@code Span}. If not set, the default is
+         * {@link Kind#INTERNAL}.
+         *
+         * @param spanKind the kind of the newly created {@code Span}.
+         * @return this.
+         * @throws NullPointerException if {@code spanKind} is {@code null}.
+         * @since 0.0.1
+         */
+        Builder setSpanKind(Kind spanKind);
+
+        /**
+         * Sets an explicit start time for the newly created {@code Span}, for example when the
+         * operation started before the {@code Span} could be created. If not set, the time at
+         * which {@link #startSpan()} is called is used.
+         *
+         * @param startEpochNanos the start time, in nanoseconds since the epoch.
+         * @return this.
+         * @since 0.0.1
+         */
+        Builder setStartTimestamp(long startEpochNanos);
+
+        /**
+         * Sets whether the newly created {@code Span} records events even if it is not sampled, for
+         * example to expose them in a local debug page. The sampling decision and the propagated
+         * {@code SpanContext} are not changed.
+         *
+         * @param recordEvents {@code true} to record events even if the span is not sampled.
+         * @return this.
+         * @since 0.0.1
+         */
+        Builder setRecordEvents(boolean recordEvents);
 
-        Span startSapn();
+        /**
+         * Starts a new {@code Span}.
+         *
+         * <p>Users <b>must</b> manually call {@link Span#end()} to end this {@code Span}.
+         *
+         * <p>Does not install the newly created {@code Span} to the current Context.
+         *
+         * <p>The {@code Builder} <b>must not</b> be used after this method returns: an
+         * implementation may reuse it for the next {@code Span}, and may throw an {@link
+         * IllegalStateException} on any later call.
+         *
+         * @return the newly created {@code Span}.
+         * @since 0.0.1
+         */
+        Span startSpan();
     }
 }
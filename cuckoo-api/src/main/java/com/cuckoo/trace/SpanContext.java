@@ -16,5 +16,129 @@
 
 package com.cuckoo.trace;
 
-public class SpanContext {
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import com.cuckoo.internal.Utils;
+
+/**
+ * The state of a {@link Span} that is propagated to its children and across process boundaries:
+ * the {@link TraceId}, the {@link SpanId} and the {@link TraceOptions}.
+ *
+ * @since 0.0.1
+ */
+@Immutable
+public final class SpanContext {
+    private static final SpanContext INVALID =
+        new SpanContext(TraceId.getInvalid(), SpanId.getInvalid(), TraceOptions.DEFAULT);
+
+    private final TraceId traceId;
+    private final SpanId spanId;
+    private final TraceOptions traceOptions;
+
+    private SpanContext(TraceId traceId, SpanId spanId, TraceOptions traceOptions) {
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.traceOptions = traceOptions;
+    }
+
+    /**
+     * Returns the invalid {@code SpanContext}, which is used when there is no span.
+     *
+     * @return the invalid {@code SpanContext}.
+     * @since 0.0.1
+     */
+    public static SpanContext getInvalid() {
+        return INVALID;
+    }
+
+    /**
+     * Returns a new {@code SpanContext} with the given identifiers and options.
+     *
+     * @param traceId the trace identifier of the span.
+     * @param spanId the span identifier of the span.
+     * @param traceOptions the trace options of the span.
+     * @return a new {@code SpanContext} with the given identifiers and options.
+     * @throws NullPointerException if any of the arguments is {@code null}.
+     * @since 0.0.1
+     */
+    public static SpanContext create(TraceId traceId, SpanId spanId, TraceOptions traceOptions) {
+        return new SpanContext(
+            Utils.checkNotNull(traceId, "traceId"),
+            Utils.checkNotNull(spanId, "spanId"),
+            Utils.checkNotNull(traceOptions, "traceOptions"));
+    }
+
+    /**
+     * Returns the trace identifier.
+     *
+     * @return the trace identifier.
+     * @since 0.0.1
+     */
+    public TraceId getTraceId() {
+        return traceId;
+    }
+
+    /**
+     * Returns the span identifier.
+     *
+     * @return the span identifier.
+     * @since 0.0.1
+     */
+    public SpanId getSpanId() {
+        return spanId;
+    }
+
+    /**
+     * Returns the trace options.
+     *
+     * @return the trace options.
+     * @since 0.0.1
+     */
+    public TraceOptions getTraceOptions() {
+        return traceOptions;
+    }
+
+    /**
+     * Returns whether both the trace and the span identifiers are valid.
+     *
+     * @return {@code true} if this {@code SpanContext} is valid.
+     * @since 0.0.1
+     */
+    public boolean isValid() {
+        return traceId.isValid() && spanId.isValid();
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof SpanContext)) {
+            return false;
+        }
+        SpanContext that = (SpanContext) obj;
+        return traceId.equals(that.traceId)
+            && spanId.equals(that.spanId)
+            && traceOptions.equals(that.traceOptions);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = traceId.hashCode();
+        result = 31 * result + spanId.hashCode();
+        result = 31 * result + traceOptions.hashCode();
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "SpanContext{traceId="
+            + traceId
+            + ", spanId="
+            + spanId
+            + ", traceOptions="
+            + traceOptions
+            + "}";
+    }
 }
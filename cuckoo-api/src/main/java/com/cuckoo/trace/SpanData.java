@@ -76,6 +76,54 @@ public abstract class SpanData {
             endTimestamp);
     }
 
+    /**
+     * Returns a new immutable {@code SpanData} that uses the given collections as they are, instead
+     * of copying them.
+     *
+     * <p>This avoids copying the recorded values when a span ends. The collections must be
+     * unmodifiable, and must not change after this call.
+     *
+     * @param context the {@code SpanContext} of the {@code Span}.
+     * @param parentSpanId the parent {@code SpanId} of the {@code Span}. {@code null} if the {@code
+     *     Span} is a root.
+     * @param resource the resource this span was executed on.
+     * @param name the name of the {@code Span}.
+     * @param kind the kind of the {@code Span}.
+     * @param startTimestamp the start {@code Timestamp} of the {@code Span}.
+     * @param attributes the unmodifiable attributes associated with the {@code Span}.
+     * @param timedEvents the unmodifiable events associated with the {@code Span}.
+     * @param links the unmodifiable links associated with the {@code Span}.
+     * @param status the {@code Status} of the {@code Span}.
+     * @param endTimestamp the end {@code Timestamp} of the {@code Span}.
+     * @return a new immutable {@code SpanData}.
+     * @since 0.0.1
+     */
+    public static SpanData createWithoutCopy(
+        SpanContext context,
+        @Nullable SpanId parentSpanId,
+        Resource resource,
+        String name,
+        Kind kind,
+        Timestamp startTimestamp,
+        Map<String, AttributeValue> attributes,
+        List<TimedEvent> timedEvents,
+        List<Link> links,
+        Status status,
+        Timestamp endTimestamp) {
+        return new AutoValue_SpanData(
+            context,
+            parentSpanId,
+            resource,
+            name,
+            kind,
+            startTimestamp,
+            attributes,
+            timedEvents,
+            links,
+            status,
+            endTimestamp);
+    }
+
     /**
      * Returns the {@code SpanContext} associated with this {@code Span}.
      *
@@ -156,7 +204,20 @@ public abstract class SpanData {
      */
     public abstract Timestamp getEndTimestamp();
 
-    SpanData() {}
+    /**
+     * Constructor for the implementations of {@code SpanData}. Besides the one returned by {@link
+     * #create}, implementations may read their values lazily, e.g. from an encoded form.
+     *
+     * <p>{@code SpanData} is a value type: an implementation must override {@link
+     * Object#equals(Object)}, {@link Object#hashCode()} and {@link Object#toString()} like the one
+     * returned by {@link #create}. Two instances are equal if all their getters return equal
+     * values, whatever their classes, and the hash code combines the hash codes of the values in
+     * the order of the getters, as {@code h = (h * 1000003) ^ value.hashCode()} starting from
+     * {@code 1}, with {@code 0} for a {@code null} parent {@code SpanId}.
+     *
+     * @since 0.0.1
+     */
+    protected SpanData() {}
 
     /**
      * A immutable implementation of the {@link com.cuckoo.trace.Event}.
@@ -207,15 +268,14 @@ public abstract class SpanData {
     @AutoValue
     public abstract static class TimedEvent {
         /**
-         * Returns a new immutable {@code TimedEvent<T>}.
+         * Returns a new immutable {@code TimedEvent}.
          *
          * @param timestamp the {@code Timestamp} of this event.
          * @param event the event.
-         * @param <T> the type of value that is timed.
-         * @return a new immutable {@code TimedEvent<T>}
+         * @return a new immutable {@code TimedEvent}
          * @since 0.1.0
          */
-        public static <T> TimedEvent create(Timestamp timestamp, Event event) {
+        public static TimedEvent create(Timestamp timestamp, com.cuckoo.trace.Event event) {
             return new AutoValue_SpanData_TimedEvent(timestamp, event);
         }
 
@@ -233,7 +293,7 @@ public abstract class SpanData {
          * @return the event.
          * @since 0.1.0
          */
-        public abstract Event getEvent();
+        public abstract com.cuckoo.trace.Event getEvent();
 
         TimedEvent() {}
     }
@@ -17,10 +17,10 @@
 package com.cuckoo.trace;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.TreeMap;
-import java.util.Arrays;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 
@@ -304,6 +304,33 @@ public final class Status {
      */
     public static final Status DATA_LOSS = CanonicalCode.DATA_LOSS.toStatus();
 
+    // Maps HTTP status codes to the canonical Status instances. Codes outside of the table map to
+    // UNKNOWN.
+    private static final int MAX_HTTP_STATUS = 600;
+    private static final Status[] HTTP_STATUS_TABLE = buildHttpStatusTable();
+
+    private static Status[] buildHttpStatusTable() {
+        Status[] table = new Status[MAX_HTTP_STATUS];
+        Arrays.fill(table, UNKNOWN);
+        Arrays.fill(table, 200, 400, OK);
+        table[400] = INVALID_ARGUMENT;
+        table[401] = UNAUTHENTICATED;
+        table[403] = PERMISSION_DENIED;
+        table[404] = NOT_FOUND;
+        table[429] = RESOURCE_EXHAUSTED;
+        table[501] = UNIMPLEMENTED;
+        table[503] = UNAVAILABLE;
+        table[504] = DEADLINE_EXCEEDED;
+        return table;
+    }
+
+    // A bounded, direct-mapped cache of derived Status instances, so that repeated descriptions
+    // (e.g. "connection reset") resolve to the same instance. A colliding entry replaces the
+    // previous one, which keeps the cache size fixed regardless of how many distinct descriptions
+    // are seen. Races are benign: all fields of Status are final.
+    private static final int INTERN_CACHE_SIZE = 256;
+    private static final Status[] INTERN_CACHE = new Status[INTERN_CACHE_SIZE];
+
     // the canonical code of this message.
     private final CanonicalCode canonicalCode;
 
@@ -311,22 +338,79 @@ public final class Status {
     @Nullable
     private final String description;
 
+    // Precomputed hash code, Status instances are frequently used as aggregation keys.
+    private final int hashCode;
+
     private Status(CanonicalCode canonicalCode, @Nullable String description) {
+        this(canonicalCode, description, computeHashCode(canonicalCode, description));
+    }
+
+    private Status(CanonicalCode canonicalCode, @Nullable String description, int hashCode) {
         this.canonicalCode = Utils.checkNotNull(canonicalCode, "canonicalCode");
         this.description = description;
+        this.hashCode = hashCode;
+    }
+
+    /**
+     * Returns the canonical {@code Status} for the given numerical code value. The values are the
+     * same as the gRPC status codes.
+     *
+     * @param value the numerical value of the code.
+     * @return the canonical {@code Status} for the given value, or {@link #UNKNOWN} if the value
+     *      does not correspond to any {@link CanonicalCode}.
+     */
+    public static Status fromCodeValue(int value) {
+        if (value < 0 || value >= STATUS_LIST.size()) {
+            return UNKNOWN;
+        }
+        return STATUS_LIST.get(value);
+    }
+
+    /**
+     * Returns the canonical {@code Status} that best describes the given HTTP status code.
+     *
+     * <p>Codes in the range {@code [200, 400)} are mapped to {@link #OK}, well known client and
+     * server errors are mapped to their closest {@link CanonicalCode} and everything else is
+     * mapped to {@link #UNKNOWN}.
+     *
+     * @param httpStatus the HTTP status code.
+     * @return the canonical {@code Status} for the given HTTP status code.
+     */
+    public static Status fromHttpStatus(int httpStatus) {
+        if (httpStatus < 0 || httpStatus >= MAX_HTTP_STATUS) {
+            return UNKNOWN;
+        }
+        return HTTP_STATUS_TABLE[httpStatus];
     }
 
     /**
      * Creates a derived instance of {@code Status} with the given description.
      *
+     * <p>Recently used {@code (CanonicalCode, description)} pairs are cached, so repeated calls
+     * with the same description usually return the same instance.
+     *
      * @param description the new description of the {@code Status}.
-     * @return The newly created {@code Status} with the given description.
+     * @return The {@code Status} with the given description.
      */
     public Status withDescrition(@Nullable String description) {
         if (Utils.equalObjects(this.description, description)) {
             return this;
         }
-        return new Status(this.canonicalCode, description);
+        if (description == null) {
+            return canonicalCode.toStatus();
+        }
+        int hashCode = computeHashCode(canonicalCode, description);
+        int index = (hashCode ^ (hashCode >>> 16)) & (INTERN_CACHE_SIZE - 1);
+        Status cached = INTERN_CACHE[index];
+        if (cached != null
+            && cached.hashCode == hashCode
+            && cached.canonicalCode == canonicalCode
+            && description.equals(cached.description)) {
+            return cached;
+        }
+        Status status = new Status(canonicalCode, description, hashCode);
+        INTERN_CACHE[index] = status;
+        return status;
     }
 
     /**
@@ -384,7 +468,11 @@ public final class Status {
      */
     @Override
     public int hashCode() {
-    return Arrays.hashCode(new Object[] {canonicalCode, description});
+        return hashCode;
+    }
+
+    private static int computeHashCode(CanonicalCode canonicalCode, @Nullable String description) {
+        return 31 * (31 + canonicalCode.value) + (description == null ? 0 : description.hashCode());
     }
 
     @Override
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.trace;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * The options of a trace that are propagated with the {@link SpanContext}. They are encoded in one
+ * byte, of which only the sampled bit is currently defined.
+ *
+ * @since 0.0.1
+ */
+@Immutable
+public final class TraceOptions {
+    private static final byte DEFAULT_OPTIONS = 0;
+    private static final byte IS_SAMPLED = 0x1;
+    private static final int SIZE = 1;
+
+    /**
+     * The default {@code TraceOptions}, in which the trace is not sampled.
+     *
+     * @since 0.0.1
+     */
+    public static final TraceOptions DEFAULT = new TraceOptions(DEFAULT_OPTIONS);
+
+    /**
+     * The {@code TraceOptions} of a sampled trace.
+     *
+     * @since 0.0.1
+     */
+    public static final TraceOptions SAMPLED = new TraceOptions(IS_SAMPLED);
+
+    // The set of enabled features is determined by all the enabled bits.
+    private final byte options;
+
+    private TraceOptions(byte options) {
+        this.options = options;
+    }
+
+    /**
+     * Returns the size in bytes of the {@code TraceOptions}.
+     *
+     * @return the size in bytes of the {@code TraceOptions}.
+     * @since 0.0.1
+     */
+    public static int getSize() {
+        return SIZE;
+    }
+
+    /**
+     * Returns the {@code TraceOptions} encoded in the given byte.
+     *
+     * @param src the byte representation of the {@code TraceOptions}.
+     * @return the {@code TraceOptions} encoded in the given byte.
+     * @since 0.0.1
+     */
+    public static TraceOptions fromByte(byte src) {
+        if (src == DEFAULT_OPTIONS) {
+            return DEFAULT;
+        }
+        if (src == IS_SAMPLED) {
+            return SAMPLED;
+        }
+        return new TraceOptions(src);
+    }
+
+    /**
+     * Returns the byte representation of the {@code TraceOptions}.
+     *
+     * @return the byte representation of the {@code TraceOptions}.
+     * @since 0.0.1
+     */
+    public byte getByte() {
+        return options;
+    }
+
+    /**
+     * Returns whether the sampled bit is set.
+     *
+     * @return {@code true} if the trace is sampled.
+     * @since 0.0.1
+     */
+    public boolean isSampled() {
+        return (options & IS_SAMPLED) != 0;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof TraceOptions)) {
+            return false;
+        }
+        return options == ((TraceOptions) obj).options;
+    }
+
+    @Override
+    public int hashCode() {
+        return options;
+    }
+
+    @Override
+    public String toString() {
+        return "TraceOptions{sampled=" + isSampled() + "}";
+    }
+}
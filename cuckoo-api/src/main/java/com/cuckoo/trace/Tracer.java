@@ -0,0 +1,72 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.trace;
+
+import com.cuckoo.context.Scope;
+
+/**
+ * Object for creating {@link Span}s and for accessing the current {@code Span}.
+ *
+ * <p>Example of usage:
+ *
+ * <pre>{@code
+ * Span span = tracer.spanBuilder("handle").setSpanKind(Span.Kind.SERVER).startSpan();
+ * try (Scope scope = tracer.withSpan(span)) {
+ *     handle(request);
+ * } finally {
+ *     span.end();
+ * }
+ * }</pre>
+ *
+ * @since 0.0.1
+ */
+public interface Tracer {
+    /**
+     * Returns the current {@code Span}, or {@link DefaultSpan#getInvalid()} if there is none.
+     *
+     * @return the current {@code Span}.
+     * @since 0.0.1
+     */
+    Span getCurrentSpan();
+
+    /**
+     * Enters the scope of code where the given {@code Span} is in the current context, and returns
+     * an object that represents that scope. The scope is exited when the returned object is closed.
+     *
+     * <p>The {@code Span} is not ended when the scope is exited.
+     *
+     * @param span the {@code Span} to be set to the current context.
+     * @return an object that defines a scope where the given {@code Span} is the current one.
+     * @throws NullPointerException if {@code span} is {@code null}.
+     * @since 0.0.1
+     */
+    Scope withSpan(Span span);
+
+    /**
+     * Returns a {@link Span.Builder} to create and start a new {@code Span}. By default the parent
+     * of the new {@code Span} is the current one.
+     *
+     * <p>The builder must be used on the calling thread, and only until its {@link
+     * Span.Builder#startSpan()} method is called, so that implementations can reuse it.
+     *
+     * @param spanName the name of the new {@code Span}.
+     * @return a {@code Span.Builder} to create and start a new {@code Span}.
+     * @throws NullPointerException if {@code spanName} is {@code null}.
+     * @since 0.0.1
+     */
+    Span.Builder spanBuilder(String spanName);
+}
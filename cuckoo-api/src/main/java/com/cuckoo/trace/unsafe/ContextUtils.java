@@ -0,0 +1,122 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.trace.unsafe;
+
+import javax.annotation.Nullable;
+
+import com.cuckoo.context.ContextEntry;
+import com.cuckoo.context.ContextStorage;
+import com.cuckoo.context.Scope;
+import com.cuckoo.context.unsafe.ContextEntryUtils;
+import com.cuckoo.tags.TagMap;
+import com.cuckoo.trace.Span;
+import io.grpc.Context;
+
+/**
+ * Utility methods for accessing the current {@link Span}.
+ *
+ * <p>The {@code Span} is stored in the {@link ContextEntry} of the context, together with the
+ * current {@link TagMap}, so {@link #withSpanAndTagMap(Span, TagMap)} installs both with a single
+ * entry and a single attach. The current entry is kept by the {@link ContextStorage}. The methods
+ * that take or return an {@link io.grpc.Context} always use the {@code io.grpc.Context}.
+ *
+ * <p>Most code should interact with the current context via the public tracing APIs and avoid
+ * accessing this class directly.
+ *
+ * @since 0.0.1
+ */
+public final class ContextUtils {
+
+    private ContextUtils() {}
+
+    /**
+     * Creates a new {@code Context} with the given value set, based on the current {@code
+     * Context}.
+     *
+     * <p>Attaching the returned {@code Context} only changes the value returned by {@link
+     * #getValue()} if the {@link ContextStorage} keeps the current entry in the {@code
+     * io.grpc.Context}, like {@link com.cuckoo.context.unsafe.GrpcContextStorage}.
+     *
+     * @param span the value to be set.
+     * @return a new context with the given value set.
+     * @deprecated use {@link #withSpan(Span)}, which works with every {@code ContextStorage}, or
+     *     {@link #withValue(Span, Context)} with an explicit {@code Context}.
+     */
+    @Deprecated
+    public static Context withValue(Span span) {
+        return withValue(span, Context.current());
+    }
+
+    /**
+     * Creates a new {@code Context} with the given value set.
+     *
+     * @param span the value to be set.
+     * @param context the parent {@code Context}.
+     * @return a new context with the given value set.
+     */
+    public static Context withValue(Span span, Context context) {
+        return ContextEntryUtils.withValue(
+            ContextEntryUtils.getValue(context).withSpan(span), context);
+    }
+
+    /**
+     * Returns the value from the current context.
+     *
+     * @return the value from the current context, or {@code null} if there is none.
+     */
+    @Nullable
+    public static Span getValue() {
+        return ContextStorage.get().current().getSpan();
+    }
+
+    /**
+     * Returns the value from the specified {@code Context}.
+     *
+     * @param context the specified {@code Context}.
+     * @return the value from the specified {@code Context}, or {@code null} if there is none.
+     */
+    @Nullable
+    public static Span getValue(Context context) {
+        return ContextEntryUtils.getValue(context).getSpan();
+    }
+
+    /**
+     * Returns a new {@link Scope} encapsulating the provided {@code Span} added to the current
+     * context.
+     *
+     * @param span the {@code Span} to be added to the current context.
+     * @return the {@link Scope} for the updated context.
+     */
+    public static Scope withSpan(Span span) {
+        ContextStorage storage = ContextStorage.get();
+        return storage.attach(storage.current().withSpan(span));
+    }
+
+    /**
+     * Returns a new {@link Scope} encapsulating the provided {@code Span} and {@code TagMap} added
+     * to the current context. Both values are installed with one entry and one attach, which is
+     * cheaper than nesting {@link #withSpan(Span)} and {@link
+     * com.cuckoo.tags.unsafe.ContextUtils#withTagMap(TagMap)}.
+     *
+     * @param span the {@code Span} to be added to the current context.
+     * @param tagMap the {@code TagMap} to be added to the current context.
+     * @return the {@link Scope} for the updated context.
+     */
+    public static Scope withSpanAndTagMap(Span span, TagMap tagMap) {
+        return ContextStorage.get().attach(ContextEntry.create(span, tagMap));
+    }
+}
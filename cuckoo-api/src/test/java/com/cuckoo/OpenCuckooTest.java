@@ -0,0 +1,195 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Enumeration;
+
+import com.cuckoo.tags.DefaultTagger;
+import com.cuckoo.tags.Tagger;
+import com.cuckoo.tags.spi.TaggerProvider;
+import com.cuckoo.trace.DefaultTracer;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Unit tests for {@link OpenCuckoo}.
+ */
+@RunWith(JUnit4.class)
+public class OpenCuckooTest {
+    private static final String PROPERTY = TaggerProvider.class.getName();
+
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @After
+    public void tearDown() {
+        System.clearProperty(PROPERTY);
+    }
+
+    @Test
+    public void getTagger_ReturnsSameInstance() {
+        assertThat(OpenCuckoo.getTagger()).isSameInstanceAs(OpenCuckoo.getTagger());
+    }
+
+    @Test
+    public void loadTagger_DefaultWithoutProvider() {
+        ClassLoader classLoader = new URLClassLoader(new URL[0], null);
+        assertThat(OpenCuckoo.loadTagger(classLoader))
+            .isSameInstanceAs(DefaultTagger.getInstance());
+    }
+
+    @Test
+    public void getTagger_SelectedProviderNotFound() throws Exception {
+        System.setProperty(PROPERTY, "com.example.MissingTaggerProvider");
+        // A fresh copy of OpenCuckoo, whose Tagger is not loaded yet.
+        URL classes = OpenCuckoo.class.getProtectionDomain().getCodeSource().getLocation();
+        ClassLoader classLoader = new URLClassLoader(new URL[] {classes}, null);
+        Class<?> openCuckoo = Class.forName(OpenCuckoo.class.getName(), true, classLoader);
+        Method getTagger = openCuckoo.getMethod("getTagger");
+        Object tagger = getTagger.invoke(null);
+        assertThat(tagger.getClass().getName()).isEqualTo(DefaultTagger.class.getName());
+        assertThat(getTagger.invoke(null)).isSameInstanceAs(tagger);
+    }
+
+    @Test
+    public void loadTagger_DefaultIfSelectedProviderNotFound() throws IOException {
+        System.setProperty(PROPERTY, "com.example.MissingTaggerProvider");
+        assertThat(OpenCuckoo.loadTagger(classLoaderWithProviders()))
+            .isSameInstanceAs(DefaultTagger.getInstance());
+    }
+
+    @Test
+    public void loadTagger_DefaultIfProviderCannotBeLoaded() throws IOException {
+        ClassLoader classLoader = classLoaderWithProviders("com.example.MissingTaggerProvider");
+        assertThat(OpenCuckoo.loadTagger(classLoader))
+            .isSameInstanceAs(DefaultTagger.getInstance());
+    }
+
+    @Test
+    public void loadTagger_DefaultIfProviderThrows() throws IOException {
+        ClassLoader classLoader = classLoaderWithProviders(ThrowingTaggerProvider.class.getName());
+        assertThat(OpenCuckoo.loadTagger(classLoader))
+            .isSameInstanceAs(DefaultTagger.getInstance());
+    }
+
+    @Test
+    public void getTracer_ReturnsSameInstance() {
+        assertThat(OpenCuckoo.getTracer()).isSameInstanceAs(OpenCuckoo.getTracer());
+    }
+
+    @Test
+    public void loadTracer_DefaultWithoutProvider() {
+        ClassLoader classLoader = new URLClassLoader(new URL[0], null);
+        assertThat(OpenCuckoo.loadTracer(classLoader))
+            .isSameInstanceAs(DefaultTracer.getInstance());
+    }
+
+    @Test
+    public void loadSpi_FirstProvider() throws IOException {
+        assertThat(OpenCuckoo.loadSpi(TaggerProvider.class, classLoaderWithProviders()))
+            .isInstanceOf(FirstTaggerProvider.class);
+    }
+
+    @Test
+    public void loadSpi_ProviderSelectedBySystemProperty() throws IOException {
+        System.setProperty(PROPERTY, SecondTaggerProvider.class.getName());
+        assertThat(OpenCuckoo.loadSpi(TaggerProvider.class, classLoaderWithProviders()))
+            .isInstanceOf(SecondTaggerProvider.class);
+    }
+
+    @Test
+    public void loadSpi_SelectedProviderNotFound() throws IOException {
+        System.setProperty(PROPERTY, "com.example.MissingTaggerProvider");
+        thrown.expect(IllegalStateException.class);
+        OpenCuckoo.loadSpi(TaggerProvider.class, classLoaderWithProviders());
+    }
+
+    // Returns a class loader that only sees the providers registered by this test.
+    private ClassLoader classLoaderWithProviders() throws IOException {
+        return classLoaderWithProviders(
+            FirstTaggerProvider.class.getName(), SecondTaggerProvider.class.getName());
+    }
+
+    // Returns a class loader that only sees the given providers.
+    private ClassLoader classLoaderWithProviders(String... providers) throws IOException {
+        File services = folder.newFolder("META-INF", "services");
+        try (Writer writer =
+            new OutputStreamWriter(
+                Files.newOutputStream(new File(services, PROPERTY).toPath()),
+                StandardCharsets.UTF_8)) {
+            for (String provider : providers) {
+                writer.write(provider + "\n");
+            }
+        }
+        ClassLoader testClassLoader = OpenCuckooTest.class.getClassLoader();
+        // Only resources under the folder are visible, classes are loaded by the parent.
+        return new URLClassLoader(new URL[] {folder.getRoot().toURI().toURL()}, testClassLoader) {
+            @Override
+            public URL getResource(String name) {
+                return findResource(name);
+            }
+
+            @Override
+            public Enumeration<URL> getResources(String name) throws IOException {
+                return findResources(name);
+            }
+        };
+    }
+
+    /** Test provider registered first. */
+    public static final class FirstTaggerProvider implements TaggerProvider {
+        @Override
+        public Tagger create() {
+            return DefaultTagger.getInstance();
+        }
+    }
+
+    /** Test provider registered second. */
+    public static final class SecondTaggerProvider implements TaggerProvider {
+        @Override
+        public Tagger create() {
+            return DefaultTagger.getInstance();
+        }
+    }
+
+    /** Test provider that fails to create the {@code Tagger}. */
+    public static final class ThrowingTaggerProvider implements TaggerProvider {
+        @Override
+        public Tagger create() {
+            throw new UnsupportedOperationException("Cannot create the Tagger.");
+        }
+    }
+}
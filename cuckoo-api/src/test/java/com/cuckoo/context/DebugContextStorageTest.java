@@ -0,0 +1,183 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.context;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import com.cuckoo.tags.TagMap;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mockito;
+
+/**
+ * Unit tests for {@link DebugContextStorage}.
+ */
+@RunWith(JUnit4.class)
+public class DebugContextStorageTest {
+    private static final Logger logger = Logger.getLogger(DebugContextStorage.class.getName());
+
+    private final ContextStorage storage =
+        new DebugContextStorage(new ThreadLocalContextStorage(), 1);
+    private final ContextEntry entry1 = ContextEntry.create(null, Mockito.mock(TagMap.class));
+    private final ContextEntry entry2 = ContextEntry.create(null, Mockito.mock(TagMap.class));
+    private final ContextEntry entry3 = ContextEntry.create(null, Mockito.mock(TagMap.class));
+    private final List<LogRecord> records = new ArrayList<LogRecord>();
+    private final Handler handler =
+        new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                records.add(record);
+            }
+
+            @Override
+            public void flush() {}
+
+            @Override
+            public void close() {}
+        };
+
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    @Before
+    public void setUp() {
+        logger.addHandler(handler);
+    }
+
+    @After
+    public void tearDown() {
+        logger.removeHandler(handler);
+    }
+
+    @Test
+    public void nestedScopes_NoWarnings() {
+        try (Scope scope1 = storage.attach(entry1)) {
+            try (Scope scope2 = storage.attach(entry2)) {
+                assertThat(storage.current()).isSameInstanceAs(entry2);
+            }
+            assertThat(storage.current()).isSameInstanceAs(entry1);
+        }
+        assertThat(storage.current()).isSameInstanceAs(ContextEntry.EMPTY);
+        assertThat(records).isEmpty();
+    }
+
+    @Test
+    public void leakedScope_ReportedWhenEnclosingScopeCloses() {
+        Scope scope1 = storage.attach(entry1);
+        Scope scope2 = storage.attach(entry2);
+        storage.attach(entry3);
+        scope1.close();
+        assertThat(storage.current()).isSameInstanceAs(ContextEntry.EMPTY);
+        assertThat(records).hasSize(1);
+        assertThat(records.get(0).getMessage()).startsWith("2 scope(s) still open");
+        assertThat(records.get(0).getThrown()).isNotNull();
+        assertThat(records.get(0).getThrown().getStackTrace()[0].getMethodName())
+            .isEqualTo("leakedScope_ReportedWhenEnclosingScopeCloses");
+
+        // The leaked scope is already closed.
+        scope2.close();
+        assertThat(records).hasSize(2);
+        assertThat(records.get(1).getMessage()).startsWith("Scope closed twice");
+    }
+
+    @Test
+    public void closeTwice_Reported() {
+        Scope scope1 = storage.attach(entry1);
+        scope1.close();
+        Scope scope2 = storage.attach(entry2);
+        scope1.close();
+        assertThat(storage.current()).isSameInstanceAs(entry2);
+        assertThat(records).hasSize(1);
+        assertThat(records.get(0).getMessage()).startsWith("Scope closed twice");
+        scope2.close();
+        assertThat(records).hasSize(1);
+    }
+
+    @Test
+    public void closeOnOtherThread_Reported() throws InterruptedException {
+        final Scope scope = storage.attach(entry1);
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                scope.close();
+            }
+        });
+        thread.start();
+        thread.join();
+        assertThat(storage.current()).isSameInstanceAs(entry1);
+        assertThat(records).hasSize(1);
+        assertThat(records.get(0).getMessage()).contains("instead of");
+        scope.close();
+        assertThat(storage.current()).isSameInstanceAs(ContextEntry.EMPTY);
+        assertThat(records).hasSize(1);
+    }
+
+    @Test
+    public void sampleRate() {
+        ContextStorage sampled = new DebugContextStorage(new ThreadLocalContextStorage(), 0.5);
+        for (int i = 0; i < 4; i++) {
+            Scope outer = sampled.attach(entry1);
+            sampled.attach(entry2);
+            outer.close();
+        }
+        // The second scope of each iteration is the leaked one, and every second scope is sampled.
+        assertThat(records).hasSize(4);
+        for (LogRecord record : records) {
+            assertThat(record.getThrown()).isNotNull();
+        }
+    }
+
+    @Test
+    public void sampleRate_Zero() {
+        ContextStorage unsampled = new DebugContextStorage(new ThreadLocalContextStorage(), 0);
+        Scope outer = unsampled.attach(entry1);
+        unsampled.attach(entry2);
+        outer.close();
+        assertThat(records).hasSize(1);
+        assertThat(records.get(0).getThrown()).isNull();
+        assertThat(records.get(0).getMessage()).endsWith("(its stack trace was not sampled)");
+    }
+
+    @Test
+    public void create_InvalidSampleRate() {
+        thrown.expect(IllegalArgumentException.class);
+        new DebugContextStorage(new ThreadLocalContextStorage(), 1.5);
+    }
+
+    @Test
+    public void debug() {
+        assertThat(ContextStorage.debug(new LinkedScopeContextStorage(), "0.01"))
+            .isInstanceOf(DebugContextStorage.class);
+    }
+
+    @Test
+    public void debug_InvalidSampleRate() {
+        thrown.expect(IllegalStateException.class);
+        ContextStorage.debug(new LinkedScopeContextStorage(), "sometimes");
+    }
+}
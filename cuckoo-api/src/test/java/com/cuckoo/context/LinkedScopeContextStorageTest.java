@@ -0,0 +1,105 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.context;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.cuckoo.tags.TagMap;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mockito;
+
+/**
+ * Unit tests for {@link LinkedScopeContextStorage}.
+ */
+@RunWith(JUnit4.class)
+public class LinkedScopeContextStorageTest {
+    private final ContextStorage storage = new LinkedScopeContextStorage();
+    private final ContextEntry entry1 = ContextEntry.create(null, Mockito.mock(TagMap.class));
+    private final ContextEntry entry2 = ContextEntry.create(null, Mockito.mock(TagMap.class));
+    private final ContextEntry entry3 = ContextEntry.create(null, Mockito.mock(TagMap.class));
+
+    @Test
+    public void attachAndClose() {
+        assertThat(storage.current()).isSameInstanceAs(ContextEntry.EMPTY);
+        try (Scope scope1 = storage.attach(entry1)) {
+            assertThat(storage.current()).isSameInstanceAs(entry1);
+            try (Scope scope2 = storage.attach(entry2)) {
+                assertThat(storage.current()).isSameInstanceAs(entry2);
+            }
+            assertThat(storage.current()).isSameInstanceAs(entry1);
+        }
+        assertThat(storage.current()).isSameInstanceAs(ContextEntry.EMPTY);
+    }
+
+    @Test
+    public void close_OutOfOrderClosesLaterScopes() {
+        Scope scope1 = storage.attach(entry1);
+        Scope scope2 = storage.attach(entry2);
+        Scope scope3 = storage.attach(entry3);
+        scope2.close();
+        assertThat(storage.current()).isSameInstanceAs(entry1);
+        scope3.close();
+        assertThat(storage.current()).isSameInstanceAs(entry1);
+        scope1.close();
+        assertThat(storage.current()).isSameInstanceAs(ContextEntry.EMPTY);
+    }
+
+    @Test
+    public void close_TwiceHasNoEffect() {
+        Scope scope1 = storage.attach(entry1);
+        scope1.close();
+        Scope scope2 = storage.attach(entry2);
+        scope1.close();
+        assertThat(storage.current()).isSameInstanceAs(entry2);
+        scope2.close();
+        assertThat(storage.current()).isSameInstanceAs(ContextEntry.EMPTY);
+    }
+
+    @Test
+    public void sameEntryAttachedTwice() {
+        try (Scope scope1 = storage.attach(entry1)) {
+            try (Scope scope2 = storage.attach(entry1)) {
+                assertThat(storage.current()).isSameInstanceAs(entry1);
+            }
+            assertThat(storage.current()).isSameInstanceAs(entry1);
+        }
+        assertThat(storage.current()).isSameInstanceAs(ContextEntry.EMPTY);
+    }
+
+    @Test
+    public void entriesArePerThread() throws InterruptedException {
+        final ContextEntry[] seen = new ContextEntry[2];
+        try (Scope scope = storage.attach(entry1)) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    seen[0] = storage.current();
+                    try (Scope other = storage.attach(entry3)) {
+                        seen[1] = storage.current();
+                    }
+                }
+            });
+            thread.start();
+            thread.join();
+            assertThat(storage.current()).isSameInstanceAs(entry1);
+        }
+        assertThat(seen[0]).isSameInstanceAs(ContextEntry.EMPTY);
+        assertThat(seen[1]).isSameInstanceAs(entry3);
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.context;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import com.cuckoo.context.unsafe.GrpcContextStorage;
+import com.cuckoo.tags.TagMap;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mockito;
+
+/**
+ * Unit tests for {@link ThreadLocalContextStorage} and {@link ContextStorage}.
+ */
+@RunWith(JUnit4.class)
+public class ThreadLocalContextStorageTest {
+    private final ContextStorage storage = new ThreadLocalContextStorage();
+    private final ContextEntry entry1 = ContextEntry.create(null, Mockito.mock(TagMap.class));
+    private final ContextEntry entry2 = ContextEntry.create(null, Mockito.mock(TagMap.class));
+    private final ContextEntry entry3 = ContextEntry.create(null, Mockito.mock(TagMap.class));
+
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void defaultStorage() {
+        assertThat(ContextStorage.get()).isInstanceOf(ThreadLocalContextStorage.class);
+        assertThat(ContextStorage.get()).isSameInstanceAs(ContextStorage.get());
+    }
+
+    @Test
+    public void createDefault() {
+        assertThat(ContextStorage.createDefault()).isInstanceOf(ThreadLocalContextStorage.class);
+    }
+
+    @Test
+    public void get_InvalidProperties() throws Exception {
+        System.setProperty(ContextStorage.STORAGE_PROPERTY, "com.example.MissingContextStorage");
+        System.setProperty(ContextStorage.DEBUG_PROPERTY, "sometimes");
+        try {
+            // A fresh copy of ContextStorage, whose storage is not selected yet.
+            URL classes = ContextStorage.class.getProtectionDomain().getCodeSource().getLocation();
+            ClassLoader classLoader = new URLClassLoader(new URL[] {classes}, null);
+            Class<?> contextStorage =
+                Class.forName(ContextStorage.class.getName(), true, classLoader);
+            Method get = contextStorage.getMethod("get");
+            Object storage = get.invoke(null);
+            assertThat(storage.getClass().getName())
+                .isEqualTo(ThreadLocalContextStorage.class.getName());
+            assertThat(get.invoke(null)).isSameInstanceAs(storage);
+        } finally {
+            System.clearProperty(ContextStorage.STORAGE_PROPERTY);
+            System.clearProperty(ContextStorage.DEBUG_PROPERTY);
+        }
+    }
+
+    @Test
+    public void create() {
+        assertThat(ContextStorage.create(null, null)).isInstanceOf(ThreadLocalContextStorage.class);
+        assertThat(ContextStorage.create(LinkedScopeContextStorage.class.getName(), null))
+            .isInstanceOf(LinkedScopeContextStorage.class);
+        assertThat(ContextStorage.create(null, "0.5")).isInstanceOf(DebugContextStorage.class);
+    }
+
+    @Test
+    public void create_UnknownClassUsesDefault() {
+        assertThat(ContextStorage.create("com.example.MissingContextStorage", null))
+            .isInstanceOf(ThreadLocalContextStorage.class);
+    }
+
+    @Test
+    public void create_InvalidSampleRateIgnored() {
+        assertThat(ContextStorage.create(LinkedScopeContextStorage.class.getName(), "sometimes"))
+            .isInstanceOf(LinkedScopeContextStorage.class);
+    }
+
+    @Test
+    public void load() {
+        assertThat(ContextStorage.load(GrpcContextStorage.class.getName()))
+            .isInstanceOf(GrpcContextStorage.class);
+    }
+
+    @Test
+    public void load_LinkedScopeContextStorage() {
+        assertThat(ContextStorage.load(LinkedScopeContextStorage.class.getName()))
+            .isInstanceOf(LinkedScopeContextStorage.class);
+    }
+
+    @Test
+    public void load_UnknownClass() {
+        thrown.expect(IllegalStateException.class);
+        ContextStorage.load("com.example.MissingContextStorage");
+    }
+
+    @Test
+    public void attachAndClose() {
+        assertThat(storage.current()).isSameInstanceAs(ContextEntry.EMPTY);
+        try (Scope scope1 = storage.attach(entry1)) {
+            assertThat(storage.current()).isSameInstanceAs(entry1);
+            try (Scope scope2 = storage.attach(entry2)) {
+                assertThat(storage.current()).isSameInstanceAs(entry2);
+            }
+            assertThat(storage.current()).isSameInstanceAs(entry1);
+        }
+        assertThat(storage.current()).isSameInstanceAs(ContextEntry.EMPTY);
+    }
+
+    @Test
+    public void attach_GrowsPastInitialCapacity() {
+        Scope[] scopes = new Scope[100];
+        for (int i = 0; i < scopes.length; i++) {
+            scopes[i] = storage.attach(i % 2 == 0 ? entry1 : entry2);
+        }
+        assertThat(storage.current()).isSameInstanceAs(entry2);
+        for (int i = scopes.length - 1; i > 0; i--) {
+            scopes[i].close();
+            assertThat(storage.current()).isSameInstanceAs(i % 2 == 0 ? entry2 : entry1);
+        }
+        scopes[0].close();
+        assertThat(storage.current()).isSameInstanceAs(ContextEntry.EMPTY);
+    }
+
+    @Test
+    public void close_OutOfOrderClosesLaterScopes() {
+        Scope scope1 = storage.attach(entry1);
+        Scope scope2 = storage.attach(entry2);
+        scope1.close();
+        assertThat(storage.current()).isSameInstanceAs(ContextEntry.EMPTY);
+        scope2.close();
+        assertThat(storage.current()).isSameInstanceAs(ContextEntry.EMPTY);
+    }
+
+    @Test
+    public void close_TwiceHasNoEffect() {
+        Scope scope1 = storage.attach(entry1);
+        scope1.close();
+        Scope scope2 = storage.attach(entry2);
+        scope1.close();
+        assertThat(storage.current()).isSameInstanceAs(entry2);
+        scope2.close();
+        assertThat(storage.current()).isSameInstanceAs(ContextEntry.EMPTY);
+    }
+
+    @Test
+    public void entriesArePerThread() throws InterruptedException {
+        final ContextEntry[] seen = new ContextEntry[1];
+        try (Scope scope = storage.attach(entry1)) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try (Scope other = storage.attach(entry3)) {
+                        seen[0] = storage.current();
+                    }
+                }
+            });
+            thread.start();
+            thread.join();
+            assertThat(storage.current()).isSameInstanceAs(entry1);
+        }
+        assertThat(seen[0]).isSameInstanceAs(entry3);
+    }
+
+    @Test
+    public void attach_DisallowsNullEntry() {
+        thrown.expect(NullPointerException.class);
+        storage.attach(null);
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.context.unsafe;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.cuckoo.context.ContextEntry;
+import com.cuckoo.context.ContextStorage;
+import com.cuckoo.context.Scope;
+import com.cuckoo.tags.TagMap;
+import io.grpc.Context;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mockito;
+
+/**
+ * Unit tests for {@link GrpcContextStorage}.
+ */
+@RunWith(JUnit4.class)
+public class GrpcContextStorageTest {
+    private final ContextStorage storage = new GrpcContextStorage();
+    private final ContextEntry entry = ContextEntry.create(null, Mockito.mock(TagMap.class));
+
+    @Test
+    public void attachAndClose() {
+        Context orig = Context.current();
+        try (Scope scope = storage.attach(entry)) {
+            assertThat(storage.current()).isSameInstanceAs(entry);
+            assertThat(ContextEntryUtils.getValue(Context.current())).isSameInstanceAs(entry);
+        }
+        assertThat(Context.current()).isSameInstanceAs(orig);
+        assertThat(storage.current()).isSameInstanceAs(ContextEntry.EMPTY);
+    }
+
+    @Test
+    public void entryFollowsWrappedContext() {
+        final ContextEntry[] seen = new ContextEntry[1];
+        Runnable runnable;
+        try (Scope scope = storage.attach(entry)) {
+            runnable = Context.current().wrap(() -> {
+                seen[0] = storage.current();
+            });
+        }
+        assertThat(storage.current()).isSameInstanceAs(ContextEntry.EMPTY);
+        runnable.run();
+        assertThat(seen[0]).isSameInstanceAs(entry);
+    }
+}
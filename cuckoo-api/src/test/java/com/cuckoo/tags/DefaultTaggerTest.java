@@ -17,14 +17,17 @@
 package com.cuckoo.tags;
 
 import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assume.assumeTrue;
 
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import javax.annotation.Nullable;
 
+import com.cuckoo.context.ContextEntry;
+import com.cuckoo.context.ContextStorage;
 import com.cuckoo.context.Scope;
-import com.cuckoo.tags.unsafe.ContextUtils;
+import com.cuckoo.context.unsafe.GrpcContextStorage;
 import com.google.common.collect.Lists;
 import io.grpc.Context;
 import org.junit.Rule;
@@ -54,6 +57,31 @@ public class DefaultTaggerTest {
         public TagValue getTagValue(TagKey tagKey) {
             return VALUE;
         }
+
+        @Override
+        public int size() {
+            return 1;
+        }
+
+        @Override
+        public TagKey getKey(int index) {
+            return KEY;
+        }
+
+        @Override
+        public TagValue getValue(int index) {
+            return VALUE;
+        }
+
+        @Override
+        public TagMetadata getTagMetadata(int index) {
+            return Tag.METADATA_UNLIMITED_PROPAGATION;
+        }
+
+        @Override
+        public void forEach(TagConsumer consumer) {
+            consumer.accept(KEY, VALUE, Tag.METADATA_UNLIMITED_PROPAGATION);
+        }
     };
 
     @Rule
@@ -70,13 +98,13 @@ public class DefaultTaggerTest {
 
     @Test
     public void getCurrentTagMap_DefaultContext() {
-        Context orig = ContextUtils.withValue(null).attach();
+        Scope scope = ContextStorage.get().attach(ContextEntry.EMPTY);
         try{
             TagMap tags = defaultTagger.getCurrentTagMap();
             assertThat(tags).isNotNull();
             assertThat(tags.getIterator().hasNext()).isFalse();
         } finally{
-            Context.current().detach(orig);
+            scope.close();
         }
     }
 
@@ -106,6 +134,9 @@ public class DefaultTaggerTest {
 
     @Test
     public void withTagMapUsingWrap() {
+        // Only the storage that keeps the entry in the io.grpc.Context follows Context.wrap. The
+        // grpcContextStorageTest task runs the tests with it.
+        assumeTrue(ContextStorage.get() instanceof GrpcContextStorage);
         Runnable runnable;
         Scope wtm = defaultTagger.withTagMap(TAG_MAP);
         try {
@@ -121,6 +152,26 @@ public class DefaultTaggerTest {
         runnable.run();
     }
 
+    @Test
+    public void withTagMapUsingCapturedEntry() {
+        Runnable runnable;
+        Scope wtm = defaultTagger.withTagMap(TAG_MAP);
+        try {
+            assertThat(defaultTagger.getCurrentTagMap()).isSameInstanceAs(TAG_MAP);
+            final ContextEntry entry = ContextStorage.get().current();
+            runnable = () -> {
+                try (Scope scope = ContextStorage.get().attach(entry)) {
+                    assertThat(defaultTagger.getCurrentTagMap()).isSameInstanceAs(TAG_MAP);
+                }
+            };
+        } finally{
+            wtm.close();
+        }
+        assertThat(defaultTagger.getCurrentTagMap()).isSameInstanceAs(EmptyTagMap.INSTANCE);
+        // when we run the runnable we will have the TagMap in the current context
+        runnable.run();
+    }
+
     @Test
     public void noopTagMapBuilder_SetParent_DisallowsNullKey() {
         TagMap.Builder noopBuilder = defaultTagger.tagMapBuilder();
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.tags;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Unit tests for {@link EmptyTagMap}.
+ */
+@RunWith(JUnit4.class)
+public class EmptyTagMapTest {
+    private static final TagMap EMPTY = EmptyTagMap.INSTANCE;
+
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void isEmpty() {
+        assertThat(EMPTY.size()).isEqualTo(0);
+        assertThat(EMPTY.getIterator().hasNext()).isFalse();
+        assertThat(EMPTY.getTagValue(TagKey.create("key"))).isNull();
+    }
+
+    @Test
+    public void forEach_VisitsNothing() {
+        EMPTY.forEach(new TagMap.TagConsumer() {
+            @Override
+            public void accept(TagKey key, TagValue value, TagMetadata tagMetadata) {
+                throw new AssertionError("Unexpected tag: " + key);
+            }
+        });
+    }
+
+    @Test
+    public void forEach_DisallowsNullConsumer() {
+        thrown.expect(NullPointerException.class);
+        EMPTY.forEach(null);
+    }
+
+    @Test
+    public void getKey_IndexOutOfBounds() {
+        thrown.expect(IndexOutOfBoundsException.class);
+        EMPTY.getKey(0);
+    }
+}
@@ -42,6 +42,23 @@ public final class TagKeyTest {
         assertThat(TagKey.create("foo").getName()).isEqualTo("foo");
     }
 
+    @Test
+    public void create_ReturnsCachedInstance() {
+        TagKey first = TagKey.create("cached");
+        assertThat(TagKey.create(new String("cached"))).isSameInstanceAs(first);
+    }
+
+    @Test
+    public void create_EqualAfterEviction() {
+        TagKey first = TagKey.create("evicted");
+        for (int i = 0; i < 100000; i++) {
+            TagKey.create("other" + i);
+        }
+        TagKey second = TagKey.create("evicted");
+        assertThat(second.getName()).isEqualTo("evicted");
+        assertThat(second).isEqualTo(first);
+    }
+
     @Test
     public void create_AllowTagKeyNameWithMaxLength() {
         char[] chars = new char[TagKey.MAX_LENGTH];
@@ -43,6 +43,23 @@ public final class TagValueTest {
         assertThat(TagValue.create("foo").asString()).isEqualTo("foo");
     }
 
+    @Test
+    public void create_ReturnsCachedInstance() {
+        TagValue first = TagValue.create("cached");
+        assertThat(TagValue.create(new String("cached"))).isSameInstanceAs(first);
+    }
+
+    @Test
+    public void create_EqualAfterEviction() {
+        TagValue first = TagValue.create("evicted");
+        for (int i = 0; i < 100000; i++) {
+            TagValue.create("other" + i);
+        }
+        TagValue second = TagValue.create("evicted");
+        assertThat(second.asString()).isEqualTo("evicted");
+        assertThat(second).isEqualTo(first);
+    }
+
     @Test
     public void create_AllowTagValueWithMaxLength() {
         char[] chars = new char[TagValue.MAX_LENGTH];
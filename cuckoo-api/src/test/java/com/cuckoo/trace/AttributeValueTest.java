@@ -0,0 +1,75 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.trace;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.testing.EqualsTester;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link AttributeValue}. */
+@RunWith(JUnit4.class)
+public final class AttributeValueTest {
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void values() {
+        assertThat(AttributeValue.stringAttributeValue("value").getStringValue())
+            .isEqualTo("value");
+        assertThat(AttributeValue.booleanAttributeValue(true).getBooleanValue()).isTrue();
+        assertThat(AttributeValue.longAttributeValue(42).getLongValue()).isEqualTo(42);
+        assertThat(AttributeValue.doubleAttributeValue(1.5).getDoubleValue()).isEqualTo(1.5);
+        assertThat(AttributeValue.doubleAttributeValue(1.5).getType())
+            .isEqualTo(AttributeValue.Type.DOUBLE);
+    }
+
+    @Test
+    public void booleanValuesAreShared() {
+        assertThat(AttributeValue.booleanAttributeValue(false))
+            .isSameInstanceAs(AttributeValue.booleanAttributeValue(false));
+    }
+
+    @Test
+    public void wrongType() {
+        thrown.expect(UnsupportedOperationException.class);
+        AttributeValue.longAttributeValue(42).getStringValue();
+    }
+
+    @Test
+    public void stringAttributeValue_NullValue() {
+        thrown.expect(NullPointerException.class);
+        AttributeValue.stringAttributeValue(null);
+    }
+
+    @Test
+    public void equalsAndHashCode() {
+        new EqualsTester()
+            .addEqualityGroup(
+                AttributeValue.stringAttributeValue("1"), AttributeValue.stringAttributeValue("1"))
+            .addEqualityGroup(
+                AttributeValue.longAttributeValue(1), AttributeValue.longAttributeValue(1))
+            .addEqualityGroup(
+                AttributeValue.doubleAttributeValue(1), AttributeValue.doubleAttributeValue(1))
+            .addEqualityGroup(AttributeValue.booleanAttributeValue(true))
+            .testEquals();
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.trace;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.Map;
+
+import com.cuckoo.common.Supplier;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link DefaultSpan}. */
+@RunWith(JUnit4.class)
+public final class DefaultSpanTest {
+    private static final SpanContext CONTEXT =
+        SpanContext.create(new TraceId(1, 2), new SpanId(3), TraceOptions.DEFAULT);
+
+    @Test
+    public void carriesContext() {
+        DefaultSpan span = DefaultSpan.create(CONTEXT);
+        assertThat(span.getContext()).isSameInstanceAs(CONTEXT);
+        assertThat(span.isRecordingEvents()).isFalse();
+    }
+
+    @Test
+    public void invalid() {
+        assertThat(DefaultSpan.getInvalid().getContext())
+            .isSameInstanceAs(SpanContext.getInvalid());
+        assertThat(DefaultSpan.create(SpanContext.getInvalid()))
+            .isSameInstanceAs(DefaultSpan.getInvalid());
+    }
+
+    @Test
+    public void suppliersAreNotEvaluated() {
+        Span span = DefaultSpan.create(CONTEXT);
+        span.setAttribute("key", new Supplier<AttributeValue>() {
+            @Override
+            public AttributeValue get() {
+                throw new AssertionError();
+            }
+        });
+        span.addEvent("event", new Supplier<Map<String, AttributeValue>>() {
+            @Override
+            public Map<String, AttributeValue> get() {
+                throw new AssertionError();
+            }
+        });
+        span.addEvent(new Supplier<Event>() {
+            @Override
+            public Event get() {
+                throw new AssertionError();
+            }
+        });
+        span.end();
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.trace;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.cuckoo.context.Scope;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link DefaultTracer}. */
+@RunWith(JUnit4.class)
+public final class DefaultTracerTest {
+    private static final SpanContext CONTEXT =
+        SpanContext.create(new TraceId(1, 2), new SpanId(3), TraceOptions.SAMPLED);
+
+    private final Tracer tracer = DefaultTracer.getInstance();
+
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void getCurrentSpan_DefaultsToInvalid() {
+        assertThat(tracer.getCurrentSpan()).isSameInstanceAs(DefaultSpan.getInvalid());
+    }
+
+    @Test
+    public void withSpan() {
+        Span span = DefaultSpan.create(CONTEXT);
+        try (Scope scope = tracer.withSpan(span)) {
+            assertThat(tracer.getCurrentSpan()).isSameInstanceAs(span);
+        }
+        assertThat(tracer.getCurrentSpan()).isSameInstanceAs(DefaultSpan.getInvalid());
+    }
+
+    @Test
+    public void spanBuilder_PropagatesCurrentContext() {
+        try (Scope scope = tracer.withSpan(DefaultSpan.create(CONTEXT))) {
+            Span span = tracer.spanBuilder("span").setSpanKind(Span.Kind.SERVER).startSpan();
+            assertThat(span.getContext()).isSameInstanceAs(CONTEXT);
+            assertThat(span.isRecordingEvents()).isFalse();
+        }
+    }
+
+    @Test
+    public void spanBuilder_ExplicitParent() {
+        assertThat(tracer.spanBuilder("span").setParent(CONTEXT).startSpan().getContext())
+            .isSameInstanceAs(CONTEXT);
+        try (Scope scope = tracer.withSpan(DefaultSpan.create(CONTEXT))) {
+            assertThat(tracer.spanBuilder("span").setNoParent().startSpan())
+                .isSameInstanceAs(DefaultSpan.getInvalid());
+        }
+    }
+
+    @Test
+    public void spanBuilder_NullName() {
+        thrown.expect(NullPointerException.class);
+        tracer.spanBuilder(null);
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.trace;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.testing.EqualsTester;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link SpanContext} and {@link TraceOptions}. */
+@RunWith(JUnit4.class)
+public final class SpanContextTest {
+    private static final TraceId TRACE_ID = new TraceId(1, 2);
+    private static final SpanId SPAN_ID = new SpanId(3);
+
+    @Test
+    public void invalid() {
+        assertThat(SpanContext.getInvalid().isValid()).isFalse();
+        assertThat(SpanContext.getInvalid().getTraceOptions().isSampled()).isFalse();
+        SpanContext invalidSpanId =
+            SpanContext.create(TRACE_ID, SpanId.getInvalid(), TraceOptions.SAMPLED);
+        assertThat(invalidSpanId.isValid()).isFalse();
+    }
+
+    @Test
+    public void getters() {
+        SpanContext context = SpanContext.create(TRACE_ID, SPAN_ID, TraceOptions.SAMPLED);
+        assertThat(context.isValid()).isTrue();
+        assertThat(context.getTraceId()).isEqualTo(TRACE_ID);
+        assertThat(context.getSpanId()).isEqualTo(SPAN_ID);
+        assertThat(context.getTraceOptions().isSampled()).isTrue();
+    }
+
+    @Test
+    public void traceOptions_FromByte() {
+        assertThat(TraceOptions.fromByte((byte) 0)).isSameInstanceAs(TraceOptions.DEFAULT);
+        assertThat(TraceOptions.fromByte((byte) 1)).isSameInstanceAs(TraceOptions.SAMPLED);
+        TraceOptions unknownBits = TraceOptions.fromByte((byte) 3);
+        assertThat(unknownBits.isSampled()).isTrue();
+        assertThat(unknownBits.getByte()).isEqualTo((byte) 3);
+    }
+
+    @Test
+    public void equalsAndHashCode() {
+        new EqualsTester()
+            .addEqualityGroup(
+                SpanContext.create(TRACE_ID, SPAN_ID, TraceOptions.SAMPLED),
+                SpanContext.create(
+                    new TraceId(1, 2), new SpanId(3), TraceOptions.fromByte((byte) 1)))
+            .addEqualityGroup(SpanContext.create(TRACE_ID, SPAN_ID, TraceOptions.DEFAULT))
+            .addEqualityGroup(SpanContext.create(TRACE_ID, new SpanId(4), TraceOptions.SAMPLED))
+            .addEqualityGroup(SpanContext.getInvalid())
+            .testEquals();
+    }
+}
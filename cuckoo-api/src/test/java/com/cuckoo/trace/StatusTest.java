@@ -0,0 +1,97 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.trace;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.testing.EqualsTester;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link Status}. */
+@RunWith(JUnit4.class)
+public final class StatusTest {
+
+    @Test
+    public void status_Ok() {
+        assertThat(Status.OK.getCanonicalCode()).isEqualTo(Status.CanonicalCode.OK);
+        assertThat(Status.OK.getDescription()).isNull();
+        assertThat(Status.OK.isOk()).isTrue();
+    }
+
+    @Test
+    public void withDescription_ReturnsSameInstanceForRepeatedDescription() {
+        Status status = Status.UNAVAILABLE.withDescrition("connection reset");
+        assertThat(status.getCanonicalCode()).isEqualTo(Status.CanonicalCode.UNAVAILABLE);
+        assertThat(status.getDescription()).isEqualTo("connection reset");
+        assertThat(Status.UNAVAILABLE.withDescrition(new String("connection reset")))
+            .isSameInstanceAs(status);
+    }
+
+    @Test
+    public void withDescription_DifferentCodesAreNotShared() {
+        Status unavailable = Status.UNAVAILABLE.withDescrition("connection reset");
+        Status aborted = Status.ABORTED.withDescrition("connection reset");
+        assertThat(aborted.getCanonicalCode()).isEqualTo(Status.CanonicalCode.ABORTED);
+        assertThat(aborted).isNotEqualTo(unavailable);
+    }
+
+    @Test
+    public void withDescription_NullReturnsCanonicalStatus() {
+        Status status = Status.NOT_FOUND.withDescrition("missing");
+        assertThat(status.withDescrition(null)).isSameInstanceAs(Status.NOT_FOUND);
+    }
+
+    @Test
+    public void fromCodeValue() {
+        for (Status.CanonicalCode code : Status.CanonicalCode.values()) {
+            assertThat(Status.fromCodeValue(code.value())).isSameInstanceAs(code.toStatus());
+        }
+        assertThat(Status.fromCodeValue(-1)).isSameInstanceAs(Status.UNKNOWN);
+        assertThat(Status.fromCodeValue(17)).isSameInstanceAs(Status.UNKNOWN);
+    }
+
+    @Test
+    public void fromHttpStatus() {
+        assertThat(Status.fromHttpStatus(200)).isSameInstanceAs(Status.OK);
+        assertThat(Status.fromHttpStatus(302)).isSameInstanceAs(Status.OK);
+        assertThat(Status.fromHttpStatus(400)).isSameInstanceAs(Status.INVALID_ARGUMENT);
+        assertThat(Status.fromHttpStatus(401)).isSameInstanceAs(Status.UNAUTHENTICATED);
+        assertThat(Status.fromHttpStatus(403)).isSameInstanceAs(Status.PERMISSION_DENIED);
+        assertThat(Status.fromHttpStatus(404)).isSameInstanceAs(Status.NOT_FOUND);
+        assertThat(Status.fromHttpStatus(429)).isSameInstanceAs(Status.RESOURCE_EXHAUSTED);
+        assertThat(Status.fromHttpStatus(501)).isSameInstanceAs(Status.UNIMPLEMENTED);
+        assertThat(Status.fromHttpStatus(503)).isSameInstanceAs(Status.UNAVAILABLE);
+        assertThat(Status.fromHttpStatus(504)).isSameInstanceAs(Status.DEADLINE_EXCEEDED);
+        assertThat(Status.fromHttpStatus(500)).isSameInstanceAs(Status.UNKNOWN);
+        assertThat(Status.fromHttpStatus(100)).isSameInstanceAs(Status.UNKNOWN);
+        assertThat(Status.fromHttpStatus(-1)).isSameInstanceAs(Status.UNKNOWN);
+        assertThat(Status.fromHttpStatus(600)).isSameInstanceAs(Status.UNKNOWN);
+    }
+
+    @Test
+    public void testStatusEquals() {
+        new EqualsTester()
+            .addEqualityGroup(Status.OK, Status.OK.withDescrition(null))
+            .addEqualityGroup(
+                Status.CANCELLED.withDescrition("ThisIsAnError"),
+                Status.CANCELLED.withDescrition("ThisIsAnError"))
+            .addEqualityGroup(Status.UNKNOWN.withDescrition("This is an error."))
+            .testEquals();
+    }
+}
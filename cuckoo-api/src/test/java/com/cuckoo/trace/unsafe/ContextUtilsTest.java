@@ -0,0 +1,97 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.trace.unsafe;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.cuckoo.context.ContextEntry;
+import com.cuckoo.context.Scope;
+import com.cuckoo.context.unsafe.ContextEntryUtils;
+import com.cuckoo.tags.EmptyTagMap;
+import com.cuckoo.tags.TagMap;
+import com.cuckoo.trace.Span;
+import io.grpc.Context;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mockito;
+
+/**
+ * Unit tests for {@link ContextUtils}.
+ */
+@RunWith(JUnit4.class)
+public class ContextUtilsTest {
+    private final Span span = Mockito.mock(Span.class);
+    private final TagMap tagMap = Mockito.mock(TagMap.class);
+
+    @Test
+    public void getValue_DefaultContext() {
+        assertThat(ContextUtils.getValue()).isNull();
+        assertThat(ContextEntryUtils.getValue()).isSameInstanceAs(ContextEntry.EMPTY);
+    }
+
+    @Test
+    public void withSpan() {
+        try (Scope scope = ContextUtils.withSpan(span)) {
+            assertThat(ContextUtils.getValue()).isSameInstanceAs(span);
+            assertThat(com.cuckoo.tags.unsafe.ContextUtils.getValue())
+                .isSameInstanceAs(EmptyTagMap.INSTANCE);
+        }
+        assertThat(ContextUtils.getValue()).isNull();
+    }
+
+    @Test
+    public void withSpan_KeepsCurrentTagMap() {
+        try (Scope tagScope = com.cuckoo.tags.unsafe.ContextUtils.withTagMap(tagMap)) {
+            try (Scope spanScope = ContextUtils.withSpan(span)) {
+                assertThat(ContextUtils.getValue()).isSameInstanceAs(span);
+                assertThat(com.cuckoo.tags.unsafe.ContextUtils.getValue()).isSameInstanceAs(tagMap);
+            }
+            assertThat(ContextUtils.getValue()).isNull();
+        }
+    }
+
+    @Test
+    public void withSpanAndTagMap() {
+        Context orig = Context.current();
+        try (Scope scope = ContextUtils.withSpanAndTagMap(span, tagMap)) {
+            assertThat(ContextUtils.getValue()).isSameInstanceAs(span);
+            assertThat(com.cuckoo.tags.unsafe.ContextUtils.getValue()).isSameInstanceAs(tagMap);
+        }
+        assertThat(Context.current()).isSameInstanceAs(orig);
+        assertThat(ContextUtils.getValue()).isNull();
+        assertThat(com.cuckoo.tags.unsafe.ContextUtils.getValue())
+            .isSameInstanceAs(EmptyTagMap.INSTANCE);
+    }
+
+    @Test
+    public void withValue_ExplicitContext() {
+        Context context = ContextUtils.withValue(span, Context.ROOT);
+        assertThat(ContextUtils.getValue(context)).isSameInstanceAs(span);
+        assertThat(ContextUtils.getValue(Context.ROOT)).isNull();
+        assertThat(ContextUtils.getValue()).isNull();
+    }
+
+    @Test
+    public void contextEntry_WithSameValueReturnsSameEntry() {
+        ContextEntry entry = ContextEntry.create(span, tagMap);
+        assertThat(entry.withSpan(span)).isSameInstanceAs(entry);
+        assertThat(entry.withTagMap(tagMap)).isSameInstanceAs(entry);
+        assertThat(entry.withSpan(null).getTagMap()).isSameInstanceAs(tagMap);
+        assertThat(entry.withTagMap(EmptyTagMap.INSTANCE).getSpan()).isSameInstanceAs(span);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.contrib.concurrent;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.cuckoo.context.ContextEntry;
+import com.cuckoo.context.ContextStorage;
+import com.cuckoo.context.Scope;
+import com.cuckoo.sdk.tags.TaggerSdk;
+import com.cuckoo.tags.Tag;
+import com.cuckoo.tags.TagKey;
+import com.cuckoo.tags.TagValue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Submits batches of tasks from 8 threads at once to a shared pool of {@code poolSize} threads,
+ * with and without the {@link ContextExecutors} wrapper, while a context is current.
+ *
+ * <p>Run with {@code -PjmhProfilers=gc} to see the cost of the capture object per task.
+ */
+@State(org.openjdk.jmh.annotations.Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(8)
+public class ContextExecutorBenchmark {
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"8", "16", "64"})
+    int poolSize;
+
+    @Param({"plain", "wrapped"})
+    String executorType;
+
+    @Param({"empty", "tags"})
+    String context;
+
+    private ExecutorService pool;
+    private ExecutorService executor;
+    private ContextEntry entry;
+
+    @Setup
+    public void setup() {
+        pool = Executors.newFixedThreadPool(poolSize);
+        executor = "wrapped".equals(executorType) ? ContextExecutors.wrap(pool) : pool;
+        entry =
+            "tags".equals(context)
+                ? ContextEntry.EMPTY.withTagMap(
+                    new TaggerSdk()
+                        .tagMapBuilder()
+                        .setNoParent()
+                        .put(
+                            TagKey.create("key"),
+                            TagValue.create("value"),
+                            Tag.METADATA_UNLIMITED_PROPAGATION)
+                        .build())
+                : ContextEntry.EMPTY;
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    /** Submits a batch of tasks that read the current entry and waits for them to complete. */
+    @Benchmark
+    public void submitBatch() throws InterruptedException {
+        final ContextStorage storage = ContextStorage.get();
+        final CountDownLatch done = new CountDownLatch(BATCH_SIZE);
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                if (storage.current() == null) {
+                    throw new AssertionError();
+                }
+                done.countDown();
+            }
+        };
+        try (Scope scope = storage.attach(entry)) {
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                executor.execute(task);
+            }
+        }
+        done.await();
+    }
+}
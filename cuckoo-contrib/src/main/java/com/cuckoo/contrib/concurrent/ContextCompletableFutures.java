@@ -0,0 +1,242 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.contrib.concurrent;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.cuckoo.context.ContextEntry;
+import com.cuckoo.context.Scope;
+import com.cuckoo.internal.Utils;
+
+/**
+ * Propagates the current context to the stages of a {@link CompletableFuture}.
+ *
+ * <p>A dependent stage runs on the thread that completes the previous stage, or is handed to an
+ * {@code Executor} at that point, so the context must be captured when the stage is created
+ * rather than when it runs. The methods of this class capture the current {@link ContextEntry} in
+ * one small object per function, and return the function itself when the current context is
+ * empty:
+ *
+ * <pre>{@code
+ * try (Scope scope = tagger.withTagMap(tags)) {
+ *     ContextCompletableFutures.supplyAsync(this::load, executor)
+ *         .thenApply(ContextCompletableFutures.wrapFunction(this::parse));
+ * }
+ * }</pre>
+ *
+ * @since 0.0.1
+ */
+public final class ContextCompletableFutures {
+    private ContextCompletableFutures() {}
+
+    /**
+     * Returns a new {@code CompletableFuture} that is completed by a task running in the given
+     * {@code Executor} with the current context.
+     *
+     * @param supplier the function returning the value used to complete the future.
+     * @param executor the {@code Executor} that runs the task.
+     * @param <T> the type of the result.
+     * @return the new {@code CompletableFuture}.
+     * @since 0.0.1
+     */
+    public static <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier, Executor executor) {
+        return CompletableFuture.supplyAsync(wrapSupplier(supplier), executor);
+    }
+
+    /**
+     * Returns a new {@code CompletableFuture} that is completed after running the given action in
+     * the given {@code Executor} with the current context.
+     *
+     * @param runnable the action to run.
+     * @param executor the {@code Executor} that runs the action.
+     * @return the new {@code CompletableFuture}.
+     * @since 0.0.1
+     */
+    public static CompletableFuture<Void> runAsync(Runnable runnable, Executor executor) {
+        return CompletableFuture.runAsync(ContextExecutors.wrap(runnable), executor);
+    }
+
+    /**
+     * Returns a {@code Supplier} that calls the given one with the current context.
+     *
+     * @param supplier the {@code Supplier} to wrap.
+     * @param <T> the type of the result.
+     * @return a {@code Supplier} that calls {@code supplier} with the current context, or {@code
+     *     supplier} itself if the current context is empty.
+     * @since 0.0.1
+     */
+    public static <T> Supplier<T> wrapSupplier(Supplier<T> supplier) {
+        Utils.checkNotNull(supplier, "supplier");
+        ContextEntry entry = ContextExecutors.capture();
+        return entry == null ? supplier : new ContextSupplier<T>(entry, supplier);
+    }
+
+    /**
+     * Returns a {@code Function} that applies the given one with the current context.
+     *
+     * @param function the {@code Function} to wrap.
+     * @param <T> the type of the input.
+     * @param <R> the type of the result.
+     * @return a {@code Function} that applies {@code function} with the current context, or {@code
+     *     function} itself if the current context is empty.
+     * @since 0.0.1
+     */
+    public static <T, R> Function<T, R> wrapFunction(Function<T, R> function) {
+        Utils.checkNotNull(function, "function");
+        ContextEntry entry = ContextExecutors.capture();
+        return entry == null ? function : new ContextFunction<T, R>(entry, function);
+    }
+
+    /**
+     * Returns a {@code BiFunction} that applies the given one with the current context.
+     *
+     * @param function the {@code BiFunction} to wrap.
+     * @param <T> the type of the first input.
+     * @param <U> the type of the second input.
+     * @param <R> the type of the result.
+     * @return a {@code BiFunction} that applies {@code function} with the current context, or
+     *     {@code function} itself if the current context is empty.
+     * @since 0.0.1
+     */
+    public static <T, U, R> BiFunction<T, U, R> wrapBiFunction(BiFunction<T, U, R> function) {
+        Utils.checkNotNull(function, "function");
+        ContextEntry entry = ContextExecutors.capture();
+        return entry == null ? function : new ContextBiFunction<T, U, R>(entry, function);
+    }
+
+    /**
+     * Returns a {@code Consumer} that accepts values with the given one and the current context.
+     *
+     * @param consumer the {@code Consumer} to wrap.
+     * @param <T> the type of the input.
+     * @return a {@code Consumer} that calls {@code consumer} with the current context, or {@code
+     *     consumer} itself if the current context is empty.
+     * @since 0.0.1
+     */
+    public static <T> Consumer<T> wrapConsumer(Consumer<T> consumer) {
+        Utils.checkNotNull(consumer, "consumer");
+        ContextEntry entry = ContextExecutors.capture();
+        return entry == null ? consumer : new ContextConsumer<T>(entry, consumer);
+    }
+
+    /**
+     * Returns a {@code BiConsumer} that accepts values with the given one and the current context.
+     *
+     * @param consumer the {@code BiConsumer} to wrap.
+     * @param <T> the type of the first input.
+     * @param <U> the type of the second input.
+     * @return a {@code BiConsumer} that calls {@code consumer} with the current context, or {@code
+     *     consumer} itself if the current context is empty.
+     * @since 0.0.1
+     */
+    public static <T, U> BiConsumer<T, U> wrapBiConsumer(BiConsumer<T, U> consumer) {
+        Utils.checkNotNull(consumer, "consumer");
+        ContextEntry entry = ContextExecutors.capture();
+        return entry == null ? consumer : new ContextBiConsumer<T, U>(entry, consumer);
+    }
+
+    private static final class ContextSupplier<T> implements Supplier<T> {
+        private final ContextEntry entry;
+        private final Supplier<T> supplier;
+
+        ContextSupplier(ContextEntry entry, Supplier<T> supplier) {
+            this.entry = entry;
+            this.supplier = supplier;
+        }
+
+        @Override
+        public T get() {
+            try (Scope scope = ContextExecutors.attach(entry)) {
+                return supplier.get();
+            }
+        }
+    }
+
+    private static final class ContextFunction<T, R> implements Function<T, R> {
+        private final ContextEntry entry;
+        private final Function<T, R> function;
+
+        ContextFunction(ContextEntry entry, Function<T, R> function) {
+            this.entry = entry;
+            this.function = function;
+        }
+
+        @Override
+        public R apply(T value) {
+            try (Scope scope = ContextExecutors.attach(entry)) {
+                return function.apply(value);
+            }
+        }
+    }
+
+    private static final class ContextBiFunction<T, U, R> implements BiFunction<T, U, R> {
+        private final ContextEntry entry;
+        private final BiFunction<T, U, R> function;
+
+        ContextBiFunction(ContextEntry entry, BiFunction<T, U, R> function) {
+            this.entry = entry;
+            this.function = function;
+        }
+
+        @Override
+        public R apply(T first, U second) {
+            try (Scope scope = ContextExecutors.attach(entry)) {
+                return function.apply(first, second);
+            }
+        }
+    }
+
+    private static final class ContextConsumer<T> implements Consumer<T> {
+        private final ContextEntry entry;
+        private final Consumer<T> consumer;
+
+        ContextConsumer(ContextEntry entry, Consumer<T> consumer) {
+            this.entry = entry;
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void accept(T value) {
+            try (Scope scope = ContextExecutors.attach(entry)) {
+                consumer.accept(value);
+            }
+        }
+    }
+
+    private static final class ContextBiConsumer<T, U> implements BiConsumer<T, U> {
+        private final ContextEntry entry;
+        private final BiConsumer<T, U> consumer;
+
+        ContextBiConsumer(ContextEntry entry, BiConsumer<T, U> consumer) {
+            this.entry = entry;
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void accept(T first, U second) {
+            try (Scope scope = ContextExecutors.attach(entry)) {
+                consumer.accept(first, second);
+            }
+        }
+    }
+}
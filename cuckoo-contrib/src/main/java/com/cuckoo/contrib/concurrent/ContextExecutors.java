@@ -0,0 +1,206 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.contrib.concurrent;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import javax.annotation.Nullable;
+
+import com.cuckoo.context.ContextEntry;
+import com.cuckoo.context.ContextStorage;
+import com.cuckoo.context.Scope;
+import com.cuckoo.internal.Utils;
+
+/**
+ * Propagates the current context to tasks that run on other threads.
+ *
+ * <p>The {@link ContextEntry} that is current when a task is wrapped or submitted is captured in
+ * one small object, and attached on the thread that runs the task for the duration of the task.
+ * When the current context is empty the task is submitted as is, without any allocation.
+ *
+ * <pre>{@code
+ * ExecutorService executor = ContextExecutors.wrap(Executors.newFixedThreadPool(8));
+ * try (Scope scope = tagger.withTagMap(tags)) {
+ *     executor.submit(task); // task runs with tags as its current TagMap.
+ * }
+ * }</pre>
+ *
+ * <p>A {@link ForkJoinPool} can be wrapped like any other {@code ExecutorService}, but tasks that
+ * are forked from a running {@link ForkJoinTask} bypass the pool's submit methods. Wrap those with
+ * {@link #wrap(ForkJoinTask)} before forking them.
+ *
+ * @since 0.0.1
+ */
+public final class ContextExecutors {
+    private ContextExecutors() {}
+
+    /**
+     * Returns a {@code Runnable} that runs the given one with the current context.
+     *
+     * @param runnable the {@code Runnable} to wrap.
+     * @return a {@code Runnable} that runs {@code runnable} with the current context, or {@code
+     *     runnable} itself if the current context is empty.
+     * @since 0.0.1
+     */
+    public static Runnable wrap(Runnable runnable) {
+        Utils.checkNotNull(runnable, "runnable");
+        ContextEntry entry = capture();
+        return entry == null ? runnable : new ContextRunnable(entry, runnable);
+    }
+
+    /**
+     * Returns a {@code Callable} that calls the given one with the current context.
+     *
+     * @param callable the {@code Callable} to wrap.
+     * @param <V> the type of the result.
+     * @return a {@code Callable} that calls {@code callable} with the current context, or {@code
+     *     callable} itself if the current context is empty.
+     * @since 0.0.1
+     */
+    public static <V> Callable<V> wrap(Callable<V> callable) {
+        Utils.checkNotNull(callable, "callable");
+        ContextEntry entry = capture();
+        return entry == null ? callable : new ContextCallable<V>(entry, callable);
+    }
+
+    /**
+     * Returns a {@code ForkJoinTask} that invokes the given one with the current context. The
+     * returned task completes with the result or the exception of {@code task}.
+     *
+     * @param task the {@code ForkJoinTask} to wrap.
+     * @param <V> the type of the result.
+     * @return a {@code ForkJoinTask} that invokes {@code task} with the current context, or {@code
+     *     task} itself if the current context is empty.
+     * @since 0.0.1
+     */
+    public static <V> ForkJoinTask<V> wrap(ForkJoinTask<V> task) {
+        Utils.checkNotNull(task, "task");
+        ContextEntry entry = capture();
+        return entry == null ? task : new ContextForkJoinTask<V>(entry, task);
+    }
+
+    /**
+     * Returns an {@code Executor} that runs each task with the context that is current when the
+     * task is passed to {@link Executor#execute(Runnable)}.
+     *
+     * @param executor the {@code Executor} that runs the tasks.
+     * @return an {@code Executor} that propagates the current context to the tasks.
+     * @since 0.0.1
+     */
+    public static Executor wrap(Executor executor) {
+        Utils.checkNotNull(executor, "executor");
+        return new ContextExecutor(executor);
+    }
+
+    /**
+     * Returns an {@code ExecutorService} that runs each task with the context that is current when
+     * the task is submitted. The returned service shuts down {@code executorService} when it is
+     * shut down.
+     *
+     * @param executorService the {@code ExecutorService} that runs the tasks.
+     * @return an {@code ExecutorService} that propagates the current context to the tasks.
+     * @since 0.0.1
+     */
+    public static ExecutorService wrap(ExecutorService executorService) {
+        Utils.checkNotNull(executorService, "executorService");
+        return new ContextExecutorService(executorService);
+    }
+
+    // Returns the current entry, or null if there is nothing to propagate.
+    @Nullable
+    static ContextEntry capture() {
+        ContextEntry entry = ContextStorage.get().current();
+        if (entry == ContextEntry.EMPTY
+            || (entry.getSpan() == null && entry.getTagMap().size() == 0)) {
+            return null;
+        }
+        return entry;
+    }
+
+    static Scope attach(ContextEntry entry) {
+        return ContextStorage.get().attach(entry);
+    }
+
+    private static final class ContextRunnable implements Runnable {
+        private final ContextEntry entry;
+        private final Runnable runnable;
+
+        ContextRunnable(ContextEntry entry, Runnable runnable) {
+            this.entry = entry;
+            this.runnable = runnable;
+        }
+
+        @Override
+        public void run() {
+            try (Scope scope = attach(entry)) {
+                runnable.run();
+            }
+        }
+    }
+
+    private static final class ContextCallable<V> implements Callable<V> {
+        private final ContextEntry entry;
+        private final Callable<V> callable;
+
+        ContextCallable(ContextEntry entry, Callable<V> callable) {
+            this.entry = entry;
+            this.callable = callable;
+        }
+
+        @Override
+        public V call() throws Exception {
+            try (Scope scope = attach(entry)) {
+                return callable.call();
+            }
+        }
+    }
+
+    private static final class ContextForkJoinTask<V> extends ForkJoinTask<V> {
+        private static final long serialVersionUID = 0L;
+
+        private final transient ContextEntry entry;
+        private final ForkJoinTask<V> task;
+        @Nullable
+        private V result;
+
+        ContextForkJoinTask(ContextEntry entry, ForkJoinTask<V> task) {
+            this.entry = entry;
+            this.task = task;
+        }
+
+        @Override
+        public V getRawResult() {
+            return result;
+        }
+
+        @Override
+        protected void setRawResult(V value) {
+            result = value;
+        }
+
+        @Override
+        protected boolean exec() {
+            try (Scope scope = attach(entry)) {
+                result = task.invoke();
+            }
+            return true;
+        }
+    }
+}
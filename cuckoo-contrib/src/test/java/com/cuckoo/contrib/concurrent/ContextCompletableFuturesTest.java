@@ -0,0 +1,116 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.contrib.concurrent;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+import com.cuckoo.context.ContextEntry;
+import com.cuckoo.context.ContextStorage;
+import com.cuckoo.context.Scope;
+import com.cuckoo.tags.EmptyTagMap;
+import com.cuckoo.trace.Span;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mockito;
+
+/** Unit tests for {@link ContextCompletableFutures}. */
+@RunWith(JUnit4.class)
+public class ContextCompletableFuturesTest {
+    private final ContextStorage storage = ContextStorage.get();
+    private final ContextEntry entry =
+        ContextEntry.create(Mockito.mock(Span.class), EmptyTagMap.INSTANCE);
+    private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void supplyAsync_PropagatesContext() throws Exception {
+        CompletableFuture<ContextEntry> future;
+        try (Scope scope = storage.attach(entry)) {
+            future = ContextCompletableFutures.supplyAsync(storage::current, executorService);
+        }
+        assertThat(future.get()).isSameInstanceAs(entry);
+    }
+
+    @Test
+    public void runAsync_PropagatesContext() throws Exception {
+        final ContextEntry[] seen = new ContextEntry[1];
+        CompletableFuture<Void> future;
+        try (Scope scope = storage.attach(entry)) {
+            future = ContextCompletableFutures.runAsync(() -> {
+                seen[0] = storage.current();
+            }, executorService);
+        }
+        future.get();
+        assertThat(seen[0]).isSameInstanceAs(entry);
+    }
+
+    @Test
+    public void dependentStage_UsesContextOfRegistration() throws Exception {
+        CompletableFuture<String> source = new CompletableFuture<>();
+        CompletableFuture<ContextEntry> dependent;
+        try (Scope scope = storage.attach(entry)) {
+            dependent =
+                source.thenApplyAsync(
+                    ContextCompletableFutures.wrapFunction(value -> storage.current()),
+                    executorService);
+        }
+        // Completed from a thread without context.
+        source.complete("value");
+        assertThat(dependent.get()).isSameInstanceAs(entry);
+    }
+
+    @Test
+    public void wrapBiFunctionAndConsumers() {
+        final ContextEntry[] seen = new ContextEntry[2];
+        CompletableFuture<String> first = new CompletableFuture<>();
+        CompletableFuture<String> second = new CompletableFuture<>();
+        CompletableFuture<ContextEntry> combined;
+        try (Scope scope = storage.attach(entry)) {
+            combined =
+                first.thenCombine(
+                    second, ContextCompletableFutures.wrapBiFunction((a, b) -> storage.current()));
+            first.thenAccept(
+                ContextCompletableFutures.wrapConsumer(value -> seen[0] = storage.current()));
+            second.whenComplete(
+                ContextCompletableFutures.wrapBiConsumer(
+                    (value, throwable) -> seen[1] = storage.current()));
+        }
+        first.complete("a");
+        second.complete("b");
+        assertThat(combined.join()).isSameInstanceAs(entry);
+        assertThat(seen[0]).isSameInstanceAs(entry);
+        assertThat(seen[1]).isSameInstanceAs(entry);
+        assertThat(storage.current()).isSameInstanceAs(ContextEntry.EMPTY);
+    }
+
+    @Test
+    public void emptyContextReturnsSameFunction() {
+        Function<String, String> function = value -> value;
+        assertThat(ContextCompletableFutures.wrapFunction(function)).isSameInstanceAs(function);
+    }
+}
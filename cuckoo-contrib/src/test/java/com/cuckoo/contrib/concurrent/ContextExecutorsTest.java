@@ -0,0 +1,180 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.contrib.concurrent;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+import com.cuckoo.context.ContextEntry;
+import com.cuckoo.context.ContextStorage;
+import com.cuckoo.context.Scope;
+import com.cuckoo.tags.EmptyTagMap;
+import com.cuckoo.trace.Span;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mockito;
+
+/** Unit tests for {@link ContextExecutors}. */
+@RunWith(JUnit4.class)
+public class ContextExecutorsTest {
+    private final ContextStorage storage = ContextStorage.get();
+    private final ContextEntry entry =
+        ContextEntry.create(Mockito.mock(Span.class), EmptyTagMap.INSTANCE);
+    private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void wrapRunnable_RestoresCapturedEntry() {
+        final ContextEntry[] seen = new ContextEntry[1];
+        Runnable runnable;
+        try (Scope scope = storage.attach(entry)) {
+            runnable = ContextExecutors.wrap(() -> {
+                seen[0] = storage.current();
+            });
+        }
+        runnable.run();
+        assertThat(seen[0]).isSameInstanceAs(entry);
+        assertThat(storage.current()).isSameInstanceAs(ContextEntry.EMPTY);
+    }
+
+    @Test
+    public void wrapRunnable_EmptyContextReturnsSameTask() {
+        Runnable runnable = () -> {};
+        assertThat(ContextExecutors.wrap(runnable)).isSameInstanceAs(runnable);
+        try (Scope scope = storage.attach(ContextEntry.create(null, EmptyTagMap.INSTANCE))) {
+            assertThat(ContextExecutors.wrap(runnable)).isSameInstanceAs(runnable);
+        }
+    }
+
+    @Test
+    public void wrapCallable_RestoresPreviousEntryOnException() throws Exception {
+        Callable<ContextEntry> callable;
+        try (Scope scope = storage.attach(entry)) {
+            callable = ContextExecutors.wrap(() -> {
+                throw new IllegalStateException(storage.current().toString());
+            });
+        }
+        try {
+            callable.call();
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertThat(e).hasMessageThat().isEqualTo(entry.toString());
+        }
+        assertThat(storage.current()).isSameInstanceAs(ContextEntry.EMPTY);
+    }
+
+    @Test
+    public void executorService_PropagatesContextAtSubmitTime() throws Exception {
+        ExecutorService wrapped = ContextExecutors.wrap(executorService);
+        Future<ContextEntry> withEntry;
+        try (Scope scope = storage.attach(entry)) {
+            withEntry = wrapped.submit(storage::current);
+        }
+        Future<ContextEntry> withoutEntry = wrapped.submit(storage::current);
+        assertThat(withEntry.get()).isSameInstanceAs(entry);
+        assertThat(withoutEntry.get()).isSameInstanceAs(ContextEntry.EMPTY);
+    }
+
+    @Test
+    public void executorService_InvokeAll() throws Exception {
+        ExecutorService wrapped = ContextExecutors.wrap(executorService);
+        List<Callable<ContextEntry>> tasks = Arrays.asList(storage::current, storage::current);
+        List<Future<ContextEntry>> futures;
+        try (Scope scope = storage.attach(entry)) {
+            futures = wrapped.invokeAll(tasks);
+        }
+        for (Future<ContextEntry> future : futures) {
+            assertThat(future.get()).isSameInstanceAs(entry);
+        }
+    }
+
+    @Test
+    public void executorService_ShutdownDelegates() throws Exception {
+        ExecutorService wrapped = ContextExecutors.wrap(executorService);
+        wrapped.shutdown();
+        assertThat(executorService.isShutdown()).isTrue();
+        assertThat(wrapped.awaitTermination(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(wrapped.isTerminated()).isTrue();
+    }
+
+    @Test
+    public void executor_PropagatesContext() throws Exception {
+        final Future<?>[] future = new Future<?>[1];
+        final ContextEntry[] seen = new ContextEntry[1];
+        try (Scope scope = storage.attach(entry)) {
+            ContextExecutors.wrap(
+                    command -> future[0] = executorService.submit(command))
+                .execute(() -> {
+                    seen[0] = storage.current();
+                });
+        }
+        future[0].get();
+        assertThat(seen[0]).isSameInstanceAs(entry);
+    }
+
+    @Test
+    public void forkJoinTask_PropagatesContextToForkedTasks() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ForkJoinTask<Integer> task;
+            try (Scope scope = storage.attach(entry)) {
+                task = ContextExecutors.wrap(new CountingTask(16));
+            }
+            assertThat(pool.invoke(task)).isEqualTo(16);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // Counts the leaves that see the captured entry, forking wrapped subtasks.
+    private final class CountingTask extends RecursiveTask<Integer> {
+        private static final long serialVersionUID = 0L;
+
+        private final int leaves;
+
+        CountingTask(int leaves) {
+            this.leaves = leaves;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (leaves == 1) {
+                return storage.current() == entry ? 1 : 0;
+            }
+            ForkJoinTask<Integer> left = ContextExecutors.wrap(new CountingTask(leaves / 2)).fork();
+            int right = new CountingTask(leaves - leaves / 2).compute();
+            return left.join() + right;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.tags;
+
+import java.util.concurrent.TimeUnit;
+
+import com.cuckoo.tags.Tag;
+import com.cuckoo.tags.TagKey;
+import com.cuckoo.tags.TagMap;
+import com.cuckoo.tags.TagMetadata;
+import com.cuckoo.tags.TagValue;
+import com.cuckoo.tags.Tagger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks for {@link TagMapSdk} over increasing nesting depths.
+ *
+ * <p>Run with {@code -PjmhProfilers=gc} to see the memory cost of each hop
+ * ({@code gc.alloc.rate.norm} of {@link #buildChain()} is the number of bytes used by a chain of
+ * {@code depth} nested maps on top of the initial tags).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TagMapBenchmark {
+    private static final TagMetadata METADATA = Tag.METADATA_UNLIMITED_PROPAGATION;
+    private static final TagValue VALUE = TagValue.create("value");
+
+    private final Tagger tagger = new TaggerSdk();
+
+    @Param({"20"})
+    int initialTags;
+
+    @Param({"1", "4", "16", "64"})
+    int depth;
+
+    private TagKey[] hopKeys;
+    private TagKey firstKey;
+    private TagKey missingKey;
+    private TagMap root;
+    private TagMap deepest;
+
+    @Setup
+    public void setup() {
+        TagMap.Builder builder = tagger.tagMapBuilder().setNoParent();
+        for (int i = 0; i < initialTags; i++) {
+            builder.put(TagKey.create("key" + i), VALUE, METADATA);
+        }
+        root = builder.build();
+        firstKey = TagKey.create("key0");
+        missingKey = TagKey.create("missing");
+        hopKeys = new TagKey[depth];
+        for (int i = 0; i < depth; i++) {
+            hopKeys[i] = TagKey.create("hop" + i);
+        }
+        deepest = buildChain();
+    }
+
+    /** Builds {@code depth} nested maps, each adding one tag to its parent. */
+    @Benchmark
+    public TagMap buildChain() {
+        TagMap tags = root;
+        for (TagKey key : hopKeys) {
+            tags = tagger.tagMapBuilder().setParent(tags).put(key, VALUE, METADATA).build();
+        }
+        return tags;
+    }
+
+    /** Adds one tag to the deepest map. */
+    @Benchmark
+    public TagMap putOneTag() {
+        return tagger.tagMapBuilder().setParent(deepest).put(missingKey, VALUE, METADATA).build();
+    }
+
+    /** Looks up a tag stored in the initial map. */
+    @Benchmark
+    public TagValue getInheritedTagValue() {
+        return deepest.getTagValue(firstKey);
+    }
+
+    /** Looks up a tag that is not present. */
+    @Benchmark
+    public TagValue getMissingTagValue() {
+        return deepest.getTagValue(missingKey);
+    }
+}
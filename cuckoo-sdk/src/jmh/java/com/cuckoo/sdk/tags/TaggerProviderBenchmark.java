@@ -0,0 +1,62 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.tags;
+
+import java.util.ServiceLoader;
+import java.util.concurrent.TimeUnit;
+
+import com.cuckoo.OpenCuckoo;
+import com.cuckoo.tags.DefaultTagger;
+import com.cuckoo.tags.Tagger;
+import com.cuckoo.tags.spi.TaggerProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks for resolving the {@link Tagger} through {@link OpenCuckoo}.
+ *
+ * <p>{@link #discoverProvider()} repeats the {@link ServiceLoader} lookup that {@link
+ * OpenCuckoo#getTagger()} performs once, which is the startup cost of provider discovery. Run with
+ * {@code -bm ss -f 20 -wi 0 -i 1} to measure the first, cold lookup of a fresh JVM instead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TaggerProviderBenchmark {
+
+    /** Loads the providers and creates the {@code Tagger}, as done on the first lookup. */
+    @Benchmark
+    public Tagger discoverProvider() {
+        ServiceLoader<TaggerProvider> loader =
+            ServiceLoader.load(TaggerProvider.class, OpenCuckoo.class.getClassLoader());
+        for (TaggerProvider provider : loader) {
+            return provider.create();
+        }
+        return DefaultTagger.getInstance();
+    }
+
+    /** Returns the cached {@code Tagger}. */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Tagger getTagger() {
+        return OpenCuckoo.getTagger();
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.trace;
+
+import java.util.concurrent.TimeUnit;
+
+import com.cuckoo.resources.Resource;
+import com.cuckoo.trace.AttributeValue;
+import com.cuckoo.trace.Event;
+import com.cuckoo.trace.Span.Kind;
+import com.cuckoo.trace.SpanContext;
+import com.cuckoo.trace.SpanData;
+import com.cuckoo.trace.SpanId;
+import com.cuckoo.trace.Status;
+import com.cuckoo.trace.TraceId;
+import com.cuckoo.trace.TraceOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks recording into a {@link RecordingSpan} from its owner thread against a baseline that
+ * takes a lock for every write.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RecordingSpanBenchmark {
+    private static final SpanContext CONTEXT =
+        SpanContext.create(new TraceId(1, 2), new SpanId(3), TraceOptions.SAMPLED);
+    private static final AttributeValue VALUE = AttributeValue.stringAttributeValue("value");
+    private static final Event EVENT = SpanData.Event.create("event");
+
+    private RecordingSpan recordingSpan;
+    private SynchronizedSpan synchronizedSpan;
+
+    @Setup
+    public void setup() {
+        recordingSpan = startRecordingSpan();
+        synchronizedSpan = new SynchronizedSpan();
+    }
+
+    /** Replaces an attribute of a span owned by the benchmark thread. */
+    @Benchmark
+    public RecordingSpan setAttribute_Owner() {
+        recordingSpan.setAttribute("key", VALUE);
+        return recordingSpan;
+    }
+
+    /** Replaces an attribute of a span that takes a lock for each write. */
+    @Benchmark
+    public SynchronizedSpan setAttribute_Synchronized() {
+        synchronizedSpan.setAttribute("key", VALUE);
+        return synchronizedSpan;
+    }
+
+    /** Records a span with 4 attributes and 2 events, and ends it. */
+    @Benchmark
+    public SpanData span_Owner() {
+        RecordingSpan span = startRecordingSpan();
+        span.setAttribute("key1", VALUE);
+        span.setAttribute("key2", VALUE);
+        span.addEvent(EVENT);
+        span.setAttribute("key3", VALUE);
+        span.setAttribute("key4", VALUE);
+        span.addEvent(EVENT);
+        span.end();
+        return span.toSpanData();
+    }
+
+    /** Same as {@link #span_Owner()} with a lock for each write. */
+    @Benchmark
+    public SpanData span_Synchronized() {
+        SynchronizedSpan span = new SynchronizedSpan();
+        span.setAttribute("key1", VALUE);
+        span.setAttribute("key2", VALUE);
+        span.addEvent(EVENT);
+        span.setAttribute("key3", VALUE);
+        span.setAttribute("key4", VALUE);
+        span.addEvent(EVENT);
+        return span.end();
+    }
+
+    private static RecordingSpan startRecordingSpan() {
+        long startEpochNanos = System.currentTimeMillis() * 1000 * 1000;
+        return RecordingSpan.startSpan(
+            CONTEXT,
+            null,
+            "span",
+            Kind.INTERNAL,
+            Resource.getEmpty(),
+            startEpochNanos,
+            MultiSpanProcessor.empty());
+    }
+
+    /** The baseline: the same record, written under a lock. */
+    static final class SynchronizedSpan {
+        private final long startEpochNanos = System.currentTimeMillis() * 1000 * 1000;
+        private final long startNanoTime = System.nanoTime();
+        private final SpanRecord record = new SpanRecord("span");
+
+        synchronized void setAttribute(String key, AttributeValue value) {
+            record.recordAttribute(key, value);
+        }
+
+        synchronized void addEvent(Event event) {
+            record.recordEvent(event, System.nanoTime());
+        }
+
+        synchronized SpanData end() {
+            return SpanData.createWithoutCopy(
+                CONTEXT,
+                null,
+                Resource.getEmpty(),
+                "span",
+                Kind.INTERNAL,
+                RecordingSpan.toTimestamp(startEpochNanos),
+                record.attributes(null, 0),
+                record.events(startEpochNanos, startNanoTime, null, 0),
+                record.links(null, 0),
+                Status.OK,
+                RecordingSpan.toTimestamp(startEpochNanos + System.nanoTime() - startNanoTime));
+        }
+    }
+}
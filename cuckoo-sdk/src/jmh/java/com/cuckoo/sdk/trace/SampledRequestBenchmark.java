@@ -0,0 +1,110 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.trace;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.cuckoo.resources.Resource;
+import com.cuckoo.trace.AttributeValue;
+import com.cuckoo.trace.DefaultSpan;
+import com.cuckoo.trace.Span;
+import com.cuckoo.trace.Span.Kind;
+import com.cuckoo.trace.SpanContext;
+import com.cuckoo.trace.SpanId;
+import com.cuckoo.trace.TraceId;
+import com.cuckoo.trace.TraceOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the tracing overhead of a request that sets two attributes and adds one event with
+ * attributes, when one request out of {@code samplingInterval} is sampled.
+ *
+ * <p>The {@code eager} requests format the values and build the attribute map before each call,
+ * the {@code lazy} ones pass suppliers that unsampled {@link DefaultSpan}s never evaluate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SampledRequestBenchmark {
+    private static final SpanContext SAMPLED =
+        SpanContext.create(new TraceId(1, 2), new SpanId(3), TraceOptions.SAMPLED);
+    private static final SpanContext NOT_SAMPLED =
+        SpanContext.create(new TraceId(1, 2), new SpanId(3), TraceOptions.DEFAULT);
+
+    // 1% sampling.
+    @Param({"100"})
+    int samplingInterval;
+
+    private long requests;
+    private final long userId = 42;
+    private final int rows = 17;
+
+    /** A request that computes all the values it records. */
+    @Benchmark
+    public Span request_Eager() {
+        Span span = startSpan();
+        span.setAttribute("http.url", "/users/" + userId);
+        span.setAttribute("user.id", userId);
+        Map<String, AttributeValue> attributes = new HashMap<String, AttributeValue>();
+        attributes.put("db.rows", AttributeValue.longAttributeValue(rows));
+        attributes.put("db.table", AttributeValue.stringAttributeValue("users"));
+        span.addEvent("query", attributes);
+        span.end();
+        return span;
+    }
+
+    /** The same request, computing the values only when the span records them. */
+    @Benchmark
+    public Span request_Lazy() {
+        Span span = startSpan();
+        span.setAttribute(
+            "http.url", () -> AttributeValue.stringAttributeValue("/users/" + userId));
+        span.setAttribute("user.id", userId);
+        span.addEvent(
+            "query",
+            () -> {
+                Map<String, AttributeValue> attributes = new HashMap<String, AttributeValue>();
+                attributes.put("db.rows", AttributeValue.longAttributeValue(rows));
+                attributes.put("db.table", AttributeValue.stringAttributeValue("users"));
+                return attributes;
+            });
+        span.end();
+        return span;
+    }
+
+    private Span startSpan() {
+        if (++requests % samplingInterval == 0) {
+            return RecordingSpan.startSpan(
+                SAMPLED,
+                null,
+                "request",
+                Kind.SERVER,
+                Resource.getEmpty(),
+                0,
+                MultiSpanProcessor.empty());
+        }
+        return DefaultSpan.create(NOT_SAMPLED);
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.trace;
+
+import java.util.concurrent.TimeUnit;
+
+import com.cuckoo.trace.Span;
+import com.cuckoo.trace.Tracer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks starting spans with the per-thread builder of {@link TracerSdk} against a baseline
+ * that creates a new builder for each span.
+ *
+ * <p>Run with {@code -PjmhProfilers=gc}: {@code gc.alloc.rate.norm} is the memory used by a span
+ * start, which is only the span, its {@code SpanContext} and its ids when the builder is reused.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SpanBuilderBenchmark {
+    private final TracerSdk sampledTracer = new TracerSdk(Samplers.alwaysSample());
+    private final Tracer notSampledTracer = new TracerSdk(Samplers.neverSample());
+
+    /** Starts a sampled root span with the reused builder. */
+    @Benchmark
+    public Span startSpan_Sampled() {
+        return sampledTracer
+            .spanBuilder("span")
+            .setNoParent()
+            .setSpanKind(Span.Kind.SERVER)
+            .startSpan();
+    }
+
+    /** Starts a root span that is not sampled with the reused builder. */
+    @Benchmark
+    public Span startSpan_NotSampled() {
+        return notSampledTracer
+            .spanBuilder("span")
+            .setNoParent()
+            .setSpanKind(Span.Kind.SERVER)
+            .startSpan();
+    }
+
+    /** Starts a sampled root span with a new builder. */
+    @Benchmark
+    public Span startSpan_NewBuilder() {
+        return new SpanBuilderSdk(sampledTracer)
+            .init("span")
+            .setNoParent()
+            .setSpanKind(Span.Kind.SERVER)
+            .startSpan();
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.trace.export;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.cuckoo.sdk.trace.RecordingSpan;
+import com.cuckoo.sdk.trace.SpanProcessor;
+import com.cuckoo.sdk.trace.TracerSdk;
+import com.cuckoo.trace.Span;
+import com.cuckoo.trace.SpanData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Benchmarks the cost that {@link BatchSpanProcessor} adds to {@link Span#end()} with 1 to 64
+ * producer threads, against a baseline that uses an {@link ArrayBlockingQueue}.
+ *
+ * <p>Both processors drop the span when their queue is full, and export to an exporter that does
+ * nothing. The throughput mode reports the number of spans handed to the processor per
+ * microsecond, and the sample time mode reports the latency percentiles of a single call, e.g.
+ * {@code p0.99}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BatchSpanProcessorBenchmark {
+    private static final SpanExporter NOOP_EXPORTER = new SpanExporter() {
+        @Override
+        public ResultCode export(List<SpanData> spans) {
+            return ResultCode.SUCCESS;
+        }
+
+        @Override
+        public void shutdown() {}
+    };
+
+    private SpanData spanData;
+    private SpanProcessor ringBufferProcessor;
+    private SpanProcessor blockingQueueProcessor;
+
+    @Setup
+    public void setup() {
+        RecordingSpan span = (RecordingSpan) new TracerSdk().spanBuilder("span").startSpan();
+        span.end();
+        spanData = span.toSpanData();
+        ringBufferProcessor = BatchSpanProcessor.newBuilder(NOOP_EXPORTER).build();
+        blockingQueueProcessor =
+            new BlockingQueueSpanProcessor(
+                NOOP_EXPORTER,
+                BatchSpanProcessor.DEFAULT_MAX_QUEUE_SIZE,
+                BatchSpanProcessor.DEFAULT_MAX_EXPORT_BATCH_SIZE);
+    }
+
+    @TearDown
+    public void tearDown() {
+        ringBufferProcessor.shutdown();
+        blockingQueueProcessor.shutdown();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void ringBuffer_01Threads() {
+        ringBufferProcessor.onEnd(spanData);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void ringBuffer_04Threads() {
+        ringBufferProcessor.onEnd(spanData);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void ringBuffer_16Threads() {
+        ringBufferProcessor.onEnd(spanData);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void ringBuffer_64Threads() {
+        ringBufferProcessor.onEnd(spanData);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void blockingQueue_01Threads() {
+        blockingQueueProcessor.onEnd(spanData);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void blockingQueue_04Threads() {
+        blockingQueueProcessor.onEnd(spanData);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void blockingQueue_16Threads() {
+        blockingQueueProcessor.onEnd(spanData);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void blockingQueue_64Threads() {
+        blockingQueueProcessor.onEnd(spanData);
+    }
+
+    /** Baseline that queues the spans in an {@code ArrayBlockingQueue}, which takes a lock. */
+    static final class BlockingQueueSpanProcessor implements SpanProcessor, Runnable {
+        private final SpanExporter exporter;
+        private final BlockingQueue<SpanData> queue;
+        private final int maxExportBatchSize;
+        private final Thread worker;
+        private volatile boolean stopped;
+
+        BlockingQueueSpanProcessor(
+            SpanExporter exporter, int maxQueueSize, int maxExportBatchSize) {
+            this.exporter = exporter;
+            this.queue = new ArrayBlockingQueue<SpanData>(maxQueueSize);
+            this.maxExportBatchSize = maxExportBatchSize;
+            this.worker = new Thread(this);
+            worker.setDaemon(true);
+            worker.start();
+        }
+
+        @Override
+        public void onStart(Span span) {}
+
+        @Override
+        public boolean isStartRequired() {
+            return false;
+        }
+
+        @Override
+        public void onEnd(SpanData spanData) {
+            // Dropped when the queue is full, like BatchSpanProcessor.
+            queue.offer(spanData);
+        }
+
+        @Override
+        public boolean recyclesSpans() {
+            return false;
+        }
+
+        @Override
+        public void forceFlush() {}
+
+        @Override
+        public void shutdown() {
+            stopped = true;
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void run() {
+            List<SpanData> batch = new ArrayList<SpanData>(maxExportBatchSize);
+            while (!stopped) {
+                try {
+                    SpanData first = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                queue.drainTo(batch, maxExportBatchSize - 1);
+                exporter.export(batch);
+                batch.clear();
+            }
+        }
+    }
+}
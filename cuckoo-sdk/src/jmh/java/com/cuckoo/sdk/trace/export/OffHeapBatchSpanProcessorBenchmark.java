@@ -0,0 +1,104 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.trace.export;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.cuckoo.sdk.trace.TracerSdk;
+import com.cuckoo.trace.Span;
+import com.cuckoo.trace.SpanData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks starting and ending a span with four attributes and one event, exported by {@link
+ * BatchSpanProcessor} or by {@link OffHeapBatchSpanProcessor}.
+ *
+ * <p>The exporter reads the name of each span. Run with {@code -PjmhProfilers=gc} to compare the
+ * bytes allocated per span ({@code gc.alloc.rate.norm}) with the cost of encoding the span when it
+ * ends.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class OffHeapBatchSpanProcessorBenchmark {
+    private static final SpanExporter NAME_READING_EXPORTER = new SpanExporter() {
+        private final Blackhole blackhole =
+            new Blackhole(
+                "Today's password is swordfish. I understand instantiating Blackholes directly "
+                    + "is dangerous.");
+
+        @Override
+        public ResultCode export(List<SpanData> spans) {
+            for (SpanData span : spans) {
+                blackhole.consume(span.getName());
+            }
+            return ResultCode.SUCCESS;
+        }
+
+        @Override
+        public void shutdown() {}
+    };
+
+    private TracerSdk onHeapTracer;
+    private TracerSdk offHeapTracer;
+
+    @Setup
+    public void setup() {
+        onHeapTracer = new TracerSdk();
+        onHeapTracer.addSpanProcessor(
+            BatchSpanProcessor.newBuilder(NAME_READING_EXPORTER).build());
+        offHeapTracer = new TracerSdk();
+        offHeapTracer.addSpanProcessor(
+            OffHeapBatchSpanProcessor.newBuilder(NAME_READING_EXPORTER).build());
+    }
+
+    @TearDown
+    public void tearDown() {
+        onHeapTracer.shutdown();
+        offHeapTracer.shutdown();
+    }
+
+    @Benchmark
+    public Span onHeap() {
+        return endSpan(onHeapTracer);
+    }
+
+    @Benchmark
+    public Span offHeap() {
+        return endSpan(offHeapTracer);
+    }
+
+    private static Span endSpan(TracerSdk tracer) {
+        Span span = tracer.spanBuilder("GET /users").startSpan();
+        span.setAttribute("http.method", "GET");
+        span.setAttribute("http.status_code", 200);
+        span.setAttribute("http.url", "https://example.com/users");
+        span.setAttribute("retry", false);
+        span.addEvent("response");
+        span.end();
+        return span;
+    }
+}
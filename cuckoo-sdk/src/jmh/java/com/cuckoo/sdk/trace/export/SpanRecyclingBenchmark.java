@@ -0,0 +1,84 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.trace.export;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.cuckoo.sdk.trace.TracerSdk;
+import com.cuckoo.trace.Span;
+import com.cuckoo.trace.SpanData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures a span with four attributes and one event that is exported by a {@link
+ * BatchSpanProcessor}, with and without {@link TracerSdk#setRecycleSpans(boolean)}.
+ *
+ * <p>Run with {@code -PjmhProfilers=gc} to compare the bytes allocated per span
+ * ({@code gc.alloc.rate.norm}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SpanRecyclingBenchmark {
+    private static final SpanExporter NOOP_EXPORTER = new SpanExporter() {
+        @Override
+        public ResultCode export(List<SpanData> spans) {
+            return ResultCode.SUCCESS;
+        }
+
+        @Override
+        public void shutdown() {}
+    };
+
+    @Param({"false", "true"})
+    boolean recycleSpans;
+
+    private TracerSdk tracer;
+
+    @Setup
+    public void setup() {
+        tracer = new TracerSdk();
+        tracer.setRecycleSpans(recycleSpans);
+        tracer.addSpanProcessor(BatchSpanProcessor.newBuilder(NOOP_EXPORTER).build());
+    }
+
+    @TearDown
+    public void tearDown() {
+        tracer.shutdown();
+    }
+
+    @Benchmark
+    public Span endSpan() {
+        Span span = tracer.spanBuilder("GET /users").startSpan();
+        span.setAttribute("http.method", "GET");
+        span.setAttribute("http.status_code", 200);
+        span.setAttribute("http.url", "https://example.com/users");
+        span.setAttribute("retry", false);
+        span.addEvent("response");
+        span.end();
+        return span;
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.trace.export;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.cuckoo.sdk.trace.RecordingSpan;
+import com.cuckoo.sdk.trace.SpanProcessor;
+import com.cuckoo.sdk.trace.TracerSdk;
+import com.cuckoo.trace.SpanData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Benchmarks how {@link ThreadLocalBatchSpanProcessor} and {@link BatchSpanProcessor} scale with 1
+ * to 128 threads ending spans. The score is the total number of spans handed to the processor per
+ * microsecond, by all the threads.
+ *
+ * <p>Both processors export to an exporter that does nothing, and drop the spans that do not fit
+ * in their queue.
+ *
+ * <p>The {@code threadChurn} benchmarks end a few spans on a new thread per operation, so the
+ * {@code ThreadLocalBatchSpanProcessor} registers a buffer per operation and removes the buffers
+ * of the dead threads when it collects them. Their score is the time per thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ThreadLocalBatchSpanProcessorBenchmark {
+    private static final SpanExporter NOOP_EXPORTER = new SpanExporter() {
+        @Override
+        public ResultCode export(List<SpanData> spans) {
+            return ResultCode.SUCCESS;
+        }
+
+        @Override
+        public void shutdown() {}
+    };
+
+    private static final int SPANS_PER_THREAD = 16;
+
+    private SpanData spanData;
+    private SpanProcessor threadLocalProcessor;
+    private SpanProcessor sharedQueueProcessor;
+
+    @Setup
+    public void setup() {
+        RecordingSpan span = (RecordingSpan) new TracerSdk().spanBuilder("span").startSpan();
+        span.end();
+        spanData = span.toSpanData();
+        threadLocalProcessor = ThreadLocalBatchSpanProcessor.newBuilder(NOOP_EXPORTER).build();
+        sharedQueueProcessor = BatchSpanProcessor.newBuilder(NOOP_EXPORTER).build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        threadLocalProcessor.shutdown();
+        sharedQueueProcessor.shutdown();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void threadLocal_001Threads() {
+        threadLocalProcessor.onEnd(spanData);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void threadLocal_008Threads() {
+        threadLocalProcessor.onEnd(spanData);
+    }
+
+    @Benchmark
+    @Threads(32)
+    public void threadLocal_032Threads() {
+        threadLocalProcessor.onEnd(spanData);
+    }
+
+    @Benchmark
+    @Threads(128)
+    public void threadLocal_128Threads() {
+        threadLocalProcessor.onEnd(spanData);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Threads(8)
+    public void threadLocal_ThreadChurn() throws InterruptedException {
+        endSpansOnNewThread(threadLocalProcessor);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void sharedQueue_001Threads() {
+        sharedQueueProcessor.onEnd(spanData);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void sharedQueue_008Threads() {
+        sharedQueueProcessor.onEnd(spanData);
+    }
+
+    @Benchmark
+    @Threads(32)
+    public void sharedQueue_032Threads() {
+        sharedQueueProcessor.onEnd(spanData);
+    }
+
+    @Benchmark
+    @Threads(128)
+    public void sharedQueue_128Threads() {
+        sharedQueueProcessor.onEnd(spanData);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Threads(8)
+    public void sharedQueue_ThreadChurn() throws InterruptedException {
+        endSpansOnNewThread(sharedQueueProcessor);
+    }
+
+    private void endSpansOnNewThread(final SpanProcessor processor) throws InterruptedException {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < SPANS_PER_THREAD; i++) {
+                    processor.onEnd(spanData);
+                }
+            }
+        });
+        thread.start();
+        thread.join();
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.stats;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.concurrent.Immutable;
+
+import com.cuckoo.internal.Utils;
+import com.google.auto.value.AutoValue;
+
+/**
+ * The boundaries of the buckets of a distribution.
+ *
+ * <p>Boundaries {@code [b0, b1, ..., bn-1]} define {@code n + 1} buckets: {@code (-inf, b0)},
+ * {@code [b0, b1)}, ..., {@code [bn-1, +inf)}.
+ *
+ * @since 0.0.1
+ */
+@Immutable
+@AutoValue
+public abstract class BucketBoundaries {
+
+    BucketBoundaries() {}
+
+    /**
+     * Creates a {@code BucketBoundaries} from the given boundaries.
+     *
+     * @param boundaries the boundaries, in strictly increasing order.
+     * @return a {@code BucketBoundaries} with the given boundaries.
+     * @throws NullPointerException if {@code boundaries} or any of its elements is {@code null}.
+     * @throws IllegalArgumentException if the boundaries are not strictly increasing.
+     */
+    public static BucketBoundaries create(List<Double> boundaries) {
+        Utils.checkNotNull(boundaries, "boundaries");
+        List<Double> copy = new ArrayList<>(boundaries);
+        Utils.checkListElementNotNull(copy, "boundary");
+        for (int i = 1; i < copy.size(); i++) {
+            Utils.checkArgument(
+                copy.get(i - 1) < copy.get(i), "Bucket boundaries not sorted.");
+        }
+        return new AutoValue_BucketBoundaries(Collections.unmodifiableList(copy));
+    }
+
+    /**
+     * Returns the boundaries, in strictly increasing order.
+     *
+     * @return the boundaries, in strictly increasing order.
+     */
+    public abstract List<Double> getBoundaries();
+}
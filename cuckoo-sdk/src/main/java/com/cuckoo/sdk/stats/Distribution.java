@@ -0,0 +1,68 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.stats;
+
+import java.util.List;
+import javax.annotation.concurrent.Immutable;
+
+import com.cuckoo.tags.TagMap;
+import com.google.auto.value.AutoValue;
+
+/**
+ * The values recorded for one set of tags since the previous collection.
+ *
+ * @since 0.0.1
+ */
+@Immutable
+@AutoValue
+public abstract class Distribution {
+
+    Distribution() {}
+
+    static Distribution create(TagMap tags, long count, double sum, List<Long> bucketCounts) {
+        return new AutoValue_Distribution(tags, count, sum, bucketCounts);
+    }
+
+    /**
+     * Returns the tags the values were recorded with.
+     *
+     * @return the tags the values were recorded with.
+     */
+    public abstract TagMap getTags();
+
+    /**
+     * Returns the number of recorded values.
+     *
+     * @return the number of recorded values.
+     */
+    public abstract long getCount();
+
+    /**
+     * Returns the sum of the recorded values.
+     *
+     * @return the sum of the recorded values.
+     */
+    public abstract double getSum();
+
+    /**
+     * Returns the number of recorded values in each bucket, in the order of the buckets defined by
+     * the {@link BucketBoundaries}.
+     *
+     * @return the number of recorded values in each bucket.
+     */
+    public abstract List<Long> getBucketCounts();
+}
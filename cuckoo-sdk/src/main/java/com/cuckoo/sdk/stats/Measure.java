@@ -0,0 +1,123 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.stats;
+
+import javax.annotation.concurrent.Immutable;
+
+import com.cuckoo.internal.StringUtils;
+import com.cuckoo.internal.Utils;
+import com.google.auto.value.AutoValue;
+
+/**
+ * A quantity that is recorded by the {@link StatsRecorderSdk}, for example the latency of a
+ * request or the size of a response.
+ *
+ * @since 0.0.1
+ */
+@Immutable
+@AutoValue
+public abstract class Measure {
+    /**
+     * The maximum length for a measure name. The value is {@value #NAME_MAX_LENGTH}.
+     *
+     * @since 0.0.1
+     */
+    public static final int NAME_MAX_LENGTH = 255;
+
+    /**
+     * The type of the values recorded for a {@code Measure}.
+     *
+     * @since 0.0.1
+     */
+    public enum Type {
+        /** Values are {@code long}s. */
+        LONG,
+        /** Values are {@code double}s. */
+        DOUBLE
+    }
+
+    Measure() {}
+
+    /**
+     * Creates a {@code Measure} of {@code long} values.
+     *
+     * @param name the name of the measure. Must be printable ASCII and not longer than {@link
+     *     #NAME_MAX_LENGTH}.
+     * @param description the description of the measure.
+     * @param unit the unit of the recorded values, for example {@code "ms"} or {@code "By"}.
+     * @return a {@code Measure} of {@code long} values.
+     * @throws IllegalArgumentException if the name is not valid.
+     */
+    public static Measure createLong(String name, String description, String unit) {
+        return create(name, description, unit, Type.LONG);
+    }
+
+    /**
+     * Creates a {@code Measure} of {@code double} values.
+     *
+     * @param name the name of the measure. Must be printable ASCII and not longer than {@link
+     *     #NAME_MAX_LENGTH}.
+     * @param description the description of the measure.
+     * @param unit the unit of the recorded values, for example {@code "ms"} or {@code "By"}.
+     * @return a {@code Measure} of {@code double} values.
+     * @throws IllegalArgumentException if the name is not valid.
+     */
+    public static Measure createDouble(String name, String description, String unit) {
+        return create(name, description, unit, Type.DOUBLE);
+    }
+
+    private static Measure create(String name, String description, String unit, Type type) {
+        Utils.checkArgument(
+            name.length() <= NAME_MAX_LENGTH && StringUtils.isPrintableString(name),
+            "Name should be a ASCII string with a length no greater than "
+                + NAME_MAX_LENGTH
+                + " characters.");
+        return new AutoValue_Measure(
+            name,
+            Utils.checkNotNull(description, "description"),
+            Utils.checkNotNull(unit, "unit"),
+            type);
+    }
+
+    /**
+     * Returns the name of this {@code Measure}.
+     *
+     * @return the name of this {@code Measure}.
+     */
+    public abstract String getName();
+
+    /**
+     * Returns the description of this {@code Measure}.
+     *
+     * @return the description of this {@code Measure}.
+     */
+    public abstract String getDescription();
+
+    /**
+     * Returns the unit of the values recorded for this {@code Measure}.
+     *
+     * @return the unit of the values recorded for this {@code Measure}.
+     */
+    public abstract String getUnit();
+
+    /**
+     * Returns the type of the values recorded for this {@code Measure}.
+     *
+     * @return the type of the values recorded for this {@code Measure}.
+     */
+    public abstract Type getType();
+}
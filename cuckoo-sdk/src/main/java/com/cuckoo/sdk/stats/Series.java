@@ -0,0 +1,107 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.stats;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.cuckoo.tags.TagMap;
+
+/**
+ * The values recorded for one set of tags.
+ *
+ * <p>Values are recorded into one of two sets of cells while the collector drains the other one,
+ * so collection never blocks or resets cells that recording threads are writing to. Each cell is
+ * a {@link LongAdder} or {@link DoubleAdder}, which stripe updates across CPUs under contention.
+ */
+@ThreadSafe
+final class Series {
+    private final TagMap tags;
+    private final Cells[] cells;
+    // Index of the cells that values are recorded into.
+    private volatile int active;
+
+    Series(TagMap tags, int bucketCount) {
+        this.tags = tags;
+        this.cells = new Cells[] {new Cells(bucketCount), new Cells(bucketCount)};
+    }
+
+    void record(double value, int bucket) {
+        cells[active].record(value, bucket);
+    }
+
+    /**
+     * Switches recording to the other cells and drains the cells that were active. Must not be
+     * called concurrently.
+     *
+     * <p>A recording thread that read the active index just before the switch may still update
+     * the drained cells. Such a value is not lost, it is reported by the collection after the next
+     * one.
+     *
+     * @return the values recorded since the previous collection, or {@code null} if there are
+     *     none.
+     */
+    @Nullable
+    Distribution collect() {
+        int drained = active;
+        active = drained ^ 1;
+        return cells[drained].drain(tags);
+    }
+
+    private static final class Cells {
+        private final LongAdder count = new LongAdder();
+        private final DoubleAdder sum = new DoubleAdder();
+        private final LongAdder[] bucketCounts;
+
+        Cells(int bucketCount) {
+            bucketCounts = new LongAdder[bucketCount];
+            for (int i = 0; i < bucketCount; i++) {
+                bucketCounts[i] = new LongAdder();
+            }
+        }
+
+        void record(double value, int bucket) {
+            bucketCounts[bucket].increment();
+            sum.add(value);
+            count.increment();
+        }
+
+        // Reads the cells in the reverse order of record(), so every value in the count is also in
+        // the sum and the buckets. A value recorded concurrently may be in the sum and the buckets
+        // without being in the count yet, so these can be off by the few values in flight, which
+        // the next collection then misses.
+        @Nullable
+        Distribution drain(TagMap tags) {
+            long count = this.count.sumThenReset();
+            if (count == 0) {
+                return null;
+            }
+            double sum = this.sum.sumThenReset();
+            List<Long> bucketCounts = new ArrayList<>(this.bucketCounts.length);
+            for (LongAdder bucketCount : this.bucketCounts) {
+                bucketCounts.add(bucketCount.sumThenReset());
+            }
+            return Distribution.create(
+                tags, count, sum, Collections.unmodifiableList(bucketCounts));
+        }
+    }
+}
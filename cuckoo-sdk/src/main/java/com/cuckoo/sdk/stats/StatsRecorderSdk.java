@@ -0,0 +1,191 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.stats;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.cuckoo.internal.Utils;
+import com.cuckoo.tags.TagMap;
+import com.cuckoo.tags.Tagger;
+
+/**
+ * Records values of {@link Measure}s against the current {@link TagMap} and aggregates them into a
+ * count, a sum and a bucketed distribution per {@link View}.
+ *
+ * <p>Recording never takes a lock: the series for a combination of tag values is found with a
+ * lock-free lookup, and the values are added to striped cells. {@link #collect()} reports the
+ * values recorded since the previous collection without blocking recording threads.
+ *
+ * <p>Example:
+ *
+ * <pre>{@code
+ * StatsRecorderSdk recorder = new StatsRecorderSdk(tagger);
+ * recorder.registerView(
+ *     View.create("latency_by_method", "Latency by method", LATENCY_MS,
+ *         BucketBoundaries.create(Arrays.asList(10.0, 100.0)), Arrays.asList(METHOD)));
+ * try (Scope scope = tagger.tagMapBuilder().put(METHOD, GET, METADATA).buildScoped()) {
+ *     recorder.record(LATENCY_MS, 42.0);
+ * }
+ * }</pre>
+ *
+ * @since 0.0.1
+ */
+@ThreadSafe
+public final class StatsRecorderSdk {
+    private static final ViewAggregator[] NO_VIEWS = {};
+
+    private final Tagger tagger;
+    private final Map<String, ViewAggregator> viewsByName = new LinkedHashMap<>();
+    // Copy-on-write arrays, replaced while holding the lock on this.
+    private final ConcurrentMap<Measure, ViewAggregator[]> viewsByMeasure =
+        new ConcurrentHashMap<>();
+
+    /**
+     * Creates a {@code StatsRecorderSdk} that records values against the current {@code TagMap}
+     * of the given {@code Tagger}.
+     *
+     * @param tagger the {@code Tagger} used to get the current {@code TagMap}.
+     */
+    public StatsRecorderSdk(Tagger tagger) {
+        this.tagger = Utils.checkNotNull(tagger, "tagger");
+    }
+
+    /**
+     * Starts aggregating the values recorded for the {@code Measure} of the given {@code View}.
+     * Values recorded for a {@code Measure} without any registered {@code View} are dropped.
+     *
+     * <p>Registering the same {@code View} again has no effect.
+     *
+     * @param view the {@code View} to aggregate.
+     * @throws IllegalArgumentException if a different {@code View} with the same name is already
+     *     registered.
+     */
+    public synchronized void registerView(View view) {
+        Utils.checkNotNull(view, "view");
+        ViewAggregator existing = viewsByName.get(view.getName());
+        if (existing != null) {
+            Utils.checkArgument(
+                existing.getView().equals(view),
+                "A different view with the same name is already registered.");
+            return;
+        }
+        ViewAggregator aggregator = new ViewAggregator(view, tagger);
+        viewsByName.put(view.getName(), aggregator);
+        ViewAggregator[] views = viewsByMeasure.get(view.getMeasure());
+        if (views == null) {
+            views = NO_VIEWS;
+        }
+        ViewAggregator[] newViews = Arrays.copyOf(views, views.length + 1);
+        newViews[views.length] = aggregator;
+        viewsByMeasure.put(view.getMeasure(), newViews);
+    }
+
+    /**
+     * Records a value against the current {@code TagMap}.
+     *
+     * @param measure the {@code Measure} of the value.
+     * @param value the value.
+     * @throws IllegalArgumentException if {@code measure} is not of type {@link
+     *     Measure.Type#LONG}.
+     */
+    public void record(Measure measure, long value) {
+        checkType(measure, Measure.Type.LONG);
+        recordValue(tagger.getCurrentTagMap(), measure, (double) value);
+    }
+
+    /**
+     * Records a value against the current {@code TagMap}.
+     *
+     * @param measure the {@code Measure} of the value.
+     * @param value the value.
+     * @throws IllegalArgumentException if {@code measure} is not of type {@link
+     *     Measure.Type#DOUBLE}.
+     */
+    public void record(Measure measure, double value) {
+        checkType(measure, Measure.Type.DOUBLE);
+        recordValue(tagger.getCurrentTagMap(), measure, value);
+    }
+
+    /**
+     * Records a value against the given {@code TagMap}.
+     *
+     * @param tags the tags of the value.
+     * @param measure the {@code Measure} of the value.
+     * @param value the value.
+     * @throws IllegalArgumentException if {@code measure} is not of type {@link
+     *     Measure.Type#LONG}.
+     */
+    public void record(TagMap tags, Measure measure, long value) {
+        Utils.checkNotNull(tags, "tags");
+        checkType(measure, Measure.Type.LONG);
+        recordValue(tags, measure, (double) value);
+    }
+
+    /**
+     * Records a value against the given {@code TagMap}.
+     *
+     * @param tags the tags of the value.
+     * @param measure the {@code Measure} of the value.
+     * @param value the value.
+     * @throws IllegalArgumentException if {@code measure} is not of type {@link
+     *     Measure.Type#DOUBLE}.
+     */
+    public void record(TagMap tags, Measure measure, double value) {
+        Utils.checkNotNull(tags, "tags");
+        checkType(measure, Measure.Type.DOUBLE);
+        recordValue(tags, measure, value);
+    }
+
+    private static void checkType(Measure measure, Measure.Type type) {
+        if (Utils.checkNotNull(measure, "measure").getType() != type) {
+            throw new IllegalArgumentException("Measure " + measure.getName() + " is not " + type);
+        }
+    }
+
+    private void recordValue(TagMap tags, Measure measure, double value) {
+        ViewAggregator[] views = viewsByMeasure.get(measure);
+        if (views != null) {
+            for (ViewAggregator view : views) {
+                view.record(tags, value);
+            }
+        }
+    }
+
+    /**
+     * Returns the values recorded since the previous collection, one {@code ViewData} per
+     * registered {@code View} in registration order.
+     *
+     * <p>Concurrent calls are serialized, but recording threads are never blocked.
+     *
+     * @return the values recorded since the previous collection.
+     */
+    public synchronized List<ViewData> collect() {
+        List<ViewData> result = new ArrayList<>(viewsByName.size());
+        for (ViewAggregator aggregator : viewsByName.values()) {
+            result.add(aggregator.collect());
+        }
+        return Collections.unmodifiableList(result);
+    }
+}
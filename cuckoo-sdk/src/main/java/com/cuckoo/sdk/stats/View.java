@@ -0,0 +1,165 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.stats;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import javax.annotation.concurrent.Immutable;
+
+import com.cuckoo.internal.StringUtils;
+import com.cuckoo.internal.Utils;
+import com.cuckoo.tags.TagKey;
+import com.google.auto.value.AutoValue;
+
+/**
+ * Defines how the values of a {@link Measure} are aggregated: the {@link TagKey}s the values are
+ * grouped by, the bucket boundaries of the distributions, and the maximum number of distinct
+ * groups.
+ *
+ * <p>Tags whose key is not one of the columns are ignored, so a high-cardinality tag such as a
+ * user id only affects the views that explicitly aggregate on it. Once a view has {@link
+ * #getMaxSeries()} groups, values recorded for any new combination of tag values are aggregated
+ * into a single overflow distribution instead.
+ *
+ * @since 0.0.1
+ */
+@Immutable
+@AutoValue
+public abstract class View {
+    /**
+     * The maximum length for a view name. The value is {@value #NAME_MAX_LENGTH}.
+     *
+     * @since 0.0.1
+     */
+    public static final int NAME_MAX_LENGTH = 255;
+
+    /**
+     * The default maximum number of distinct combinations of tag values aggregated by a view. The
+     * value is {@value #DEFAULT_MAX_SERIES}.
+     *
+     * @since 0.0.1
+     */
+    public static final int DEFAULT_MAX_SERIES = 2000;
+
+    View() {}
+
+    /**
+     * Creates a {@code View} with at most {@link #DEFAULT_MAX_SERIES} groups.
+     *
+     * @param name the name of the view. Must be printable ASCII and not longer than {@link
+     *     #NAME_MAX_LENGTH}.
+     * @param description the description of the view.
+     * @param measure the {@code Measure} to aggregate.
+     * @param bucketBoundaries the bucket boundaries of the distributions.
+     * @param columns the keys of the tags to group the values by.
+     * @return a {@code View}.
+     * @throws IllegalArgumentException if the name is not valid or a column is repeated.
+     */
+    public static View create(
+        String name,
+        String description,
+        Measure measure,
+        BucketBoundaries bucketBoundaries,
+        List<TagKey> columns) {
+        return create(name, description, measure, bucketBoundaries, columns, DEFAULT_MAX_SERIES);
+    }
+
+    /**
+     * Creates a {@code View}.
+     *
+     * @param name the name of the view. Must be printable ASCII and not longer than {@link
+     *     #NAME_MAX_LENGTH}.
+     * @param description the description of the view.
+     * @param measure the {@code Measure} to aggregate.
+     * @param bucketBoundaries the bucket boundaries of the distributions.
+     * @param columns the keys of the tags to group the values by.
+     * @param maxSeries the maximum number of distinct combinations of tag values.
+     * @return a {@code View}.
+     * @throws IllegalArgumentException if the name is not valid, a column is repeated or {@code
+     *     maxSeries} is not positive.
+     */
+    public static View create(
+        String name,
+        String description,
+        Measure measure,
+        BucketBoundaries bucketBoundaries,
+        List<TagKey> columns,
+        int maxSeries) {
+        Utils.checkArgument(
+            name.length() <= NAME_MAX_LENGTH && StringUtils.isPrintableString(name),
+            "Name should be a ASCII string with a length no greater than "
+                + NAME_MAX_LENGTH
+                + " characters.");
+        Utils.checkNotNull(columns, "columns");
+        List<TagKey> copy = new ArrayList<>(columns);
+        Utils.checkListElementNotNull(copy, "column");
+        Utils.checkArgument(new HashSet<>(copy).size() == copy.size(), "Columns have duplicate.");
+        Utils.checkArgument(maxSeries > 0, "maxSeries must be positive.");
+        return new AutoValue_View(
+            name,
+            Utils.checkNotNull(description, "description"),
+            Utils.checkNotNull(measure, "measure"),
+            Utils.checkNotNull(bucketBoundaries, "bucketBoundaries"),
+            Collections.unmodifiableList(copy),
+            maxSeries);
+    }
+
+    /**
+     * Returns the name of this {@code View}.
+     *
+     * @return the name of this {@code View}.
+     */
+    public abstract String getName();
+
+    /**
+     * Returns the description of this {@code View}.
+     *
+     * @return the description of this {@code View}.
+     */
+    public abstract String getDescription();
+
+    /**
+     * Returns the {@code Measure} aggregated by this {@code View}.
+     *
+     * @return the {@code Measure} aggregated by this {@code View}.
+     */
+    public abstract Measure getMeasure();
+
+    /**
+     * Returns the bucket boundaries of the distributions.
+     *
+     * @return the bucket boundaries of the distributions.
+     */
+    public abstract BucketBoundaries getBucketBoundaries();
+
+    /**
+     * Returns the keys of the tags the values are grouped by.
+     *
+     * @return the keys of the tags the values are grouped by.
+     */
+    public abstract List<TagKey> getColumns();
+
+    /**
+     * Returns the maximum number of distinct combinations of tag values aggregated by this {@code
+     * View}.
+     *
+     * @return the maximum number of distinct combinations of tag values.
+     */
+    public abstract int getMaxSeries();
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.stats;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.cuckoo.sdk.tags.TagMapSdk;
+import com.cuckoo.tags.EmptyTagMap;
+import com.cuckoo.tags.Tag;
+import com.cuckoo.tags.TagKey;
+import com.cuckoo.tags.TagMap;
+import com.cuckoo.tags.TagValue;
+import com.cuckoo.tags.Tagger;
+
+/**
+ * Aggregates the values recorded for a {@link View}, with one {@link Series} per combination of
+ * the values of the view columns.
+ *
+ * <p>Existing series are found with a lock-free {@link ConcurrentHashMap#get} lookup that
+ * allocates nothing: each thread projects the {@code TagMap} into its own reusable probe key and
+ * remembers the series of the last {@link TagMapSdk} it recorded, which is immutable and so is
+ * compared by identity. A key is only allocated when a series is added. The number of series is
+ * bounded by {@link View#getMaxSeries()}: a slot is reserved before a series is inserted, and once
+ * all the slots are taken values for new combinations are recorded into the overflow series.
+ * Series are never evicted.
+ */
+@ThreadSafe
+final class ViewAggregator {
+    private final View view;
+    private final Tagger tagger;
+    private final TagKey[] columns;
+    private final double[] boundaries;
+    private final ConcurrentMap<ProjectedKey, Series> series = new ConcurrentHashMap<>();
+    private final AtomicInteger seriesCount = new AtomicInteger();
+    private final Series overflow;
+    private final LongAdder overflowCount = new LongAdder();
+    private final ThreadLocal<Lookup> lookups =
+        new ThreadLocal<Lookup>() {
+            @Override
+            protected Lookup initialValue() {
+                return new Lookup(columns.length);
+            }
+        };
+
+    ViewAggregator(View view, Tagger tagger) {
+        this.view = view;
+        this.tagger = tagger;
+        this.columns = view.getColumns().toArray(new TagKey[0]);
+        List<Double> list = view.getBucketBoundaries().getBoundaries();
+        this.boundaries = new double[list.size()];
+        for (int i = 0; i < boundaries.length; i++) {
+            boundaries[i] = list.get(i);
+        }
+        this.overflow = new Series(EmptyTagMap.INSTANCE, boundaries.length + 1);
+    }
+
+    View getView() {
+        return view;
+    }
+
+    void record(TagMap tags, double value) {
+        Lookup lookup = lookups.get();
+        Series current;
+        if (tags == lookup.lastTags) {
+            current = lookup.lastSeries;
+        } else {
+            lookup.project(tags, columns);
+            current = series.get(lookup);
+            if (current == null) {
+                current = addSeries(lookup);
+            }
+            // The overflow series is not remembered, every value recorded into it is counted.
+            if (current != overflow && tags instanceof TagMapSdk) {
+                lookup.lastTags = tags;
+                lookup.lastSeries = current;
+            }
+        }
+        current.record(value, bucketIndex(value));
+    }
+
+    // Must not be called concurrently.
+    ViewData collect() {
+        List<Distribution> distributions = new ArrayList<>();
+        for (Series s : series.values()) {
+            Distribution distribution = s.collect();
+            if (distribution != null) {
+                distributions.add(distribution);
+            }
+        }
+        return ViewData.create(
+            view,
+            Collections.unmodifiableList(distributions),
+            overflow.collect(),
+            overflowCount.sum());
+    }
+
+    // Returns the series for a lookup that was not found, or the overflow series if the view is
+    // full.
+    private Series addSeries(Lookup lookup) {
+        int count;
+        do {
+            count = seriesCount.get();
+            if (count >= view.getMaxSeries()) {
+                // Another thread may have added the series of this key since the lookup, and
+                // taken the last slot.
+                Series existing = series.get(lookup);
+                if (existing != null) {
+                    return existing;
+                }
+                overflowCount.increment();
+                return overflow;
+            }
+        } while (!seriesCount.compareAndSet(count, count + 1));
+        ProjectedKey key = new ProjectedKey(lookup.values.clone(), lookup.hashCode);
+        Series created = new Series(key.toTagMap(tagger, columns), boundaries.length + 1);
+        Series existing = series.putIfAbsent(key, created);
+        if (existing != null) {
+            // Another thread added the same key first.
+            seriesCount.decrementAndGet();
+            return existing;
+        }
+        return created;
+    }
+
+    private int bucketIndex(double value) {
+        int index = Arrays.binarySearch(boundaries, value);
+        // A value equal to a boundary belongs to the bucket starting at that boundary.
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    // The values of the view columns in a TagMap, with the hash code computed once.
+    @Immutable
+    private static final class ProjectedKey {
+        // One value per column, null if the TagMap has no tag for the column.
+        private final TagValue[] values;
+        private final int hashCode;
+
+        private ProjectedKey(TagValue[] values, int hashCode) {
+            this.values = values;
+            this.hashCode = hashCode;
+        }
+
+        TagMap toTagMap(Tagger tagger, TagKey[] columns) {
+            TagMap.Builder builder = tagger.tagMapBuilder().setNoParent();
+            for (int i = 0; i < columns.length; i++) {
+                if (values[i] != null) {
+                    builder.put(columns[i], values[i], Tag.METADATA_UNLIMITED_PROPAGATION);
+                }
+            }
+            return builder.build();
+        }
+
+        @Override
+        public boolean equals(@Nullable Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (obj instanceof Lookup) {
+                return obj.equals(this);
+            }
+            if (!(obj instanceof ProjectedKey)) {
+                return false;
+            }
+            ProjectedKey that = (ProjectedKey) obj;
+            return hashCode == that.hashCode && Arrays.equals(values, that.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    // The per-thread, mutable counterpart of a ProjectedKey, used to probe the series map. It is
+    // equal to the ProjectedKey of the same values and is never inserted in the map.
+    private static final class Lookup {
+        private final TagValue[] values;
+        private int hashCode;
+        // The last TagMapSdk recorded by the thread and its series.
+        @Nullable
+        private TagMap lastTags;
+        @Nullable
+        private Series lastSeries;
+
+        private Lookup(int columnCount) {
+            this.values = new TagValue[columnCount];
+        }
+
+        void project(TagMap tags, TagKey[] columns) {
+            for (int i = 0; i < columns.length; i++) {
+                values[i] = tags.getTagValue(columns[i]);
+            }
+            hashCode = Arrays.hashCode(values);
+        }
+
+        @Override
+        public boolean equals(@Nullable Object obj) {
+            if (!(obj instanceof ProjectedKey)) {
+                return obj == this;
+            }
+            ProjectedKey that = (ProjectedKey) obj;
+            return hashCode == that.hashCode && Arrays.equals(values, that.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
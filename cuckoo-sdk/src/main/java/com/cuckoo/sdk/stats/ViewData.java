@@ -0,0 +1,77 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.stats;
+
+import java.util.List;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import com.google.auto.value.AutoValue;
+
+/**
+ * The {@link Distribution}s collected for a {@link View}.
+ *
+ * @since 0.0.1
+ */
+@Immutable
+@AutoValue
+public abstract class ViewData {
+
+    ViewData() {}
+
+    static ViewData create(
+        View view,
+        List<Distribution> distributions,
+        @Nullable Distribution overflowDistribution,
+        long overflowCount) {
+        return new AutoValue_ViewData(view, distributions, overflowDistribution, overflowCount);
+    }
+
+    /**
+     * Returns the {@code View} the values were aggregated for.
+     *
+     * @return the {@code View} the values were aggregated for.
+     */
+    public abstract View getView();
+
+    /**
+     * Returns one {@code Distribution} per combination of tag values that values were recorded
+     * with since the previous collection. The tags of each distribution only contain the columns of
+     * the view.
+     *
+     * @return the collected distributions.
+     */
+    public abstract List<Distribution> getDistributions();
+
+    /**
+     * Returns the values recorded since the previous collection for combinations of tag values
+     * that did not fit in {@link View#getMaxSeries()}, or {@code null} if there are none. The tags
+     * of the overflow distribution are empty.
+     *
+     * @return the overflow distribution, or {@code null}.
+     */
+    @Nullable
+    public abstract Distribution getOverflowDistribution();
+
+    /**
+     * Returns the total number of values recorded into the overflow distribution since the view
+     * was registered.
+     *
+     * @return the total number of values recorded into the overflow distribution.
+     */
+    public abstract long getOverflowCount();
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.tags;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import javax.annotation.concurrent.Immutable;
+
+import com.cuckoo.context.propagation.BinaryFormat;
+import com.cuckoo.internal.Utils;
+import com.cuckoo.tags.EmptyTagMap;
+import com.cuckoo.tags.Tag;
+import com.cuckoo.tags.TagKey;
+import com.cuckoo.tags.TagMap;
+import com.cuckoo.tags.TagMetadata.TagTtl;
+import com.cuckoo.tags.TagValue;
+
+/**
+ * Binary encoding of a {@link TagMap}.
+ *
+ * <p>The layout is a version byte followed by a sequence of tags. Each tag is a field id byte
+ * followed by the varint-encoded length and the ASCII bytes of the key, and then the
+ * varint-encoded length and the ASCII bytes of the value:
+ *
+ * <pre>
+ *     version_id   := 0x00
+ *     tag          := tag_field_id key_len key_bytes value_len value_bytes
+ *     tag_field_id := 0x00
+ *     key_len      := varint
+ *     value_len    := varint
+ * </pre>
+ *
+ * <p>Tags with {@link TagTtl#NO_PROPAGATION} are not encoded, and the encoded size never exceeds
+ * {@link #SERIALIZED_SIZE_LIMIT} bytes: tags that do not fit are dropped. Decoding never throws on
+ * malformed input. Tags that are not valid are skipped without creating {@code String}s for them,
+ * and input that cannot be parsed decodes to an empty {@code TagMap}.
+ *
+ * @since 0.0.1
+ */
+@Immutable
+public final class TagMapBinaryFormat implements BinaryFormat<TagMap> {
+    /** The maximum size in bytes of an encoded {@code TagMap}. */
+    public static final int SERIALIZED_SIZE_LIMIT = 8192;
+
+    static final byte VERSION_ID = 0;
+    static final byte TAG_FIELD_ID = 0;
+
+    private static final byte[] EMPTY_BYTE_ARRAY = {};
+    private static final int MAX_VARINT_SIZE = 5;
+
+    TagMapBinaryFormat() {}
+
+    @Override
+    public byte[] toByteArray(TagMap tags) {
+        Utils.checkNotNull(tags, "tags");
+        int count = tags.size();
+        int size = 1;
+        for (int i = 0; i < count; i++) {
+            if (isPropagated(tags, i)) {
+                int tagSize = encodedSize(tags, i);
+                if (size + tagSize <= SERIALIZED_SIZE_LIMIT) {
+                    size += tagSize;
+                }
+            }
+        }
+        if (size == 1) {
+            return EMPTY_BYTE_ARRAY;
+        }
+        byte[] bytes = new byte[size];
+        bytes[0] = VERSION_ID;
+        int offset = 1;
+        for (int i = 0; i < count; i++) {
+            if (isPropagated(tags, i)) {
+                int tagSize = encodedSize(tags, i);
+                // Same decision as in the first pass.
+                if (offset + tagSize <= SERIALIZED_SIZE_LIMIT) {
+                    bytes[offset++] = TAG_FIELD_ID;
+                    offset = putString(tags.getKey(i).getName(), bytes, offset);
+                    offset = putString(tags.getValue(i).asString(), bytes, offset);
+                }
+            }
+        }
+        return bytes;
+    }
+
+    @Override
+    public TagMap fromByteArray(byte[] bytes) {
+        Utils.checkNotNull(bytes, "bytes");
+        return fromByteBuffer(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Decodes a {@code TagMap} from the remaining bytes of the given buffer. The position of the
+     * buffer is advanced past the decoded bytes.
+     *
+     * @param buffer the buffer containing the encoded {@code TagMap}.
+     * @return the decoded {@code TagMap}, or an empty {@code TagMap} if the input is malformed.
+     */
+    public TagMap fromByteBuffer(ByteBuffer buffer) {
+        Utils.checkNotNull(buffer, "buffer");
+        if (!buffer.hasRemaining()
+            || buffer.remaining() > SERIALIZED_SIZE_LIMIT
+            || buffer.get() != VERSION_ID) {
+            return EmptyTagMap.INSTANCE;
+        }
+        TagMap.Builder builder = new TagMapSdk.Builder().setNoParent();
+        while (buffer.hasRemaining()) {
+            if (buffer.get() != TAG_FIELD_ID) {
+                // Unknown fields cannot be skipped because their length is unknown.
+                break;
+            }
+            int keyLength = getVarint(buffer);
+            if (keyLength < 0 || keyLength > buffer.remaining()) {
+                return EmptyTagMap.INSTANCE;
+            }
+            int keyStart = buffer.position();
+            buffer.position(keyStart + keyLength);
+            int valueLength = getVarint(buffer);
+            if (valueLength < 0 || valueLength > buffer.remaining()) {
+                return EmptyTagMap.INSTANCE;
+            }
+            int valueStart = buffer.position();
+            buffer.position(valueStart + valueLength);
+            if (keyLength == 0
+                || keyLength > TagKey.MAX_LENGTH
+                || valueLength > TagValue.MAX_LENGTH
+                || !isPrintable(buffer, keyStart, keyLength)
+                || !isPrintable(buffer, valueStart, valueLength)) {
+                continue;
+            }
+            builder.put(
+                TagKey.create(getString(buffer, keyStart, keyLength)),
+                TagValue.create(getString(buffer, valueStart, valueLength)),
+                Tag.METADATA_UNLIMITED_PROPAGATION);
+        }
+        return builder.build();
+    }
+
+    private static boolean isPropagated(TagMap tags, int index) {
+        return tags.getTagMetadata(index).getTagTtl() != TagTtl.NO_PROPAGATION;
+    }
+
+    private static int encodedSize(TagMap tags, int index) {
+        int keyLength = tags.getKey(index).getName().length();
+        int valueLength = tags.getValue(index).asString().length();
+        return 1 + varintSize(keyLength) + keyLength + varintSize(valueLength) + valueLength;
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    // Keys and values only contain printable ASCII characters, so each char is one byte.
+    private static int putString(String str, byte[] dest, int offset) {
+        int length = str.length();
+        int value = length;
+        while ((value & ~0x7F) != 0) {
+            dest[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        dest[offset++] = (byte) value;
+        for (int i = 0; i < length; i++) {
+            dest[offset++] = (byte) str.charAt(i);
+        }
+        return offset;
+    }
+
+    // Returns the decoded varint, or -1 if the varint is truncated or too long.
+    private static int getVarint(ByteBuffer buffer) {
+        int result = 0;
+        for (int i = 0; i < MAX_VARINT_SIZE && buffer.hasRemaining(); i++) {
+            byte b = buffer.get();
+            result |= (b & 0x7F) << (7 * i);
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isPrintable(ByteBuffer buffer, int start, int length) {
+        for (int i = start; i < start + length; i++) {
+            byte b = buffer.get(i);
+            if (b < ' ' || b > '~') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String getString(ByteBuffer buffer, int start, int length) {
+        if (buffer.hasArray()) {
+            return new String(
+                buffer.array(), buffer.arrayOffset() + start, length, StandardCharsets.US_ASCII);
+        }
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+}
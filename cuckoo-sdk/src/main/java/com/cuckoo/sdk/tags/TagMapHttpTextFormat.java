@@ -0,0 +1,203 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.tags;
+
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import com.cuckoo.context.propagation.HttpTextFormat;
+import com.cuckoo.internal.Utils;
+import com.cuckoo.tags.EmptyTagMap;
+import com.cuckoo.tags.Tag;
+import com.cuckoo.tags.TagKey;
+import com.cuckoo.tags.TagMap;
+import com.cuckoo.tags.TagMetadata.TagTtl;
+import com.cuckoo.tags.TagValue;
+
+/**
+ * Propagates a {@link TagMap} in the {@value #CORRELATION_CONTEXT} header as a comma-separated
+ * list of {@code key=value} pairs, e.g. {@code Correlation-Context: k1=v1,k2=v2}.
+ *
+ * <p>Tags with {@link TagTtl#NO_PROPAGATION} are not injected, and neither are tags whose key or
+ * value contain one of the {@code ",;="} delimiters. On extraction whitespace around keys and
+ * values is ignored, as are the optional {@code ;} properties of an entry and entries that are not
+ * valid tags.
+ *
+ * <p>Each thread remembers the last header it decoded. Requests from the same upstream usually
+ * carry identical headers, so extracting a header equal to the previous one returns the previously
+ * decoded {@code TagMap} without parsing it again.
+ *
+ * @since 0.0.1
+ */
+@Immutable
+public final class TagMapHttpTextFormat implements HttpTextFormat<TagMap> {
+    /** The name of the header used to propagate the tags. */
+    public static final String CORRELATION_CONTEXT = "Correlation-Context";
+
+    /** The maximum length of a header that is decoded. */
+    public static final int MAX_HEADER_LENGTH = 8192;
+
+    private static final List<String> FIELDS = Collections.singletonList(CORRELATION_CONTEXT);
+    private static final char ENTRY_DELIMITER = ',';
+    private static final char KEY_VALUE_DELIMITER = '=';
+    private static final char PROPERTIES_DELIMITER = ';';
+
+    private static final ThreadLocal<DecodedHeader> LAST_DECODED_HEADER =
+        new ThreadLocal<DecodedHeader>() {
+            @Override
+            protected DecodedHeader initialValue() {
+                return new DecodedHeader();
+            }
+        };
+
+    TagMapHttpTextFormat() {}
+
+    @Override
+    public List<String> fields() {
+        return FIELDS;
+    }
+
+    @Override
+    public <C> void inject(TagMap tagMap, C carrier, Setter<C> setter) {
+        Utils.checkNotNull(tagMap, "tagMap");
+        Utils.checkNotNull(carrier, "carrier");
+        Utils.checkNotNull(setter, "setter");
+        StringBuilder builder = null;
+        for (int i = 0; i < tagMap.size(); i++) {
+            String key = tagMap.getKey(i).getName();
+            String value = tagMap.getValue(i).asString();
+            if (tagMap.getTagMetadata(i).getTagTtl() == TagTtl.NO_PROPAGATION
+                || !isEncodable(key)
+                || !isEncodable(value)) {
+                continue;
+            }
+            if (builder == null) {
+                builder = new StringBuilder();
+            } else {
+                builder.append(ENTRY_DELIMITER);
+            }
+            builder.append(key).append(KEY_VALUE_DELIMITER).append(value);
+        }
+        if (builder != null) {
+            setter.put(carrier, CORRELATION_CONTEXT, builder.toString());
+        }
+    }
+
+    @Override
+    public <C> TagMap extract(C carrier, Getter<C> getter) {
+        Utils.checkNotNull(carrier, "carrier");
+        Utils.checkNotNull(getter, "getter");
+        String header = getter.get(carrier, CORRELATION_CONTEXT);
+        if (header == null || header.length() > MAX_HEADER_LENGTH) {
+            return EmptyTagMap.INSTANCE;
+        }
+        DecodedHeader last = LAST_DECODED_HEADER.get();
+        if (header.equals(last.header)) {
+            return last.tags;
+        }
+        TagMap tags = parse(header);
+        last.header = header;
+        last.tags = tags;
+        return tags;
+    }
+
+    // Parses the header without creating Strings for the entries that are not valid tags.
+    static TagMap parse(CharSequence header) {
+        TagMap.Builder builder = null;
+        int length = header.length();
+        int entryStart = 0;
+        while (entryStart < length) {
+            int entryEnd = indexOf(header, ENTRY_DELIMITER, entryStart, length);
+            int propertiesStart = indexOf(header, PROPERTIES_DELIMITER, entryStart, entryEnd);
+            int delimiter = indexOf(header, KEY_VALUE_DELIMITER, entryStart, propertiesStart);
+            if (delimiter < propertiesStart) {
+                int keyStart = skipWhitespace(header, entryStart, delimiter);
+                int keyEnd = trimWhitespace(header, keyStart, delimiter);
+                int valueStart = skipWhitespace(header, delimiter + 1, propertiesStart);
+                int valueEnd = trimWhitespace(header, valueStart, propertiesStart);
+                if (keyEnd > keyStart
+                    && keyEnd - keyStart <= TagKey.MAX_LENGTH
+                    && valueEnd - valueStart <= TagValue.MAX_LENGTH
+                    && isPrintable(header, keyStart, keyEnd)
+                    && isPrintable(header, valueStart, valueEnd)) {
+                    if (builder == null) {
+                        builder = new TagMapSdk.Builder().setNoParent();
+                    }
+                    builder.put(
+                        TagKey.create(header.subSequence(keyStart, keyEnd).toString()),
+                        TagValue.create(header.subSequence(valueStart, valueEnd).toString()),
+                        Tag.METADATA_UNLIMITED_PROPAGATION);
+                }
+            }
+            entryStart = entryEnd + 1;
+        }
+        return builder == null ? EmptyTagMap.INSTANCE : builder.build();
+    }
+
+    private static boolean isEncodable(String str) {
+        return str.indexOf(ENTRY_DELIMITER) < 0
+            && str.indexOf(KEY_VALUE_DELIMITER) < 0
+            && str.indexOf(PROPERTIES_DELIMITER) < 0;
+    }
+
+    // Returns the index of the first ch in [start, end), or end if there is none.
+    private static int indexOf(CharSequence chars, char ch, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (chars.charAt(i) == ch) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    private static int skipWhitespace(CharSequence chars, int start, int end) {
+        while (start < end && isWhitespace(chars.charAt(start))) {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimWhitespace(CharSequence chars, int start, int end) {
+        while (end > start && isWhitespace(chars.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+
+    private static boolean isWhitespace(char ch) {
+        return ch == ' ' || ch == '\t';
+    }
+
+    private static boolean isPrintable(CharSequence chars, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char ch = chars.charAt(i);
+            if (ch < ' ' || ch > '~') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // The last header decoded by a thread.
+    private static final class DecodedHeader {
+        @Nullable
+        String header;
+        TagMap tags = EmptyTagMap.INSTANCE;
+    }
+}
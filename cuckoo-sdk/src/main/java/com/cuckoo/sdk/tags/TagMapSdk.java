@@ -0,0 +1,426 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.tags;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import com.cuckoo.context.Scope;
+import com.cuckoo.internal.Utils;
+import com.cuckoo.tags.EmptyTagMap;
+import com.cuckoo.tags.Tag;
+import com.cuckoo.tags.TagKey;
+import com.cuckoo.tags.TagMap;
+import com.cuckoo.tags.TagMetadata;
+import com.cuckoo.tags.TagValue;
+import com.cuckoo.tags.unsafe.ContextUtils;
+
+/**
+ * An immutable {@link TagMap} that stores its tags in flat arrays sorted by key name.
+ *
+ * <p>Each tag occupies {@code 3} consecutive slots of an array: the {@link TagKey}, the {@link
+ * TagValue} and the {@link TagMetadata}. Lookups use a binary search over the key names, and the
+ * hash code is computed once at construction so instances are cheap to use as aggregation keys.
+ *
+ * <p>A {@code TagMapSdk} built from a {@code TagMapSdk} parent only stores the changes made on top
+ * of the parent (a removed key is stored as an entry without value) and shares the parent for
+ * everything else, so adding a tag to a deeply inherited {@code TagMap} does not copy the inherited
+ * tags. Once the chain of parents reaches {@link #MAX_DEPTH} the tags are flattened into a single
+ * array again, which bounds the cost of a lookup.
+ */
+@Immutable
+public final class TagMapSdk implements TagMap {
+    // Maximum number of delta maps chained on top of a flat map.
+    static final int MAX_DEPTH = 8;
+
+    private static final int ENTRY_SIZE = 3;
+    private static final int KEY_OFFSET = 0;
+    private static final int VALUE_OFFSET = 1;
+    private static final int METADATA_OFFSET = 2;
+    private static final Object[] EMPTY_ENTRIES = {};
+
+    private static final Comparator<TagKey> TAG_KEY_ORDER = new Comparator<TagKey>() {
+        @Override
+        public int compare(TagKey key1, TagKey key2) {
+            return key1.getName().compareTo(key2.getName());
+        }
+    };
+
+    // The map this map is a delta of, or null if the entries hold all the tags.
+    @Nullable
+    private final TagMapSdk parent;
+    // Layout: [key0, value0, metadata0, key1, value1, metadata1, ...] sorted by key name. In a
+    // delta map a null value marks a key removed from the parent.
+    private final Object[] entries;
+    private final int depth;
+    private final int size;
+    private final int hashCode;
+    // All the tags of a delta map merged into one array, computed on first use.
+    @Nullable
+    private volatile Object[] flatEntries;
+
+    private TagMapSdk(Object[] entries) {
+        this.parent = null;
+        this.entries = entries;
+        this.depth = 0;
+        this.size = entries.length / ENTRY_SIZE;
+        this.hashCode = computeHashCode(entries);
+        this.flatEntries = entries;
+    }
+
+    private TagMapSdk(TagMapSdk parent, Object[] delta, int size, int hashCode) {
+        this.parent = parent;
+        this.entries = delta;
+        this.depth = parent.depth + 1;
+        this.size = size;
+        this.hashCode = hashCode;
+    }
+
+    @Override
+    public Iterator<Tag> getIterator() {
+        return new TagIterator(getFlatEntries());
+    }
+
+    @Nullable
+    @Override
+    public TagValue getTagValue(TagKey tagKey) {
+        String name = tagKey.getName();
+        for (TagMapSdk map = this; map != null; map = map.parent) {
+            int index = indexOf(map.entries, name);
+            if (index >= 0) {
+                return (TagValue) map.entries[index + VALUE_OFFSET];
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public TagKey getKey(int index) {
+        Utils.checkIndex(index, size);
+        return (TagKey) getFlatEntries()[index * ENTRY_SIZE + KEY_OFFSET];
+    }
+
+    @Override
+    public TagValue getValue(int index) {
+        Utils.checkIndex(index, size);
+        return (TagValue) getFlatEntries()[index * ENTRY_SIZE + VALUE_OFFSET];
+    }
+
+    @Override
+    public TagMetadata getTagMetadata(int index) {
+        Utils.checkIndex(index, size);
+        return (TagMetadata) getFlatEntries()[index * ENTRY_SIZE + METADATA_OFFSET];
+    }
+
+    @Override
+    public void forEach(TagConsumer consumer) {
+        Utils.checkNotNull(consumer, "consumer");
+        Object[] entries = getFlatEntries();
+        for (int i = 0; i < entries.length; i += ENTRY_SIZE) {
+            consumer.accept(
+                (TagKey) entries[i + KEY_OFFSET],
+                (TagValue) entries[i + VALUE_OFFSET],
+                (TagMetadata) entries[i + METADATA_OFFSET]);
+        }
+    }
+
+    // Returns the number of delta maps between this map and a flat map. Visible for testing.
+    int getDepth() {
+        return depth;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof TagMapSdk)) {
+            return false;
+        }
+        TagMapSdk that = (TagMapSdk) obj;
+        return hashCode == that.hashCode
+            && size == that.size
+            && Arrays.equals(getFlatEntries(), that.getFlatEntries());
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        Object[] entries = getFlatEntries();
+        StringBuilder builder = new StringBuilder("TagMapSdk{tags=[");
+        for (int i = 0; i < entries.length; i += ENTRY_SIZE) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(((TagKey) entries[i + KEY_OFFSET]).getName())
+                .append('=')
+                .append(((TagValue) entries[i + VALUE_OFFSET]).asString());
+        }
+        return builder.append("]}").toString();
+    }
+
+    private Object[] getFlatEntries() {
+        Object[] result = flatEntries;
+        if (result == null) {
+            // Benign race, concurrent callers compute equal arrays.
+            result = merge(parent.getFlatEntries(), entries, size);
+            flatEntries = result;
+        }
+        return result;
+    }
+
+    // Returns a map with the sorted delta applied on top of this map.
+    private TagMap withDelta(Object[] delta) {
+        int newSize = size;
+        int newHashCode = hashCode;
+        int changed = 0;
+        for (int i = 0; i < delta.length; i += ENTRY_SIZE) {
+            TagKey key = (TagKey) delta[i + KEY_OFFSET];
+            TagValue value = (TagValue) delta[i + VALUE_OFFSET];
+            TagValue previous = getTagValue(key);
+            if (previous != null) {
+                newSize--;
+                newHashCode -= entryHashCode(key, previous);
+            }
+            if (value != null) {
+                newSize++;
+                newHashCode += entryHashCode(key, value);
+            }
+            if (previous != null || value != null) {
+                changed++;
+            }
+        }
+        if (changed == 0) {
+            return this;
+        }
+        if (newSize == 0) {
+            return EmptyTagMap.INSTANCE;
+        }
+        if (depth >= MAX_DEPTH) {
+            return new TagMapSdk(merge(getFlatEntries(), delta, newSize));
+        }
+        return new TagMapSdk(this, delta, newSize, newHashCode);
+    }
+
+    // Returns the index of the first slot of the entry with the given key name, or a negative
+    // value if there is no such entry.
+    private static int indexOf(Object[] entries, String name) {
+        int low = 0;
+        int high = entries.length / ENTRY_SIZE - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = ((TagKey) entries[mid * ENTRY_SIZE + KEY_OFFSET]).getName().compareTo(name);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid * ENTRY_SIZE;
+            }
+        }
+        return -1;
+    }
+
+    // The hash code is the sum of the hash codes of the (key, value) pairs so it does not depend
+    // on how the entries were added and can be updated incrementally for delta maps.
+    private static int computeHashCode(Object[] entries) {
+        int result = 0;
+        for (int i = 0; i < entries.length; i += ENTRY_SIZE) {
+            result += entryHashCode((TagKey) entries[i + KEY_OFFSET],
+                (TagValue) entries[i + VALUE_OFFSET]);
+        }
+        return result;
+    }
+
+    private static int entryHashCode(TagKey key, TagValue value) {
+        return 31 * key.hashCode() + value.hashCode();
+    }
+
+    // Merges the sorted base entries with the sorted delta into an array of the given number of
+    // tags. A delta entry always wins over the base entry with the same key.
+    private static Object[] merge(Object[] base, Object[] delta, int size) {
+        Object[] result = new Object[size * ENTRY_SIZE];
+        int r = 0;
+        int b = 0;
+        int d = 0;
+        while (b < base.length || d < delta.length) {
+            int cmp;
+            if (b >= base.length) {
+                cmp = 1;
+            } else if (d >= delta.length) {
+                cmp = -1;
+            } else {
+                cmp = ((TagKey) base[b + KEY_OFFSET]).getName()
+                    .compareTo(((TagKey) delta[d + KEY_OFFSET]).getName());
+            }
+            if (cmp < 0) {
+                System.arraycopy(base, b, result, r, ENTRY_SIZE);
+                r += ENTRY_SIZE;
+                b += ENTRY_SIZE;
+            } else {
+                if (delta[d + VALUE_OFFSET] != null) {
+                    System.arraycopy(delta, d, result, r, ENTRY_SIZE);
+                    r += ENTRY_SIZE;
+                }
+                d += ENTRY_SIZE;
+                if (cmp == 0) {
+                    b += ENTRY_SIZE;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static final class TagIterator implements Iterator<Tag> {
+        private final Object[] entries;
+        private int index;
+
+        TagIterator(Object[] entries) {
+            this.entries = entries;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index < entries.length;
+        }
+
+        @Override
+        public Tag next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Tag tag = Tag.create(
+                (TagKey) entries[index + KEY_OFFSET],
+                (TagValue) entries[index + VALUE_OFFSET],
+                (TagMetadata) entries[index + METADATA_OFFSET]);
+            index += ENTRY_SIZE;
+            return tag;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("remove");
+        }
+    }
+
+    /**
+     * Builder for the {@link TagMapSdk} class.
+     */
+    static final class Builder implements TagMap.Builder {
+        @Nullable
+        private TagMap parent;
+        private boolean noImplicitParent;
+
+        // The changes applied on top of the parent. A null value marks a removed key.
+        private final Map<TagKey, Tag> changes = new HashMap<>();
+
+        @Override
+        public TagMap.Builder setParent(TagMap parent) {
+            this.parent = Utils.checkNotNull(parent, "parent");
+            return this;
+        }
+
+        @Override
+        public TagMap.Builder setNoParent() {
+            this.parent = null;
+            this.noImplicitParent = true;
+            return this;
+        }
+
+        @Override
+        public TagMap.Builder put(TagKey key, TagValue value, TagMetadata tagMetadata) {
+            changes.put(
+                Utils.checkNotNull(key, "key"),
+                Tag.create(
+                    key,
+                    Utils.checkNotNull(value, "value"),
+                    Utils.checkNotNull(tagMetadata, "tagMetadata")));
+            return this;
+        }
+
+        @Override
+        public TagMap.Builder remove(TagKey key) {
+            changes.put(Utils.checkNotNull(key, "key"), null);
+            return this;
+        }
+
+        @Override
+        public TagMap build() {
+            TagMap parent = this.parent;
+            if (parent == null && !noImplicitParent) {
+                parent = ContextUtils.getValue();
+            }
+            if (parent instanceof TagMapSdk) {
+                return ((TagMapSdk) parent).withDelta(toDelta(changes));
+            }
+            Map<TagKey, Tag> tags = new HashMap<>();
+            if (parent != null) {
+                for (int i = 0; i < parent.size(); i++) {
+                    TagKey key = parent.getKey(i);
+                    tags.put(key, Tag.create(key, parent.getValue(i), parent.getTagMetadata(i)));
+                }
+            }
+            for (Map.Entry<TagKey, Tag> change : changes.entrySet()) {
+                if (change.getValue() == null) {
+                    tags.remove(change.getKey());
+                } else {
+                    tags.put(change.getKey(), change.getValue());
+                }
+            }
+            return tags.isEmpty() ? EmptyTagMap.INSTANCE : new TagMapSdk(toDelta(tags));
+        }
+
+        @Override
+        public Scope buildScoped() {
+            return ContextUtils.withTagMap(build());
+        }
+
+        // Converts the changes to entries sorted by key name.
+        private static Object[] toDelta(Map<TagKey, Tag> changes) {
+            if (changes.isEmpty()) {
+                return EMPTY_ENTRIES;
+            }
+            TagKey[] keys = changes.keySet().toArray(new TagKey[0]);
+            Arrays.sort(keys, TAG_KEY_ORDER);
+            Object[] delta = new Object[keys.length * ENTRY_SIZE];
+            for (int i = 0; i < keys.length; i++) {
+                Tag tag = changes.get(keys[i]);
+                delta[i * ENTRY_SIZE + KEY_OFFSET] = keys[i];
+                if (tag != null) {
+                    delta[i * ENTRY_SIZE + VALUE_OFFSET] = tag.getValue();
+                    delta[i * ENTRY_SIZE + METADATA_OFFSET] = tag.getTagMetadata();
+                }
+            }
+            return delta;
+        }
+    }
+}
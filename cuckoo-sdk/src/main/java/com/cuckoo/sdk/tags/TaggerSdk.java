@@ -0,0 +1,62 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.tags;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.cuckoo.context.Scope;
+import com.cuckoo.context.propagation.BinaryFormat;
+import com.cuckoo.context.propagation.HttpTextFormat;
+import com.cuckoo.tags.TagMap;
+import com.cuckoo.tags.Tagger;
+import com.cuckoo.tags.unsafe.ContextUtils;
+
+/**
+ * {@link Tagger} implementation that builds {@link TagMapSdk} instances.
+ *
+ * @since 0.0.1
+ */
+@ThreadSafe
+public final class TaggerSdk implements Tagger {
+    private static final BinaryFormat<TagMap> BINARY_FORMAT = new TagMapBinaryFormat();
+    private static final HttpTextFormat<TagMap> HTTP_TEXT_FORMAT = new TagMapHttpTextFormat();
+
+    @Override
+    public TagMap getCurrentTagMap() {
+        return ContextUtils.getValue();
+    }
+
+    @Override
+    public TagMap.Builder tagMapBuilder() {
+        return new TagMapSdk.Builder();
+    }
+
+    @Override
+    public Scope withTagMap(TagMap tags) {
+        return ContextUtils.withTagMap(tags);
+    }
+
+    @Override
+    public BinaryFormat<TagMap> getBinaryFormat() {
+        return BINARY_FORMAT;
+    }
+
+    @Override
+    public HttpTextFormat<TagMap> getHttpTextFormat() {
+        return HTTP_TEXT_FORMAT;
+    }
+}
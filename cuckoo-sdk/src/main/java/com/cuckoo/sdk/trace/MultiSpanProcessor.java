@@ -0,0 +1,133 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.trace;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.concurrent.Immutable;
+
+import com.cuckoo.internal.Utils;
+import com.cuckoo.trace.Span;
+import com.cuckoo.trace.SpanData;
+
+/**
+ * {@link SpanProcessor} that forwards all the calls to a list of processors, in order.
+ *
+ * <p>The processors are kept in plain arrays that are iterated by index. The processors that need
+ * {@link #onStart(Span)} are also kept in a separate array, so starting a span does not visit the
+ * processors that only need {@link #onEnd(SpanData)}.
+ *
+ * <p>It only recycles spans if it has a single processor, which recycles them: a span recycled
+ * by one processor could still be read by another.
+ *
+ * @since 0.0.1
+ */
+@Immutable
+public final class MultiSpanProcessor implements SpanProcessor {
+    private static final MultiSpanProcessor EMPTY = new MultiSpanProcessor(new SpanProcessor[0]);
+
+    private final SpanProcessor[] processors;
+    private final SpanProcessor[] startProcessors;
+    private final boolean recyclesSpans;
+
+    private MultiSpanProcessor(SpanProcessor[] processors) {
+        this.processors = processors;
+        this.recyclesSpans = processors.length == 1 && processors[0].recyclesSpans();
+        List<SpanProcessor> start = new ArrayList<SpanProcessor>(processors.length);
+        for (SpanProcessor processor : processors) {
+            if (processor.isStartRequired()) {
+                start.add(processor);
+            }
+        }
+        this.startProcessors = start.toArray(new SpanProcessor[0]);
+    }
+
+    /**
+     * Returns a {@code MultiSpanProcessor} that forwards the calls to the given processors, in
+     * order.
+     *
+     * @param processors the processors to forward the calls to.
+     * @return a {@code MultiSpanProcessor} for the given processors.
+     * @throws NullPointerException if the list or one of its elements is {@code null}.
+     * @since 0.0.1
+     */
+    public static MultiSpanProcessor create(List<SpanProcessor> processors) {
+        Utils.checkListElementNotNull(Utils.checkNotNull(processors, "processors"), "processor");
+        if (processors.isEmpty()) {
+            return EMPTY;
+        }
+        return new MultiSpanProcessor(processors.toArray(new SpanProcessor[0]));
+    }
+
+    /**
+     * Returns a {@code MultiSpanProcessor} with the processors of this one followed by the given
+     * processor.
+     *
+     * @param processor the processor to add.
+     * @return a new {@code MultiSpanProcessor}.
+     * @throws NullPointerException if {@code processor} is {@code null}.
+     */
+    MultiSpanProcessor add(SpanProcessor processor) {
+        Utils.checkNotNull(processor, "processor");
+        SpanProcessor[] result = new SpanProcessor[processors.length + 1];
+        System.arraycopy(processors, 0, result, 0, processors.length);
+        result[processors.length] = processor;
+        return new MultiSpanProcessor(result);
+    }
+
+    static MultiSpanProcessor empty() {
+        return EMPTY;
+    }
+
+    @Override
+    public void onStart(Span span) {
+        for (int i = 0; i < startProcessors.length; i++) {
+            startProcessors[i].onStart(span);
+        }
+    }
+
+    @Override
+    public boolean isStartRequired() {
+        return startProcessors.length > 0;
+    }
+
+    @Override
+    public void onEnd(SpanData spanData) {
+        for (int i = 0; i < processors.length; i++) {
+            processors[i].onEnd(spanData);
+        }
+    }
+
+    @Override
+    public boolean recyclesSpans() {
+        return recyclesSpans;
+    }
+
+    @Override
+    public void forceFlush() {
+        for (int i = 0; i < processors.length; i++) {
+            processors[i].forceFlush();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        for (int i = 0; i < processors.length; i++) {
+            processors[i].shutdown();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.trace;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.cuckoo.trace.AttributeValue;
+import com.cuckoo.trace.Event;
+import com.cuckoo.trace.Link;
+
+/**
+ * The arrays in which a {@link RecordingSpan} records its values, reused by a later span once the
+ * {@code SpanData} of the span has been exported.
+ *
+ * <p>The arrays are taken from the {@link Pool} of the thread that starts the span, and given
+ * back to it by {@link #recycle(int)}. The generation is incremented each time the arrays are
+ * recycled: the span and the views of its {@code SpanData} remember the generation they were
+ * created with, so that a late write to the span is ignored and a late read of its
+ * {@code SpanData} fails, instead of reaching the values of the span that reuses the arrays.
+ */
+@ThreadSafe
+final class RecordArrays {
+    private static final AtomicIntegerFieldUpdater<RecordArrays> GENERATION_UPDATER =
+        AtomicIntegerFieldUpdater.newUpdater(RecordArrays.class, "generation");
+
+    private final Pool pool;
+    private volatile int generation;
+    // The arrays of the last span, or null if no span used them yet. They are written when the span
+    // ends and read when the next span starts, both of which are ordered by the pool.
+    @Nullable
+    String[] attributeKeys;
+    @Nullable
+    AttributeValue[] attributeValues;
+    @Nullable
+    Event[] events;
+    @Nullable
+    long[] eventNanos;
+    @Nullable
+    Link[] links;
+    // The next arrays in the stack of the pool.
+    @Nullable
+    private RecordArrays next;
+
+    private RecordArrays(Pool pool) {
+        this.pool = pool;
+    }
+
+    int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Clears the arrays and returns them to their pool, unless they were already recycled since
+     * the given generation.
+     *
+     * @param expectedGeneration the generation of the span that used the arrays.
+     */
+    void recycle(int expectedGeneration) {
+        if (!GENERATION_UPDATER.compareAndSet(this, expectedGeneration, expectedGeneration + 1)) {
+            return;
+        }
+        if (attributeKeys != null) {
+            // Does not keep the values of the span reachable.
+            Arrays.fill(attributeKeys, null);
+            Arrays.fill(attributeValues, null);
+            Arrays.fill(events, null);
+            Arrays.fill(links, null);
+        }
+        pool.push(this);
+    }
+
+    /**
+     * Throws if the arrays were recycled since the given generation.
+     *
+     * @param arrays the arrays read by a view, or {@code null} if they are never recycled.
+     * @param generation the generation of the span that created the view.
+     * @throws IllegalStateException if the arrays were recycled.
+     */
+    static void checkNotRecycled(@Nullable RecordArrays arrays, int generation) {
+        if (arrays != null && arrays.generation != generation) {
+            throw new IllegalStateException("SpanData used after its span was recycled.");
+        }
+    }
+
+    /**
+     * The recycled arrays of the spans started by one thread.
+     *
+     * <p>Arrays are recycled by other threads, which push them onto a lock-free stack. The owner
+     * takes the whole stack at once when the arrays it took before are used up, so that no thread
+     * ever pops a single element and the stack is not exposed to the ABA problem. The pool holds
+     * at most as many arrays as the thread had spans waiting for their export.
+     */
+    @ThreadSafe
+    static final class Pool {
+        private final AtomicReference<RecordArrays> recycled = new AtomicReference<RecordArrays>();
+        // The arrays taken from the stack that are not used yet. Only read by the owner.
+        @Nullable
+        private RecordArrays free;
+
+        /** Returns recycled arrays, or new ones if none is available. Only called by the owner. */
+        RecordArrays acquire() {
+            RecordArrays arrays = free;
+            if (arrays == null && recycled.get() != null) {
+                arrays = recycled.getAndSet(null);
+            }
+            if (arrays == null) {
+                return new RecordArrays(this);
+            }
+            free = arrays.next;
+            arrays.next = null;
+            return arrays;
+        }
+
+        private void push(RecordArrays arrays) {
+            RecordArrays head;
+            do {
+                head = recycled.get();
+                arrays.next = head;
+            } while (!recycled.compareAndSet(head, arrays));
+        }
+    }
+}
@@ -0,0 +1,467 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.trace;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.cuckoo.common.Supplier;
+import com.cuckoo.internal.Utils;
+import com.cuckoo.resources.Resource;
+import com.cuckoo.trace.AttributeValue;
+import com.cuckoo.trace.Event;
+import com.cuckoo.trace.Link;
+import com.cuckoo.trace.Span;
+import com.cuckoo.trace.SpanContext;
+import com.cuckoo.trace.SpanData;
+import com.cuckoo.trace.SpanData.Timestamp;
+import com.cuckoo.trace.SpanId;
+import com.cuckoo.trace.Status;
+
+/**
+ * A {@link Span} that records its attributes, events and links, and produces a {@link SpanData}
+ * when it ends.
+ *
+ * <p>Almost all spans are only written by the thread that started them, so that thread is the
+ * owner of the span: it records values with plain writes, after checking that it is the owner and
+ * that no other thread has recorded values since its last write. Other threads record values
+ * under a lock into a separate record, which the owner merges into its own before its next write,
+ * and which is merged when the span ends. Only the owner ever writes its own record.
+ *
+ * <p>{@link #end()} freezes the recorded values once, and the {@code SpanData} returned by {@link
+ * #toSpanData()} reads them without copying them when the owner ends the span. When another
+ * thread ends it, the values are copied under the lock instead, so that a write of the owner that
+ * is concurrent with the end cannot change the frozen {@code SpanData}; such a write may be
+ * dropped. Values recorded after the end are ignored. The {@code SpanData} is passed to the
+ * {@link SpanProcessor} of the span on the thread that ends it.
+ *
+ * <p>When its {@link TracerSdk} recycles spans, the span records its values into arrays that a
+ * previous span of the same thread used, and that are reused by a later span once {@link
+ * #recycle(SpanData)} is called for its {@code SpanData}. The generation of the arrays then
+ * changes, so values recorded on the span afterwards are ignored and reading its {@code SpanData}
+ * throws an {@link IllegalStateException}.
+ *
+ * @since 0.0.1
+ */
+@ThreadSafe
+public final class RecordingSpan extends SpanRecord implements Span {
+    private static final long NANOS_PER_SECOND = 1000 * 1000 * 1000;
+    private static final AtomicIntegerFieldUpdater<RecordingSpan> ENDED_UPDATER =
+        AtomicIntegerFieldUpdater.newUpdater(RecordingSpan.class, "ended");
+
+    private final SpanContext context;
+    @Nullable
+    private final SpanId parentSpanId;
+    private final Kind kind;
+    private final Resource resource;
+    private final long startEpochNanos;
+    private final long startNanoTime;
+    private final Thread owner;
+    private final SpanProcessor spanProcessor;
+    @Nullable
+    private final RecordArrays arrays;
+    // The generation of the arrays while this span uses them.
+    private final int generation;
+    // The values recorded by other threads.
+    @GuardedBy("this")
+    @Nullable
+    private SpanRecord pending;
+    private volatile boolean hasPending;
+    // 1 once the span has ended.
+    private volatile int ended;
+    @Nullable
+    private volatile SpanData spanData;
+
+    private RecordingSpan(
+        SpanContext context,
+        @Nullable SpanId parentSpanId,
+        String name,
+        Kind kind,
+        Resource resource,
+        long startEpochNanos,
+        SpanProcessor spanProcessor,
+        @Nullable RecordArrays arrays) {
+        super(name);
+        this.context = context;
+        this.parentSpanId = parentSpanId;
+        this.kind = kind;
+        this.resource = resource;
+        this.startEpochNanos = startEpochNanos;
+        this.startNanoTime = System.nanoTime();
+        this.owner = Thread.currentThread();
+        this.spanProcessor = spanProcessor;
+        this.arrays = arrays;
+        if (arrays != null) {
+            generation = arrays.getGeneration();
+            loadArrays(arrays);
+        } else {
+            generation = 0;
+        }
+    }
+
+    /**
+     * Starts a {@code RecordingSpan} owned by the current thread.
+     *
+     * @param context the {@code SpanContext} of the span.
+     * @param parentSpanId the {@code SpanId} of the parent, or {@code null} for a root span.
+     * @param name the name of the span.
+     * @param kind the kind of the span.
+     * @param resource the resource the span is executed on.
+     * @param startEpochNanos the start time of the span, in nanoseconds since the epoch.
+     * @param spanProcessor the processor that is called when the span ends.
+     * @return the started span.
+     */
+    static RecordingSpan startSpan(
+        SpanContext context,
+        @Nullable SpanId parentSpanId,
+        String name,
+        Kind kind,
+        Resource resource,
+        long startEpochNanos,
+        SpanProcessor spanProcessor) {
+        return startSpan(
+            context, parentSpanId, name, kind, resource, startEpochNanos, spanProcessor, null);
+    }
+
+    /**
+     * Starts a {@code RecordingSpan} owned by the current thread, which records its values into
+     * the given recycled arrays.
+     *
+     * @param context the {@code SpanContext} of the span.
+     * @param parentSpanId the {@code SpanId} of the parent, or {@code null} for a root span.
+     * @param name the name of the span.
+     * @param kind the kind of the span.
+     * @param resource the resource the span is executed on.
+     * @param startEpochNanos the start time of the span, in nanoseconds since the epoch.
+     * @param spanProcessor the processor that is called when the span ends.
+     * @param arrays the arrays of the span, or {@code null} if the span is not recycled.
+     * @return the started span.
+     */
+    static RecordingSpan startSpan(
+        SpanContext context,
+        @Nullable SpanId parentSpanId,
+        String name,
+        Kind kind,
+        Resource resource,
+        long startEpochNanos,
+        SpanProcessor spanProcessor,
+        @Nullable RecordArrays arrays) {
+        return new RecordingSpan(
+            context, parentSpanId, name, kind, resource, startEpochNanos, spanProcessor, arrays);
+    }
+
+    /**
+     * Recycles the arrays of the span that recorded the given {@code SpanData}, so that a later
+     * span reuses them. Span processors call this once the {@code SpanData} has been exported and
+     * is not used anymore. Does nothing if the span is not recycled or was already recycled.
+     *
+     * @param spanData the {@code SpanData} that is not used anymore.
+     * @throws NullPointerException if {@code spanData} is {@code null}.
+     * @since 0.0.1
+     */
+    public static void recycle(SpanData spanData) {
+        SpanRecord.recycle(Utils.checkNotNull(spanData, "spanData"));
+    }
+
+    @Override
+    public void setAttribute(String key, String value) {
+        setAttribute(key, AttributeValue.stringAttributeValue(value));
+    }
+
+    @Override
+    public void setAttribute(String key, long value) {
+        setAttribute(key, AttributeValue.longAttributeValue(value));
+    }
+
+    @Override
+    public void setAttribute(String key, double value) {
+        setAttribute(key, AttributeValue.doubleAttributeValue(value));
+    }
+
+    @Override
+    public void setAttribute(String key, boolean value) {
+        setAttribute(key, AttributeValue.booleanAttributeValue(value));
+    }
+
+    @Override
+    public void setAttribute(String key, AttributeValue value) {
+        Utils.checkNotNull(key, "key");
+        Utils.checkNotNull(value, "value");
+        if (isOwner()) {
+            if (isRecording()) {
+                recordAttribute(key, value);
+            }
+            return;
+        }
+        synchronized (this) {
+            if (isRecording()) {
+                pending().recordAttribute(key, value);
+            }
+        }
+    }
+
+    @Override
+    public void setAttribute(String key, Supplier<AttributeValue> value) {
+        Utils.checkNotNull(value, "value");
+        if (isRecording()) {
+            setAttribute(key, value.get());
+        }
+    }
+
+    @Override
+    public void addEvent(String name) {
+        addEvent(SpanData.Event.create(Utils.checkNotNull(name, "name")));
+    }
+
+    @Override
+    public void addEvent(String name, Map<String, AttributeValue> attributes) {
+        Utils.checkNotNull(name, "name");
+        addEvent(SpanData.Event.create(name, attributes));
+    }
+
+    @Override
+    public void addEvent(Event event) {
+        Utils.checkNotNull(event, "event");
+        long nanoTime = System.nanoTime();
+        if (isOwner()) {
+            if (isRecording()) {
+                recordEvent(event, nanoTime);
+            }
+            return;
+        }
+        synchronized (this) {
+            if (isRecording()) {
+                pending().recordEvent(event, nanoTime);
+            }
+        }
+    }
+
+    @Override
+    public void addEvent(String name, Supplier<Map<String, AttributeValue>> attributes) {
+        Utils.checkNotNull(name, "name");
+        Utils.checkNotNull(attributes, "attributes");
+        if (isRecording()) {
+            addEvent(SpanData.Event.create(name, attributes.get()));
+        }
+    }
+
+    @Override
+    public void addEvent(Supplier<Event> event) {
+        Utils.checkNotNull(event, "event");
+        if (isRecording()) {
+            addEvent(event.get());
+        }
+    }
+
+    @Override
+    public void addLink(SpanContext spanContext) {
+        addLink(Link.create(Utils.checkNotNull(spanContext, "spanContext")));
+    }
+
+    @Override
+    public void addLink(SpanContext spanContext, Map<String, AttributeValue> attributes) {
+        Utils.checkNotNull(spanContext, "spanContext");
+        Utils.checkNotNull(attributes, "attributes");
+        addLink(Link.create(spanContext, attributes));
+    }
+
+    @Override
+    public void addLink(Link link) {
+        Utils.checkNotNull(link, "link");
+        if (isOwner()) {
+            if (isRecording()) {
+                recordLink(link);
+            }
+            return;
+        }
+        synchronized (this) {
+            if (isRecording()) {
+                pending().recordLink(link);
+            }
+        }
+    }
+
+    @Override
+    public void setStatus(Status status) {
+        Utils.checkNotNull(status, "status");
+        if (isOwner()) {
+            if (isRecording()) {
+                recordStatus(status);
+            }
+            return;
+        }
+        synchronized (this) {
+            if (isRecording()) {
+                pending().recordStatus(status);
+            }
+        }
+    }
+
+    @Override
+    public void updateName(String name) {
+        Utils.checkNotNull(name, "name");
+        if (isOwner()) {
+            if (isRecording()) {
+                recordName(name);
+            }
+            return;
+        }
+        synchronized (this) {
+            if (isRecording()) {
+                pending().recordName(name);
+            }
+        }
+    }
+
+    @Override
+    public void end() {
+        long endNanoTime = System.nanoTime();
+        if (Thread.currentThread() != owner) {
+            endOnOtherThread(endNanoTime);
+            return;
+        }
+        // A span whose arrays were recycled must not store them again.
+        if (!isRecording() || !ENDED_UPDATER.compareAndSet(this, 0, 1)) {
+            return;
+        }
+        if (hasPending) {
+            mergePending();
+        }
+        if (arrays != null) {
+            storeArrays(arrays);
+        }
+        freeze(this, arrays, endNanoTime);
+    }
+
+    // The owner may still be writing its record, so its values are copied rather than read by
+    // the SpanData. The copy does not use the recycled arrays, which are left to the owner.
+    private void endOnOtherThread(long endNanoTime) {
+        SpanRecord record;
+        synchronized (this) {
+            if (!isRecording() || !ENDED_UPDATER.compareAndSet(this, 0, 1)) {
+                return;
+            }
+            record = new SpanRecord(null);
+            mergeInto(record);
+            if (pending != null) {
+                pending.mergeInto(record);
+                pending = null;
+                hasPending = false;
+            }
+        }
+        freeze(record, null, endNanoTime);
+    }
+
+    // Creates the SpanData that reads the values of the given record, and passes it to the
+    // processor.
+    private void freeze(SpanRecord record, @Nullable RecordArrays arrays, long endNanoTime) {
+        String name = record.getRecordedName();
+        Status status = record.getRecordedStatus();
+        SpanData data =
+            SpanData.createWithoutCopy(
+                context,
+                parentSpanId,
+                resource,
+                name == null ? "" : name,
+                kind,
+                toTimestamp(startEpochNanos),
+                record.attributes(arrays, generation),
+                record.events(startEpochNanos, startNanoTime, arrays, generation),
+                record.links(arrays, generation),
+                status == null ? Status.OK : status,
+                toTimestamp(startEpochNanos + endNanoTime - startNanoTime));
+        spanData = data;
+        spanProcessor.onEnd(data);
+    }
+
+    @Override
+    public SpanContext getContext() {
+        return context;
+    }
+
+    @Override
+    public boolean isRecordingEvents() {
+        return true;
+    }
+
+    /**
+     * Returns whether {@link #end()} has been called.
+     *
+     * @return {@code true} if the span has ended.
+     */
+    public boolean hasEnded() {
+        return ended != 0;
+    }
+
+    /**
+     * Returns the values recorded by this span, which are only available once it has ended.
+     *
+     * @return the values recorded by this span, or {@code null} if it has not ended yet.
+     */
+    @Nullable
+    public SpanData toSpanData() {
+        return spanData;
+    }
+
+    // Returns whether values may still be recorded. The generation only changes once the span has
+    // ended and been exported, and stops writes that raced with end() on another thread from
+    // reaching the span that reuses the arrays.
+    private boolean isRecording() {
+        return ended == 0 && (arrays == null || arrays.getGeneration() == generation);
+    }
+
+    // Returns whether the current thread owns the span. The owner first merges the values recorded
+    // by other threads, so that its own writes override them.
+    private boolean isOwner() {
+        if (Thread.currentThread() != owner) {
+            return false;
+        }
+        if (hasPending) {
+            mergePending();
+        }
+        return true;
+    }
+
+    @GuardedBy("this")
+    private SpanRecord pending() {
+        SpanRecord result = pending;
+        if (result == null) {
+            result = new SpanRecord(null);
+            pending = result;
+            hasPending = true;
+        }
+        return result;
+    }
+
+    private synchronized void mergePending() {
+        SpanRecord result = pending;
+        if (result != null) {
+            result.mergeInto(this);
+            pending = null;
+            hasPending = false;
+        }
+    }
+
+    static Timestamp toTimestamp(long epochNanos) {
+        return Timestamp.create(
+            Math.floorDiv(epochNanos, NANOS_PER_SECOND),
+            (int) Math.floorMod(epochNanos, NANOS_PER_SECOND));
+    }
+}
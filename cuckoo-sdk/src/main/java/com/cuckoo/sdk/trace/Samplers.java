@@ -0,0 +1,191 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.trace;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import com.cuckoo.internal.Utils;
+import com.cuckoo.trace.AttributeValue;
+import com.cuckoo.trace.Link;
+import com.cuckoo.trace.Sampler;
+import com.cuckoo.trace.Sampler.Decision;
+import com.cuckoo.trace.SpanContext;
+import com.cuckoo.trace.SpanId;
+import com.cuckoo.trace.TraceId;
+
+/**
+ * Static factory methods for the built-in {@link Sampler}s. The samplers return one of two shared
+ * {@link Decision}s, so a sampling decision never allocates.
+ *
+ * @since 0.0.1
+ */
+public final class Samplers {
+    private static final Decision SAMPLED = new SimpleDecision(true);
+    private static final Decision NOT_SAMPLED = new SimpleDecision(false);
+    private static final Sampler ALWAYS_SAMPLE = new AlwaysSampleSampler();
+    private static final Sampler NEVER_SAMPLE = new NeverSampleSampler();
+
+    private Samplers() {}
+
+    /**
+     * Returns a {@link Sampler} that always makes a "yes" decision on {@code Span} sampling.
+     *
+     * @return a {@code Sampler} that always makes a "yes" decision on {@code Span} sampling.
+     * @since 0.0.1
+     */
+    public static Sampler alwaysSample() {
+        return ALWAYS_SAMPLE;
+    }
+
+    /**
+     * Returns a {@link Sampler} that always makes a "no" decision on {@code Span} sampling.
+     *
+     * @return a {@code Sampler} that always makes a "no" decision on {@code Span} sampling.
+     * @since 0.0.1
+     */
+    public static Sampler neverSample() {
+        return NEVER_SAMPLE;
+    }
+
+    /**
+     * Returns a {@link Sampler} that samples the given fraction of traces. A span is sampled if
+     * its parent is sampled, and otherwise the decision is derived from the {@link TraceId}, so
+     * that all the spans of a trace get the same decision.
+     *
+     * @param probability the probability that a trace is sampled, between 0.0 and 1.0.
+     * @return a {@code Sampler} that samples the given fraction of traces.
+     * @throws IllegalArgumentException if {@code probability} is out of range.
+     * @since 0.0.1
+     */
+    public static Sampler probabilitySampler(double probability) {
+        Utils.checkArgument(
+            probability >= 0.0 && probability <= 1.0, "probability must be in range [0.0, 1.0]");
+        return new ProbabilitySampler(probability);
+    }
+
+    @Immutable
+    private static final class SimpleDecision implements Decision {
+        private final boolean sampled;
+
+        SimpleDecision(boolean sampled) {
+            this.sampled = sampled;
+        }
+
+        @Override
+        public boolean isSampled() {
+            return sampled;
+        }
+
+        @Override
+        public Map<String, AttributeValue> attributes() {
+            return Collections.emptyMap();
+        }
+    }
+
+    @Immutable
+    private static final class AlwaysSampleSampler implements Sampler {
+        @Override
+        public String getDescription() {
+            return toString();
+        }
+
+        @Override
+        public Decision shouldSample(
+            @Nullable SpanContext parentContext,
+            TraceId traceId,
+            SpanId spanId,
+            String name,
+            List<Link> links) {
+            return SAMPLED;
+        }
+
+        @Override
+        public String toString() {
+            return "AlwaysSampleSampler";
+        }
+    }
+
+    @Immutable
+    private static final class NeverSampleSampler implements Sampler {
+        @Override
+        public String getDescription() {
+            return toString();
+        }
+
+        @Override
+        public Decision shouldSample(
+            @Nullable SpanContext parentContext,
+            TraceId traceId,
+            SpanId spanId,
+            String name,
+            List<Link> links) {
+            return NOT_SAMPLED;
+        }
+
+        @Override
+        public String toString() {
+            return "NeverSampleSampler";
+        }
+    }
+
+    @Immutable
+    private static final class ProbabilitySampler implements Sampler {
+        private final double probability;
+        // Traces whose lower id, as an absolute value, is below this bound are sampled.
+        private final long idUpperBound;
+
+        ProbabilitySampler(double probability) {
+            this.probability = probability;
+            if (probability == 0.0) {
+                idUpperBound = Long.MIN_VALUE;
+            } else if (probability == 1.0) {
+                idUpperBound = Long.MAX_VALUE;
+            } else {
+                idUpperBound = (long) (probability * Long.MAX_VALUE);
+            }
+        }
+
+        @Override
+        public String getDescription() {
+            return String.format("ProbabilitySampler{%.6f}", probability);
+        }
+
+        @Override
+        public Decision shouldSample(
+            @Nullable SpanContext parentContext,
+            TraceId traceId,
+            SpanId spanId,
+            String name,
+            List<Link> links) {
+            if (parentContext != null && parentContext.getTraceOptions().isSampled()) {
+                return SAMPLED;
+            }
+            // Math.abs(Long.MIN_VALUE) is negative, so that id is sampled unless probability is 0.
+            return idUpperBound == Long.MAX_VALUE
+                || Math.abs(traceId.getLowerLong()) < idUpperBound ? SAMPLED : NOT_SAMPLED;
+        }
+
+        @Override
+        public String toString() {
+            return getDescription();
+        }
+    }
+}
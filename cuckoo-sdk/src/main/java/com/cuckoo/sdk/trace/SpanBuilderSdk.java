@@ -0,0 +1,299 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.trace;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import com.cuckoo.internal.Utils;
+import com.cuckoo.trace.AttributeValue;
+import com.cuckoo.trace.DefaultSpan;
+import com.cuckoo.trace.Link;
+import com.cuckoo.trace.Sampler;
+import com.cuckoo.trace.Span;
+import com.cuckoo.trace.SpanContext;
+import com.cuckoo.trace.SpanId;
+import com.cuckoo.trace.TraceId;
+import com.cuckoo.trace.TraceOptions;
+import com.cuckoo.trace.unsafe.ContextUtils;
+
+/**
+ * {@link Span.Builder} implementation that starts {@link RecordingSpan}s for sampled spans and
+ * {@link DefaultSpan}s for the others.
+ *
+ * <p>A builder is created for a thread and reused by it: {@link #startSpan()} resets the builder
+ * and hands it back to the {@link TracerSdk}, so starting a span only allocates the span, its
+ * {@link SpanContext} and its ids. The builder also keeps the recycled arrays of the spans of its
+ * thread. So a builder throws an {@link IllegalStateException} when it is used after {@link
+ * #startSpan()}, rather than changing the span that its thread builds next.
+ */
+@NotThreadSafe
+final class SpanBuilderSdk implements Span.Builder {
+    private static final long MILLIS_TO_NANOS = 1000 * 1000;
+    private static final long NO_START_TIMESTAMP = Long.MIN_VALUE;
+
+    private enum ParentType {
+        CURRENT,
+        SPAN,
+        REMOTE,
+        NONE
+    }
+
+    private final TracerSdk tracer;
+    // The thread that reuses this builder.
+    private final Thread owner;
+    private final RecordArrays.Pool arraysPool = new RecordArrays.Pool();
+
+    // Whether the builder was returned by spanBuilder() and not started yet. A builder started
+    // by another thread than its owner stays in use, so that the owner does not reuse it.
+    private boolean inUse;
+    // Whether startSpan() was called since init().
+    private boolean started;
+    private String name = "";
+    private ParentType parentType = ParentType.CURRENT;
+    @Nullable
+    private Span parent;
+    @Nullable
+    private SpanContext remoteParent;
+    @Nullable
+    private Sampler sampler;
+    @Nullable
+    private ArrayList<Link> links;
+    private Span.Kind kind = Span.Kind.INTERNAL;
+    private long startEpochNanos = NO_START_TIMESTAMP;
+    private boolean recordEvents;
+
+    SpanBuilderSdk(TracerSdk tracer) {
+        this.tracer = tracer;
+        this.owner = Thread.currentThread();
+    }
+
+    /** Returns whether the builder was returned by {@link #init(String)} and not started yet. */
+    boolean isInUse() {
+        return inUse;
+    }
+
+    /** Prepares the builder to build a span with the given name, with the default options. */
+    SpanBuilderSdk init(String spanName) {
+        inUse = true;
+        started = false;
+        name = spanName;
+        return this;
+    }
+
+    @Override
+    public Span.Builder setParent(Span parent) {
+        checkInUse();
+        this.parent = Utils.checkNotNull(parent, "parent");
+        remoteParent = null;
+        parentType = ParentType.SPAN;
+        return this;
+    }
+
+    @Override
+    public Span.Builder setParent(SpanContext remoteParent) {
+        checkInUse();
+        this.remoteParent = Utils.checkNotNull(remoteParent, "remoteParent");
+        parent = null;
+        parentType = ParentType.REMOTE;
+        return this;
+    }
+
+    @Override
+    public Span.Builder setNoParent() {
+        checkInUse();
+        parent = null;
+        remoteParent = null;
+        parentType = ParentType.NONE;
+        return this;
+    }
+
+    @Override
+    public Span.Builder setSampler(Sampler sampler) {
+        checkInUse();
+        this.sampler = Utils.checkNotNull(sampler, "sampler");
+        return this;
+    }
+
+    @Override
+    public Span.Builder addLink(Link link) {
+        checkInUse();
+        Utils.checkNotNull(link, "link");
+        if (links == null) {
+            links = new ArrayList<Link>();
+        }
+        links.add(link);
+        return this;
+    }
+
+    @Override
+    public Span.Builder setSpanKind(Span.Kind spanKind) {
+        checkInUse();
+        kind = Utils.checkNotNull(spanKind, "spanKind");
+        return this;
+    }
+
+    @Override
+    public Span.Builder setStartTimestamp(long startEpochNanos) {
+        checkInUse();
+        this.startEpochNanos = startEpochNanos;
+        return this;
+    }
+
+    @Override
+    public Span.Builder setRecordEvents(boolean recordEvents) {
+        checkInUse();
+        this.recordEvents = recordEvents;
+        return this;
+    }
+
+    @Override
+    public Span startSpan() {
+        checkInUse();
+        SpanContext parentContext = parentContext();
+        if (parentContext != null && !parentContext.isValid()) {
+            parentContext = null;
+        }
+        TraceId traceId;
+        SpanId parentSpanId;
+        if (parentContext == null) {
+            traceId = randomTraceId();
+            parentSpanId = null;
+        } else {
+            traceId = parentContext.getTraceId();
+            parentSpanId = parentContext.getSpanId();
+        }
+        SpanId spanId = randomSpanId();
+        List<Link> spanLinks = links == null ? Collections.<Link>emptyList() : links;
+        Sampler.Decision decision = (sampler == null ? tracer.getSampler() : sampler)
+            .shouldSample(parentContext, traceId, spanId, name, spanLinks);
+        boolean sampled = decision.isSampled();
+        SpanContext context =
+            SpanContext.create(
+                traceId, spanId, sampled ? TraceOptions.SAMPLED : TraceOptions.DEFAULT);
+        if (!sampled && !recordEvents) {
+            reset();
+            return DefaultSpan.create(context);
+        }
+        MultiSpanProcessor spanProcessor = tracer.getActiveSpanProcessor();
+        long start = startEpochNanos != NO_START_TIMESTAMP
+            ? startEpochNanos
+            : System.currentTimeMillis() * MILLIS_TO_NANOS;
+        RecordingSpan span =
+            RecordingSpan.startSpan(
+                context,
+                parentSpanId,
+                name,
+                kind,
+                tracer.getResource(),
+                start,
+                spanProcessor,
+                recycledArrays(spanProcessor));
+        for (int i = 0; i < spanLinks.size(); i++) {
+            span.addLink(spanLinks.get(i));
+        }
+        if (sampled) {
+            Map<String, AttributeValue> attributes = decision.attributes();
+            if (!attributes.isEmpty()) {
+                for (Map.Entry<String, AttributeValue> entry : attributes.entrySet()) {
+                    span.setAttribute(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        reset();
+        if (spanProcessor.isStartRequired()) {
+            spanProcessor.onStart(span);
+        }
+        return span;
+    }
+
+    private void checkInUse() {
+        Utils.checkState(inUse && !started, "The span builder was already started.");
+    }
+
+    @Nullable
+    private SpanContext parentContext() {
+        switch (parentType) {
+            case SPAN:
+                return parent.getContext();
+            case REMOTE:
+                return remoteParent;
+            case NONE:
+                return null;
+            default:
+                Span current = ContextUtils.getValue();
+                return current == null ? null : current.getContext();
+        }
+    }
+
+    // Spans are only recycled when the processor opted in. Only the owner takes arrays from the
+    // pool.
+    @Nullable
+    private RecordArrays recycledArrays(MultiSpanProcessor spanProcessor) {
+        if (!tracer.isRecyclingSpans()
+            || !spanProcessor.recyclesSpans()
+            || Thread.currentThread() != owner) {
+            return null;
+        }
+        return arraysPool.acquire();
+    }
+
+    // Restores the default options. Only the owner marks the builder as free again: a builder
+    // that was handed to another thread is not reused.
+    private void reset() {
+        started = true;
+        name = "";
+        parentType = ParentType.CURRENT;
+        parent = null;
+        remoteParent = null;
+        sampler = null;
+        if (links != null) {
+            links.clear();
+        }
+        kind = Span.Kind.INTERNAL;
+        startEpochNanos = NO_START_TIMESTAMP;
+        recordEvents = false;
+        if (Thread.currentThread() == owner) {
+            inUse = false;
+        }
+    }
+
+    private static TraceId randomTraceId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long idHi;
+        long idLo;
+        do {
+            idHi = random.nextLong();
+            idLo = random.nextLong();
+        } while (idHi == 0 && idLo == 0);
+        return new TraceId(idHi, idLo);
+    }
+
+    private static SpanId randomSpanId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long id;
+        do {
+            id = random.nextLong();
+        } while (id == 0);
+        return new SpanId(id);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.trace;
+
+import com.cuckoo.trace.Span;
+import com.cuckoo.trace.SpanData;
+
+/**
+ * Hook that is called when a {@link RecordingSpan} starts and when it ends, for example to export
+ * the spans. It is only called for spans that record events.
+ *
+ * <p>The methods are called synchronously on the thread that starts or ends the span, so they
+ * should not block.
+ *
+ * @since 0.0.1
+ */
+public interface SpanProcessor {
+    /**
+     * Called when a span is started, if {@link #isStartRequired()} returns {@code true}.
+     *
+     * @param span the started span.
+     * @since 0.0.1
+     */
+    void onStart(Span span);
+
+    /**
+     * Returns whether {@link #onStart(Span)} must be called. Spans are started more often than
+     * processors need to see them start, so the call is skipped for the processors that return
+     * {@code false}. The value must not change.
+     *
+     * @return {@code true} if {@link #onStart(Span)} must be called.
+     * @since 0.0.1
+     */
+    boolean isStartRequired();
+
+    /**
+     * Called when a span is ended, with the values it recorded.
+     *
+     * @param spanData the values recorded by the ended span.
+     * @since 0.0.1
+     */
+    void onEnd(SpanData spanData);
+
+    /**
+     * Returns whether this processor recycles the spans it is given with {@link
+     * RecordingSpan#recycle(SpanData)}, once nothing reads their {@code SpanData} anymore. Spans
+     * are only recycled if the processor of the {@link TracerSdk} returns {@code true}, see {@link
+     * TracerSdk#setRecycleSpans(boolean)}. A processor that passes the spans on to other
+     * processors must only return {@code true} if each span is passed to a single processor that
+     * returns {@code true}. The value must not change.
+     *
+     * @return {@code true} if the processor recycles the spans it is given.
+     * @since 0.0.1
+     */
+    boolean recyclesSpans();
+
+    /**
+     * Processes the spans that ended before this call, e.g. exports the queued spans, and waits
+     * until they are processed.
+     *
+     * @since 0.0.1
+     */
+    void forceFlush();
+
+    /**
+     * Called when the {@link TracerSdk} is shut down. Processors should release their resources,
+     * e.g. export the pending spans and stop their threads.
+     *
+     * @since 0.0.1
+     */
+    void shutdown();
+}
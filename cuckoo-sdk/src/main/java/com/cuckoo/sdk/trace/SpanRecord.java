@@ -0,0 +1,422 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.trace;
+
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import com.cuckoo.trace.AttributeValue;
+import com.cuckoo.trace.Event;
+import com.cuckoo.trace.Link;
+import com.cuckoo.trace.SpanData;
+import com.cuckoo.trace.SpanData.TimedEvent;
+import com.cuckoo.trace.Status;
+
+/**
+ * The values recorded by a span: its name, status, attributes, events and links.
+ *
+ * <p>The values are kept in plain arrays that grow as needed, up to {@link #MAX_ATTRIBUTES}
+ * attributes, {@link #MAX_EVENTS} events and {@link #MAX_LINKS} links; values past these limits
+ * are dropped. Once the span has ended the arrays are not modified anymore, and the views
+ * returned by {@link #attributes()}, {@link #events(long, long)} and {@link #links()} read them
+ * directly.
+ *
+ * <p>The counts are published with ordered writes, after the elements they cover, so that {@link
+ * #mergeInto(SpanRecord)} can copy the values of a record that another thread is still writing:
+ * it sees every element below the counts it reads, and misses the values written concurrently.
+ *
+ * <p>The arrays of a span may come from {@link RecordArrays} that are recycled once the span has
+ * been exported, in which case the views check the generation of the arrays on each access.
+ *
+ * <p>{@link RecordingSpan} extends this class so that starting a span allocates a single object
+ * for both. The methods are named after what they record rather than after the {@code Span}
+ * methods, which they would otherwise override.
+ */
+@NotThreadSafe
+class SpanRecord {
+    static final int MAX_ATTRIBUTES = 32;
+    static final int MAX_EVENTS = 128;
+    static final int MAX_LINKS = 32;
+
+    private static final int INITIAL_CAPACITY = 4;
+    private static final String[] EMPTY_KEYS = new String[0];
+    private static final AttributeValue[] EMPTY_VALUES = new AttributeValue[0];
+    private static final Event[] EMPTY_EVENTS = new Event[0];
+    private static final long[] EMPTY_NANOS = new long[0];
+    private static final Link[] EMPTY_LINKS = new Link[0];
+    private static final AtomicIntegerFieldUpdater<SpanRecord> ATTRIBUTE_COUNT_UPDATER =
+        AtomicIntegerFieldUpdater.newUpdater(SpanRecord.class, "attributeCount");
+    private static final AtomicIntegerFieldUpdater<SpanRecord> EVENT_COUNT_UPDATER =
+        AtomicIntegerFieldUpdater.newUpdater(SpanRecord.class, "eventCount");
+    private static final AtomicIntegerFieldUpdater<SpanRecord> LINK_COUNT_UPDATER =
+        AtomicIntegerFieldUpdater.newUpdater(SpanRecord.class, "linkCount");
+
+    @Nullable
+    private String name;
+    @Nullable
+    private Status status;
+    private String[] attributeKeys = EMPTY_KEYS;
+    private AttributeValue[] attributeValues = EMPTY_VALUES;
+    private volatile int attributeCount;
+    private Event[] events = EMPTY_EVENTS;
+    // eventNanos[i] is the System.nanoTime() at which events[i] was added.
+    private long[] eventNanos = EMPTY_NANOS;
+    private volatile int eventCount;
+    private Link[] links = EMPTY_LINKS;
+    private volatile int linkCount;
+
+    SpanRecord(@Nullable String name) {
+        this.name = name;
+    }
+
+    @Nullable
+    String getRecordedName() {
+        return name;
+    }
+
+    void recordName(String name) {
+        this.name = name;
+    }
+
+    @Nullable
+    Status getRecordedStatus() {
+        return status;
+    }
+
+    void recordStatus(Status status) {
+        this.status = status;
+    }
+
+    void recordAttribute(String key, AttributeValue value) {
+        int count = attributeCount;
+        for (int i = 0; i < count; i++) {
+            if (attributeKeys[i].equals(key)) {
+                attributeValues[i] = value;
+                return;
+            }
+        }
+        if (count == MAX_ATTRIBUTES) {
+            return;
+        }
+        if (count == attributeKeys.length) {
+            int capacity = newCapacity(count, MAX_ATTRIBUTES);
+            attributeKeys = Arrays.copyOf(attributeKeys, capacity);
+            attributeValues = Arrays.copyOf(attributeValues, capacity);
+        }
+        attributeKeys[count] = key;
+        attributeValues[count] = value;
+        ATTRIBUTE_COUNT_UPDATER.lazySet(this, count + 1);
+    }
+
+    void recordEvent(Event event, long nanos) {
+        int count = eventCount;
+        if (count == MAX_EVENTS) {
+            return;
+        }
+        if (count == events.length) {
+            int capacity = newCapacity(count, MAX_EVENTS);
+            events = Arrays.copyOf(events, capacity);
+            eventNanos = Arrays.copyOf(eventNanos, capacity);
+        }
+        events[count] = event;
+        eventNanos[count] = nanos;
+        EVENT_COUNT_UPDATER.lazySet(this, count + 1);
+    }
+
+    void recordLink(Link link) {
+        int count = linkCount;
+        if (count == MAX_LINKS) {
+            return;
+        }
+        if (count == links.length) {
+            links = Arrays.copyOf(links, newCapacity(count, MAX_LINKS));
+        }
+        links[count] = link;
+        LINK_COUNT_UPDATER.lazySet(this, count + 1);
+    }
+
+    /** Records the values into the given arrays, which were recycled by a previous span. */
+    void loadArrays(RecordArrays arrays) {
+        if (arrays.attributeKeys != null) {
+            attributeKeys = arrays.attributeKeys;
+            attributeValues = arrays.attributeValues;
+            events = arrays.events;
+            eventNanos = arrays.eventNanos;
+            links = arrays.links;
+        }
+    }
+
+    /** Stores the arrays, which may have grown, for the next span that uses them. */
+    void storeArrays(RecordArrays arrays) {
+        arrays.attributeKeys = attributeKeys;
+        arrays.attributeValues = attributeValues;
+        arrays.events = events;
+        arrays.eventNanos = eventNanos;
+        arrays.links = links;
+    }
+
+    /**
+     * Adds the values of this record to the given one, in which they override existing values.
+     * This record may be written concurrently by its owner, whose concurrent writes may then be
+     * missed: each count is read before the arrays it covers, and the elements that are not
+     * visible yet are skipped.
+     */
+    void mergeInto(SpanRecord target) {
+        String name = this.name;
+        if (name != null) {
+            target.name = name;
+        }
+        Status status = this.status;
+        if (status != null) {
+            target.status = status;
+        }
+        int count = attributeCount;
+        String[] keys = attributeKeys;
+        AttributeValue[] values = attributeValues;
+        for (int i = 0; i < count; i++) {
+            if (keys[i] != null && values[i] != null) {
+                target.recordAttribute(keys[i], values[i]);
+            }
+        }
+        count = eventCount;
+        Event[] events = this.events;
+        long[] nanos = eventNanos;
+        for (int i = 0; i < count; i++) {
+            if (events[i] != null) {
+                target.recordEvent(events[i], nanos[i]);
+            }
+        }
+        count = linkCount;
+        Link[] links = this.links;
+        for (int i = 0; i < count; i++) {
+            if (links[i] != null) {
+                target.recordLink(links[i]);
+            }
+        }
+    }
+
+    /**
+     * Returns an unmodifiable view of the attributes.
+     *
+     * @param arrays the recycled arrays of the record, or {@code null} if it has none.
+     * @param generation the generation of {@code arrays} when the record used them.
+     */
+    Map<String, AttributeValue> attributes(@Nullable RecordArrays arrays, int generation) {
+        return new AttributesView(
+            attributeKeys, attributeValues, attributeCount, arrays, generation);
+    }
+
+    /**
+     * Returns an unmodifiable view of the events, with the timestamps of a span that started at
+     * {@code startEpochNanos} and {@code startNanoTime}.
+     */
+    List<TimedEvent> events(
+        long startEpochNanos, long startNanoTime, @Nullable RecordArrays arrays, int generation) {
+        return new EventsView(
+            events, eventNanos, eventCount, startEpochNanos - startNanoTime, arrays, generation);
+    }
+
+    /** Returns an unmodifiable view of the links. */
+    List<Link> links(@Nullable RecordArrays arrays, int generation) {
+        return new ArrayView<Link>(links, linkCount, arrays, generation);
+    }
+
+    /**
+     * Recycles the arrays read by the given {@code SpanData}, if it was created from recycled
+     * arrays that were not recycled since.
+     */
+    static void recycle(SpanData spanData) {
+        Map<String, AttributeValue> attributes = spanData.getAttributes();
+        if (attributes instanceof AttributesView) {
+            AttributesView view = (AttributesView) attributes;
+            if (view.arrays != null) {
+                view.arrays.recycle(view.generation);
+            }
+        }
+    }
+
+    private static int newCapacity(int size, int max) {
+        return Math.min(Math.max(INITIAL_CAPACITY, size * 2), max);
+    }
+
+    private static final class AttributesView extends AbstractMap<String, AttributeValue> {
+        private final String[] keys;
+        private final AttributeValue[] values;
+        private final int size;
+        @Nullable
+        private final RecordArrays arrays;
+        private final int generation;
+
+        AttributesView(
+            String[] keys,
+            AttributeValue[] values,
+            int size,
+            @Nullable RecordArrays arrays,
+            int generation) {
+            this.keys = keys;
+            this.values = values;
+            this.size = size;
+            this.arrays = arrays;
+            this.generation = generation;
+        }
+
+        @Override
+        public int size() {
+            RecordArrays.checkNotRecycled(arrays, generation);
+            return size;
+        }
+
+        @Override
+        @Nullable
+        public AttributeValue get(@Nullable Object key) {
+            RecordArrays.checkNotRecycled(arrays, generation);
+            for (int i = 0; i < size; i++) {
+                if (keys[i].equals(key)) {
+                    return values[i];
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public boolean containsKey(@Nullable Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public Set<Entry<String, AttributeValue>> entrySet() {
+            return new AbstractSet<Entry<String, AttributeValue>>() {
+                @Override
+                public int size() {
+                    return size;
+                }
+
+                @Override
+                public Iterator<Entry<String, AttributeValue>> iterator() {
+                    return new Iterator<Entry<String, AttributeValue>>() {
+                        private int next;
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < size;
+                        }
+
+                        @Override
+                        public Entry<String, AttributeValue> next() {
+                            if (next >= size) {
+                                throw new NoSuchElementException();
+                            }
+                            RecordArrays.checkNotRecycled(arrays, generation);
+                            int index = next++;
+                            return new SimpleImmutableEntry<String, AttributeValue>(
+                                keys[index], values[index]);
+                        }
+
+                        @Override
+                        public void remove() {
+                            throw new UnsupportedOperationException();
+                        }
+                    };
+                }
+            };
+        }
+    }
+
+    private static final class EventsView extends AbstractList<TimedEvent>
+        implements RandomAccess {
+        private final Event[] events;
+        private final long[] nanos;
+        private final int size;
+        // Converts the nanoTime of an event to nanoseconds since the epoch.
+        private final long epochOffset;
+        @Nullable
+        private final RecordArrays arrays;
+        private final int generation;
+
+        EventsView(
+            Event[] events,
+            long[] nanos,
+            int size,
+            long epochOffset,
+            @Nullable RecordArrays arrays,
+            int generation) {
+            this.events = events;
+            this.nanos = nanos;
+            this.size = size;
+            this.epochOffset = epochOffset;
+            this.arrays = arrays;
+            this.generation = generation;
+        }
+
+        @Override
+        public TimedEvent get(int index) {
+            if (index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            RecordArrays.checkNotRecycled(arrays, generation);
+            return TimedEvent.create(
+                RecordingSpan.toTimestamp(epochOffset + nanos[index]), events[index]);
+        }
+
+        @Override
+        public int size() {
+            RecordArrays.checkNotRecycled(arrays, generation);
+            return size;
+        }
+    }
+
+    private static final class ArrayView<T> extends AbstractList<T> implements RandomAccess {
+        private final T[] elements;
+        private final int size;
+        @Nullable
+        private final RecordArrays arrays;
+        private final int generation;
+
+        ArrayView(T[] elements, int size, @Nullable RecordArrays arrays, int generation) {
+            this.elements = elements;
+            this.size = size;
+            this.arrays = arrays;
+            this.generation = generation;
+        }
+
+        @Override
+        public T get(int index) {
+            if (index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            RecordArrays.checkNotRecycled(arrays, generation);
+            return elements[index];
+        }
+
+        @Override
+        public int size() {
+            RecordArrays.checkNotRecycled(arrays, generation);
+            return size;
+        }
+    }
+}
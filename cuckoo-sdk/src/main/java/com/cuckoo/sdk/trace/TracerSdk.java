@@ -0,0 +1,170 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.trace;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.cuckoo.context.Scope;
+import com.cuckoo.internal.Utils;
+import com.cuckoo.resources.Resource;
+import com.cuckoo.trace.DefaultSpan;
+import com.cuckoo.trace.Sampler;
+import com.cuckoo.trace.Span;
+import com.cuckoo.trace.Tracer;
+import com.cuckoo.trace.unsafe.ContextUtils;
+
+/**
+ * {@link Tracer} implementation that starts {@link RecordingSpan}s for the sampled spans.
+ *
+ * <p>Each thread reuses a single {@link Span.Builder}, which is reset when its span is started. If
+ * the builder of a thread is still in use when {@link #spanBuilder(String)} is called, for example
+ * because a builder was abandoned without starting its span, the thread gets a new builder.
+ *
+ * <p>The {@link SpanProcessor}s are added to an immutable {@link MultiSpanProcessor} that is
+ * replaced on each change. A span keeps the processor that was active when it started, so ending a
+ * span never takes a lock.
+ *
+ * <p>Spans can recycle the arrays in which they record their values, see {@link
+ * #setRecycleSpans(boolean)}. Each thread keeps the recycled arrays of its spans with its builder.
+ *
+ * @since 0.0.1
+ */
+@ThreadSafe
+public final class TracerSdk implements Tracer {
+    private final Sampler sampler;
+    private final Resource resource;
+    private final ThreadLocal<SpanBuilderSdk> builders = new ThreadLocal<SpanBuilderSdk>();
+    private volatile MultiSpanProcessor activeSpanProcessor = MultiSpanProcessor.empty();
+    private volatile boolean recycleSpans;
+
+    /**
+     * Creates a {@code TracerSdk} that samples all the spans.
+     *
+     * @since 0.0.1
+     */
+    public TracerSdk() {
+        this(Samplers.alwaysSample());
+    }
+
+    /**
+     * Creates a {@code TracerSdk} that uses the given {@link Sampler} for the spans that do not
+     * set their own.
+     *
+     * @param sampler the default {@code Sampler}.
+     * @throws NullPointerException if {@code sampler} is {@code null}.
+     * @since 0.0.1
+     */
+    public TracerSdk(Sampler sampler) {
+        this.sampler = Utils.checkNotNull(sampler, "sampler");
+        this.resource = Resource.getEmpty();
+    }
+
+    @Override
+    public Span getCurrentSpan() {
+        Span span = ContextUtils.getValue();
+        return span == null ? DefaultSpan.getInvalid() : span;
+    }
+
+    @Override
+    public Scope withSpan(Span span) {
+        return ContextUtils.withSpan(Utils.checkNotNull(span, "span"));
+    }
+
+    @Override
+    public Span.Builder spanBuilder(String spanName) {
+        Utils.checkNotNull(spanName, "spanName");
+        SpanBuilderSdk builder = builders.get();
+        if (builder == null || builder.isInUse()) {
+            builder = newBuilder();
+        }
+        return builder.init(spanName);
+    }
+
+    private SpanBuilderSdk newBuilder() {
+        SpanBuilderSdk builder = new SpanBuilderSdk(this);
+        builders.set(builder);
+        return builder;
+    }
+
+    /**
+     * Adds a {@link SpanProcessor} that is called for the spans started after this call, after the
+     * processors that were added before it.
+     *
+     * @param spanProcessor the processor to add.
+     * @throws NullPointerException if {@code spanProcessor} is {@code null}.
+     * @since 0.0.1
+     */
+    public synchronized void addSpanProcessor(SpanProcessor spanProcessor) {
+        activeSpanProcessor = activeSpanProcessor.add(spanProcessor);
+    }
+
+    /**
+     * Sets whether the spans started after this call reuse the arrays of the spans that were
+     * exported, instead of allocating their own. Disabled by default.
+     *
+     * <p>The span processors of this SDK recycle a span once its exporters return, so this must
+     * only be enabled if the exporters do not keep the {@code SpanData} they are given. Spans are
+     * only recycled while a single {@link SpanProcessor} is added and its {@link
+     * SpanProcessor#recyclesSpans()} returns {@code true}, since each processor would recycle them
+     * on its own. Reading the {@code SpanData} of a recycled span throws an {@link
+     * IllegalStateException}, and values recorded on a recycled span are ignored.
+     *
+     * @param recycleSpans whether spans are recycled.
+     * @since 0.0.1
+     */
+    public void setRecycleSpans(boolean recycleSpans) {
+        this.recycleSpans = recycleSpans;
+    }
+
+    /**
+     * Flushes the {@link SpanProcessor}s, e.g. exports the spans they have queued, and waits until
+     * they are flushed.
+     *
+     * @since 0.0.1
+     */
+    public void forceFlush() {
+        activeSpanProcessor.forceFlush();
+    }
+
+    /**
+     * Shuts down the {@link SpanProcessor}s. The spans started after this call are not passed to
+     * them anymore.
+     *
+     * @since 0.0.1
+     */
+    public synchronized void shutdown() {
+        MultiSpanProcessor spanProcessor = activeSpanProcessor;
+        activeSpanProcessor = MultiSpanProcessor.empty();
+        spanProcessor.shutdown();
+    }
+
+    Sampler getSampler() {
+        return sampler;
+    }
+
+    Resource getResource() {
+        return resource;
+    }
+
+    MultiSpanProcessor getActiveSpanProcessor() {
+        return activeSpanProcessor;
+    }
+
+    boolean isRecyclingSpans() {
+        return recycleSpans;
+    }
+}
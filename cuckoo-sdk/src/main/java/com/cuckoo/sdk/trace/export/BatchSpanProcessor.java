@@ -0,0 +1,463 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.trace.export;
+
+import java.util.ArrayList;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.cuckoo.internal.Utils;
+import com.cuckoo.sdk.trace.RecordingSpan;
+import com.cuckoo.sdk.trace.SpanProcessor;
+import com.cuckoo.trace.Span;
+import com.cuckoo.trace.SpanData;
+
+/**
+ * {@link SpanProcessor} that exports the sampled spans in batches, from a worker thread.
+ *
+ * <p>Ending a span only adds its {@link SpanData} to a bounded lock-free queue, so the latency of
+ * the exporter never reaches the application. The worker exports a batch when it holds {@code
+ * maxExportBatchSize} spans, or when {@code scheduleDelay} has passed since the previous export.
+ * When the queue is full the span is dropped rather than waiting for room, and counted in {@link
+ * #getDroppedSpans()}, unless a {@link PriorityOverflowPolicy} keeps the most important of these
+ * spans.
+ *
+ * <p>Producers only wake the worker up when it is parked and a full batch is waiting, so most
+ * calls to {@link #onEnd(SpanData)} are a single CAS.
+ *
+ * @since 0.0.1
+ */
+@ThreadSafe
+public final class BatchSpanProcessor implements SpanProcessor {
+    static final int DEFAULT_MAX_QUEUE_SIZE = 2048;
+    static final int DEFAULT_MAX_EXPORT_BATCH_SIZE = 512;
+    static final long DEFAULT_SCHEDULE_DELAY_MILLIS = 5000;
+    static final long DEFAULT_FLUSH_TIMEOUT_MILLIS = 30000;
+
+    private static final Logger logger = Logger.getLogger(BatchSpanProcessor.class.getName());
+    private static final String WORKER_THREAD_NAME = "BatchSpanProcessor_Worker";
+
+    private final MpscRingBuffer<SpanData> queue;
+    // The spans that did not fit in the queue, or null to drop them.
+    @Nullable
+    private final PriorityOverflowBuffer overflow;
+    private final int maxExportBatchSize;
+    private final long flushTimeoutNanos;
+    private final Worker worker;
+    private final Thread workerThread;
+    private final LongAdder droppedSpans = new LongAdder();
+    // Released by the worker once the spans queued before the request are exported.
+    private final Queue<CountDownLatch> flushRequests =
+        new ConcurrentLinkedQueue<CountDownLatch>();
+
+    private BatchSpanProcessor(
+        SpanExporter exporter,
+        int maxQueueSize,
+        int maxExportBatchSize,
+        long scheduleDelayNanos,
+        long flushTimeoutNanos,
+        @Nullable PriorityOverflowPolicy overflowPolicy) {
+        this.queue = new MpscRingBuffer<SpanData>(maxQueueSize);
+        this.overflow =
+            overflowPolicy == null
+                ? null
+                : new PriorityOverflowBuffer(overflowPolicy, droppedSpans);
+        this.maxExportBatchSize = maxExportBatchSize;
+        this.flushTimeoutNanos = flushTimeoutNanos;
+        this.worker = new Worker(exporter, scheduleDelayNanos);
+        this.workerThread = new Thread(worker, WORKER_THREAD_NAME);
+        workerThread.setDaemon(true);
+        workerThread.start();
+    }
+
+    /**
+     * Returns a new {@link Builder} for a {@code BatchSpanProcessor} that exports the spans with
+     * the given exporter.
+     *
+     * @param exporter the exporter of the spans.
+     * @return a new {@code Builder}.
+     * @throws NullPointerException if {@code exporter} is {@code null}.
+     * @since 0.0.1
+     */
+    public static Builder newBuilder(SpanExporter exporter) {
+        return new Builder(Utils.checkNotNull(exporter, "exporter"));
+    }
+
+    @Override
+    public void onStart(Span span) {}
+
+    @Override
+    public boolean isStartRequired() {
+        return false;
+    }
+
+    @Override
+    public boolean recyclesSpans() {
+        return true;
+    }
+
+    @Override
+    public void onEnd(SpanData spanData) {
+        if (!spanData.getContext().getTraceOptions().isSampled()) {
+            return;
+        }
+        if (worker.stopped) {
+            droppedSpans.increment();
+            return;
+        }
+        if (!queue.offer(spanData)) {
+            if (overflow == null) {
+                droppedSpans.increment();
+            } else {
+                overflow.offer(spanData);
+            }
+            return;
+        }
+        if (worker.parked && queue.size() >= worker.wakeUpSize) {
+            LockSupport.unpark(workerThread);
+        }
+    }
+
+    /**
+     * Exports the spans that are queued, and waits until they are exported, or at most {@code
+     * flushTimeout}. Returns immediately once the processor is shut down.
+     */
+    @Override
+    public void forceFlush() {
+        CountDownLatch flushed = new CountDownLatch(1);
+        flushRequests.add(flushed);
+        // The worker releases the requests it sees after it sets terminated.
+        if (worker.terminated) {
+            flushed.countDown();
+        } else {
+            LockSupport.unpark(workerThread);
+        }
+        if (!awaitUninterruptibly(flushed, flushTimeoutNanos)) {
+            logger.log(Level.WARNING, "Flush timed out, exporter: " + worker.exporter);
+        }
+    }
+
+    /**
+     * Exports the spans that are still queued, then shuts down the exporter, and waits at most
+     * {@code flushTimeout} for both. The spans that end after this call are dropped.
+     */
+    @Override
+    public void shutdown() {
+        worker.stopped = true;
+        LockSupport.unpark(workerThread);
+        if (!joinUninterruptibly(workerThread, flushTimeoutNanos)) {
+            logger.log(Level.WARNING, "Shutdown timed out, exporter: " + worker.exporter);
+        }
+    }
+
+    static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Returns whether the latch was released before the timeout.
+    static boolean awaitUninterruptibly(CountDownLatch latch, long timeoutNanos) {
+        long deadline = System.nanoTime() + timeoutNanos;
+        boolean interrupted = false;
+        boolean released;
+        while (true) {
+            try {
+                released = latch.await(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return released;
+    }
+
+    // Returns whether the thread terminated before the timeout.
+    static boolean joinUninterruptibly(Thread thread, long timeoutNanos) {
+        long deadline = System.nanoTime() + timeoutNanos;
+        boolean interrupted = false;
+        long remaining;
+        while (thread.isAlive() && (remaining = deadline - System.nanoTime()) > 0) {
+            try {
+                TimeUnit.NANOSECONDS.timedJoin(thread, remaining);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return !thread.isAlive();
+    }
+
+    /**
+     * Returns the number of sampled spans that were dropped because the queue was full or the
+     * processor was shut down. With a {@link PriorityOverflowPolicy}, this includes the spans
+     * dropped from the overflow buffer.
+     *
+     * @return the number of dropped spans.
+     * @since 0.0.1
+     */
+    public long getDroppedSpans() {
+        return droppedSpans.sum();
+    }
+
+    // Drains the queue into batches and exports them.
+    private final class Worker implements Runnable {
+        private final SpanExporter exporter;
+        private final long scheduleDelayNanos;
+        private final ArrayList<SpanData> batch;
+        // Written by the worker before it parks, and read by the producers to decide whether to
+        // wake it up. The worker reads the queue after writing it, and the producers read it after
+        // writing to the queue, so either the worker sees the new span or the producer unparks it.
+        volatile boolean parked;
+        // The number of queued spans that completes the batch of the parked worker.
+        volatile int wakeUpSize;
+        volatile boolean stopped;
+        volatile boolean terminated;
+
+        Worker(SpanExporter exporter, long scheduleDelayNanos) {
+            this.exporter = exporter;
+            this.scheduleDelayNanos = scheduleDelayNanos;
+            this.batch = new ArrayList<SpanData>(maxExportBatchSize);
+        }
+
+        @Override
+        public void run() {
+            try {
+                long deadline = System.nanoTime() + scheduleDelayNanos;
+                while (!stopped) {
+                    if (!flushRequests.isEmpty()) {
+                        flush();
+                    }
+                    drain(maxExportBatchSize - batch.size());
+                    long now = System.nanoTime();
+                    if (batch.size() == maxExportBatchSize || now - deadline >= 0) {
+                        exportBatch();
+                        deadline = now + scheduleDelayNanos;
+                        continue;
+                    }
+                    int room = maxExportBatchSize - batch.size();
+                    wakeUpSize = room;
+                    parked = true;
+                    if (!stopped && pendingSpans() < room) {
+                        LockSupport.parkNanos(this, deadline - now);
+                    }
+                    parked = false;
+                }
+                flush();
+                try {
+                    exporter.shutdown();
+                } catch (Throwable e) {
+                    logger.log(Level.WARNING, "Exception thrown by the exporter.", e);
+                }
+            } finally {
+                // Also reached if the worker fails, so that no caller waits for it forever.
+                stopped = true;
+                terminated = true;
+                CountDownLatch request;
+                while ((request = flushRequests.poll()) != null) {
+                    request.countDown();
+                }
+            }
+        }
+
+        // Exports the spans queued so far, then releases the flush requests made before. Spans
+        // queued while flushing are left for the next batch, so that a flush always terminates.
+        private void flush() {
+            int requests = flushRequests.size();
+            int pending = pendingSpans();
+            do {
+                int room = maxExportBatchSize - batch.size();
+                pending -= drain(Math.min(pending, room));
+                exportBatch();
+            } while (pending > 0);
+            for (int i = 0; i < requests; i++) {
+                flushRequests.poll().countDown();
+            }
+        }
+
+        private int pendingSpans() {
+            return overflow == null ? queue.size() : queue.size() + overflow.size();
+        }
+
+        // Moves queued spans to the batch, then the spans of the overflow buffer once the queue is
+        // empty.
+        private int drain(int maxSpans) {
+            int drained = queue.drainTo(batch, maxSpans);
+            if (overflow != null) {
+                drained += overflow.drainTo(batch, maxSpans - drained);
+            }
+            return drained;
+        }
+
+        private void exportBatch() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                exporter.export(batch);
+            } catch (Throwable e) {
+                logger.log(Level.WARNING, "Exception thrown by the exporter.", e);
+            } finally {
+                for (int i = 0; i < batch.size(); i++) {
+                    RecordingSpan.recycle(batch.get(i));
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Builder for {@link BatchSpanProcessor}.
+     *
+     * @since 0.0.1
+     */
+    public static final class Builder {
+        private final SpanExporter exporter;
+        private int maxQueueSize = DEFAULT_MAX_QUEUE_SIZE;
+        private int maxExportBatchSize = DEFAULT_MAX_EXPORT_BATCH_SIZE;
+        private long scheduleDelayNanos =
+            TimeUnit.MILLISECONDS.toNanos(DEFAULT_SCHEDULE_DELAY_MILLIS);
+        private long flushTimeoutNanos =
+            TimeUnit.MILLISECONDS.toNanos(DEFAULT_FLUSH_TIMEOUT_MILLIS);
+        @Nullable
+        private PriorityOverflowPolicy overflowPolicy;
+
+        private Builder(SpanExporter exporter) {
+            this.exporter = exporter;
+        }
+
+        /**
+         * Sets the number of spans that can be queued. The value is rounded up to a power of two.
+         * The default is {@value BatchSpanProcessor#DEFAULT_MAX_QUEUE_SIZE}.
+         *
+         * @param maxQueueSize the number of spans that can be queued.
+         * @return this.
+         * @throws IllegalArgumentException if {@code maxQueueSize} is not positive.
+         * @since 0.0.1
+         */
+        public Builder setMaxQueueSize(int maxQueueSize) {
+            Utils.checkArgument(maxQueueSize > 0, "maxQueueSize must be positive");
+            this.maxQueueSize = maxQueueSize;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of spans exported at once. The default is {@value
+         * BatchSpanProcessor#DEFAULT_MAX_EXPORT_BATCH_SIZE}.
+         *
+         * @param maxExportBatchSize the maximum number of spans exported at once.
+         * @return this.
+         * @throws IllegalArgumentException if {@code maxExportBatchSize} is not positive.
+         * @since 0.0.1
+         */
+        public Builder setMaxExportBatchSize(int maxExportBatchSize) {
+            Utils.checkArgument(maxExportBatchSize > 0, "maxExportBatchSize must be positive");
+            this.maxExportBatchSize = maxExportBatchSize;
+            return this;
+        }
+
+        /**
+         * Sets the maximum delay between two exports, which bounds how long a span waits in the
+         * queue when less than a batch is queued. The default is {@value
+         * BatchSpanProcessor#DEFAULT_SCHEDULE_DELAY_MILLIS} milliseconds.
+         *
+         * @param delay the maximum delay between two exports.
+         * @param unit the unit of {@code delay}.
+         * @return this.
+         * @throws IllegalArgumentException if {@code delay} is not positive.
+         * @since 0.0.1
+         */
+        public Builder setScheduleDelay(long delay, TimeUnit unit) {
+            Utils.checkArgument(delay > 0, "delay must be positive");
+            this.scheduleDelayNanos = Utils.checkNotNull(unit, "unit").toNanos(delay);
+            return this;
+        }
+
+        /**
+         * Sets how long {@link BatchSpanProcessor#forceFlush()} and {@link
+         * BatchSpanProcessor#shutdown()} wait for the worker. The default is {@value
+         * BatchSpanProcessor#DEFAULT_FLUSH_TIMEOUT_MILLIS} milliseconds.
+         *
+         * @param timeout the maximum duration of a flush or a shutdown.
+         * @param unit the unit of {@code timeout}.
+         * @return this.
+         * @throws IllegalArgumentException if {@code timeout} is not positive.
+         * @since 0.0.1
+         */
+        public Builder setFlushTimeout(long timeout, TimeUnit unit) {
+            Utils.checkArgument(timeout > 0, "timeout must be positive");
+            this.flushTimeoutNanos = Utils.checkNotNull(unit, "unit").toNanos(timeout);
+            return this;
+        }
+
+        /**
+         * Sets the policy for the spans that end while the queue is full. By default these spans
+         * are dropped.
+         *
+         * @param overflowPolicy the policy for the spans that do not fit in the queue.
+         * @return this.
+         * @throws NullPointerException if {@code overflowPolicy} is {@code null}.
+         * @since 0.0.1
+         */
+        public Builder setOverflowPolicy(PriorityOverflowPolicy overflowPolicy) {
+            this.overflowPolicy = Utils.checkNotNull(overflowPolicy, "overflowPolicy");
+            return this;
+        }
+
+        /**
+         * Creates a {@code BatchSpanProcessor} and starts its worker thread.
+         *
+         * @return a new {@code BatchSpanProcessor}.
+         * @throws IllegalArgumentException if the batch size is larger than the queue size.
+         * @since 0.0.1
+         */
+        public BatchSpanProcessor build() {
+            Utils.checkArgument(
+                maxExportBatchSize <= maxQueueSize,
+                "maxExportBatchSize must not be larger than maxQueueSize");
+            return new BatchSpanProcessor(
+                exporter,
+                maxQueueSize,
+                maxExportBatchSize,
+                scheduleDelayNanos,
+                flushTimeoutNanos,
+                overflowPolicy);
+        }
+    }
+}
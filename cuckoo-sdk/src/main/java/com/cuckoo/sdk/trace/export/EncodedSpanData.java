@@ -0,0 +1,558 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.trace.export;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import com.cuckoo.resources.Resource;
+import com.cuckoo.trace.AttributeValue;
+import com.cuckoo.trace.Link;
+import com.cuckoo.trace.Span.Kind;
+import com.cuckoo.trace.SpanContext;
+import com.cuckoo.trace.SpanData;
+import com.cuckoo.trace.SpanId;
+import com.cuckoo.trace.Status;
+import com.cuckoo.trace.TraceId;
+import com.cuckoo.trace.TraceOptions;
+
+/**
+ * Flyweight {@link SpanData} that reads the values of a span encoded in a {@link ByteBuffer}.
+ *
+ * <p>An {@link Encoder} writes a span at a given offset with absolute puts, so that threads may
+ * write spans concurrently in disjoint parts of a buffer. The record starts with a fixed-size
+ * header, which holds the fixed-size values and the offsets of the variable-size sections, so that
+ * each getter decodes its value without reading the rest of the record:
+ *
+ * <pre>
+ *     record     := length attributes_offset events_offset links_offset status_offset
+ *                   trace_id span_id trace_options has_parent parent_span_id kind
+ *                   start_timestamp end_timestamp name resource attributes events links status
+ *     resource   := count (string string)*
+ *     attributes := count (string attribute_value)*
+ *     events     := count (timestamp string attributes)*
+ *     links      := count (trace_id span_id trace_options attributes)*
+ *     status     := code has_description string?
+ *     string     := length utf8_bytes
+ * </pre>
+ *
+ * <p>The view is bound to a record by {@link #bind(ByteBuffer, int)}, and each getter returns a
+ * newly decoded value. It must not be used once the record is released. {@link #equals(Object)},
+ * {@link #hashCode()} and {@link #toString()} have the semantics of the ones of {@link
+ * SpanData#create}, applied to the decoded values of the bound record.
+ */
+@NotThreadSafe
+final class EncodedSpanData extends SpanData {
+    private static final int ATTRIBUTES_OFFSET = 4;
+    private static final int EVENTS_OFFSET = 8;
+    private static final int LINKS_OFFSET = 12;
+    private static final int STATUS_OFFSET = 16;
+    private static final int TRACE_ID = 20;
+    private static final int SPAN_ID = TRACE_ID + 16;
+    private static final int TRACE_OPTIONS = SPAN_ID + 8;
+    private static final int HAS_PARENT = TRACE_OPTIONS + 1;
+    private static final int PARENT_SPAN_ID = HAS_PARENT + 1;
+    private static final int KIND = PARENT_SPAN_ID + 8;
+    private static final int START_TIMESTAMP = KIND + 1;
+    private static final int END_TIMESTAMP = START_TIMESTAMP + 12;
+    private static final int NAME = END_TIMESTAMP + 12;
+
+    private static final int CONTEXT_SIZE = 16 + 8 + 1;
+    private static final int TIMESTAMP_SIZE = 8 + 4;
+
+    private static final byte STRING_TYPE = 0;
+    private static final byte BOOLEAN_TYPE = 1;
+    private static final byte LONG_TYPE = 2;
+    private static final byte DOUBLE_TYPE = 3;
+
+    private static final Kind[] KINDS = Kind.values();
+
+    @Nullable
+    private ByteBuffer buffer;
+    private int offset;
+
+    /** Binds this view to the record at {@code offset} in the given buffer. */
+    void bind(ByteBuffer buffer, int offset) {
+        this.buffer = buffer;
+        this.offset = offset;
+    }
+
+    /** Unbinds this view, so that it fails instead of reading a released record. */
+    void unbind() {
+        this.buffer = null;
+    }
+
+    @Override
+    public SpanContext getContext() {
+        return getContext(buffer(), offset + TRACE_ID);
+    }
+
+    @Nullable
+    @Override
+    public SpanId getParentSpanId() {
+        ByteBuffer buffer = buffer();
+        if (buffer.get(offset + HAS_PARENT) == 0) {
+            return null;
+        }
+        return new SpanId(buffer.getLong(offset + PARENT_SPAN_ID));
+    }
+
+    @Override
+    public Resource getResource() {
+        ByteBuffer buffer = buffer();
+        int index = offset + NAME;
+        index += 4 + buffer.getInt(index);
+        int count = buffer.getInt(index);
+        if (count == 0) {
+            return Resource.getEmpty();
+        }
+        index += 4;
+        Map<String, String> labels = new HashMap<String, String>(count * 2);
+        for (int i = 0; i < count; i++) {
+            String key = getString(buffer, index);
+            index += 4 + buffer.getInt(index);
+            labels.put(key, getString(buffer, index));
+            index += 4 + buffer.getInt(index);
+        }
+        return Resource.create(labels);
+    }
+
+    @Override
+    public String getName() {
+        return getString(buffer(), offset + NAME);
+    }
+
+    @Override
+    public Kind getKind() {
+        return KINDS[buffer().get(offset + KIND)];
+    }
+
+    @Override
+    public Timestamp getStartTimestamp() {
+        return getTimestamp(buffer(), offset + START_TIMESTAMP);
+    }
+
+    @Override
+    public Map<String, AttributeValue> getAttributes() {
+        ByteBuffer buffer = buffer();
+        return getAttributes(buffer, offset + buffer.getInt(offset + ATTRIBUTES_OFFSET));
+    }
+
+    @Override
+    public List<TimedEvent> getTimedEvents() {
+        ByteBuffer buffer = buffer();
+        int index = offset + buffer.getInt(offset + EVENTS_OFFSET);
+        int count = buffer.getInt(index);
+        if (count == 0) {
+            return Collections.emptyList();
+        }
+        index += 4;
+        List<TimedEvent> events = new ArrayList<TimedEvent>(count);
+        for (int i = 0; i < count; i++) {
+            Timestamp timestamp = getTimestamp(buffer, index);
+            index += TIMESTAMP_SIZE;
+            String name = getString(buffer, index);
+            index += 4 + buffer.getInt(index);
+            com.cuckoo.trace.Event event =
+                SpanData.Event.create(name, getAttributes(buffer, index));
+            index = skipAttributes(buffer, index);
+            events.add(TimedEvent.create(timestamp, event));
+        }
+        return Collections.unmodifiableList(events);
+    }
+
+    @Override
+    public List<Link> getLinks() {
+        ByteBuffer buffer = buffer();
+        int index = offset + buffer.getInt(offset + LINKS_OFFSET);
+        int count = buffer.getInt(index);
+        if (count == 0) {
+            return Collections.emptyList();
+        }
+        index += 4;
+        List<Link> links = new ArrayList<Link>(count);
+        for (int i = 0; i < count; i++) {
+            SpanContext context = getContext(buffer, index);
+            index += CONTEXT_SIZE;
+            links.add(Link.create(context, getAttributes(buffer, index)));
+            index = skipAttributes(buffer, index);
+        }
+        return Collections.unmodifiableList(links);
+    }
+
+    @Override
+    public Status getStatus() {
+        ByteBuffer buffer = buffer();
+        int index = offset + buffer.getInt(offset + STATUS_OFFSET);
+        Status status = Status.fromCodeValue(buffer.getInt(index));
+        if (buffer.get(index + 4) == 0) {
+            return status;
+        }
+        return status.withDescrition(getString(buffer, index + 5));
+    }
+
+    @Override
+    public Timestamp getEndTimestamp() {
+        return getTimestamp(buffer(), offset + END_TIMESTAMP);
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof SpanData)) {
+            return false;
+        }
+        SpanData that = (SpanData) obj;
+        SpanId parentSpanId = getParentSpanId();
+        return getContext().equals(that.getContext())
+            && (parentSpanId == null
+                ? that.getParentSpanId() == null
+                : parentSpanId.equals(that.getParentSpanId()))
+            && getResource().equals(that.getResource())
+            && getName().equals(that.getName())
+            && getKind().equals(that.getKind())
+            && getStartTimestamp().equals(that.getStartTimestamp())
+            && getAttributes().equals(that.getAttributes())
+            && getTimedEvents().equals(that.getTimedEvents())
+            && getLinks().equals(that.getLinks())
+            && getStatus().equals(that.getStatus())
+            && getEndTimestamp().equals(that.getEndTimestamp());
+    }
+
+    // Same formula as the SpanData returned by SpanData.create, so that equal instances of both
+    // have equal hash codes.
+    @Override
+    public int hashCode() {
+        SpanId parentSpanId = getParentSpanId();
+        int h = 1;
+        h *= 1000003;
+        h ^= getContext().hashCode();
+        h *= 1000003;
+        h ^= parentSpanId == null ? 0 : parentSpanId.hashCode();
+        h *= 1000003;
+        h ^= getResource().hashCode();
+        h *= 1000003;
+        h ^= getName().hashCode();
+        h *= 1000003;
+        h ^= getKind().hashCode();
+        h *= 1000003;
+        h ^= getStartTimestamp().hashCode();
+        h *= 1000003;
+        h ^= getAttributes().hashCode();
+        h *= 1000003;
+        h ^= getTimedEvents().hashCode();
+        h *= 1000003;
+        h ^= getLinks().hashCode();
+        h *= 1000003;
+        h ^= getStatus().hashCode();
+        h *= 1000003;
+        h ^= getEndTimestamp().hashCode();
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        return "SpanData{"
+            + "context=" + getContext() + ", "
+            + "parentSpanId=" + getParentSpanId() + ", "
+            + "resource=" + getResource() + ", "
+            + "name=" + getName() + ", "
+            + "kind=" + getKind() + ", "
+            + "startTimestamp=" + getStartTimestamp() + ", "
+            + "attributes=" + getAttributes() + ", "
+            + "timedEvents=" + getTimedEvents() + ", "
+            + "links=" + getLinks() + ", "
+            + "status=" + getStatus() + ", "
+            + "endTimestamp=" + getEndTimestamp()
+            + "}";
+    }
+
+    private ByteBuffer buffer() {
+        ByteBuffer result = buffer;
+        if (result == null) {
+            throw new IllegalStateException("SpanData used after its export.");
+        }
+        return result;
+    }
+
+    private static Map<String, AttributeValue> getAttributes(ByteBuffer buffer, int index) {
+        int count = buffer.getInt(index);
+        if (count == 0) {
+            return Collections.emptyMap();
+        }
+        index += 4;
+        Map<String, AttributeValue> attributes = new HashMap<String, AttributeValue>(count * 2);
+        for (int i = 0; i < count; i++) {
+            String key = getString(buffer, index);
+            index += 4 + buffer.getInt(index);
+            byte type = buffer.get(index++);
+            AttributeValue value;
+            switch (type) {
+                case STRING_TYPE:
+                    value = AttributeValue.stringAttributeValue(getString(buffer, index));
+                    index += 4 + buffer.getInt(index);
+                    break;
+                case BOOLEAN_TYPE:
+                    value = AttributeValue.booleanAttributeValue(buffer.get(index) != 0);
+                    index += 1;
+                    break;
+                case LONG_TYPE:
+                    value = AttributeValue.longAttributeValue(buffer.getLong(index));
+                    index += 8;
+                    break;
+                default:
+                    value = AttributeValue.doubleAttributeValue(buffer.getDouble(index));
+                    index += 8;
+                    break;
+            }
+            attributes.put(key, value);
+        }
+        return Collections.unmodifiableMap(attributes);
+    }
+
+    private static int skipAttributes(ByteBuffer buffer, int index) {
+        int count = buffer.getInt(index);
+        index += 4;
+        for (int i = 0; i < count; i++) {
+            index += 4 + buffer.getInt(index);
+            byte type = buffer.get(index++);
+            if (type == STRING_TYPE) {
+                index += 4 + buffer.getInt(index);
+            } else {
+                index += type == BOOLEAN_TYPE ? 1 : 8;
+            }
+        }
+        return index;
+    }
+
+    private static SpanContext getContext(ByteBuffer buffer, int index) {
+        byte[] ids = new byte[16];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = buffer.get(index + i);
+        }
+        return SpanContext.create(
+            TraceId.fromBytes(ids, 0),
+            new SpanId(buffer.getLong(index + 16)),
+            TraceOptions.fromByte(buffer.get(index + 24)));
+    }
+
+    private static Timestamp getTimestamp(ByteBuffer buffer, int index) {
+        return Timestamp.create(buffer.getLong(index), buffer.getInt(index + 8));
+    }
+
+    private static String getString(ByteBuffer buffer, int index) {
+        int length = buffer.getInt(index);
+        if (length == 0) {
+            return "";
+        }
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(index + 4 + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Encodes spans into a heap buffer that grows as needed, from which they are copied to their
+     * record once its size is known. Each thread uses its own encoder.
+     */
+    @NotThreadSafe
+    static final class Encoder {
+        private static final int INITIAL_SIZE = 512;
+        // Larger buffers are only kept until the next span.
+        private static final int MAX_RETAINED_SIZE = 64 * 1024;
+
+        private final byte[] ids = new byte[16];
+        private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_SIZE);
+
+        /**
+         * Encodes the given span.
+         *
+         * @param spanData the span to encode.
+         * @return the size of the encoded span.
+         */
+        int encode(SpanData spanData) {
+            if (buffer.capacity() > MAX_RETAINED_SIZE) {
+                buffer = ByteBuffer.allocate(INITIAL_SIZE);
+            }
+            buffer.clear();
+            ensureCapacity(NAME);
+            buffer.position(TRACE_ID);
+            putContext(spanData.getContext());
+            SpanId parentSpanId = spanData.getParentSpanId();
+            buffer.put((byte) (parentSpanId == null ? 0 : 1));
+            putSpanId(parentSpanId == null ? SpanId.getInvalid() : parentSpanId);
+            buffer.put((byte) spanData.getKind().ordinal());
+            putTimestamp(spanData.getStartTimestamp());
+            putTimestamp(spanData.getEndTimestamp());
+            putString(spanData.getName());
+            Map<String, String> labels = spanData.getResource().getLabels();
+            ensureCapacity(4);
+            buffer.putInt(labels.size());
+            for (Map.Entry<String, String> label : labels.entrySet()) {
+                putString(label.getKey());
+                putString(label.getValue());
+            }
+            buffer.putInt(ATTRIBUTES_OFFSET, buffer.position());
+            putAttributes(spanData.getAttributes());
+            buffer.putInt(EVENTS_OFFSET, buffer.position());
+            List<TimedEvent> events = spanData.getTimedEvents();
+            ensureCapacity(4);
+            buffer.putInt(events.size());
+            for (TimedEvent event : events) {
+                ensureCapacity(TIMESTAMP_SIZE);
+                putTimestamp(event.getTimestamp());
+                putString(event.getEvent().getName());
+                putAttributes(event.getEvent().getAttributes());
+            }
+            buffer.putInt(LINKS_OFFSET, buffer.position());
+            List<Link> links = spanData.getLinks();
+            ensureCapacity(4);
+            buffer.putInt(links.size());
+            for (Link link : links) {
+                ensureCapacity(CONTEXT_SIZE);
+                putContext(link.getContext());
+                putAttributes(link.getAttributes());
+            }
+            buffer.putInt(STATUS_OFFSET, buffer.position());
+            Status status = spanData.getStatus();
+            String description = status.getDescription();
+            ensureCapacity(5);
+            buffer.putInt(status.getCanonicalCode().value());
+            buffer.put((byte) (description == null ? 0 : 1));
+            if (description != null) {
+                putString(description);
+            }
+            int size = buffer.position();
+            buffer.putInt(0, size);
+            return size;
+        }
+
+        /**
+         * Copies the last encoded span to {@code offset} in the given buffer, with absolute puts.
+         *
+         * @param dest the buffer of the record.
+         * @param offset the offset of the record in {@code dest}.
+         * @param size the size returned by {@link #encode(SpanData)}.
+         */
+        void copyTo(ByteBuffer dest, int offset, int size) {
+            int index = 0;
+            for (; index + 8 <= size; index += 8) {
+                dest.putLong(offset + index, buffer.getLong(index));
+            }
+            for (; index < size; index++) {
+                dest.put(offset + index, buffer.get(index));
+            }
+        }
+
+        private void ensureCapacity(int size) {
+            if (buffer.remaining() < size) {
+                ByteBuffer larger =
+                    ByteBuffer.allocate(
+                        Math.max(buffer.capacity() * 2, buffer.position() + size));
+                buffer.flip();
+                larger.put(buffer);
+                buffer = larger;
+            }
+        }
+
+        private void putAttributes(Map<String, AttributeValue> attributes) {
+            ensureCapacity(4);
+            buffer.putInt(attributes.size());
+            for (Map.Entry<String, AttributeValue> attribute : attributes.entrySet()) {
+                putString(attribute.getKey());
+                AttributeValue value = attribute.getValue();
+                ensureCapacity(9);
+                switch (value.getType()) {
+                    case STRING:
+                        buffer.put(STRING_TYPE);
+                        putString(value.getStringValue());
+                        break;
+                    case BOOLEAN:
+                        buffer.put(BOOLEAN_TYPE).put((byte) (value.getBooleanValue() ? 1 : 0));
+                        break;
+                    case LONG:
+                        buffer.put(LONG_TYPE).putLong(value.getLongValue());
+                        break;
+                    case DOUBLE:
+                        buffer.put(DOUBLE_TYPE).putDouble(value.getDoubleValue());
+                        break;
+                }
+            }
+        }
+
+        // Callers ensure the capacity.
+        private void putContext(SpanContext context) {
+            context.getTraceId().copyBytesTo(ids, 0);
+            buffer.put(ids, 0, 16);
+            putSpanId(context.getSpanId());
+            buffer.put(context.getTraceOptions().getByte());
+        }
+
+        private void putSpanId(SpanId spanId) {
+            spanId.copyBytesTo(ids, 0);
+            buffer.put(ids, 0, 8);
+        }
+
+        private void putTimestamp(Timestamp timestamp) {
+            buffer.putLong(timestamp.getSeconds());
+            buffer.putInt(timestamp.getNanos());
+        }
+
+        // Writes the string in UTF-8 after its length. Unpaired surrogates are encoded as is, and
+        // decoded as replacement characters.
+        private void putString(String str) {
+            int length = str.length();
+            ensureCapacity(4 + 3 * length);
+            byte[] bytes = buffer.array();
+            int start = buffer.arrayOffset() + buffer.position();
+            int index = start + 4;
+            for (int i = 0; i < length; i++) {
+                char ch = str.charAt(i);
+                if (ch < 0x80) {
+                    bytes[index++] = (byte) ch;
+                } else if (ch < 0x800) {
+                    bytes[index++] = (byte) (0xC0 | (ch >> 6));
+                    bytes[index++] = (byte) (0x80 | (ch & 0x3F));
+                } else if (Character.isHighSurrogate(ch)
+                    && i + 1 < length
+                    && Character.isLowSurrogate(str.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(ch, str.charAt(++i));
+                    bytes[index++] = (byte) (0xF0 | (codePoint >> 18));
+                    bytes[index++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    bytes[index++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    bytes[index++] = (byte) (0x80 | (codePoint & 0x3F));
+                } else {
+                    bytes[index++] = (byte) (0xE0 | (ch >> 12));
+                    bytes[index++] = (byte) (0x80 | ((ch >> 6) & 0x3F));
+                    bytes[index++] = (byte) (0x80 | (ch & 0x3F));
+                }
+            }
+            buffer.putInt(index - start - 4);
+            buffer.position(index - buffer.arrayOffset());
+        }
+    }
+}
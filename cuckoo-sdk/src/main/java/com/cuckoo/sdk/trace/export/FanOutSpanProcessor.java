@@ -0,0 +1,581 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.trace.export;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.cuckoo.internal.Utils;
+import com.cuckoo.sdk.trace.RecordingSpan;
+import com.cuckoo.sdk.trace.SpanProcessor;
+import com.cuckoo.trace.Span;
+import com.cuckoo.trace.SpanData;
+
+/**
+ * {@link SpanProcessor} that exports the sampled spans to several exporters, each one with its own
+ * queue, worker thread, export timeout and drop accounting.
+ *
+ * <p>Ending a span offers the same {@link SpanData} to the bounded lock-free queue of each
+ * exporter, without copying it. A queue that is full drops the span for its exporter only, so an
+ * exporter that is slow or hangs neither delays the application nor the other exporters. The
+ * spans dropped for an exporter are counted in {@link #getDroppedSpans(SpanExporter)}.
+ *
+ * <p>Each exporter is called from a thread of its own, and its worker waits at most {@code
+ * exportTimeout} for an export to complete. When an export times out the thread running it is
+ * interrupted and the worker moves on. While that export has not returned, the batches of the same
+ * exporter are dropped rather than queued behind it, so a hung exporter holds at most one batch.
+ *
+ * <p>The spans are released by each exporter once its export returns or the span is dropped, and
+ * {@link #getPendingSpans()} is the number of spans that some exporter still holds.
+ *
+ * @since 0.0.1
+ */
+@ThreadSafe
+public final class FanOutSpanProcessor implements SpanProcessor {
+    static final int DEFAULT_MAX_QUEUE_SIZE = 2048;
+    static final int DEFAULT_MAX_EXPORT_BATCH_SIZE = 512;
+    static final long DEFAULT_SCHEDULE_DELAY_MILLIS = 5000;
+    static final long DEFAULT_EXPORT_TIMEOUT_MILLIS = 30000;
+
+    private static final Logger logger = Logger.getLogger(FanOutSpanProcessor.class.getName());
+    private static final String WORKER_THREAD_NAME = "FanOutSpanProcessor_Worker_";
+    private static final String EXPORTER_THREAD_NAME = "FanOutSpanProcessor_Exporter_";
+
+    private final Lane[] lanes;
+    private final LongAdder pendingSpans = new LongAdder();
+
+    private FanOutSpanProcessor(
+        List<SpanExporter> exporters,
+        int maxQueueSize,
+        int maxExportBatchSize,
+        long scheduleDelayNanos,
+        long exportTimeoutNanos) {
+        lanes = new Lane[exporters.size()];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] =
+                new Lane(
+                    i,
+                    exporters.get(i),
+                    maxQueueSize,
+                    maxExportBatchSize,
+                    scheduleDelayNanos,
+                    exportTimeoutNanos);
+        }
+        for (Lane lane : lanes) {
+            lane.workerThread.start();
+        }
+    }
+
+    /**
+     * Returns a new {@link Builder} for a {@code FanOutSpanProcessor}.
+     *
+     * @return a new {@code Builder}.
+     * @since 0.0.1
+     */
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    @Override
+    public void onStart(Span span) {}
+
+    @Override
+    public boolean isStartRequired() {
+        return false;
+    }
+
+    @Override
+    public boolean recyclesSpans() {
+        return true;
+    }
+
+    @Override
+    public void onEnd(SpanData spanData) {
+        if (!spanData.getContext().getTraceOptions().isSampled()) {
+            return;
+        }
+        pendingSpans.increment();
+        SharedSpanData shared = new SharedSpanData(spanData, lanes.length);
+        for (Lane lane : lanes) {
+            lane.offer(shared);
+        }
+    }
+
+    /**
+     * Exports the spans that are queued for each exporter, and waits until they are exported or
+     * their export times out. Returns immediately once the processor is shut down.
+     */
+    @Override
+    public void forceFlush() {
+        CountDownLatch[] flushed = new CountDownLatch[lanes.length];
+        for (int i = 0; i < lanes.length; i++) {
+            flushed[i] = lanes[i].requestFlush();
+        }
+        for (CountDownLatch latch : flushed) {
+            BatchSpanProcessor.awaitUninterruptibly(latch);
+        }
+    }
+
+    /**
+     * Exports the spans that are still queued, then shuts down the exporters. The spans that end
+     * after this call are dropped.
+     */
+    @Override
+    public void shutdown() {
+        for (Lane lane : lanes) {
+            lane.stopped = true;
+            LockSupport.unpark(lane.workerThread);
+        }
+        boolean interrupted = false;
+        for (Lane lane : lanes) {
+            while (lane.workerThread.isAlive()) {
+                try {
+                    lane.workerThread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the number of sampled spans that were dropped for the given exporter, because its
+     * queue was full, its previous export had not returned, or the processor was shut down.
+     *
+     * @param exporter one of the exporters of this processor.
+     * @return the number of spans dropped for {@code exporter}.
+     * @throws IllegalArgumentException if {@code exporter} is not an exporter of this processor.
+     * @since 0.0.1
+     */
+    public long getDroppedSpans(SpanExporter exporter) {
+        return lane(exporter).droppedSpans.sum();
+    }
+
+    /**
+     * Returns the number of exports to the given exporter that did not return within the export
+     * timeout.
+     *
+     * @param exporter one of the exporters of this processor.
+     * @return the number of exports to {@code exporter} that timed out.
+     * @throws IllegalArgumentException if {@code exporter} is not an exporter of this processor.
+     * @since 0.0.1
+     */
+    public long getTimedOutExports(SpanExporter exporter) {
+        return lane(exporter).timedOutExports.sum();
+    }
+
+    /**
+     * Returns the number of sampled spans that are queued or being exported by at least one
+     * exporter.
+     *
+     * @return the number of spans not yet released by all the exporters.
+     * @since 0.0.1
+     */
+    public long getPendingSpans() {
+        return pendingSpans.sum();
+    }
+
+    private Lane lane(SpanExporter exporter) {
+        for (Lane lane : lanes) {
+            if (lane.exporter == exporter) {
+                return lane;
+            }
+        }
+        throw new IllegalArgumentException("Unknown exporter.");
+    }
+
+    private void release(SharedSpanData shared) {
+        if (shared.release()) {
+            pendingSpans.decrement();
+            RecordingSpan.recycle(shared.get());
+        }
+    }
+
+    // The queue, worker and export thread of one exporter.
+    private final class Lane implements Runnable {
+        private final SpanExporter exporter;
+        private final MpscRingBuffer<SharedSpanData> queue;
+        private final int maxExportBatchSize;
+        private final long scheduleDelayNanos;
+        private final long exportTimeoutNanos;
+        private final Thread workerThread;
+        private final ExecutorService exportExecutor;
+        private final LongAdder droppedSpans = new LongAdder();
+        private final LongAdder timedOutExports = new LongAdder();
+        // Released by the worker once the spans queued before the request are exported.
+        private final Queue<CountDownLatch> flushRequests =
+            new ConcurrentLinkedQueue<CountDownLatch>();
+        // Only accessed by the worker.
+        private ArrayList<SharedSpanData> batch;
+        @Nullable
+        private ExportTask lastExport;
+        // Same protocol as in BatchSpanProcessor.
+        volatile boolean parked;
+        volatile int wakeUpSize;
+        volatile boolean stopped;
+        volatile boolean terminated;
+
+        Lane(
+            int index,
+            SpanExporter exporter,
+            int maxQueueSize,
+            int maxExportBatchSize,
+            long scheduleDelayNanos,
+            long exportTimeoutNanos) {
+            this.exporter = exporter;
+            this.queue = new MpscRingBuffer<SharedSpanData>(maxQueueSize);
+            this.maxExportBatchSize = maxExportBatchSize;
+            this.scheduleDelayNanos = scheduleDelayNanos;
+            this.exportTimeoutNanos = exportTimeoutNanos;
+            this.batch = new ArrayList<SharedSpanData>(maxExportBatchSize);
+            this.workerThread = new Thread(this, WORKER_THREAD_NAME + index);
+            workerThread.setDaemon(true);
+            this.exportExecutor =
+                Executors.newSingleThreadExecutor(
+                    daemonThreadFactory(EXPORTER_THREAD_NAME + index));
+        }
+
+        void offer(SharedSpanData shared) {
+            if (stopped || !queue.offer(shared)) {
+                droppedSpans.increment();
+                release(shared);
+                return;
+            }
+            if (parked && queue.size() >= wakeUpSize) {
+                LockSupport.unpark(workerThread);
+            }
+        }
+
+        CountDownLatch requestFlush() {
+            CountDownLatch flushed = new CountDownLatch(1);
+            flushRequests.add(flushed);
+            // The worker releases the requests it sees after it sets terminated.
+            if (terminated) {
+                flushed.countDown();
+            } else {
+                LockSupport.unpark(workerThread);
+            }
+            return flushed;
+        }
+
+        @Override
+        public void run() {
+            long deadline = System.nanoTime() + scheduleDelayNanos;
+            while (!stopped) {
+                if (!flushRequests.isEmpty()) {
+                    flush();
+                }
+                queue.drainTo(batch, maxExportBatchSize - batch.size());
+                long now = System.nanoTime();
+                if (batch.size() == maxExportBatchSize || now - deadline >= 0) {
+                    exportBatch();
+                    deadline = System.nanoTime() + scheduleDelayNanos;
+                    continue;
+                }
+                int room = maxExportBatchSize - batch.size();
+                wakeUpSize = room;
+                parked = true;
+                if (!stopped && queue.size() < room) {
+                    LockSupport.parkNanos(this, deadline - now);
+                }
+                parked = false;
+            }
+            flush();
+            shutdownExporter();
+            terminated = true;
+            // Spans offered concurrently with the shutdown.
+            SharedSpanData shared;
+            while ((shared = queue.poll()) != null) {
+                droppedSpans.increment();
+                release(shared);
+            }
+            CountDownLatch request;
+            while ((request = flushRequests.poll()) != null) {
+                request.countDown();
+            }
+        }
+
+        // Exports the spans queued so far, then releases the flush requests made before.
+        private void flush() {
+            int requests = flushRequests.size();
+            int pending = queue.size();
+            do {
+                int room = maxExportBatchSize - batch.size();
+                pending -= queue.drainTo(batch, Math.min(pending, room));
+                exportBatch();
+            } while (pending > 0);
+            for (int i = 0; i < requests; i++) {
+                flushRequests.poll().countDown();
+            }
+        }
+
+        private void exportBatch() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            if (lastExport != null && !lastExport.isDone()) {
+                // The export that timed out still runs, and would delay this one further.
+                droppedSpans.add(batch.size());
+                for (SharedSpanData shared : batch) {
+                    release(shared);
+                }
+                batch.clear();
+                return;
+            }
+            // The exporter may still hold the batch if the export times out, so it is not reused.
+            ExportTask export = new ExportTask(batch);
+            batch = new ArrayList<SharedSpanData>(maxExportBatchSize);
+            lastExport = export;
+            exportExecutor.execute(export);
+            if (!export.await(exportTimeoutNanos)) {
+                timedOutExports.increment();
+                export.interrupt();
+                logger.log(Level.WARNING, "Export timed out, exporter: " + exporter);
+            }
+        }
+
+        private void shutdownExporter() {
+            Runnable shutdown =
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            exporter.shutdown();
+                        } catch (RuntimeException e) {
+                            logger.log(Level.WARNING, "Exception thrown by the exporter.", e);
+                        }
+                    }
+                };
+            exportExecutor.execute(shutdown);
+            exportExecutor.shutdown();
+            try {
+                if (!exportExecutor.awaitTermination(exportTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                    exportExecutor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                exportExecutor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // Exports one batch on the export thread, then releases its spans.
+        private final class ExportTask implements Runnable {
+            private final List<SharedSpanData> shared;
+            private final CountDownLatch done = new CountDownLatch(1);
+            @Nullable
+            private volatile Thread runner;
+
+            ExportTask(List<SharedSpanData> shared) {
+                this.shared = shared;
+            }
+
+            @Override
+            public void run() {
+                runner = Thread.currentThread();
+                try {
+                    List<SpanData> spans = new ArrayList<SpanData>(shared.size());
+                    for (SharedSpanData span : shared) {
+                        spans.add(span.get());
+                    }
+                    exporter.export(Collections.unmodifiableList(spans));
+                } catch (RuntimeException e) {
+                    logger.log(Level.WARNING, "Exception thrown by the exporter.", e);
+                } finally {
+                    runner = null;
+                    for (SharedSpanData span : shared) {
+                        release(span);
+                    }
+                    done.countDown();
+                }
+            }
+
+            boolean isDone() {
+                return done.getCount() == 0;
+            }
+
+            boolean await(long timeoutNanos) {
+                boolean interrupted = false;
+                boolean result;
+                while (true) {
+                    try {
+                        result = done.await(timeoutNanos, TimeUnit.NANOSECONDS);
+                        break;
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+                return result;
+            }
+
+            void interrupt() {
+                Thread thread = runner;
+                if (thread != null) {
+                    thread.interrupt();
+                }
+            }
+        }
+    }
+
+    private static ThreadFactory daemonThreadFactory(final String name) {
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * Builder for {@link FanOutSpanProcessor}. The settings apply to each exporter.
+     *
+     * @since 0.0.1
+     */
+    public static final class Builder {
+        private final List<SpanExporter> exporters = new ArrayList<SpanExporter>();
+        private int maxQueueSize = DEFAULT_MAX_QUEUE_SIZE;
+        private int maxExportBatchSize = DEFAULT_MAX_EXPORT_BATCH_SIZE;
+        private long scheduleDelayNanos =
+            TimeUnit.MILLISECONDS.toNanos(DEFAULT_SCHEDULE_DELAY_MILLIS);
+        private long exportTimeoutNanos =
+            TimeUnit.MILLISECONDS.toNanos(DEFAULT_EXPORT_TIMEOUT_MILLIS);
+
+        private Builder() {}
+
+        /**
+         * Adds an exporter of the spans.
+         *
+         * @param exporter the exporter to add.
+         * @return this.
+         * @throws NullPointerException if {@code exporter} is {@code null}.
+         * @throws IllegalArgumentException if {@code exporter} was already added.
+         * @since 0.0.1
+         */
+        public Builder addExporter(SpanExporter exporter) {
+            Utils.checkNotNull(exporter, "exporter");
+            for (SpanExporter added : exporters) {
+                Utils.checkArgument(added != exporter, "exporter was already added");
+            }
+            exporters.add(exporter);
+            return this;
+        }
+
+        /**
+         * Sets the number of spans that can be queued for each exporter. The value is rounded up
+         * to a power of two. The default is {@value FanOutSpanProcessor#DEFAULT_MAX_QUEUE_SIZE}.
+         *
+         * @param maxQueueSize the number of spans that can be queued for each exporter.
+         * @return this.
+         * @throws IllegalArgumentException if {@code maxQueueSize} is not positive.
+         * @since 0.0.1
+         */
+        public Builder setMaxQueueSize(int maxQueueSize) {
+            Utils.checkArgument(maxQueueSize > 0, "maxQueueSize must be positive");
+            this.maxQueueSize = maxQueueSize;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of spans exported at once. The default is {@value
+         * FanOutSpanProcessor#DEFAULT_MAX_EXPORT_BATCH_SIZE}.
+         *
+         * @param maxExportBatchSize the maximum number of spans exported at once.
+         * @return this.
+         * @throws IllegalArgumentException if {@code maxExportBatchSize} is not positive.
+         * @since 0.0.1
+         */
+        public Builder setMaxExportBatchSize(int maxExportBatchSize) {
+            Utils.checkArgument(maxExportBatchSize > 0, "maxExportBatchSize must be positive");
+            this.maxExportBatchSize = maxExportBatchSize;
+            return this;
+        }
+
+        /**
+         * Sets the maximum delay between two exports to the same exporter. The default is {@value
+         * FanOutSpanProcessor#DEFAULT_SCHEDULE_DELAY_MILLIS} milliseconds.
+         *
+         * @param delay the maximum delay between two exports.
+         * @param unit the unit of {@code delay}.
+         * @return this.
+         * @throws IllegalArgumentException if {@code delay} is not positive.
+         * @since 0.0.1
+         */
+        public Builder setScheduleDelay(long delay, TimeUnit unit) {
+            Utils.checkArgument(delay > 0, "delay must be positive");
+            this.scheduleDelayNanos = Utils.checkNotNull(unit, "unit").toNanos(delay);
+            return this;
+        }
+
+        /**
+         * Sets how long a worker waits for an export, and for the shutdown of its exporter. The
+         * default is {@value FanOutSpanProcessor#DEFAULT_EXPORT_TIMEOUT_MILLIS} milliseconds.
+         *
+         * @param timeout the maximum duration of an export.
+         * @param unit the unit of {@code timeout}.
+         * @return this.
+         * @throws IllegalArgumentException if {@code timeout} is not positive.
+         * @since 0.0.1
+         */
+        public Builder setExportTimeout(long timeout, TimeUnit unit) {
+            Utils.checkArgument(timeout > 0, "timeout must be positive");
+            this.exportTimeoutNanos = Utils.checkNotNull(unit, "unit").toNanos(timeout);
+            return this;
+        }
+
+        /**
+         * Creates a {@code FanOutSpanProcessor} and starts its worker threads.
+         *
+         * @return a new {@code FanOutSpanProcessor}.
+         * @throws IllegalArgumentException if no exporter was added, or if the batch size is
+         *     larger than the queue size.
+         * @since 0.0.1
+         */
+        public FanOutSpanProcessor build() {
+            Utils.checkArgument(!exporters.isEmpty(), "no exporter was added");
+            Utils.checkArgument(
+                maxExportBatchSize <= maxQueueSize,
+                "maxExportBatchSize must not be larger than maxQueueSize");
+            return new FanOutSpanProcessor(
+                new ArrayList<SpanExporter>(exporters),
+                maxQueueSize,
+                maxExportBatchSize,
+                scheduleDelayNanos,
+                exportTimeoutNanos);
+        }
+    }
+}
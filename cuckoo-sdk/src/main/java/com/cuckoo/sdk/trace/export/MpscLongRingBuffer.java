@@ -0,0 +1,147 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.trace.export;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.cuckoo.internal.Utils;
+
+/**
+ * Bounded, lock-free queue of non-negative {@code long} values for many producers and a single
+ * consumer.
+ *
+ * <p>Same algorithm as {@link MpscRingBuffer}, with the values stored in a {@code long} array so
+ * that queuing a value does not allocate. An empty slot holds {@value #EMPTY}.
+ */
+@ThreadSafe
+final class MpscLongRingBuffer {
+    private static final long EMPTY = -1;
+    private static final int PADDING = 16;
+    private static final int PRODUCER_INDEX = PADDING;
+    private static final int PRODUCER_LIMIT = PRODUCER_INDEX + 1;
+    private static final int CONSUMER_INDEX = PRODUCER_LIMIT + PADDING;
+
+    private final AtomicLongArray indexes = new AtomicLongArray(CONSUMER_INDEX + PADDING + 1);
+    private final AtomicLongArray slots;
+    private final int mask;
+
+    /**
+     * Creates a queue that holds at least {@code capacity} values. The capacity is rounded up to a
+     * power of two.
+     *
+     * @param capacity the minimum capacity of the queue.
+     * @throws IllegalArgumentException if {@code capacity} is not positive or is too large.
+     */
+    MpscLongRingBuffer(int capacity) {
+        Utils.checkArgument(
+            capacity > 0 && capacity <= 1 << 30, "capacity must be in range (0, 2^30]");
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        slots = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            slots.set(i, EMPTY);
+        }
+        mask = size - 1;
+        indexes.set(PRODUCER_LIMIT, size);
+    }
+
+    /** Returns the number of values the queue can hold. */
+    int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Adds a value to the queue, unless it is full.
+     *
+     * @param value the value to add, which must not be negative.
+     * @return {@code true} if the value was added, {@code false} if the queue is full.
+     */
+    boolean offer(long value) {
+        long limit = indexes.get(PRODUCER_LIMIT);
+        long index;
+        do {
+            index = indexes.get(PRODUCER_INDEX);
+            if (index >= limit) {
+                limit = indexes.get(CONSUMER_INDEX) + mask + 1;
+                if (index >= limit) {
+                    return false;
+                }
+                indexes.lazySet(PRODUCER_LIMIT, limit);
+            }
+        } while (!indexes.compareAndSet(PRODUCER_INDEX, index, index + 1));
+        slots.lazySet((int) index & mask, value);
+        return true;
+    }
+
+    /**
+     * Removes the oldest value of the queue. Must only be called by the consumer thread.
+     *
+     * @return the oldest value, or {@code -1} if the queue is empty.
+     */
+    long poll() {
+        long index = indexes.get(CONSUMER_INDEX);
+        int offset = (int) index & mask;
+        long value = slots.get(offset);
+        if (value == EMPTY) {
+            if (index == indexes.get(PRODUCER_INDEX)) {
+                return EMPTY;
+            }
+            // The slot was claimed, and its value is about to be published.
+            do {
+                value = slots.get(offset);
+            } while (value == EMPTY);
+        }
+        slots.lazySet(offset, EMPTY);
+        indexes.lazySet(CONSUMER_INDEX, index + 1);
+        return value;
+    }
+
+    /**
+     * Moves up to {@code maxValues} values from the queue to the given array, starting at {@code
+     * offset}. Must only be called by the consumer thread.
+     *
+     * @param sink the array to which the values are copied.
+     * @param offset the index in {@code sink} of the first value.
+     * @param maxValues the maximum number of values to move.
+     * @return the number of values moved.
+     */
+    int drainTo(long[] sink, int offset, int maxValues) {
+        int count = 0;
+        while (count < maxValues) {
+            long value = poll();
+            if (value == EMPTY) {
+                break;
+            }
+            sink[offset + count] = value;
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of values in the queue. The value is only an estimate while producers or
+     * the consumer are active.
+     */
+    int size() {
+        long consumer = indexes.get(CONSUMER_INDEX);
+        long producer = indexes.get(PRODUCER_INDEX);
+        return (int) Math.min(producer - consumer, mask + 1);
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.trace.export;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.cuckoo.internal.Utils;
+
+/**
+ * Bounded, lock-free queue for many producers and a single consumer.
+ *
+ * <p>Producers claim a slot by incrementing the producer index with a CAS, then publish their
+ * element into it with an ordered write. The consumer reads the slots in order; a claimed slot
+ * whose element is not published yet is waited for, since the producer that claimed it is about
+ * to write it. {@link #offer(Object)} fails instead of waiting when the queue is full.
+ *
+ * <p>The producer and the consumer indexes are written by different threads, so they are kept in
+ * one array with {@value #PADDING} unused longs around each of them, which keeps them on cache
+ * lines of their own. Producers also cache the highest index they may claim next to the producer
+ * index, so that they only read the consumer index when the cached limit is reached.
+ *
+ * @param <E> the type of the elements.
+ */
+@ThreadSafe
+final class MpscRingBuffer<E> {
+    // 128 bytes, which also covers CPUs that prefetch cache lines in pairs.
+    private static final int PADDING = 16;
+    private static final int PRODUCER_INDEX = PADDING;
+    // The producers may claim the indexes below this limit without reading the consumer index.
+    private static final int PRODUCER_LIMIT = PRODUCER_INDEX + 1;
+    private static final int CONSUMER_INDEX = PRODUCER_LIMIT + PADDING;
+
+    private final AtomicLongArray indexes = new AtomicLongArray(CONSUMER_INDEX + PADDING + 1);
+    private final AtomicReferenceArray<E> slots;
+    private final int mask;
+
+    /**
+     * Creates a queue that holds at least {@code capacity} elements. The capacity is rounded up to
+     * a power of two.
+     *
+     * @param capacity the minimum capacity of the queue.
+     * @throws IllegalArgumentException if {@code capacity} is not positive or is too large.
+     */
+    MpscRingBuffer(int capacity) {
+        Utils.checkArgument(
+            capacity > 0 && capacity <= 1 << 30, "capacity must be in range (0, 2^30]");
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        slots = new AtomicReferenceArray<E>(size);
+        mask = size - 1;
+        indexes.set(PRODUCER_LIMIT, size);
+    }
+
+    /** Returns the number of elements the queue can hold. */
+    int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Adds an element to the queue, unless it is full.
+     *
+     * @param element the element to add.
+     * @return {@code true} if the element was added, {@code false} if the queue is full.
+     */
+    boolean offer(E element) {
+        long limit = indexes.get(PRODUCER_LIMIT);
+        long index;
+        do {
+            index = indexes.get(PRODUCER_INDEX);
+            if (index >= limit) {
+                limit = indexes.get(CONSUMER_INDEX) + mask + 1;
+                if (index >= limit) {
+                    return false;
+                }
+                // Racy, but every limit computed by a producer is valid since the consumer index
+                // only grows.
+                indexes.lazySet(PRODUCER_LIMIT, limit);
+            }
+        } while (!indexes.compareAndSet(PRODUCER_INDEX, index, index + 1));
+        slots.lazySet((int) index & mask, element);
+        return true;
+    }
+
+    /**
+     * Removes the oldest element of the queue. Must only be called by the consumer thread.
+     *
+     * @return the oldest element, or {@code null} if the queue is empty.
+     */
+    @Nullable
+    E poll() {
+        long index = indexes.get(CONSUMER_INDEX);
+        int offset = (int) index & mask;
+        E element = slots.get(offset);
+        if (element == null) {
+            if (index == indexes.get(PRODUCER_INDEX)) {
+                return null;
+            }
+            // The slot was claimed, and its element is about to be published.
+            do {
+                element = slots.get(offset);
+            } while (element == null);
+        }
+        slots.lazySet(offset, null);
+        indexes.lazySet(CONSUMER_INDEX, index + 1);
+        return element;
+    }
+
+    /**
+     * Moves up to {@code maxElements} elements from the queue to the given list. Must only be
+     * called by the consumer thread.
+     *
+     * @param sink the list to which the elements are added.
+     * @param maxElements the maximum number of elements to move.
+     * @return the number of elements moved.
+     */
+    int drainTo(List<? super E> sink, int maxElements) {
+        int count = 0;
+        while (count < maxElements) {
+            E element = poll();
+            if (element == null) {
+                break;
+            }
+            sink.add(element);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of elements in the queue. The value is only an estimate while producers
+     * or the consumer are active.
+     */
+    int size() {
+        // Read the consumer index first, so that the size is never negative.
+        long consumer = indexes.get(CONSUMER_INDEX);
+        long producer = indexes.get(PRODUCER_INDEX);
+        return (int) Math.min(producer - consumer, mask + 1);
+    }
+}
+
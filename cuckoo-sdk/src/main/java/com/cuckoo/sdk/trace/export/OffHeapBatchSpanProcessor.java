@@ -0,0 +1,460 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.trace.export;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.cuckoo.internal.Utils;
+import com.cuckoo.sdk.trace.RecordingSpan;
+import com.cuckoo.sdk.trace.SpanProcessor;
+import com.cuckoo.trace.Span;
+import com.cuckoo.trace.SpanData;
+
+/**
+ * {@link SpanProcessor} that exports the sampled spans in batches like {@link BatchSpanProcessor},
+ * but keeps the queued spans off the heap.
+ *
+ * <p>Ending a span encodes its {@link SpanData} into a slab of direct {@code ByteBuffer}s, on the
+ * thread that ends it, and queues only the handle of the record. The span and its values can then
+ * be collected while young, instead of being promoted while they wait for the export. The slabs
+ * are pooled, and allocated as needed up to {@code maxOffHeapBytes}. When no slab has room for a
+ * span, or when the queue is full, the span is dropped and counted in {@link #getDroppedSpans()}.
+ *
+ * <p>The exporter receives flyweight {@code SpanData} views over the records, which decode their
+ * values when their getters are called. The views and the values they return are only valid during
+ * the call to {@link SpanExporter#export(List)}: the records are released once it returns, and the
+ * views are reused for the next batch. Exporters that keep spans must copy them, e.g. with {@link
+ * SpanData#create}.
+ *
+ * @since 0.0.1
+ */
+@ThreadSafe
+public final class OffHeapBatchSpanProcessor implements SpanProcessor {
+    static final int DEFAULT_MAX_QUEUE_SIZE = 2048;
+    static final int DEFAULT_MAX_EXPORT_BATCH_SIZE = 512;
+    static final long DEFAULT_SCHEDULE_DELAY_MILLIS = 5000;
+    static final long DEFAULT_FLUSH_TIMEOUT_MILLIS = 30000;
+    static final int DEFAULT_SLAB_SIZE = 64 * 1024;
+    static final long DEFAULT_MAX_OFF_HEAP_BYTES = 16 * 1024 * 1024;
+
+    private static final Logger logger =
+        Logger.getLogger(OffHeapBatchSpanProcessor.class.getName());
+    private static final String WORKER_THREAD_NAME = "OffHeapBatchSpanProcessor_Worker";
+
+    private static final ThreadLocal<EncodedSpanData.Encoder> ENCODER =
+        new ThreadLocal<EncodedSpanData.Encoder>() {
+            @Override
+            protected EncodedSpanData.Encoder initialValue() {
+                return new EncodedSpanData.Encoder();
+            }
+        };
+
+    private final SlabAllocator slabs;
+    private final MpscLongRingBuffer queue;
+    private final int maxExportBatchSize;
+    private final long flushTimeoutNanos;
+    private final Worker worker;
+    private final Thread workerThread;
+    private final LongAdder droppedSpans = new LongAdder();
+    // Released by the worker once the spans queued before the request are exported.
+    private final Queue<CountDownLatch> flushRequests =
+        new ConcurrentLinkedQueue<CountDownLatch>();
+
+    private OffHeapBatchSpanProcessor(
+        SpanExporter exporter,
+        int maxQueueSize,
+        int maxExportBatchSize,
+        long scheduleDelayNanos,
+        long flushTimeoutNanos,
+        int slabSize,
+        long maxOffHeapBytes) {
+        this.slabs = new SlabAllocator(slabSize, maxOffHeapBytes);
+        this.queue = new MpscLongRingBuffer(maxQueueSize);
+        this.maxExportBatchSize = maxExportBatchSize;
+        this.flushTimeoutNanos = flushTimeoutNanos;
+        this.worker = new Worker(exporter, scheduleDelayNanos);
+        this.workerThread = new Thread(worker, WORKER_THREAD_NAME);
+        workerThread.setDaemon(true);
+        workerThread.start();
+    }
+
+    /**
+     * Returns a new {@link Builder} for an {@code OffHeapBatchSpanProcessor} that exports the spans
+     * with the given exporter.
+     *
+     * @param exporter the exporter of the spans.
+     * @return a new {@code Builder}.
+     * @throws NullPointerException if {@code exporter} is {@code null}.
+     * @since 0.0.1
+     */
+    public static Builder newBuilder(SpanExporter exporter) {
+        return new Builder(Utils.checkNotNull(exporter, "exporter"));
+    }
+
+    @Override
+    public void onStart(Span span) {}
+
+    @Override
+    public boolean isStartRequired() {
+        return false;
+    }
+
+    @Override
+    public boolean recyclesSpans() {
+        return true;
+    }
+
+    @Override
+    public void onEnd(SpanData spanData) {
+        if (!spanData.getContext().getTraceOptions().isSampled()) {
+            return;
+        }
+        if (worker.stopped) {
+            droppedSpans.increment();
+            return;
+        }
+        EncodedSpanData.Encoder encoder = ENCODER.get();
+        int size = encoder.encode(spanData);
+        // The span is not read after it is encoded.
+        RecordingSpan.recycle(spanData);
+        long handle = slabs.allocate(size);
+        if (handle < 0) {
+            droppedSpans.increment();
+            return;
+        }
+        encoder.copyTo(slabs.buffer(handle), SlabAllocator.offset(handle), size);
+        if (!queue.offer(handle)) {
+            slabs.release(handle);
+            droppedSpans.increment();
+            return;
+        }
+        if (worker.parked && queue.size() >= worker.wakeUpSize) {
+            LockSupport.unpark(workerThread);
+        }
+    }
+
+    /**
+     * Exports the spans that are queued, and waits until they are exported, or at most {@code
+     * flushTimeout}. Returns immediately once the processor is shut down.
+     */
+    @Override
+    public void forceFlush() {
+        CountDownLatch flushed = new CountDownLatch(1);
+        flushRequests.add(flushed);
+        // The worker releases the requests it sees after it sets terminated.
+        if (worker.terminated) {
+            flushed.countDown();
+        } else {
+            LockSupport.unpark(workerThread);
+        }
+        if (!BatchSpanProcessor.awaitUninterruptibly(flushed, flushTimeoutNanos)) {
+            logger.log(Level.WARNING, "Flush timed out, exporter: " + worker.exporter);
+        }
+    }
+
+    /**
+     * Exports the spans that are still queued, then shuts down the exporter, and waits at most
+     * {@code flushTimeout} for both. The spans that end after this call are dropped.
+     */
+    @Override
+    public void shutdown() {
+        worker.stopped = true;
+        LockSupport.unpark(workerThread);
+        if (!BatchSpanProcessor.joinUninterruptibly(workerThread, flushTimeoutNanos)) {
+            logger.log(Level.WARNING, "Shutdown timed out, exporter: " + worker.exporter);
+        }
+    }
+
+    /**
+     * Returns the number of sampled spans that were dropped because the queue was full, no slab had
+     * room for them, or the processor was shut down.
+     *
+     * @return the number of dropped spans.
+     * @since 0.0.1
+     */
+    public long getDroppedSpans() {
+        return droppedSpans.sum();
+    }
+
+    /**
+     * Returns the number of bytes of the slabs allocated so far. Slabs are reused once their spans
+     * are exported, and are never freed before the processor is collected.
+     *
+     * @return the number of bytes of the allocated slabs.
+     * @since 0.0.1
+     */
+    public long getAllocatedOffHeapBytes() {
+        return slabs.getAllocatedBytes();
+    }
+
+    // Drains the queue into batches of handles and exports them.
+    private final class Worker implements Runnable {
+        private final SpanExporter exporter;
+        private final long scheduleDelayNanos;
+        private final long[] batch;
+        private final EncodedSpanData[] views;
+        private final List<SpanData> viewList;
+        private int batchSize;
+        // Same protocol as in BatchSpanProcessor.
+        volatile boolean parked;
+        volatile int wakeUpSize;
+        volatile boolean stopped;
+        volatile boolean terminated;
+
+        Worker(SpanExporter exporter, long scheduleDelayNanos) {
+            this.exporter = exporter;
+            this.scheduleDelayNanos = scheduleDelayNanos;
+            this.batch = new long[maxExportBatchSize];
+            this.views = new EncodedSpanData[maxExportBatchSize];
+            for (int i = 0; i < views.length; i++) {
+                views[i] = new EncodedSpanData();
+            }
+            this.viewList = Arrays.<SpanData>asList(views);
+        }
+
+        @Override
+        public void run() {
+            try {
+                long deadline = System.nanoTime() + scheduleDelayNanos;
+                while (!stopped) {
+                    if (!flushRequests.isEmpty()) {
+                        flush();
+                    }
+                    batchSize += queue.drainTo(batch, batchSize, maxExportBatchSize - batchSize);
+                    long now = System.nanoTime();
+                    if (batchSize == maxExportBatchSize || now - deadline >= 0) {
+                        exportBatch();
+                        deadline = now + scheduleDelayNanos;
+                        continue;
+                    }
+                    int room = maxExportBatchSize - batchSize;
+                    wakeUpSize = room;
+                    parked = true;
+                    if (!stopped && queue.size() < room) {
+                        LockSupport.parkNanos(this, deadline - now);
+                    }
+                    parked = false;
+                }
+                flush();
+                try {
+                    exporter.shutdown();
+                } catch (Throwable e) {
+                    logger.log(Level.WARNING, "Exception thrown by the exporter.", e);
+                }
+            } finally {
+                // Also reached if the worker fails, so that no caller waits for it forever.
+                stopped = true;
+                terminated = true;
+                // Spans queued concurrently with the shutdown.
+                long handle;
+                while ((handle = queue.poll()) >= 0) {
+                    slabs.release(handle);
+                    droppedSpans.increment();
+                }
+                CountDownLatch request;
+                while ((request = flushRequests.poll()) != null) {
+                    request.countDown();
+                }
+            }
+        }
+
+        // Exports the spans queued so far, then releases the flush requests made before.
+        private void flush() {
+            int requests = flushRequests.size();
+            int pending = queue.size();
+            do {
+                int room = maxExportBatchSize - batchSize;
+                int drained = queue.drainTo(batch, batchSize, Math.min(pending, room));
+                batchSize += drained;
+                pending -= drained;
+                exportBatch();
+            } while (pending > 0);
+            for (int i = 0; i < requests; i++) {
+                flushRequests.poll().countDown();
+            }
+        }
+
+        private void exportBatch() {
+            if (batchSize == 0) {
+                return;
+            }
+            for (int i = 0; i < batchSize; i++) {
+                views[i].bind(slabs.buffer(batch[i]), SlabAllocator.offset(batch[i]));
+            }
+            try {
+                exporter.export(
+                    batchSize == views.length ? viewList : viewList.subList(0, batchSize));
+            } catch (Throwable e) {
+                logger.log(Level.WARNING, "Exception thrown by the exporter.", e);
+            } finally {
+                for (int i = 0; i < batchSize; i++) {
+                    views[i].unbind();
+                    slabs.release(batch[i]);
+                }
+                batchSize = 0;
+            }
+        }
+    }
+
+    /**
+     * Builder for {@link OffHeapBatchSpanProcessor}.
+     *
+     * @since 0.0.1
+     */
+    public static final class Builder {
+        private final SpanExporter exporter;
+        private int maxQueueSize = DEFAULT_MAX_QUEUE_SIZE;
+        private int maxExportBatchSize = DEFAULT_MAX_EXPORT_BATCH_SIZE;
+        private long scheduleDelayNanos =
+            TimeUnit.MILLISECONDS.toNanos(DEFAULT_SCHEDULE_DELAY_MILLIS);
+        private long flushTimeoutNanos =
+            TimeUnit.MILLISECONDS.toNanos(DEFAULT_FLUSH_TIMEOUT_MILLIS);
+        private int slabSize = DEFAULT_SLAB_SIZE;
+        private long maxOffHeapBytes = DEFAULT_MAX_OFF_HEAP_BYTES;
+
+        private Builder(SpanExporter exporter) {
+            this.exporter = exporter;
+        }
+
+        /**
+         * Sets the number of spans that can be queued. The value is rounded up to a power of two.
+         * The default is {@value OffHeapBatchSpanProcessor#DEFAULT_MAX_QUEUE_SIZE}.
+         *
+         * @param maxQueueSize the number of spans that can be queued.
+         * @return this.
+         * @throws IllegalArgumentException if {@code maxQueueSize} is not positive.
+         * @since 0.0.1
+         */
+        public Builder setMaxQueueSize(int maxQueueSize) {
+            Utils.checkArgument(maxQueueSize > 0, "maxQueueSize must be positive");
+            this.maxQueueSize = maxQueueSize;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of spans exported at once. The default is {@value
+         * OffHeapBatchSpanProcessor#DEFAULT_MAX_EXPORT_BATCH_SIZE}.
+         *
+         * @param maxExportBatchSize the maximum number of spans exported at once.
+         * @return this.
+         * @throws IllegalArgumentException if {@code maxExportBatchSize} is not positive.
+         * @since 0.0.1
+         */
+        public Builder setMaxExportBatchSize(int maxExportBatchSize) {
+            Utils.checkArgument(maxExportBatchSize > 0, "maxExportBatchSize must be positive");
+            this.maxExportBatchSize = maxExportBatchSize;
+            return this;
+        }
+
+        /**
+         * Sets the maximum delay between two exports. The default is {@value
+         * OffHeapBatchSpanProcessor#DEFAULT_SCHEDULE_DELAY_MILLIS} milliseconds.
+         *
+         * @param delay the maximum delay between two exports.
+         * @param unit the unit of {@code delay}.
+         * @return this.
+         * @throws IllegalArgumentException if {@code delay} is not positive.
+         * @since 0.0.1
+         */
+        public Builder setScheduleDelay(long delay, TimeUnit unit) {
+            Utils.checkArgument(delay > 0, "delay must be positive");
+            this.scheduleDelayNanos = Utils.checkNotNull(unit, "unit").toNanos(delay);
+            return this;
+        }
+
+        /**
+         * Sets how long {@link OffHeapBatchSpanProcessor#forceFlush()} and {@link
+         * OffHeapBatchSpanProcessor#shutdown()} wait for the worker. The default is {@value
+         * OffHeapBatchSpanProcessor#DEFAULT_FLUSH_TIMEOUT_MILLIS} milliseconds.
+         *
+         * @param timeout the maximum duration of a flush or a shutdown.
+         * @param unit the unit of {@code timeout}.
+         * @return this.
+         * @throws IllegalArgumentException if {@code timeout} is not positive.
+         * @since 0.0.1
+         */
+        public Builder setFlushTimeout(long timeout, TimeUnit unit) {
+            Utils.checkArgument(timeout > 0, "timeout must be positive");
+            this.flushTimeoutNanos = Utils.checkNotNull(unit, "unit").toNanos(timeout);
+            return this;
+        }
+
+        /**
+         * Sets the size in bytes of each slab, which is also the maximum size of an encoded span.
+         * The default is {@value OffHeapBatchSpanProcessor#DEFAULT_SLAB_SIZE}.
+         *
+         * @param slabSize the size in bytes of each slab.
+         * @return this.
+         * @throws IllegalArgumentException if {@code slabSize} is not positive.
+         * @since 0.0.1
+         */
+        public Builder setSlabSize(int slabSize) {
+            Utils.checkArgument(slabSize > 0, "slabSize must be positive");
+            this.slabSize = slabSize;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of bytes of all the slabs. The default is {@value
+         * OffHeapBatchSpanProcessor#DEFAULT_MAX_OFF_HEAP_BYTES}.
+         *
+         * @param maxOffHeapBytes the maximum number of bytes of all the slabs.
+         * @return this.
+         * @throws IllegalArgumentException if {@code maxOffHeapBytes} is not positive.
+         * @since 0.0.1
+         */
+        public Builder setMaxOffHeapBytes(long maxOffHeapBytes) {
+            Utils.checkArgument(maxOffHeapBytes > 0, "maxOffHeapBytes must be positive");
+            this.maxOffHeapBytes = maxOffHeapBytes;
+            return this;
+        }
+
+        /**
+         * Creates an {@code OffHeapBatchSpanProcessor} and starts its worker thread.
+         *
+         * @return a new {@code OffHeapBatchSpanProcessor}.
+         * @throws IllegalArgumentException if the batch size is larger than the queue size, or if
+         *     the off-heap budget is smaller than a slab.
+         * @since 0.0.1
+         */
+        public OffHeapBatchSpanProcessor build() {
+            Utils.checkArgument(
+                maxExportBatchSize <= maxQueueSize,
+                "maxExportBatchSize must not be larger than maxQueueSize");
+            Utils.checkArgument(
+                maxOffHeapBytes >= slabSize, "maxOffHeapBytes must not be smaller than slabSize");
+            return new OffHeapBatchSpanProcessor(
+                exporter,
+                maxQueueSize,
+                maxExportBatchSize,
+                scheduleDelayNanos,
+                flushTimeoutNanos,
+                slabSize,
+                maxOffHeapBytes);
+        }
+    }
+}
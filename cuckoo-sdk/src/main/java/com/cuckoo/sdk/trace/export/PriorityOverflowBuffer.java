@@ -0,0 +1,133 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.trace.export;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.cuckoo.trace.SpanData;
+
+/**
+ * Bounded buffer of the spans that did not fit in the queue of a {@link BatchSpanProcessor}, which
+ * drops the spans with the lowest priority first.
+ *
+ * <p>The spans are kept in a binary min-heap on their priority, stored in two parallel arrays, so
+ * that the span to drop is always the root. Removing the last element keeps the heap valid, so the
+ * worker drains the buffer from the end of the arrays.
+ *
+ * <p>The buffer is only used when the queue is full, so it is guarded by a lock.
+ */
+@ThreadSafe
+final class PriorityOverflowBuffer {
+    private final PriorityOverflowPolicy policy;
+    private final LongAdder droppedSpans;
+    @GuardedBy("this")
+    private final SpanData[] spans;
+    @GuardedBy("this")
+    private final int[] priorities;
+    // Written under the lock, and read without it by the worker to skip the empty buffer.
+    private volatile int size;
+
+    PriorityOverflowBuffer(PriorityOverflowPolicy policy, LongAdder droppedSpans) {
+        this.policy = policy;
+        this.droppedSpans = droppedSpans;
+        this.spans = new SpanData[policy.getMaxBufferedSpans()];
+        this.priorities = new int[policy.getMaxBufferedSpans()];
+    }
+
+    /**
+     * Adds the given span, and drops the span with the lowest priority if the buffer is full.
+     * Between spans of the same priority, the buffered one is kept.
+     */
+    void offer(SpanData spanData) {
+        int priority = policy.getPriority(spanData);
+        synchronized (this) {
+            int count = size;
+            if (count < spans.length) {
+                siftUp(count, spanData, priority);
+                size = count + 1;
+                return;
+            }
+            if (priority > priorities[0]) {
+                siftDown(0, spanData, priority, count);
+            }
+        }
+        droppedSpans.increment();
+    }
+
+    /**
+     * Moves up to {@code maxElements} spans to the given list.
+     *
+     * @return the number of moved spans.
+     */
+    int drainTo(List<? super SpanData> sink, int maxElements) {
+        if (size == 0 || maxElements <= 0) {
+            return 0;
+        }
+        synchronized (this) {
+            int count = size;
+            int drained = Math.min(count, maxElements);
+            for (int i = count - 1; i >= count - drained; i--) {
+                sink.add(spans[i]);
+                spans[i] = null;
+            }
+            size = count - drained;
+            return drained;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    @GuardedBy("this")
+    private void siftUp(int index, SpanData spanData, int priority) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (priorities[parent] <= priority) {
+                break;
+            }
+            spans[index] = spans[parent];
+            priorities[index] = priorities[parent];
+            index = parent;
+        }
+        spans[index] = spanData;
+        priorities[index] = priority;
+    }
+
+    @GuardedBy("this")
+    private void siftDown(int index, SpanData spanData, int priority, int count) {
+        int half = count >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            int right = child + 1;
+            if (right < count && priorities[right] < priorities[child]) {
+                child = right;
+            }
+            if (priority <= priorities[child]) {
+                break;
+            }
+            spans[index] = spans[child];
+            priorities[index] = priorities[child];
+            index = child;
+        }
+        spans[index] = spanData;
+        priorities[index] = priority;
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.trace.export;
+
+import java.util.concurrent.TimeUnit;
+import javax.annotation.concurrent.Immutable;
+
+import com.cuckoo.internal.Utils;
+import com.cuckoo.trace.Span.Kind;
+import com.cuckoo.trace.SpanData;
+import com.cuckoo.trace.SpanData.Timestamp;
+
+/**
+ * Policy of a {@link BatchSpanProcessor} for the spans that end while its queue is full.
+ *
+ * <p>Instead of being dropped, such spans are kept in an overflow buffer of {@code
+ * maxBufferedSpans} spans, exported with the queued ones. When the buffer is full, the span with
+ * the lowest priority is dropped, either a buffered one or the new one. The priority of a span is
+ * the sum of:
+ *
+ * <ul>
+ *   <li>{@value #ERROR_PRIORITY} if its status is not OK;
+ *   <li>{@value #SLOW_PRIORITY} if it lasted at least {@code slowSpanThreshold};
+ *   <li>{@value #SERVER_OR_ROOT_PRIORITY} if it is a {@link Kind#SERVER} or a root span.
+ * </ul>
+ *
+ * <p>Spans are only scored when the queue is full, so the policy costs nothing otherwise.
+ *
+ * @since 0.0.1
+ */
+@Immutable
+public final class PriorityOverflowPolicy {
+    /** The priority added to spans whose status is not OK. */
+    public static final int ERROR_PRIORITY = 4;
+
+    /** The priority added to spans that lasted at least the slow span threshold. */
+    public static final int SLOW_PRIORITY = 2;
+
+    /** The priority added to server and root spans. */
+    public static final int SERVER_OR_ROOT_PRIORITY = 1;
+
+    private static final long NANOS_PER_SECOND = 1000 * 1000 * 1000;
+
+    private final int maxBufferedSpans;
+    private final long slowSpanThresholdNanos;
+
+    private PriorityOverflowPolicy(int maxBufferedSpans, long slowSpanThresholdNanos) {
+        this.maxBufferedSpans = maxBufferedSpans;
+        this.slowSpanThresholdNanos = slowSpanThresholdNanos;
+    }
+
+    /**
+     * Creates a {@code PriorityOverflowPolicy}.
+     *
+     * @param maxBufferedSpans the number of spans that can be kept when the queue is full.
+     * @param slowSpanThreshold the duration from which a span is considered slow.
+     * @param unit the unit of {@code slowSpanThreshold}.
+     * @return a new {@code PriorityOverflowPolicy}.
+     * @throws IllegalArgumentException if {@code maxBufferedSpans} is not positive, or if {@code
+     *     slowSpanThreshold} is negative.
+     * @throws NullPointerException if {@code unit} is {@code null}.
+     * @since 0.0.1
+     */
+    public static PriorityOverflowPolicy create(
+        int maxBufferedSpans, long slowSpanThreshold, TimeUnit unit) {
+        Utils.checkArgument(maxBufferedSpans > 0, "maxBufferedSpans must be positive");
+        Utils.checkArgument(slowSpanThreshold >= 0, "slowSpanThreshold must not be negative");
+        return new PriorityOverflowPolicy(
+            maxBufferedSpans, Utils.checkNotNull(unit, "unit").toNanos(slowSpanThreshold));
+    }
+
+    /**
+     * Returns the number of spans that can be kept when the queue is full.
+     *
+     * @return the number of spans that can be kept when the queue is full.
+     * @since 0.0.1
+     */
+    public int getMaxBufferedSpans() {
+        return maxBufferedSpans;
+    }
+
+    /**
+     * Returns the priority of the given span, between 0 and {@code ERROR_PRIORITY + SLOW_PRIORITY
+     * + SERVER_OR_ROOT_PRIORITY}.
+     *
+     * @param spanData the span.
+     * @return the priority of {@code spanData}.
+     * @since 0.0.1
+     */
+    public int getPriority(SpanData spanData) {
+        int priority = 0;
+        if (!spanData.getStatus().isOk()) {
+            priority += ERROR_PRIORITY;
+        }
+        if (durationNanos(spanData) >= slowSpanThresholdNanos) {
+            priority += SLOW_PRIORITY;
+        }
+        if (spanData.getKind() == Kind.SERVER || spanData.getParentSpanId() == null) {
+            priority += SERVER_OR_ROOT_PRIORITY;
+        }
+        return priority;
+    }
+
+    private static long durationNanos(SpanData spanData) {
+        Timestamp start = spanData.getStartTimestamp();
+        Timestamp end = spanData.getEndTimestamp();
+        return (end.getSeconds() - start.getSeconds()) * NANOS_PER_SECOND
+            + end.getNanos()
+            - start.getNanos();
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.trace.export;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.cuckoo.trace.SpanData;
+
+/**
+ * A {@link SpanData} shared by several consumers, with the number of consumers that still hold it.
+ *
+ * <p>The {@code SpanData} is not copied for each consumer: all of them read the same instance,
+ * and each one calls {@link #release()} once it does not use it anymore.
+ */
+@ThreadSafe
+final class SharedSpanData {
+    private static final AtomicIntegerFieldUpdater<SharedSpanData> REFERENCES_UPDATER =
+        AtomicIntegerFieldUpdater.newUpdater(SharedSpanData.class, "references");
+
+    private final SpanData spanData;
+    private volatile int references;
+
+    SharedSpanData(SpanData spanData, int references) {
+        this.spanData = spanData;
+        this.references = references;
+    }
+
+    SpanData get() {
+        return spanData;
+    }
+
+    /**
+     * Releases one reference.
+     *
+     * @return {@code true} if this was the last reference.
+     */
+    boolean release() {
+        return REFERENCES_UPDATER.decrementAndGet(this) == 0;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.trace.export;
+
+import java.util.Collections;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.cuckoo.internal.Utils;
+import com.cuckoo.sdk.trace.RecordingSpan;
+import com.cuckoo.sdk.trace.SpanProcessor;
+import com.cuckoo.trace.Span;
+import com.cuckoo.trace.SpanData;
+
+/**
+ * {@link SpanProcessor} that exports each sampled span synchronously, on the thread that ends it.
+ *
+ * <p>This is mostly useful for tests and debugging: the exporter is called on the span end path, so
+ * a slow exporter slows down the application.
+ *
+ * @since 0.0.1
+ */
+public final class SimpleSpanProcessor implements SpanProcessor {
+    private static final Logger logger = Logger.getLogger(SimpleSpanProcessor.class.getName());
+
+    private final SpanExporter exporter;
+
+    /**
+     * Creates a {@code SimpleSpanProcessor} that exports the spans with the given exporter.
+     *
+     * @param exporter the exporter of the spans.
+     * @throws NullPointerException if {@code exporter} is {@code null}.
+     * @since 0.0.1
+     */
+    public SimpleSpanProcessor(SpanExporter exporter) {
+        this.exporter = Utils.checkNotNull(exporter, "exporter");
+    }
+
+    @Override
+    public void onStart(Span span) {}
+
+    @Override
+    public boolean isStartRequired() {
+        return false;
+    }
+
+    @Override
+    public boolean recyclesSpans() {
+        return true;
+    }
+
+    @Override
+    public void onEnd(SpanData spanData) {
+        if (!spanData.getContext().getTraceOptions().isSampled()) {
+            return;
+        }
+        try {
+            exporter.export(Collections.singletonList(spanData));
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Exception thrown by the exporter.", e);
+        } finally {
+            RecordingSpan.recycle(spanData);
+        }
+    }
+
+    @Override
+    public void forceFlush() {}
+
+    @Override
+    public void shutdown() {
+        exporter.shutdown();
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.trace.export;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Allocator of records in slabs of direct {@link ByteBuffer}s, bounded by an off-heap budget.
+ *
+ * <p>Records are allocated from the current slab by incrementing its position with a CAS. When a
+ * record does not fit, the current slab is replaced by a free one, or by a new one while the
+ * budget allows it. A record is identified by a handle, which is the index of its slab and its
+ * offset in the slab.
+ *
+ * <p>Each slab counts its references: one for each allocated record that is not released yet, and
+ * one while it is the current slab. The thread that releases the last reference returns the slab
+ * to the free slabs. A reference is only taken on a slab that already has one, so a free slab is
+ * never written until it becomes the current slab again.
+ */
+@ThreadSafe
+final class SlabAllocator {
+    private final int slabSize;
+    // Written before the slab is published as the current slab, so visible to the threads that
+    // read the current slab, and to the threads that receive a handle to a record.
+    private final Slab[] slabs;
+    private final AtomicInteger allocatedSlabs = new AtomicInteger();
+    private final Queue<Slab> freeSlabs = new ConcurrentLinkedQueue<Slab>();
+    private final AtomicReference<Slab> currentSlab = new AtomicReference<Slab>();
+
+    /**
+     * Creates an allocator of up to {@code maxBytes / slabSize} slabs of {@code slabSize} bytes.
+     * The slabs are allocated when needed.
+     */
+    SlabAllocator(int slabSize, long maxBytes) {
+        this.slabSize = slabSize;
+        this.slabs = new Slab[(int) Math.min(maxBytes / slabSize, Integer.MAX_VALUE)];
+    }
+
+    /**
+     * Allocates a record of {@code size} bytes.
+     *
+     * @return the handle of the record, or {@code -1} if the record is larger than a slab or the
+     *     budget is exhausted.
+     */
+    long allocate(int size) {
+        if (size > slabSize) {
+            return -1;
+        }
+        while (true) {
+            Slab slab = currentSlab.get();
+            if (slab != null && slab.retain()) {
+                int offset = slab.reserve(size);
+                if (offset >= 0) {
+                    return ((long) slab.index << 32) | offset;
+                }
+                release(slab);
+            }
+            Slab next = takeFreeSlab();
+            if (next == null) {
+                return -1;
+            }
+            if (currentSlab.compareAndSet(slab, next)) {
+                if (slab != null) {
+                    // The reference held by the current slab.
+                    release(slab);
+                }
+            } else {
+                release(next);
+            }
+        }
+    }
+
+    /** Releases the record with the given handle. */
+    void release(long handle) {
+        release(slabs[(int) (handle >>> 32)]);
+    }
+
+    /** Returns the buffer that holds the record with the given handle. */
+    ByteBuffer buffer(long handle) {
+        return slabs[(int) (handle >>> 32)].buffer;
+    }
+
+    /** Returns the offset of the record with the given handle in its buffer. */
+    static int offset(long handle) {
+        return (int) handle;
+    }
+
+    /** Returns the number of bytes of the allocated slabs. */
+    long getAllocatedBytes() {
+        return (long) allocatedSlabs.get() * slabSize;
+    }
+
+    private void release(Slab slab) {
+        if (slab.release()) {
+            slab.position = 0;
+            freeSlabs.add(slab);
+        }
+    }
+
+    // Returns a slab with a single reference, or null if all the slabs are used.
+    @Nullable
+    private Slab takeFreeSlab() {
+        Slab slab = freeSlabs.poll();
+        if (slab == null) {
+            int index;
+            do {
+                index = allocatedSlabs.get();
+                if (index == slabs.length) {
+                    return null;
+                }
+            } while (!allocatedSlabs.compareAndSet(index, index + 1));
+            slab = new Slab(index, ByteBuffer.allocateDirect(slabSize));
+            slabs[index] = slab;
+        }
+        slab.references = 1;
+        return slab;
+    }
+
+    private static final class Slab {
+        private static final AtomicIntegerFieldUpdater<Slab> POSITION_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(Slab.class, "position");
+        private static final AtomicIntegerFieldUpdater<Slab> REFERENCES_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(Slab.class, "references");
+
+        private final int index;
+        private final ByteBuffer buffer;
+        private volatile int position;
+        private volatile int references;
+
+        Slab(int index, ByteBuffer buffer) {
+            this.index = index;
+            this.buffer = buffer;
+        }
+
+        // Takes a reference, unless the slab is free.
+        boolean retain() {
+            int count;
+            do {
+                count = references;
+                if (count == 0) {
+                    return false;
+                }
+            } while (!REFERENCES_UPDATER.compareAndSet(this, count, count + 1));
+            return true;
+        }
+
+        // Returns whether this was the last reference.
+        boolean release() {
+            return REFERENCES_UPDATER.decrementAndGet(this) == 0;
+        }
+
+        // Returns the offset of the reserved bytes, or -1 if they do not fit.
+        int reserve(int size) {
+            int offset;
+            do {
+                offset = position;
+                if (offset + size > buffer.capacity()) {
+                    return -1;
+                }
+            } while (!POSITION_UPDATER.compareAndSet(this, offset, offset + size));
+            return offset;
+        }
+    }
+}
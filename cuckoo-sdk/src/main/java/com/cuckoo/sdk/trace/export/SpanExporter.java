@@ -0,0 +1,59 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.trace.export;
+
+import java.util.List;
+
+import com.cuckoo.trace.SpanData;
+
+/**
+ * An exporter sends the ended spans to a backend, e.g. over the network.
+ *
+ * @since 0.0.1
+ */
+public interface SpanExporter {
+    /**
+     * The result of an export.
+     *
+     * @since 0.0.1
+     */
+    enum ResultCode {
+        /** The spans were exported. */
+        SUCCESS,
+        /** The spans could not be exported, and exporting them again may succeed. */
+        FAILED_RETRYABLE,
+        /** The spans could not be exported, and exporting them again will fail too. */
+        FAILED_NOT_RETRYABLE
+    }
+
+    /**
+     * Exports the given spans. The list must not be retained once this method returns, nor the
+     * spans if the {@code TracerSdk} recycles them.
+     *
+     * @param spans the spans to export.
+     * @return the result of the export.
+     * @since 0.0.1
+     */
+    ResultCode export(List<SpanData> spans);
+
+    /**
+     * Called when the exporter is not used anymore, to release its resources.
+     *
+     * @since 0.0.1
+     */
+    void shutdown();
+}
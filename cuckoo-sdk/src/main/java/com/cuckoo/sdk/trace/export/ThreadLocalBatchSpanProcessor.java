@@ -0,0 +1,495 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.trace.export;
+
+import java.util.ArrayList;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.cuckoo.internal.Utils;
+import com.cuckoo.sdk.trace.RecordingSpan;
+import com.cuckoo.sdk.trace.SpanProcessor;
+import com.cuckoo.trace.Span;
+import com.cuckoo.trace.SpanData;
+
+/**
+ * {@link SpanProcessor} that exports the sampled spans in batches, from a worker thread, without
+ * any atomic operation shared between the threads that end spans.
+ *
+ * <p>Each thread adds its spans to a chunk of its own, with plain writes followed by an ordered
+ * write of the chunk size. A full chunk is handed to the worker through a bounded queue, so the
+ * threads only contend once per {@code chunkSize} spans. When the queue of full chunks is full the
+ * spans are dropped, and counted in {@link #getDroppedSpans()}.
+ *
+ * <p>The chunks that are not full yet are tracked in a registry, in which the worker collects
+ * their spans every {@code scheduleDelay}, on {@link #forceFlush()} and on {@link #shutdown()}.
+ * So the spans of threads that stopped ending spans, or that died, are exported too. The threads
+ * that died are removed from the registry once their spans are collected.
+ *
+ * <p>Compared to {@link BatchSpanProcessor}, which takes one CAS on a shared index per span, this
+ * processor scales better with many threads ending spans at a high rate, at the cost of up to
+ * {@code chunkSize} spans held by each thread.
+ *
+ * @since 0.0.1
+ */
+@ThreadSafe
+public final class ThreadLocalBatchSpanProcessor implements SpanProcessor {
+    static final int DEFAULT_CHUNK_SIZE = 64;
+    static final int DEFAULT_MAX_QUEUED_CHUNKS = 32;
+    static final int DEFAULT_MAX_EXPORT_BATCH_SIZE = 512;
+    static final long DEFAULT_SCHEDULE_DELAY_MILLIS = 5000;
+    static final long DEFAULT_FLUSH_TIMEOUT_MILLIS = 30000;
+
+    private static final Logger logger =
+        Logger.getLogger(ThreadLocalBatchSpanProcessor.class.getName());
+    private static final String WORKER_THREAD_NAME = "ThreadLocalBatchSpanProcessor_Worker";
+
+    private final int chunkSize;
+    private final int maxExportBatchSize;
+    private final long flushTimeoutNanos;
+    private final MpscRingBuffer<Chunk> fullChunks;
+    // The buffers of the threads that ended spans, removed once their thread died. A concurrent
+    // set, so that registering or removing a thread does not copy the buffers of the others.
+    private final Set<ThreadBuffer> registry = ConcurrentHashMap.newKeySet();
+    private final ThreadLocal<ThreadBuffer> buffers =
+        new ThreadLocal<ThreadBuffer>() {
+            @Override
+            protected ThreadBuffer initialValue() {
+                ThreadBuffer buffer = new ThreadBuffer(new Chunk(chunkSize));
+                registry.add(buffer);
+                return buffer;
+            }
+        };
+    private final Queue<CountDownLatch> flushRequests =
+        new ConcurrentLinkedQueue<CountDownLatch>();
+    private final LongAdder droppedSpans = new LongAdder();
+    private final Worker worker;
+    private final Thread workerThread;
+
+    private ThreadLocalBatchSpanProcessor(
+        SpanExporter exporter,
+        int chunkSize,
+        int maxQueuedChunks,
+        int maxExportBatchSize,
+        long scheduleDelayNanos,
+        long flushTimeoutNanos) {
+        this.chunkSize = chunkSize;
+        this.maxExportBatchSize = maxExportBatchSize;
+        this.flushTimeoutNanos = flushTimeoutNanos;
+        this.fullChunks = new MpscRingBuffer<Chunk>(maxQueuedChunks);
+        this.worker = new Worker(exporter, scheduleDelayNanos);
+        this.workerThread = new Thread(worker, WORKER_THREAD_NAME);
+        workerThread.setDaemon(true);
+        workerThread.start();
+    }
+
+    /**
+     * Returns a new {@link Builder} for a {@code ThreadLocalBatchSpanProcessor} that exports the
+     * spans with the given exporter.
+     *
+     * @param exporter the exporter of the spans.
+     * @return a new {@code Builder}.
+     * @throws NullPointerException if {@code exporter} is {@code null}.
+     * @since 0.0.1
+     */
+    public static Builder newBuilder(SpanExporter exporter) {
+        return new Builder(Utils.checkNotNull(exporter, "exporter"));
+    }
+
+    @Override
+    public void onStart(Span span) {}
+
+    @Override
+    public boolean isStartRequired() {
+        return false;
+    }
+
+    @Override
+    public boolean recyclesSpans() {
+        return true;
+    }
+
+    @Override
+    public void onEnd(SpanData spanData) {
+        if (!spanData.getContext().getTraceOptions().isSampled()) {
+            return;
+        }
+        if (worker.stopped) {
+            droppedSpans.increment();
+            return;
+        }
+        ThreadBuffer buffer = buffers.get();
+        Chunk chunk = buffer.current;
+        int size = chunk.size;
+        if (size == chunkSize) {
+            // The chunk could not be handed to the worker when it became full.
+            chunk = handOff(buffer, chunk);
+            if (chunk == null) {
+                droppedSpans.increment();
+                return;
+            }
+            size = 0;
+        }
+        chunk.spans[size] = spanData;
+        chunk.publishSize(size + 1);
+        if (size + 1 == chunkSize) {
+            handOff(buffer, chunk);
+        }
+    }
+
+    // Hands the full chunk to the worker, and returns the new chunk of the thread, or null if the
+    // queue of full chunks is full.
+    private Chunk handOff(ThreadBuffer buffer, Chunk chunk) {
+        if (!fullChunks.offer(chunk)) {
+            return null;
+        }
+        Chunk next = new Chunk(chunkSize);
+        buffer.current = next;
+        if (worker.parked && fullChunks.size() * chunkSize >= worker.wakeUpSize) {
+            LockSupport.unpark(workerThread);
+        }
+        return next;
+    }
+
+    /**
+     * Exports the spans that ended before this call, including the spans of the chunks that are
+     * not full, and waits until they are exported, or at most {@code flushTimeout}. Returns
+     * immediately once the processor is shut down.
+     */
+    @Override
+    public void forceFlush() {
+        CountDownLatch flushed = new CountDownLatch(1);
+        flushRequests.add(flushed);
+        // The worker releases the requests it sees after it sets terminated.
+        if (worker.terminated) {
+            flushed.countDown();
+        } else {
+            LockSupport.unpark(workerThread);
+        }
+        if (!BatchSpanProcessor.awaitUninterruptibly(flushed, flushTimeoutNanos)) {
+            logger.log(Level.WARNING, "Flush timed out, exporter: " + worker.exporter);
+        }
+    }
+
+    /**
+     * Exports the spans of all the threads, then shuts down the exporter, and waits at most {@code
+     * flushTimeout} for both. The spans that end after this call are dropped.
+     */
+    @Override
+    public void shutdown() {
+        worker.stopped = true;
+        LockSupport.unpark(workerThread);
+        if (!BatchSpanProcessor.joinUninterruptibly(workerThread, flushTimeoutNanos)) {
+            logger.log(Level.WARNING, "Shutdown timed out, exporter: " + worker.exporter);
+        }
+    }
+
+    /**
+     * Returns the number of sampled spans that were dropped because the queue of full chunks was
+     * full or the processor was shut down.
+     *
+     * @return the number of dropped spans.
+     * @since 0.0.1
+     */
+    public long getDroppedSpans() {
+        return droppedSpans.sum();
+    }
+
+    /** Returns the number of threads whose buffer is registered. */
+    int getRegisteredThreads() {
+        return registry.size();
+    }
+
+    // The spans of a thread. Only the owner thread writes the spans and the size; the worker reads
+    // the spans below the size, and tracks the spans it took.
+    private static final class Chunk {
+        private static final AtomicIntegerFieldUpdater<Chunk> SIZE_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(Chunk.class, "size");
+
+        final SpanData[] spans;
+        volatile int size;
+        // Only accessed by the worker.
+        int taken;
+
+        Chunk(int capacity) {
+            spans = new SpanData[capacity];
+        }
+
+        // An ordered write is enough: the worker reads the size before the spans.
+        void publishSize(int newSize) {
+            SIZE_UPDATER.lazySet(this, newSize);
+        }
+    }
+
+    private static final class ThreadBuffer {
+        final Thread owner = Thread.currentThread();
+        volatile Chunk current;
+
+        ThreadBuffer(Chunk current) {
+            this.current = current;
+        }
+    }
+
+    // Collects the chunks into batches and exports them.
+    private final class Worker implements Runnable {
+        private final SpanExporter exporter;
+        private final long scheduleDelayNanos;
+        private final ArrayList<SpanData> batch;
+        // See BatchSpanProcessor.Worker.parked.
+        volatile boolean parked;
+        // The number of spans in full chunks that completes the batch of the parked worker.
+        volatile int wakeUpSize;
+        volatile boolean stopped;
+        volatile boolean terminated;
+
+        Worker(SpanExporter exporter, long scheduleDelayNanos) {
+            this.exporter = exporter;
+            this.scheduleDelayNanos = scheduleDelayNanos;
+            this.batch = new ArrayList<SpanData>(maxExportBatchSize);
+        }
+
+        @Override
+        public void run() {
+            try {
+                long deadline = System.nanoTime() + scheduleDelayNanos;
+                while (!stopped) {
+                    if (!flushRequests.isEmpty()) {
+                        flush();
+                    }
+                    takeFullChunks(fullChunks.size());
+                    long now = System.nanoTime();
+                    if (now - deadline >= 0) {
+                        collectThreadBuffers();
+                        exportBatch();
+                        deadline = now + scheduleDelayNanos;
+                        continue;
+                    }
+                    int room = maxExportBatchSize - batch.size();
+                    wakeUpSize = room;
+                    parked = true;
+                    if (!stopped && fullChunks.size() * chunkSize < room) {
+                        LockSupport.parkNanos(this, deadline - now);
+                    }
+                    parked = false;
+                }
+                flush();
+                try {
+                    exporter.shutdown();
+                } catch (Throwable e) {
+                    logger.log(Level.WARNING, "Exception thrown by the exporter.", e);
+                }
+            } finally {
+                // Also reached if the worker fails, so that no caller waits for it forever.
+                stopped = true;
+                terminated = true;
+                CountDownLatch request;
+                while ((request = flushRequests.poll()) != null) {
+                    request.countDown();
+                }
+            }
+        }
+
+        // Exports the spans that ended so far, then releases the flush requests made before.
+        private void flush() {
+            int requests = flushRequests.size();
+            takeFullChunks(fullChunks.size());
+            collectThreadBuffers();
+            exportBatch();
+            for (int i = 0; i < requests; i++) {
+                flushRequests.poll().countDown();
+            }
+        }
+
+        private void takeFullChunks(int count) {
+            for (int i = 0; i < count; i++) {
+                Chunk chunk = fullChunks.poll();
+                if (chunk == null) {
+                    return;
+                }
+                take(chunk);
+            }
+        }
+
+        // Takes the spans of the current chunk of each thread, and unregisters the threads that
+        // died. A chunk that is handed off concurrently is not taken twice, thanks to Chunk.taken.
+        private void collectThreadBuffers() {
+            for (ThreadBuffer buffer : registry) {
+                boolean alive = buffer.owner.isAlive();
+                take(buffer.current);
+                if (!alive) {
+                    // The owner cannot write anymore, so its chunk was completely taken.
+                    registry.remove(buffer);
+                }
+            }
+        }
+
+        private void take(Chunk chunk) {
+            int size = chunk.size;
+            SpanData[] spans = chunk.spans;
+            for (int i = chunk.taken; i < size; i++) {
+                batch.add(spans[i]);
+                // The owner never reads the slots below the size.
+                spans[i] = null;
+                if (batch.size() == maxExportBatchSize) {
+                    exportBatch();
+                }
+            }
+            chunk.taken = size;
+        }
+
+        private void exportBatch() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                exporter.export(batch);
+            } catch (Throwable e) {
+                logger.log(Level.WARNING, "Exception thrown by the exporter.", e);
+            } finally {
+                for (int i = 0; i < batch.size(); i++) {
+                    RecordingSpan.recycle(batch.get(i));
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Builder for {@link ThreadLocalBatchSpanProcessor}.
+     *
+     * @since 0.0.1
+     */
+    public static final class Builder {
+        private final SpanExporter exporter;
+        private int chunkSize = DEFAULT_CHUNK_SIZE;
+        private int maxQueuedChunks = DEFAULT_MAX_QUEUED_CHUNKS;
+        private int maxExportBatchSize = DEFAULT_MAX_EXPORT_BATCH_SIZE;
+        private long scheduleDelayNanos =
+            TimeUnit.MILLISECONDS.toNanos(DEFAULT_SCHEDULE_DELAY_MILLIS);
+        private long flushTimeoutNanos =
+            TimeUnit.MILLISECONDS.toNanos(DEFAULT_FLUSH_TIMEOUT_MILLIS);
+
+        private Builder(SpanExporter exporter) {
+            this.exporter = exporter;
+        }
+
+        /**
+         * Sets the number of spans in the chunk of a thread. The default is {@value
+         * ThreadLocalBatchSpanProcessor#DEFAULT_CHUNK_SIZE}.
+         *
+         * @param chunkSize the number of spans in a chunk.
+         * @return this.
+         * @throws IllegalArgumentException if {@code chunkSize} is not positive.
+         * @since 0.0.1
+         */
+        public Builder setChunkSize(int chunkSize) {
+            Utils.checkArgument(chunkSize > 0, "chunkSize must be positive");
+            this.chunkSize = chunkSize;
+            return this;
+        }
+
+        /**
+         * Sets the number of full chunks that can wait for the worker. The value is rounded up to
+         * a power of two. The default is {@value
+         * ThreadLocalBatchSpanProcessor#DEFAULT_MAX_QUEUED_CHUNKS}.
+         *
+         * @param maxQueuedChunks the number of full chunks that can wait for the worker.
+         * @return this.
+         * @throws IllegalArgumentException if {@code maxQueuedChunks} is not positive.
+         * @since 0.0.1
+         */
+        public Builder setMaxQueuedChunks(int maxQueuedChunks) {
+            Utils.checkArgument(maxQueuedChunks > 0, "maxQueuedChunks must be positive");
+            this.maxQueuedChunks = maxQueuedChunks;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of spans exported at once. The default is {@value
+         * ThreadLocalBatchSpanProcessor#DEFAULT_MAX_EXPORT_BATCH_SIZE}.
+         *
+         * @param maxExportBatchSize the maximum number of spans exported at once.
+         * @return this.
+         * @throws IllegalArgumentException if {@code maxExportBatchSize} is not positive.
+         * @since 0.0.1
+         */
+        public Builder setMaxExportBatchSize(int maxExportBatchSize) {
+            Utils.checkArgument(maxExportBatchSize > 0, "maxExportBatchSize must be positive");
+            this.maxExportBatchSize = maxExportBatchSize;
+            return this;
+        }
+
+        /**
+         * Sets the delay between two collections of the chunks that are not full. The default is
+         * {@value ThreadLocalBatchSpanProcessor#DEFAULT_SCHEDULE_DELAY_MILLIS} milliseconds.
+         *
+         * @param delay the delay between two collections.
+         * @param unit the unit of {@code delay}.
+         * @return this.
+         * @throws IllegalArgumentException if {@code delay} is not positive.
+         * @since 0.0.1
+         */
+        public Builder setScheduleDelay(long delay, TimeUnit unit) {
+            Utils.checkArgument(delay > 0, "delay must be positive");
+            this.scheduleDelayNanos = Utils.checkNotNull(unit, "unit").toNanos(delay);
+            return this;
+        }
+
+        /**
+         * Sets how long {@link ThreadLocalBatchSpanProcessor#forceFlush()} and {@link
+         * ThreadLocalBatchSpanProcessor#shutdown()} wait for the worker. The default is {@value
+         * ThreadLocalBatchSpanProcessor#DEFAULT_FLUSH_TIMEOUT_MILLIS} milliseconds.
+         *
+         * @param timeout the maximum duration of a flush or a shutdown.
+         * @param unit the unit of {@code timeout}.
+         * @return this.
+         * @throws IllegalArgumentException if {@code timeout} is not positive.
+         * @since 0.0.1
+         */
+        public Builder setFlushTimeout(long timeout, TimeUnit unit) {
+            Utils.checkArgument(timeout > 0, "timeout must be positive");
+            this.flushTimeoutNanos = Utils.checkNotNull(unit, "unit").toNanos(timeout);
+            return this;
+        }
+
+        /**
+         * Creates a {@code ThreadLocalBatchSpanProcessor} and starts its worker thread.
+         *
+         * @return a new {@code ThreadLocalBatchSpanProcessor}.
+         * @since 0.0.1
+         */
+        public ThreadLocalBatchSpanProcessor build() {
+            return new ThreadLocalBatchSpanProcessor(
+                exporter,
+                chunkSize,
+                maxQueuedChunks,
+                maxExportBatchSize,
+                scheduleDelayNanos,
+                flushTimeoutNanos);
+        }
+    }
+}
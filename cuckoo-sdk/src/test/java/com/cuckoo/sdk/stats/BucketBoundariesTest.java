@@ -0,0 +1,69 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.stats;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link BucketBoundaries} and {@link Measure}. */
+@RunWith(JUnit4.class)
+public class BucketBoundariesTest {
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void create_CopiesBoundaries() {
+        List<Double> boundaries = new ArrayList<>(Arrays.asList(1.0, 2.0));
+        BucketBoundaries bucketBoundaries = BucketBoundaries.create(boundaries);
+        boundaries.add(3.0);
+        assertThat(bucketBoundaries.getBoundaries()).containsExactly(1.0, 2.0).inOrder();
+    }
+
+    @Test
+    public void create_Empty() {
+        assertThat(BucketBoundaries.create(Collections.<Double>emptyList()).getBoundaries())
+            .isEmpty();
+    }
+
+    @Test
+    public void create_DisallowsUnsortedBoundaries() {
+        thrown.expect(IllegalArgumentException.class);
+        BucketBoundaries.create(Arrays.asList(1.0, 1.0));
+    }
+
+    @Test
+    public void create_DisallowsNullBoundary() {
+        thrown.expect(NullPointerException.class);
+        BucketBoundaries.create(Arrays.asList(1.0, null));
+    }
+
+    @Test
+    public void measure_DisallowsUnprintableName() {
+        thrown.expect(IllegalArgumentException.class);
+        Measure.createLong("\2ab\3cd", "", "1");
+    }
+}
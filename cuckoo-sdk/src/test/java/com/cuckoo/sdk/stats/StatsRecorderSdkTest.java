@@ -0,0 +1,331 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.stats;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.cuckoo.context.Scope;
+import com.cuckoo.sdk.tags.TaggerSdk;
+import com.cuckoo.tags.EmptyTagMap;
+import com.cuckoo.tags.Tag;
+import com.cuckoo.tags.TagKey;
+import com.cuckoo.tags.TagMap;
+import com.cuckoo.tags.TagValue;
+import com.cuckoo.tags.Tagger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link StatsRecorderSdk}. */
+@RunWith(JUnit4.class)
+public class StatsRecorderSdkTest {
+    private static final Measure LATENCY = Measure.createDouble("latency", "Latency", "ms");
+    private static final Measure SIZE = Measure.createLong("size", "Size", "By");
+    private static final BucketBoundaries BOUNDARIES =
+        BucketBoundaries.create(Arrays.asList(10.0, 100.0));
+    private static final TagKey METHOD = TagKey.create("method");
+    private static final TagKey USER = TagKey.create("user");
+    private static final View LATENCY_BY_METHOD =
+        View.create("latency", "", LATENCY, BOUNDARIES, Arrays.asList(METHOD));
+    private static final View SIZE_BY_METHOD =
+        View.create("size", "", SIZE, BOUNDARIES, Arrays.asList(METHOD));
+
+    private final Tagger tagger = new TaggerSdk();
+    private final StatsRecorderSdk recorder = new StatsRecorderSdk(tagger);
+
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    private TagMap method(String method) {
+        return tagger.tagMapBuilder()
+            .setNoParent()
+            .put(METHOD, TagValue.create(method), Tag.METADATA_UNLIMITED_PROPAGATION)
+            .build();
+    }
+
+    @Test
+    public void record_AggregatesCountSumAndBuckets() {
+        recorder.registerView(LATENCY_BY_METHOD);
+        TagMap tags = method("GET");
+        recorder.record(tags, LATENCY, 5.0);
+        recorder.record(tags, LATENCY, 10.0);
+        recorder.record(tags, LATENCY, 50.0);
+        recorder.record(tags, LATENCY, 500.0);
+        List<ViewData> data = recorder.collect();
+        assertThat(data).hasSize(1);
+        assertThat(data.get(0).getView()).isEqualTo(LATENCY_BY_METHOD);
+        assertThat(data.get(0).getDistributions())
+            .containsExactly(Distribution.create(tags, 4, 565, Arrays.asList(1L, 2L, 1L)));
+    }
+
+    @Test
+    public void record_UsesCurrentTagMap() {
+        recorder.registerView(SIZE_BY_METHOD);
+        TagMap get = method("GET");
+        TagMap post = method("POST");
+        try (Scope scope = tagger.withTagMap(get)) {
+            recorder.record(SIZE, 1L);
+            recorder.record(SIZE, 2L);
+        }
+        try (Scope scope = tagger.withTagMap(post)) {
+            recorder.record(SIZE, 200L);
+        }
+        recorder.record(SIZE, 3L);
+        assertThat(recorder.collect().get(0).getDistributions())
+            .containsExactly(
+                Distribution.create(get, 2, 3, Arrays.asList(2L, 0L, 0L)),
+                Distribution.create(post, 1, 200, Arrays.asList(0L, 0L, 1L)),
+                Distribution.create(EmptyTagMap.INSTANCE, 1, 3, Arrays.asList(1L, 0L, 0L)));
+    }
+
+    @Test
+    public void record_EqualTagMapsShareSeries() {
+        recorder.registerView(LATENCY_BY_METHOD);
+        recorder.record(method("GET"), LATENCY, 1.0);
+        recorder.record(method("GET"), LATENCY, 2.0);
+        assertThat(recorder.collect().get(0).getDistributions())
+            .containsExactly(Distribution.create(method("GET"), 2, 3, Arrays.asList(2L, 0L, 0L)));
+    }
+
+    @Test
+    public void collect_ReportsValuesSincePreviousCollection() {
+        recorder.registerView(LATENCY_BY_METHOD);
+        TagMap tags = method("GET");
+        recorder.record(tags, LATENCY, 1.0);
+        recorder.collect();
+        assertThat(recorder.collect().get(0).getDistributions()).isEmpty();
+        recorder.record(tags, LATENCY, 20.0);
+        assertThat(recorder.collect().get(0).getDistributions())
+            .containsExactly(Distribution.create(tags, 1, 20, Arrays.asList(0L, 1L, 0L)));
+    }
+
+    @Test
+    public void collect_NoLostValuesUnderConcurrentRecording() throws InterruptedException {
+        recorder.registerView(LATENCY_BY_METHOD);
+        final TagMap tags = method("GET");
+        final int threadCount = 4;
+        final int recordsPerThread = 10000;
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < recordsPerThread; j++) {
+                        recorder.record(tags, LATENCY, 1.0);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        long total = 0;
+        for (Thread thread : threads) {
+            while (thread.isAlive()) {
+                total += totalCount(recorder.collect());
+            }
+            thread.join();
+        }
+        // Values recorded during the last switch are reported by the collection after the next.
+        total += totalCount(recorder.collect());
+        total += totalCount(recorder.collect());
+        assertThat(total).isEqualTo((long) threadCount * recordsPerThread);
+    }
+
+    @Test
+    public void record_GroupsByViewColumns() {
+        recorder.registerView(LATENCY_BY_METHOD);
+        TagMap tags = tagger.tagMapBuilder()
+            .setParent(method("GET"))
+            .put(USER, TagValue.create("alice"), Tag.METADATA_UNLIMITED_PROPAGATION)
+            .build();
+        TagMap otherUser = tagger.tagMapBuilder()
+            .setParent(method("GET"))
+            .put(USER, TagValue.create("bob"), Tag.METADATA_UNLIMITED_PROPAGATION)
+            .build();
+        recorder.record(tags, LATENCY, 1.0);
+        recorder.record(otherUser, LATENCY, 2.0);
+        recorder.record(EmptyTagMap.INSTANCE, LATENCY, 3.0);
+        assertThat(recorder.collect().get(0).getDistributions())
+            .containsExactly(
+                Distribution.create(method("GET"), 2, 3, Arrays.asList(2L, 0L, 0L)),
+                Distribution.create(EmptyTagMap.INSTANCE, 1, 3, Arrays.asList(1L, 0L, 0L)));
+    }
+
+    @Test
+    public void record_MultipleViewsForMeasure() {
+        View latencyByUser = View.create("by_user", "", LATENCY, BOUNDARIES, Arrays.asList(USER));
+        recorder.registerView(LATENCY_BY_METHOD);
+        recorder.registerView(latencyByUser);
+        recorder.record(method("GET"), LATENCY, 1.0);
+        List<ViewData> data = recorder.collect();
+        assertThat(data).hasSize(2);
+        assertThat(data.get(0).getView()).isEqualTo(LATENCY_BY_METHOD);
+        assertThat(data.get(0).getDistributions()).hasSize(1);
+        assertThat(data.get(1).getView()).isEqualTo(latencyByUser);
+        assertThat(data.get(1).getDistributions())
+            .containsExactly(Distribution.create(EmptyTagMap.INSTANCE, 1, 1,
+                Arrays.asList(1L, 0L, 0L)));
+    }
+
+    @Test
+    public void record_NewCombinationsPastCapGoToOverflow() {
+        recorder.registerView(View.create("capped", "", LATENCY, BOUNDARIES,
+            Arrays.asList(METHOD), 2));
+        recorder.record(method("GET"), LATENCY, 1.0);
+        recorder.record(method("POST"), LATENCY, 1.0);
+        recorder.record(method("PUT"), LATENCY, 1.0);
+        recorder.record(method("DELETE"), LATENCY, 200.0);
+        recorder.record(method("GET"), LATENCY, 1.0);
+        ViewData data = recorder.collect().get(0);
+        assertThat(data.getDistributions())
+            .containsExactly(
+                Distribution.create(method("GET"), 2, 2, Arrays.asList(2L, 0L, 0L)),
+                Distribution.create(method("POST"), 1, 1, Arrays.asList(1L, 0L, 0L)));
+        assertThat(data.getOverflowDistribution())
+            .isEqualTo(
+                Distribution.create(EmptyTagMap.INSTANCE, 2, 201, Arrays.asList(1L, 0L, 1L)));
+        assertThat(data.getOverflowCount()).isEqualTo(2);
+
+        recorder.record(method("PUT"), LATENCY, 1.0);
+        data = recorder.collect().get(0);
+        assertThat(data.getDistributions()).isEmpty();
+        assertThat(data.getOverflowDistribution().getCount()).isEqualTo(1);
+        assertThat(data.getOverflowCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void record_SameTagMapPastCapCountsEveryValue() {
+        recorder.registerView(View.create("capped", "", LATENCY, BOUNDARIES,
+            Arrays.asList(METHOD), 1));
+        TagMap get = method("GET");
+        TagMap put = method("PUT");
+        recorder.record(get, LATENCY, 1.0);
+        recorder.record(put, LATENCY, 1.0);
+        recorder.record(put, LATENCY, 1.0);
+        recorder.record(get, LATENCY, 1.0);
+        recorder.record(put, LATENCY, 1.0);
+        ViewData data = recorder.collect().get(0);
+        assertThat(data.getDistributions())
+            .containsExactly(Distribution.create(get, 2, 2, Arrays.asList(2L, 0L, 0L)));
+        assertThat(data.getOverflowDistribution().getCount()).isEqualTo(3);
+        assertThat(data.getOverflowCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void record_CapHoldsUnderConcurrentRecording() throws InterruptedException {
+        final int maxSeries = 10;
+        recorder.registerView(View.create("capped", "", LATENCY, BOUNDARIES,
+            Arrays.asList(METHOD), maxSeries));
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            final int offset = i;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 100; j++) {
+                        recorder.record(method("m" + (j + offset)), LATENCY, 1.0);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        ViewData data = recorder.collect().get(0);
+        assertThat(data.getDistributions()).hasSize(maxSeries);
+        assertThat(totalCount(data) + data.getOverflowCount()).isEqualTo(400);
+    }
+
+    @Test
+    public void record_NoViewDropsValue() {
+        recorder.registerView(LATENCY_BY_METHOD);
+        recorder.record(SIZE, 1L);
+        assertThat(recorder.collect().get(0).getDistributions()).isEmpty();
+    }
+
+    @Test
+    public void record_DisallowsLongValueForDoubleMeasure() {
+        thrown.expect(IllegalArgumentException.class);
+        recorder.record(LATENCY, 1L);
+    }
+
+    @Test
+    public void record_DisallowsDoubleValueForLongMeasure() {
+        thrown.expect(IllegalArgumentException.class);
+        recorder.record(SIZE, 1.5);
+    }
+
+    @Test
+    public void record_TaggedLongValue() {
+        recorder.registerView(SIZE_BY_METHOD);
+        TagMap get = method("GET");
+        recorder.record(get, SIZE, 1L);
+        recorder.record(get, SIZE, 200L);
+        assertThat(recorder.collect().get(0).getDistributions())
+            .containsExactly(Distribution.create(get, 2, 201, Arrays.asList(1L, 0L, 1L)));
+    }
+
+    @Test
+    public void record_DisallowsTaggedLongValueForDoubleMeasure() {
+        thrown.expect(IllegalArgumentException.class);
+        recorder.record(EmptyTagMap.INSTANCE, LATENCY, 1L);
+    }
+
+    @Test
+    public void record_DisallowsTaggedDoubleValueForLongMeasure() {
+        thrown.expect(IllegalArgumentException.class);
+        recorder.record(EmptyTagMap.INSTANCE, SIZE, 1.5);
+    }
+
+    @Test
+    public void registerView_DisallowsDifferentViewWithSameName() {
+        recorder.registerView(LATENCY_BY_METHOD);
+        recorder.registerView(LATENCY_BY_METHOD);
+        thrown.expect(IllegalArgumentException.class);
+        recorder.registerView(View.create("latency", "", LATENCY, BOUNDARIES,
+            Arrays.asList(USER)));
+    }
+
+    @Test
+    public void view_DisallowsDuplicateColumns() {
+        thrown.expect(IllegalArgumentException.class);
+        View.create("view", "", LATENCY, BOUNDARIES, Arrays.asList(METHOD, METHOD));
+    }
+
+    @Test
+    public void view_DisallowsNonPositiveMaxSeries() {
+        thrown.expect(IllegalArgumentException.class);
+        View.create("view", "", LATENCY, BOUNDARIES, Arrays.asList(METHOD), 0);
+    }
+
+    private static long totalCount(List<ViewData> data) {
+        return totalCount(data.get(0));
+    }
+
+    private static long totalCount(ViewData data) {
+        long total = 0;
+        for (Distribution distribution : data.getDistributions()) {
+            total += distribution.getCount();
+        }
+        return total;
+    }
+}
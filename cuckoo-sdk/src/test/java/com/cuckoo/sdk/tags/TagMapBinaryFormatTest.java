@@ -0,0 +1,153 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.tags;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.cuckoo.context.propagation.BinaryFormat;
+import com.cuckoo.tags.EmptyTagMap;
+import com.cuckoo.tags.Tag;
+import com.cuckoo.tags.TagKey;
+import com.cuckoo.tags.TagMap;
+import com.cuckoo.tags.TagMetadata;
+import com.cuckoo.tags.TagValue;
+import com.cuckoo.tags.Tagger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link TagMapBinaryFormat}. */
+@RunWith(JUnit4.class)
+public class TagMapBinaryFormatTest {
+    private static final TagMetadata UNLIMITED = Tag.METADATA_UNLIMITED_PROPAGATION;
+    private static final TagMetadata NO_PROPAGATION =
+        TagMetadata.create(TagMetadata.TagTtl.NO_PROPAGATION);
+    private static final TagKey K1 = TagKey.create("k1");
+    private static final TagKey K2 = TagKey.create("k2");
+    private static final TagValue V1 = TagValue.create("v1");
+    private static final TagValue V2 = TagValue.create("v2");
+
+    private final Tagger tagger = new TaggerSdk();
+    private final BinaryFormat<TagMap> binaryFormat = tagger.getBinaryFormat();
+
+    @Test
+    public void roundTrip() {
+        TagMap tags = tagger.tagMapBuilder()
+            .setNoParent()
+            .put(K1, V1, UNLIMITED)
+            .put(K2, V2, UNLIMITED)
+            .build();
+        byte[] bytes = binaryFormat.toByteArray(tags);
+        assertThat(bytes).isEqualTo(new byte[] {0, 0, 2, 'k', '1', 2, 'v', '1', 0, 2, 'k', '2', 2,
+            'v', '2'});
+        assertThat(binaryFormat.fromByteArray(bytes)).isEqualTo(tags);
+    }
+
+    @Test
+    public void toByteArray_SkipsNoPropagationTags() {
+        TagMap tags = tagger.tagMapBuilder()
+            .setNoParent()
+            .put(K1, V1, NO_PROPAGATION)
+            .put(K2, V2, UNLIMITED)
+            .build();
+        TagMap decoded = binaryFormat.fromByteArray(binaryFormat.toByteArray(tags));
+        assertThat(decoded.getTagValue(K1)).isNull();
+        assertThat(decoded.getTagValue(K2)).isEqualTo(V2);
+    }
+
+    @Test
+    public void toByteArray_Empty() {
+        assertThat(binaryFormat.toByteArray(EmptyTagMap.INSTANCE)).isEmpty();
+    }
+
+    @Test
+    public void toByteArray_EnforcesSizeLimit() {
+        char[] chars = new char[TagValue.MAX_LENGTH];
+        Arrays.fill(chars, 'v');
+        TagValue longValue = TagValue.create(new String(chars));
+        TagMap.Builder builder = tagger.tagMapBuilder().setNoParent();
+        for (int i = 0; i < 100; i++) {
+            builder.put(TagKey.create("key" + i), longValue, UNLIMITED);
+        }
+        byte[] bytes = binaryFormat.toByteArray(builder.build());
+        assertThat(bytes.length).isAtMost(TagMapBinaryFormat.SERIALIZED_SIZE_LIMIT);
+        assertThat(binaryFormat.fromByteArray(bytes).getIterator().hasNext()).isTrue();
+    }
+
+    @Test
+    public void fromByteArray_LongVarint() {
+        char[] chars = new char[200];
+        Arrays.fill(chars, 'k');
+        TagKey longKey = TagKey.create(new String(chars));
+        TagMap tags = tagger.tagMapBuilder().setNoParent().put(longKey, V1, UNLIMITED).build();
+        assertThat(binaryFormat.fromByteArray(binaryFormat.toByteArray(tags))).isEqualTo(tags);
+    }
+
+    @Test
+    public void fromByteBuffer_ReadsFromPosition() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(16);
+        buffer.put((byte) 42).put(new byte[] {0, 0, 2, 'k', '1', 2, 'v', '1'});
+        buffer.flip();
+        buffer.get();
+        TagMap tags = ((TagMapBinaryFormat) binaryFormat).fromByteBuffer(buffer);
+        assertThat(tags.getTagValue(K1)).isEqualTo(V1);
+        assertThat(buffer.hasRemaining()).isFalse();
+    }
+
+    @Test
+    public void fromByteArray_SkipsInvalidTags() {
+        TagMap tags = binaryFormat.fromByteArray(
+            new byte[] {0, 0, 2, 'k', 1, 2, 'v', '1', 0, 0, 2, 'v', '2', 0, 2, 'k', '2', 2, 'v',
+                '2'});
+        assertThat(tags.getTagValue(K2)).isEqualTo(V2);
+        assertThat(tags.getIterator().next().getKey()).isEqualTo(K2);
+    }
+
+    @Test
+    public void fromByteArray_Malformed() {
+        assertThat(binaryFormat.fromByteArray(new byte[0])).isSameInstanceAs(EmptyTagMap.INSTANCE);
+        // Unsupported version.
+        assertThat(binaryFormat.fromByteArray(new byte[] {1, 0, 2, 'k', '1', 2, 'v', '1'}))
+            .isSameInstanceAs(EmptyTagMap.INSTANCE);
+        // Truncated value.
+        assertThat(binaryFormat.fromByteArray(new byte[] {0, 0, 2, 'k', '1', 5, 'v', '1'}))
+            .isSameInstanceAs(EmptyTagMap.INSTANCE);
+        // Truncated varint.
+        assertThat(binaryFormat.fromByteArray(new byte[] {0, 0, (byte) 0x80}))
+            .isSameInstanceAs(EmptyTagMap.INSTANCE);
+        // Varint too long.
+        assertThat(
+            binaryFormat.fromByteArray(
+                new byte[] {0, 0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+                    0x01}))
+            .isSameInstanceAs(EmptyTagMap.INSTANCE);
+        // Too large.
+        byte[] tooLarge = new byte[TagMapBinaryFormat.SERIALIZED_SIZE_LIMIT + 1];
+        assertThat(binaryFormat.fromByteArray(tooLarge)).isSameInstanceAs(EmptyTagMap.INSTANCE);
+    }
+
+    @Test
+    public void fromByteArray_StopsAtUnknownField() {
+        TagMap tags = binaryFormat.fromByteArray(
+            new byte[] {0, 0, 2, 'k', '1', 2, 'v', '1', 7, 2, 'k', '2', 2, 'v', '2'});
+        assertThat(tags.getTagValue(K1)).isEqualTo(V1);
+        assertThat(tags.getTagValue(K2)).isNull();
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.tags;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.cuckoo.context.propagation.HttpTextFormat;
+import com.cuckoo.context.propagation.HttpTextFormat.Getter;
+import com.cuckoo.context.propagation.HttpTextFormat.Setter;
+import com.cuckoo.tags.EmptyTagMap;
+import com.cuckoo.tags.Tag;
+import com.cuckoo.tags.TagKey;
+import com.cuckoo.tags.TagMap;
+import com.cuckoo.tags.TagMetadata;
+import com.cuckoo.tags.TagValue;
+import com.cuckoo.tags.Tagger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link TagMapHttpTextFormat}. */
+@RunWith(JUnit4.class)
+public class TagMapHttpTextFormatTest {
+    private static final TagMetadata UNLIMITED = Tag.METADATA_UNLIMITED_PROPAGATION;
+    private static final TagMetadata NO_PROPAGATION =
+        TagMetadata.create(TagMetadata.TagTtl.NO_PROPAGATION);
+    private static final TagKey K1 = TagKey.create("k1");
+    private static final TagKey K2 = TagKey.create("k2");
+    private static final TagValue V1 = TagValue.create("v1");
+    private static final TagValue V2 = TagValue.create("v2");
+    private static final String HEADER = TagMapHttpTextFormat.CORRELATION_CONTEXT;
+
+    private static final Setter<Map<String, String>> SETTER =
+        new Setter<Map<String, String>>() {
+            @Override
+            public void put(Map<String, String> carrier, String key, String value) {
+                carrier.put(key, value);
+            }
+        };
+
+    private static final Getter<Map<String, String>> GETTER =
+        new Getter<Map<String, String>>() {
+            @Override
+            public String get(Map<String, String> carrier, String key) {
+                return carrier.get(key);
+            }
+        };
+
+    private final Tagger tagger = new TaggerSdk();
+    private final HttpTextFormat<TagMap> textFormat = tagger.getHttpTextFormat();
+
+    @Test
+    public void fields() {
+        assertThat(textFormat.fields()).containsExactly(HEADER);
+    }
+
+    @Test
+    public void inject() {
+        TagMap tags = tagger.tagMapBuilder()
+            .setNoParent()
+            .put(K1, V1, UNLIMITED)
+            .put(K2, V2, UNLIMITED)
+            .build();
+        Map<String, String> carrier = new HashMap<String, String>();
+        textFormat.inject(tags, carrier, SETTER);
+        assertThat(carrier).containsExactly(HEADER, "k1=v1,k2=v2");
+    }
+
+    @Test
+    public void inject_SkipsNoPropagationTags() {
+        TagMap tags = tagger.tagMapBuilder()
+            .setNoParent()
+            .put(K1, V1, NO_PROPAGATION)
+            .put(K2, V2, UNLIMITED)
+            .build();
+        Map<String, String> carrier = new HashMap<String, String>();
+        textFormat.inject(tags, carrier, SETTER);
+        assertThat(carrier).containsExactly(HEADER, "k2=v2");
+    }
+
+    @Test
+    public void inject_SkipsTagsWithDelimiters() {
+        TagMap tags = tagger.tagMapBuilder()
+            .setNoParent()
+            .put(K1, TagValue.create("a,b"), UNLIMITED)
+            .put(TagKey.create("k;"), V1, UNLIMITED)
+            .put(K2, V2, UNLIMITED)
+            .build();
+        Map<String, String> carrier = new HashMap<String, String>();
+        textFormat.inject(tags, carrier, SETTER);
+        assertThat(carrier).containsExactly(HEADER, "k2=v2");
+    }
+
+    @Test
+    public void inject_NothingToPropagate() {
+        Map<String, String> carrier = new HashMap<String, String>();
+        textFormat.inject(EmptyTagMap.INSTANCE, carrier, SETTER);
+        assertThat(carrier).isEmpty();
+    }
+
+    @Test
+    public void roundTrip() {
+        TagMap tags = tagger.tagMapBuilder()
+            .setNoParent()
+            .put(K1, V1, UNLIMITED)
+            .put(K2, V2, UNLIMITED)
+            .build();
+        Map<String, String> carrier = new HashMap<String, String>();
+        textFormat.inject(tags, carrier, SETTER);
+        assertThat(textFormat.extract(carrier, GETTER)).isEqualTo(tags);
+    }
+
+    @Test
+    public void extract_IgnoresWhitespaceAndProperties() {
+        TagMap tags =
+            textFormat.extract(
+                Collections.singletonMap(HEADER, " k1 = v1 ;prop=1;other , k2=v2;ttl=0"), GETTER);
+        assertThat(tags.getTagValue(K1)).isEqualTo(V1);
+        assertThat(tags.getTagValue(K2)).isEqualTo(V2);
+    }
+
+    @Test
+    public void extract_SkipsInvalidEntries() {
+        TagMap tags =
+            textFormat.extract(
+                Collections.singletonMap(HEADER, "novalue,=v1,k\u00e9=v1,k1=v\u0001,,k2=v2"),
+                GETTER);
+        assertThat(tags.getTagValue(K2)).isEqualTo(V2);
+        assertThat(tags.getIterator().next().getKey()).isEqualTo(K2);
+    }
+
+    @Test
+    public void extract_EmptyValue() {
+        TagMap tags = textFormat.extract(Collections.singletonMap(HEADER, "k1="), GETTER);
+        assertThat(tags.getTagValue(K1)).isEqualTo(TagValue.create(""));
+    }
+
+    @Test
+    public void extract_MissingHeader() {
+        assertThat(textFormat.extract(Collections.<String, String>emptyMap(), GETTER))
+            .isSameInstanceAs(EmptyTagMap.INSTANCE);
+        assertThat(textFormat.extract(Collections.singletonMap(HEADER, ",;="), GETTER))
+            .isSameInstanceAs(EmptyTagMap.INSTANCE);
+    }
+
+    @Test
+    public void extract_HeaderTooLong() {
+        StringBuilder header = new StringBuilder("k1=v1");
+        while (header.length() <= TagMapHttpTextFormat.MAX_HEADER_LENGTH) {
+            header.append(",k2=v2");
+        }
+        assertThat(textFormat.extract(Collections.singletonMap(HEADER, header.toString()), GETTER))
+            .isSameInstanceAs(EmptyTagMap.INSTANCE);
+    }
+
+    @Test
+    public void extract_ReturnsCachedTagMapForSameHeader() {
+        TagMap first = textFormat.extract(Collections.singletonMap(HEADER, "k1=v1"), GETTER);
+        TagMap second =
+            textFormat.extract(Collections.singletonMap(HEADER, new String("k1=v1")), GETTER);
+        assertThat(second).isSameInstanceAs(first);
+        TagMap other = textFormat.extract(Collections.singletonMap(HEADER, "k2=v2"), GETTER);
+        assertThat(other.getTagValue(K1)).isNull();
+        assertThat(other.getTagValue(K2)).isEqualTo(V2);
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.tags;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.cuckoo.context.Scope;
+import com.cuckoo.tags.EmptyTagMap;
+import com.cuckoo.tags.Tag;
+import com.cuckoo.tags.TagKey;
+import com.cuckoo.tags.TagMap;
+import com.cuckoo.tags.TagMetadata;
+import com.cuckoo.tags.TagValue;
+import com.cuckoo.tags.Tagger;
+import com.google.common.collect.Lists;
+import com.google.common.testing.EqualsTester;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link TagMapSdk} and {@link TaggerSdk}. */
+@RunWith(JUnit4.class)
+public class TagMapSdkTest {
+    private static final TagMetadata METADATA = Tag.METADATA_UNLIMITED_PROPAGATION;
+    private static final TagMetadata NO_PROPAGATION =
+        TagMetadata.create(TagMetadata.TagTtl.NO_PROPAGATION);
+    private static final TagKey K1 = TagKey.create("k1");
+    private static final TagKey K2 = TagKey.create("k2");
+    private static final TagKey K3 = TagKey.create("k3");
+    private static final TagValue V1 = TagValue.create("v1");
+    private static final TagValue V2 = TagValue.create("v2");
+    private static final TagValue V3 = TagValue.create("v3");
+
+    private final Tagger tagger = new TaggerSdk();
+
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    private static List<Tag> asList(TagMap tags) {
+        return Lists.newArrayList(tags.getIterator());
+    }
+
+    @Test
+    public void build_Empty() {
+        assertThat(tagger.tagMapBuilder().setNoParent().build())
+            .isSameInstanceAs(EmptyTagMap.INSTANCE);
+    }
+
+    @Test
+    public void build_SortsByKeyName() {
+        TagMap tags = tagger.tagMapBuilder()
+            .setNoParent()
+            .put(K3, V3, METADATA)
+            .put(K1, V1, METADATA)
+            .put(K2, V2, METADATA)
+            .build();
+        assertThat(asList(tags))
+            .containsExactly(
+                Tag.create(K1, V1, METADATA),
+                Tag.create(K2, V2, METADATA),
+                Tag.create(K3, V3, METADATA))
+            .inOrder();
+    }
+
+    @Test
+    public void getTagValue() {
+        TagMap tags = tagger.tagMapBuilder()
+            .setNoParent()
+            .put(K1, V1, METADATA)
+            .put(K3, V3, METADATA)
+            .build();
+        assertThat(tags.getTagValue(K1)).isEqualTo(V1);
+        assertThat(tags.getTagValue(K3)).isEqualTo(V3);
+        assertThat(tags.getTagValue(K2)).isNull();
+    }
+
+    @Test
+    public void put_ReplacesExistingValue() {
+        TagMap tags = tagger.tagMapBuilder()
+            .setNoParent()
+            .put(K1, V1, METADATA)
+            .put(K1, V2, METADATA)
+            .build();
+        assertThat(asList(tags)).containsExactly(Tag.create(K1, V2, METADATA));
+    }
+
+    @Test
+    public void setParent_InheritsAndOverridesParentTags() {
+        TagMap parent = tagger.tagMapBuilder()
+            .setNoParent()
+            .put(K1, V1, METADATA)
+            .put(K2, V2, METADATA)
+            .build();
+        TagMap child = tagger.tagMapBuilder()
+            .setParent(parent)
+            .put(K2, V3, METADATA)
+            .put(K3, V3, METADATA)
+            .remove(K1)
+            .build();
+        assertThat(asList(child))
+            .containsExactly(Tag.create(K2, V3, METADATA), Tag.create(K3, V3, METADATA))
+            .inOrder();
+        assertThat(asList(parent))
+            .containsExactly(Tag.create(K1, V1, METADATA), Tag.create(K2, V2, METADATA))
+            .inOrder();
+    }
+
+    @Test
+    public void setParent_SharesParentUntilMaxDepth() {
+        TagMap tags = tagger.tagMapBuilder().setNoParent().put(K1, V1, METADATA).build();
+        for (int i = 1; i <= TagMapSdk.MAX_DEPTH; i++) {
+            tags = tagger.tagMapBuilder()
+                .setParent(tags)
+                .put(TagKey.create("key" + i), V2, METADATA)
+                .build();
+            assertThat(((TagMapSdk) tags).getDepth()).isEqualTo(i);
+        }
+        tags = tagger.tagMapBuilder().setParent(tags).put(K2, V2, METADATA).build();
+        assertThat(((TagMapSdk) tags).getDepth()).isEqualTo(0);
+        assertThat(asList(tags)).hasSize(TagMapSdk.MAX_DEPTH + 2);
+        assertThat(tags.getTagValue(K1)).isEqualTo(V1);
+        assertThat(tags.getTagValue(TagKey.create("key1"))).isEqualTo(V2);
+    }
+
+    @Test
+    public void setParent_RemoveAndPutInDelta() {
+        TagMap parent = tagger.tagMapBuilder()
+            .setNoParent()
+            .put(K1, V1, METADATA)
+            .put(K2, V2, METADATA)
+            .build();
+        TagMap removed = tagger.tagMapBuilder().setParent(parent).remove(K1).build();
+        assertThat(removed.getTagValue(K1)).isNull();
+        assertThat(asList(removed)).containsExactly(Tag.create(K2, V2, METADATA));
+        TagMap readded = tagger.tagMapBuilder().setParent(removed).put(K1, V3, METADATA).build();
+        assertThat(readded.getTagValue(K1)).isEqualTo(V3);
+        assertThat(asList(readded))
+            .containsExactly(Tag.create(K1, V3, METADATA), Tag.create(K2, V2, METADATA))
+            .inOrder();
+    }
+
+    @Test
+    public void setParent_RemovingAllTagsReturnsEmpty() {
+        TagMap parent = tagger.tagMapBuilder().setNoParent().put(K1, V1, METADATA).build();
+        assertThat(tagger.tagMapBuilder().setParent(parent).remove(K1).build())
+            .isSameInstanceAs(EmptyTagMap.INSTANCE);
+    }
+
+    @Test
+    public void setParent_NoChangesReturnsParent() {
+        TagMap parent = tagger.tagMapBuilder().setNoParent().put(K1, V1, METADATA).build();
+        assertThat(tagger.tagMapBuilder().setParent(parent).remove(K2).build())
+            .isSameInstanceAs(parent);
+    }
+
+    @Test
+    public void build_UsesCurrentTagMapAsImplicitParent() {
+        TagMap parent = tagger.tagMapBuilder().setNoParent().put(K1, V1, METADATA).build();
+        Scope scope = tagger.withTagMap(parent);
+        try {
+            TagMap child = tagger.tagMapBuilder().put(K2, V2, METADATA).build();
+            assertThat(child.getTagValue(K1)).isEqualTo(V1);
+            assertThat(child.getTagValue(K2)).isEqualTo(V2);
+        } finally {
+            scope.close();
+        }
+    }
+
+    @Test
+    public void buildScoped() {
+        Scope scope = tagger.tagMapBuilder().put(K1, V1, METADATA).buildScoped();
+        try {
+            assertThat(tagger.getCurrentTagMap().getTagValue(K1)).isEqualTo(V1);
+        } finally {
+            scope.close();
+        }
+        assertThat(tagger.getCurrentTagMap()).isSameInstanceAs(EmptyTagMap.INSTANCE);
+    }
+
+    @Test
+    public void indexedAccess() {
+        TagMap parent = tagger.tagMapBuilder()
+            .setNoParent()
+            .put(K3, V3, METADATA)
+            .put(K1, V1, METADATA)
+            .build();
+        TagMap tags = tagger.tagMapBuilder().setParent(parent).put(K2, V2, NO_PROPAGATION).build();
+        assertThat(tags.size()).isEqualTo(3);
+        assertThat(tags.getKey(0)).isEqualTo(K1);
+        assertThat(tags.getValue(0)).isEqualTo(V1);
+        assertThat(tags.getKey(1)).isEqualTo(K2);
+        assertThat(tags.getTagMetadata(1)).isEqualTo(NO_PROPAGATION);
+        assertThat(tags.getKey(2)).isEqualTo(K3);
+        assertThat(tags.getValue(2)).isEqualTo(V3);
+    }
+
+    @Test
+    public void getKey_IndexOutOfBounds() {
+        TagMap tags = tagger.tagMapBuilder().setNoParent().put(K1, V1, METADATA).build();
+        thrown.expect(IndexOutOfBoundsException.class);
+        tags.getKey(1);
+    }
+
+    @Test
+    public void forEach() {
+        TagMap tags = tagger.tagMapBuilder()
+            .setNoParent()
+            .put(K2, V2, NO_PROPAGATION)
+            .put(K1, V1, METADATA)
+            .build();
+        final List<Tag> visited = new ArrayList<>();
+        tags.forEach(new TagMap.TagConsumer() {
+            @Override
+            public void accept(TagKey key, TagValue value, TagMetadata tagMetadata) {
+                visited.add(Tag.create(key, value, tagMetadata));
+            }
+        });
+        assertThat(visited).containsExactlyElementsIn(asList(tags)).inOrder();
+    }
+
+    @Test
+    public void put_DisallowsNullValue() {
+        thrown.expect(NullPointerException.class);
+        tagger.tagMapBuilder().put(K1, null, METADATA);
+    }
+
+    @Test
+    public void testEquals() {
+        new EqualsTester()
+            .addEqualityGroup(
+                tagger.tagMapBuilder()
+                    .setNoParent()
+                    .put(K1, V1, METADATA)
+                    .put(K2, V2, METADATA)
+                    .build(),
+                tagger.tagMapBuilder()
+                    .setNoParent()
+                    .put(K2, V2, METADATA)
+                    .put(K1, V1, METADATA)
+                    .build())
+            .addEqualityGroup(
+                tagger.tagMapBuilder().setNoParent().put(K1, V1, METADATA).build(),
+                tagger.tagMapBuilder()
+                    .setParent(
+                        tagger.tagMapBuilder()
+                            .setNoParent()
+                            .put(K1, V1, METADATA)
+                            .put(K2, V2, METADATA)
+                            .build())
+                    .remove(K2)
+                    .build())
+            .addEqualityGroup(tagger.tagMapBuilder().setNoParent().put(K1, V2, METADATA).build())
+            .testEquals();
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.tags;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.cuckoo.OpenCuckoo;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link TaggerSdkProvider}. */
+@RunWith(JUnit4.class)
+public class TaggerSdkProviderTest {
+    @Test
+    public void create() {
+        assertThat(new TaggerSdkProvider().create()).isInstanceOf(TaggerSdk.class);
+    }
+
+    @Test
+    public void registeredAsService() {
+        assertThat(OpenCuckoo.getTagger()).isInstanceOf(TaggerSdk.class);
+    }
+}
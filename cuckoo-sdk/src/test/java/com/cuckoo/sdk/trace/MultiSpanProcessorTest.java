@@ -0,0 +1,112 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.trace;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import com.cuckoo.trace.Span;
+import com.cuckoo.trace.SpanData;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.InOrder;
+
+/** Unit tests for {@link MultiSpanProcessor}. */
+@RunWith(JUnit4.class)
+public class MultiSpanProcessorTest {
+    private final SpanProcessor startProcessor = mock(SpanProcessor.class);
+    private final SpanProcessor endProcessor = mock(SpanProcessor.class);
+    private final Span span = mock(Span.class);
+    private final SpanData spanData = mock(SpanData.class);
+
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    @Before
+    public void setUp() {
+        when(startProcessor.isStartRequired()).thenReturn(true);
+        when(endProcessor.isStartRequired()).thenReturn(false);
+    }
+
+    @Test
+    public void empty() {
+        MultiSpanProcessor processor =
+            MultiSpanProcessor.create(Collections.<SpanProcessor>emptyList());
+        assertThat(processor).isSameInstanceAs(MultiSpanProcessor.empty());
+        assertThat(processor.isStartRequired()).isFalse();
+        processor.onStart(span);
+        processor.onEnd(spanData);
+        processor.forceFlush();
+        processor.shutdown();
+    }
+
+    @Test
+    public void forwardsInOrder() {
+        MultiSpanProcessor processor =
+            MultiSpanProcessor.create(Arrays.asList(endProcessor, startProcessor));
+        assertThat(processor.isStartRequired()).isTrue();
+        processor.onStart(span);
+        processor.onEnd(spanData);
+        processor.forceFlush();
+        processor.shutdown();
+
+        verify(startProcessor).onStart(span);
+        verify(endProcessor, never()).onStart(span);
+        InOrder inOrder = inOrder(endProcessor, startProcessor);
+        inOrder.verify(endProcessor).onEnd(spanData);
+        inOrder.verify(startProcessor).onEnd(spanData);
+        inOrder.verify(endProcessor).forceFlush();
+        inOrder.verify(startProcessor).forceFlush();
+        inOrder.verify(endProcessor).shutdown();
+        inOrder.verify(startProcessor).shutdown();
+    }
+
+    @Test
+    public void startNotRequired() {
+        MultiSpanProcessor processor =
+            MultiSpanProcessor.create(Collections.singletonList(endProcessor));
+        assertThat(processor.isStartRequired()).isFalse();
+    }
+
+    @Test
+    public void add() {
+        MultiSpanProcessor first = MultiSpanProcessor.empty().add(endProcessor);
+        MultiSpanProcessor second = first.add(startProcessor);
+        assertThat(first.isStartRequired()).isFalse();
+        assertThat(second.isStartRequired()).isTrue();
+        second.onEnd(spanData);
+        verify(endProcessor).onEnd(spanData);
+        verify(startProcessor).onEnd(spanData);
+    }
+
+    @Test
+    public void create_NullProcessor() {
+        thrown.expect(NullPointerException.class);
+        MultiSpanProcessor.create(Arrays.asList(endProcessor, null));
+    }
+}
@@ -0,0 +1,319 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.trace;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.Collections;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+import com.cuckoo.resources.Resource;
+import com.cuckoo.trace.AttributeValue;
+import com.cuckoo.trace.Link;
+import com.cuckoo.trace.Span.Kind;
+import com.cuckoo.trace.SpanContext;
+import com.cuckoo.trace.SpanData;
+import com.cuckoo.trace.SpanData.Timestamp;
+import com.cuckoo.trace.SpanId;
+import com.cuckoo.trace.Status;
+import com.cuckoo.trace.TraceId;
+import com.cuckoo.trace.TraceOptions;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link RecordingSpan}. */
+@RunWith(JUnit4.class)
+public class RecordingSpanTest {
+    private static final long START_EPOCH_NANOS = 1000L * 1000 * 1000 * 1000 + 5;
+    private static final SpanContext CONTEXT =
+        SpanContext.create(new TraceId(1, 2), new SpanId(3), TraceOptions.SAMPLED);
+    private static final SpanContext LINKED_CONTEXT =
+        SpanContext.create(new TraceId(4, 5), new SpanId(6), TraceOptions.SAMPLED);
+    private static final SpanId PARENT_SPAN_ID = new SpanId(7);
+
+    private final RecordingSpan span = startSpan();
+    private final RecordArrays.Pool pool = new RecordArrays.Pool();
+
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void recordAndEnd() {
+        span.setAttribute("string", "value");
+        span.setAttribute("long", 1L);
+        span.setAttribute("long", 2L);
+        span.setAttribute("boolean", true);
+        span.addEvent("event");
+        span.addLink(LINKED_CONTEXT);
+        span.setStatus(Status.NOT_FOUND);
+        span.updateName("renamed");
+        assertThat(span.isRecordingEvents()).isTrue();
+        assertThat(span.toSpanData()).isNull();
+        span.end();
+
+        SpanData data = span.toSpanData();
+        assertThat(span.hasEnded()).isTrue();
+        assertThat(data.getContext()).isEqualTo(CONTEXT);
+        assertThat(data.getParentSpanId()).isEqualTo(PARENT_SPAN_ID);
+        assertThat(data.getName()).isEqualTo("renamed");
+        assertThat(data.getKind()).isEqualTo(Kind.SERVER);
+        assertThat(data.getStatus()).isEqualTo(Status.NOT_FOUND);
+        assertThat(data.getAttributes())
+            .containsExactly(
+                "string", AttributeValue.stringAttributeValue("value"),
+                "long", AttributeValue.longAttributeValue(2),
+                "boolean", AttributeValue.booleanAttributeValue(true));
+        assertThat(data.getTimedEvents()).hasSize(1);
+        assertThat(data.getTimedEvents().get(0).getEvent().getName()).isEqualTo("event");
+        assertThat(data.getLinks()).containsExactly(Link.create(LINKED_CONTEXT));
+        assertThat(data.getStartTimestamp()).isEqualTo(Timestamp.create(1000, 5));
+        assertThat(compare(data.getEndTimestamp(), data.getStartTimestamp())).isAtLeast(0);
+        assertThat(compare(data.getTimedEvents().get(0).getTimestamp(), data.getStartTimestamp()))
+            .isAtLeast(0);
+    }
+
+    @Test
+    public void defaults() {
+        span.end();
+        SpanData data = span.toSpanData();
+        assertThat(data.getName()).isEqualTo("name");
+        assertThat(data.getStatus()).isEqualTo(Status.OK);
+        assertThat(data.getAttributes()).isEmpty();
+        assertThat(data.getTimedEvents()).isEmpty();
+        assertThat(data.getLinks()).isEmpty();
+    }
+
+    @Test
+    public void suppliers() {
+        span.setAttribute("lazy", () -> AttributeValue.longAttributeValue(1));
+        span.addEvent(
+            "lazy event", () -> ImmutableMap.of("k", AttributeValue.longAttributeValue(2)));
+        span.addEvent(() -> SpanData.Event.create("supplied event"));
+        span.end();
+        span.setAttribute("after end", () -> {
+            throw new AssertionError();
+        });
+        span.addEvent(() -> {
+            throw new AssertionError();
+        });
+        SpanData data = span.toSpanData();
+        assertThat(data.getAttributes())
+            .containsExactly("lazy", AttributeValue.longAttributeValue(1));
+        assertThat(data.getTimedEvents()).hasSize(2);
+        assertThat(data.getTimedEvents().get(0).getEvent().getAttributes())
+            .containsExactly("k", AttributeValue.longAttributeValue(2));
+        assertThat(data.getTimedEvents().get(1).getEvent().getName()).isEqualTo("supplied event");
+    }
+
+    @Test
+    public void recordAfterEnd_Ignored() {
+        span.setAttribute("before", "value");
+        span.end();
+        SpanData data = span.toSpanData();
+        span.setAttribute("after", "value");
+        span.setAttribute("before", "changed");
+        span.addEvent("event");
+        span.setStatus(Status.ABORTED);
+        span.end();
+        assertThat(span.toSpanData()).isSameInstanceAs(data);
+        assertThat(data.getAttributes())
+            .containsExactly("before", AttributeValue.stringAttributeValue("value"));
+        assertThat(data.getTimedEvents()).isEmpty();
+        assertThat(data.getStatus()).isEqualTo(Status.OK);
+    }
+
+    @Test
+    public void recordFromOtherThread() throws InterruptedException {
+        span.setAttribute("owner", "first");
+        runOnOtherThread(new Runnable() {
+            @Override
+            public void run() {
+                span.setAttribute("owner", "other");
+                span.setAttribute("other", 1L);
+                span.addEvent("other event");
+                span.setStatus(Status.CANCELLED);
+            }
+        });
+        // The owner's write happens after the other thread's one.
+        span.setAttribute("owner", "last");
+        span.addEvent("owner event");
+        span.end();
+        SpanData data = span.toSpanData();
+        assertThat(data.getAttributes())
+            .containsExactly(
+                "owner", AttributeValue.stringAttributeValue("last"),
+                "other", AttributeValue.longAttributeValue(1));
+        assertThat(data.getTimedEvents()).hasSize(2);
+        assertThat(data.getTimedEvents().get(0).getEvent().getName()).isEqualTo("other event");
+        assertThat(data.getStatus()).isEqualTo(Status.CANCELLED);
+    }
+
+    @Test
+    public void endOnOtherThread() throws InterruptedException {
+        span.setAttribute("owner", "value");
+        runOnOtherThread(new Runnable() {
+            @Override
+            public void run() {
+                span.setAttribute("other", "value");
+                span.end();
+            }
+        });
+        assertThat(span.toSpanData().getAttributes()).hasSize(2);
+    }
+
+    @Test
+    public void endOnOtherThread_FrozenSpanDataDoesNotChange() throws InterruptedException {
+        for (int i = 0; i < 200; i++) {
+            final RecordingSpan racingSpan = startSpan();
+            racingSpan.setAttribute("counter", 0L);
+            final AttributeValue[] frozen = new AttributeValue[1];
+            Thread ender = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    racingSpan.end();
+                    frozen[0] = racingSpan.toSpanData().getAttributes().get("counter");
+                }
+            });
+            ender.start();
+            // The owner overwrites the attribute while the other thread ends the span.
+            long counter = 0;
+            while (!racingSpan.hasEnded()) {
+                racingSpan.setAttribute("counter", ++counter);
+            }
+            ender.join();
+            assertThat(racingSpan.toSpanData().getAttributes().get("counter"))
+                .isEqualTo(frozen[0]);
+        }
+    }
+
+    @Test
+    public void limits() {
+        for (int i = 0; i < SpanRecord.MAX_ATTRIBUTES + 1; i++) {
+            span.setAttribute("key" + i, i);
+        }
+        for (int i = 0; i < SpanRecord.MAX_EVENTS + 1; i++) {
+            span.addEvent("event", Collections.<String, AttributeValue>emptyMap());
+        }
+        span.end();
+        Map<String, AttributeValue> attributes = span.toSpanData().getAttributes();
+        assertThat(attributes).hasSize(SpanRecord.MAX_ATTRIBUTES);
+        assertThat(attributes).doesNotContainKey("key" + SpanRecord.MAX_ATTRIBUTES);
+        assertThat(span.toSpanData().getTimedEvents()).hasSize(SpanRecord.MAX_EVENTS);
+    }
+
+    @Test
+    public void recycle_ReusesArrays() {
+        RecordArrays arrays = pool.acquire();
+        RecordingSpan first = startSpan(arrays);
+        first.setAttribute("key", "first");
+        first.addEvent("event");
+        first.end();
+        RecordingSpan.recycle(first.toSpanData());
+        assertThat(arrays.attributeKeys).asList().containsExactly(null, null, null, null);
+
+        assertThat(pool.acquire()).isSameInstanceAs(arrays);
+        RecordingSpan second = startSpan(arrays);
+        second.setAttribute("key", "second");
+        second.end();
+        assertThat(second.toSpanData().getAttributes())
+            .containsExactly("key", AttributeValue.stringAttributeValue("second"));
+        assertThat(second.toSpanData().getTimedEvents()).isEmpty();
+        // The recycled arrays are only handed out once.
+        RecordingSpan.recycle(first.toSpanData());
+        assertThat(pool.acquire()).isNotSameInstanceAs(arrays);
+    }
+
+    @Test
+    public void recycle_LateWritesIgnored() {
+        RecordArrays arrays = pool.acquire();
+        RecordingSpan first = startSpan(arrays);
+        first.setAttribute("key", "first");
+        // As if the span had been ended, exported and recycled by other threads while the owner
+        // was recording.
+        arrays.recycle(arrays.getGeneration());
+        RecordingSpan second = startSpan(pool.acquire());
+        first.setAttribute("late", "value");
+        first.addEvent("late event");
+        first.end();
+        second.end();
+        assertThat(first.toSpanData()).isNull();
+        assertThat(second.toSpanData().getAttributes()).isEmpty();
+        assertThat(second.toSpanData().getTimedEvents()).isEmpty();
+    }
+
+    @Test
+    public void recycle_SpanDataCannotBeRead() {
+        RecordingSpan recycled = startSpan(pool.acquire());
+        recycled.setAttribute("key", "value");
+        recycled.end();
+        SpanData data = recycled.toSpanData();
+        RecordingSpan.recycle(data);
+        assertThat(data.getName()).isEqualTo("name");
+        thrown.expect(IllegalStateException.class);
+        data.getAttributes().get("key");
+    }
+
+    @Test
+    public void recycle_SpanNotRecycled() {
+        span.setAttribute("key", "value");
+        span.end();
+        RecordingSpan.recycle(span.toSpanData());
+        assertThat(span.toSpanData().getAttributes())
+            .containsExactly("key", AttributeValue.stringAttributeValue("value"));
+    }
+
+    @Test
+    public void toTimestamp() {
+        assertThat(RecordingSpan.toTimestamp(1500L * 1000 * 1000))
+            .isEqualTo(Timestamp.create(1, 500 * 1000 * 1000));
+        assertThat(RecordingSpan.toTimestamp(-1)).isEqualTo(Timestamp.create(-1, 999999999));
+    }
+
+    private static RecordingSpan startSpan() {
+        return startSpan(null);
+    }
+
+    private static RecordingSpan startSpan(@Nullable RecordArrays arrays) {
+        return RecordingSpan.startSpan(
+            CONTEXT,
+            PARENT_SPAN_ID,
+            "name",
+            Kind.SERVER,
+            Resource.getEmpty(),
+            START_EPOCH_NANOS,
+            MultiSpanProcessor.empty(),
+            arrays);
+    }
+
+    private static void runOnOtherThread(Runnable runnable) throws InterruptedException {
+        Thread thread = new Thread(runnable);
+        thread.start();
+        thread.join();
+    }
+
+    private static int compare(Timestamp t1, Timestamp t2) {
+        if (t1.getSeconds() != t2.getSeconds()) {
+            return t1.getSeconds() < t2.getSeconds() ? -1 : 1;
+        }
+        return Integer.compare(t1.getNanos(), t2.getNanos());
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.trace;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.cuckoo.trace.Link;
+import com.cuckoo.trace.Sampler;
+import com.cuckoo.trace.SpanContext;
+import com.cuckoo.trace.SpanId;
+import com.cuckoo.trace.TraceId;
+import com.cuckoo.trace.TraceOptions;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link Samplers}. */
+@RunWith(JUnit4.class)
+public class SamplersTest {
+    private static final TraceId TRACE_ID = new TraceId(1, 2);
+    private static final SpanId SPAN_ID = new SpanId(3);
+    private static final SpanContext SAMPLED_PARENT =
+        SpanContext.create(TRACE_ID, new SpanId(4), TraceOptions.SAMPLED);
+    private static final SpanContext NOT_SAMPLED_PARENT =
+        SpanContext.create(TRACE_ID, new SpanId(4), TraceOptions.DEFAULT);
+    private static final List<Link> NO_LINKS = Collections.emptyList();
+
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void alwaysSample() {
+        Sampler sampler = Samplers.alwaysSample();
+        assertThat(isSampled(sampler, null, TRACE_ID)).isTrue();
+        assertThat(isSampled(sampler, NOT_SAMPLED_PARENT, TRACE_ID)).isTrue();
+        assertThat(sampler.getDescription()).isEqualTo("AlwaysSampleSampler");
+    }
+
+    @Test
+    public void neverSample() {
+        Sampler sampler = Samplers.neverSample();
+        assertThat(isSampled(sampler, null, TRACE_ID)).isFalse();
+        assertThat(isSampled(sampler, SAMPLED_PARENT, TRACE_ID)).isFalse();
+        assertThat(sampler.getDescription()).isEqualTo("NeverSampleSampler");
+    }
+
+    @Test
+    public void probabilitySampler_UsesTraceId() {
+        Sampler sampler = Samplers.probabilitySampler(0.5);
+        assertThat(isSampled(sampler, null, new TraceId(Long.MAX_VALUE / 4, 0))).isTrue();
+        assertThat(isSampled(sampler, null, new TraceId(-Long.MAX_VALUE / 4, 0))).isTrue();
+        assertThat(isSampled(sampler, null, new TraceId(Long.MAX_VALUE / 4 * 3, 0))).isFalse();
+        assertThat(sampler.getDescription()).isEqualTo("ProbabilitySampler{0.500000}");
+    }
+
+    @Test
+    public void probabilitySampler_SampledParent() {
+        Sampler sampler = Samplers.probabilitySampler(0.0);
+        assertThat(isSampled(sampler, SAMPLED_PARENT, TRACE_ID)).isTrue();
+        assertThat(isSampled(sampler, NOT_SAMPLED_PARENT, TRACE_ID)).isFalse();
+    }
+
+    @Test
+    public void probabilitySampler_Bounds() {
+        TraceId maxId = new TraceId(Long.MAX_VALUE, 0);
+        TraceId minId = new TraceId(Long.MIN_VALUE, 0);
+        assertThat(isSampled(Samplers.probabilitySampler(1.0), null, maxId)).isTrue();
+        assertThat(isSampled(Samplers.probabilitySampler(1.0), null, minId)).isTrue();
+        assertThat(isSampled(Samplers.probabilitySampler(0.0), null, minId)).isFalse();
+        assertThat(isSampled(Samplers.probabilitySampler(0.0), null, new TraceId(0, 1))).isFalse();
+    }
+
+    @Test
+    public void probabilitySampler_OutOfRange() {
+        thrown.expect(IllegalArgumentException.class);
+        Samplers.probabilitySampler(1.5);
+    }
+
+    @Test
+    public void decisionsAreShared() {
+        Sampler sampler = Samplers.alwaysSample();
+        assertThat(sampler.shouldSample(null, TRACE_ID, SPAN_ID, "a", NO_LINKS))
+            .isSameInstanceAs(sampler.shouldSample(null, TRACE_ID, SPAN_ID, "b", NO_LINKS));
+        assertThat(sampler.shouldSample(null, TRACE_ID, SPAN_ID, "a", NO_LINKS).attributes())
+            .isEmpty();
+    }
+
+    private static boolean isSampled(Sampler sampler, SpanContext parent, TraceId traceId) {
+        return sampler.shouldSample(parent, traceId, SPAN_ID, "span", NO_LINKS).isSampled();
+    }
+}
@@ -0,0 +1,332 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.trace;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.cuckoo.context.Scope;
+import com.cuckoo.trace.AttributeValue;
+import com.cuckoo.trace.DefaultSpan;
+import com.cuckoo.trace.Link;
+import com.cuckoo.trace.Sampler;
+import com.cuckoo.trace.Span;
+import com.cuckoo.trace.SpanContext;
+import com.cuckoo.trace.SpanData;
+import com.cuckoo.trace.SpanId;
+import com.cuckoo.trace.TraceId;
+import com.cuckoo.trace.TraceOptions;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link TracerSdk} and {@link SpanBuilderSdk}. */
+@RunWith(JUnit4.class)
+public class TracerSdkTest {
+    private static final SpanContext REMOTE_PARENT =
+        SpanContext.create(new TraceId(1, 2), new SpanId(3), TraceOptions.SAMPLED);
+    private static final SpanContext LINKED_CONTEXT =
+        SpanContext.create(new TraceId(4, 5), new SpanId(6), TraceOptions.SAMPLED);
+
+    private final TracerSdk tracer = new TracerSdk();
+
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void startRootSpan() {
+        Span span = tracer.spanBuilder("root").setNoParent().startSpan();
+        assertThat(span).isInstanceOf(RecordingSpan.class);
+        assertThat(span.getContext().isValid()).isTrue();
+        assertThat(span.getContext().getTraceOptions()).isEqualTo(TraceOptions.SAMPLED);
+        span.end();
+        SpanData data = ((RecordingSpan) span).toSpanData();
+        assertThat(data.getName()).isEqualTo("root");
+        assertThat(data.getParentSpanId()).isNull();
+        assertThat(data.getKind()).isEqualTo(Span.Kind.INTERNAL);
+    }
+
+    @Test
+    public void startChildOfCurrentSpan() {
+        Span parent = tracer.spanBuilder("parent").startSpan();
+        try (Scope scope = tracer.withSpan(parent)) {
+            assertThat(tracer.getCurrentSpan()).isSameInstanceAs(parent);
+            Span child = tracer.spanBuilder("child").startSpan();
+            assertThat(child.getContext().getTraceId())
+                .isEqualTo(parent.getContext().getTraceId());
+            assertThat(child.getContext().getSpanId())
+                .isNotEqualTo(parent.getContext().getSpanId());
+            child.end();
+            assertThat(((RecordingSpan) child).toSpanData().getParentSpanId())
+                .isEqualTo(parent.getContext().getSpanId());
+        }
+        assertThat(tracer.getCurrentSpan()).isSameInstanceAs(DefaultSpan.getInvalid());
+    }
+
+    @Test
+    public void startChildOfRemoteParent() {
+        Span span = tracer.spanBuilder("child").setParent(REMOTE_PARENT).startSpan();
+        assertThat(span.getContext().getTraceId()).isEqualTo(REMOTE_PARENT.getTraceId());
+        span.end();
+        assertThat(((RecordingSpan) span).toSpanData().getParentSpanId())
+            .isEqualTo(REMOTE_PARENT.getSpanId());
+    }
+
+    @Test
+    public void invalidParentStartsNewTrace() {
+        Span span = tracer.spanBuilder("span").setParent(SpanContext.getInvalid()).startSpan();
+        assertThat(span.getContext().isValid()).isTrue();
+        span.end();
+        assertThat(((RecordingSpan) span).toSpanData().getParentSpanId()).isNull();
+    }
+
+    @Test
+    public void allOptions() {
+        final AtomicReference<List<Link>> sampledLinks = new AtomicReference<List<Link>>();
+        Sampler sampler = new Sampler() {
+            @Override
+            public String getDescription() {
+                return "test";
+            }
+
+            @Override
+            public Decision shouldSample(
+                SpanContext parentContext,
+                TraceId traceId,
+                SpanId spanId,
+                String name,
+                List<Link> links) {
+                sampledLinks.set(new ArrayList<Link>(links));
+                return new Decision() {
+                    @Override
+                    public boolean isSampled() {
+                        return true;
+                    }
+
+                    @Override
+                    public Map<String, AttributeValue> attributes() {
+                        return Collections.singletonMap(
+                            "sampler", AttributeValue.stringAttributeValue("test"));
+                    }
+                };
+            }
+        };
+        Span span = new TracerSdk(Samplers.neverSample())
+            .spanBuilder("span")
+            .setSampler(sampler)
+            .setSpanKind(Span.Kind.CLIENT)
+            .addLink(Link.create(LINKED_CONTEXT))
+            .setStartTimestamp(1000L * 1000 * 1000 + 7)
+            .startSpan();
+        span.end();
+        SpanData data = ((RecordingSpan) span).toSpanData();
+        assertThat(sampledLinks.get()).containsExactly(Link.create(LINKED_CONTEXT));
+        assertThat(data.getKind()).isEqualTo(Span.Kind.CLIENT);
+        assertThat(data.getLinks()).containsExactly(Link.create(LINKED_CONTEXT));
+        assertThat(data.getAttributes())
+            .containsExactly("sampler", AttributeValue.stringAttributeValue("test"));
+        assertThat(data.getStartTimestamp()).isEqualTo(SpanData.Timestamp.create(1, 7));
+    }
+
+    @Test
+    public void notSampled() {
+        Span span = new TracerSdk(Samplers.neverSample()).spanBuilder("span").startSpan();
+        assertThat(span).isInstanceOf(DefaultSpan.class);
+        assertThat(span.getContext().isValid()).isTrue();
+        assertThat(span.getContext().getTraceOptions()).isEqualTo(TraceOptions.DEFAULT);
+    }
+
+    @Test
+    public void recordEventsWithoutSampling() {
+        Span span =
+            new TracerSdk(Samplers.neverSample())
+                .spanBuilder("span")
+                .setRecordEvents(true)
+                .startSpan();
+        assertThat(span).isInstanceOf(RecordingSpan.class);
+        assertThat(span.isRecordingEvents()).isTrue();
+        assertThat(span.getContext().getTraceOptions()).isEqualTo(TraceOptions.DEFAULT);
+    }
+
+    @Test
+    public void builderIsReusedAndReset() {
+        Span.Builder builder = tracer.spanBuilder("first");
+        builder
+            .setNoParent()
+            .setSpanKind(Span.Kind.SERVER)
+            .addLink(Link.create(LINKED_CONTEXT))
+            .setStartTimestamp(42)
+            .startSpan();
+        Span.Builder next = tracer.spanBuilder("second");
+        assertThat(next).isSameInstanceAs(builder);
+        Span parent = tracer.spanBuilder("parent").setNoParent().startSpan();
+        try (Scope scope = tracer.withSpan(parent)) {
+            Span span = tracer.spanBuilder("second").startSpan();
+            span.end();
+            SpanData data = ((RecordingSpan) span).toSpanData();
+            assertThat(data.getName()).isEqualTo("second");
+            assertThat(data.getKind()).isEqualTo(Span.Kind.INTERNAL);
+            assertThat(data.getLinks()).isEmpty();
+            assertThat(data.getParentSpanId()).isEqualTo(parent.getContext().getSpanId());
+            assertThat(data.getStartTimestamp()).isNotEqualTo(SpanData.Timestamp.create(0, 42));
+        }
+    }
+
+    @Test
+    public void builderInUseIsNotShared() {
+        Span.Builder abandoned = tracer.spanBuilder("abandoned");
+        Span.Builder builder = tracer.spanBuilder("span");
+        assertThat(builder).isNotSameInstanceAs(abandoned);
+        builder.startSpan();
+        assertThat(tracer.spanBuilder("next")).isSameInstanceAs(builder);
+    }
+
+    @Test
+    public void builderStartedOnAnotherThreadIsNotReused() throws InterruptedException {
+        final Span.Builder builder = tracer.spanBuilder("span");
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                builder.startSpan();
+            }
+        });
+        thread.start();
+        thread.join();
+        assertThat(tracer.spanBuilder("next")).isNotSameInstanceAs(builder);
+    }
+
+    @Test
+    public void builderCannotBeUsedAfterStartSpan() {
+        Span.Builder builder = tracer.spanBuilder("span");
+        builder.startSpan();
+        thrown.expect(IllegalStateException.class);
+        builder.setSpanKind(Span.Kind.SERVER);
+    }
+
+    @Test
+    public void builderCannotBeStartedTwice() {
+        Span.Builder builder = tracer.spanBuilder("span");
+        builder.startSpan();
+        thrown.expect(IllegalStateException.class);
+        builder.startSpan();
+    }
+
+    @Test
+    public void builderStartedOnAnotherThreadCannotBeStartedAgain()
+        throws InterruptedException {
+        final Span.Builder builder = tracer.spanBuilder("span");
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                builder.startSpan();
+            }
+        });
+        thread.start();
+        thread.join();
+        thrown.expect(IllegalStateException.class);
+        builder.startSpan();
+    }
+
+    @Test
+    public void spanProcessors() {
+        SpanProcessor startProcessor = mock(SpanProcessor.class);
+        SpanProcessor endProcessor = mock(SpanProcessor.class);
+        when(startProcessor.isStartRequired()).thenReturn(true);
+        tracer.addSpanProcessor(startProcessor);
+        tracer.addSpanProcessor(endProcessor);
+        Span span = tracer.spanBuilder("span").startSpan();
+        verify(startProcessor).onStart(span);
+        verify(endProcessor, never()).onStart(span);
+        span.end();
+        SpanData spanData = ((RecordingSpan) span).toSpanData();
+        verify(startProcessor).onEnd(spanData);
+        verify(endProcessor).onEnd(spanData);
+    }
+
+    @Test
+    public void recycleSpans() {
+        SpanProcessor spanProcessor = recyclingSpanProcessor();
+        tracer.addSpanProcessor(spanProcessor);
+        tracer.setRecycleSpans(true);
+        Span span = tracer.spanBuilder("span").startSpan();
+        span.setAttribute("key", "value");
+        span.end();
+        SpanData spanData = ((RecordingSpan) span).toSpanData();
+        verify(spanProcessor).onEnd(spanData);
+        RecordingSpan.recycle(spanData);
+        thrown.expect(IllegalStateException.class);
+        spanData.getAttributes().size();
+    }
+
+    @Test
+    public void recycleSpans_NotWithSeveralProcessors() {
+        tracer.addSpanProcessor(recyclingSpanProcessor());
+        tracer.addSpanProcessor(recyclingSpanProcessor());
+        tracer.setRecycleSpans(true);
+        assertNotRecycled(tracer.spanBuilder("span").startSpan());
+    }
+
+    @Test
+    public void recycleSpans_NotWithNestedProcessors() {
+        tracer.addSpanProcessor(
+            MultiSpanProcessor.create(
+                Arrays.asList(recyclingSpanProcessor(), recyclingSpanProcessor())));
+        tracer.setRecycleSpans(true);
+        assertNotRecycled(tracer.spanBuilder("span").startSpan());
+    }
+
+    @Test
+    public void recycleSpans_NotIfProcessorDoesNotRecycle() {
+        tracer.addSpanProcessor(mock(SpanProcessor.class));
+        tracer.setRecycleSpans(true);
+        assertNotRecycled(tracer.spanBuilder("span").startSpan());
+    }
+
+    @Test
+    public void spanBuilder_NullName() {
+        thrown.expect(NullPointerException.class);
+        tracer.spanBuilder(null);
+    }
+
+    private static SpanProcessor recyclingSpanProcessor() {
+        SpanProcessor spanProcessor = mock(SpanProcessor.class);
+        when(spanProcessor.recyclesSpans()).thenReturn(true);
+        return spanProcessor;
+    }
+
+    // Checks that the SpanData of the span can still be read after it is recycled.
+    private static void assertNotRecycled(Span span) {
+        span.setAttribute("key", "value");
+        span.end();
+        SpanData spanData = ((RecordingSpan) span).toSpanData();
+        RecordingSpan.recycle(spanData);
+        assertThat(spanData.getAttributes())
+            .containsExactly("key", AttributeValue.stringAttributeValue("value"));
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.trace.export;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import com.cuckoo.sdk.trace.RecordingSpan;
+import com.cuckoo.sdk.trace.Samplers;
+import com.cuckoo.sdk.trace.TracerSdk;
+import com.cuckoo.trace.Span;
+import com.cuckoo.trace.SpanData;
+import com.cuckoo.trace.Status;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link BatchSpanProcessor}. */
+@RunWith(JUnit4.class)
+public class BatchSpanProcessorTest {
+    private final TracerSdk tracer = new TracerSdk();
+    private final CollectingSpanExporter exporter = new CollectingSpanExporter();
+
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    @After
+    public void tearDown() {
+        exporter.release();
+        tracer.shutdown();
+    }
+
+    @Test
+    public void exportsFullBatch() throws InterruptedException {
+        tracer.addSpanProcessor(
+            BatchSpanProcessor.newBuilder(exporter)
+                .setMaxExportBatchSize(2)
+                .setScheduleDelay(1, TimeUnit.HOURS)
+                .build());
+        endSpans("a", "b");
+        assertThat(exporter.awaitSpans(2)).containsExactly("a", "b").inOrder();
+    }
+
+    @Test
+    public void exportsAfterScheduleDelay() throws InterruptedException {
+        tracer.addSpanProcessor(
+            BatchSpanProcessor.newBuilder(exporter)
+                .setScheduleDelay(10, TimeUnit.MILLISECONDS)
+                .build());
+        endSpans("a");
+        assertThat(exporter.awaitSpans(1)).containsExactly("a");
+    }
+
+    @Test
+    public void dropsWhenQueueIsFull() throws InterruptedException {
+        exporter.block();
+        BatchSpanProcessor processor =
+            BatchSpanProcessor.newBuilder(exporter)
+                .setMaxQueueSize(2)
+                .setMaxExportBatchSize(1)
+                .build();
+        tracer.addSpanProcessor(processor);
+        endSpans("a");
+        exporter.awaitExportStarted();
+        endSpans("b", "c", "d");
+        assertThat(processor.getDroppedSpans()).isEqualTo(1);
+        exporter.release();
+        assertThat(exporter.awaitSpans(3)).containsExactly("a", "b", "c").inOrder();
+    }
+
+    @Test
+    public void overflowPolicyKeepsSpansWithHighestPriority() throws InterruptedException {
+        exporter.block();
+        BatchSpanProcessor processor =
+            BatchSpanProcessor.newBuilder(exporter)
+                .setMaxQueueSize(1)
+                .setMaxExportBatchSize(1)
+                .setOverflowPolicy(PriorityOverflowPolicy.create(1, 1, TimeUnit.HOURS))
+                .build();
+        tracer.addSpanProcessor(processor);
+        endSpans("a");
+        exporter.awaitExportStarted();
+        Span parent = tracer.spanBuilder("parent").startSpan();
+        endSpans("b");
+        endChildSpan(parent, "c", Status.OK);
+        endChildSpan(parent, "d", Status.UNKNOWN);
+        endChildSpan(parent, "e", Status.OK);
+        assertThat(processor.getDroppedSpans()).isEqualTo(2);
+        exporter.release();
+        assertThat(exporter.awaitSpans(3)).containsExactly("a", "b", "d").inOrder();
+    }
+
+    @Test
+    public void forceFlush() {
+        tracer.addSpanProcessor(
+            BatchSpanProcessor.newBuilder(exporter)
+                .setScheduleDelay(1, TimeUnit.HOURS)
+                .build());
+        endSpans("a", "b");
+        tracer.forceFlush();
+        assertThat(exporter.names()).containsExactly("a", "b").inOrder();
+        endSpans("c");
+        tracer.forceFlush();
+        assertThat(exporter.names()).containsExactly("a", "b", "c").inOrder();
+    }
+
+    @Test
+    public void forceFlushAfterShutdown() {
+        BatchSpanProcessor processor = BatchSpanProcessor.newBuilder(exporter).build();
+        processor.shutdown();
+        processor.forceFlush();
+    }
+
+    @Test
+    public void shutdownExportsQueuedSpans() {
+        BatchSpanProcessor processor =
+            BatchSpanProcessor.newBuilder(exporter)
+                .setScheduleDelay(1, TimeUnit.HOURS)
+                .build();
+        tracer.addSpanProcessor(processor);
+        endSpans("a", "b");
+        tracer.shutdown();
+        assertThat(exporter.names()).containsExactly("a", "b").inOrder();
+        assertThat(exporter.shutdown).isTrue();
+        processor.onEnd(endedSpan("c"));
+        assertThat(processor.getDroppedSpans()).isEqualTo(1);
+    }
+
+    @Test
+    public void exporterErrorDoesNotStopWorker() {
+        tracer.addSpanProcessor(
+            BatchSpanProcessor.newBuilder(exporter)
+                .setScheduleDelay(1, TimeUnit.HOURS)
+                .build());
+        exporter.failNextExport(new AssertionError("export failed"));
+        endSpans("a");
+        tracer.forceFlush();
+        endSpans("b");
+        tracer.forceFlush();
+        assertThat(exporter.names()).containsExactly("b");
+    }
+
+    @Test
+    public void forceFlushAndShutdownTimeOut() throws InterruptedException {
+        exporter.block();
+        tracer.addSpanProcessor(
+            BatchSpanProcessor.newBuilder(exporter)
+                .setScheduleDelay(1, TimeUnit.HOURS)
+                .setFlushTimeout(10, TimeUnit.MILLISECONDS)
+                .build());
+        endSpans("a");
+        tracer.forceFlush();
+        exporter.awaitExportStarted();
+        tracer.shutdown();
+        assertThat(exporter.names()).isEmpty();
+        assertThat(exporter.shutdown).isFalse();
+    }
+
+    @Test
+    public void ignoresSpansThatAreNotSampled() {
+        tracer.addSpanProcessor(BatchSpanProcessor.newBuilder(exporter).build());
+        tracer
+            .spanBuilder("a")
+            .setSampler(Samplers.neverSample())
+            .setRecordEvents(true)
+            .startSpan()
+            .end();
+        tracer.shutdown();
+        assertThat(exporter.names()).isEmpty();
+    }
+
+    @Test
+    public void recyclesExportedSpans() {
+        tracer.setRecycleSpans(true);
+        tracer.addSpanProcessor(
+            BatchSpanProcessor.newBuilder(exporter)
+                .setScheduleDelay(1, TimeUnit.HOURS)
+                .build());
+        RecordingSpan span = (RecordingSpan) tracer.spanBuilder("a").startSpan();
+        span.setAttribute("key", "value");
+        span.end();
+        tracer.forceFlush();
+        assertThat(exporter.names()).containsExactly("a");
+        thrown.expect(IllegalStateException.class);
+        span.toSpanData().getAttributes().size();
+    }
+
+    @Test
+    public void batchLargerThanQueue() {
+        thrown.expect(IllegalArgumentException.class);
+        BatchSpanProcessor.newBuilder(exporter)
+            .setMaxQueueSize(4)
+            .setMaxExportBatchSize(8)
+            .build();
+    }
+
+    private void endSpans(String... names) {
+        for (String name : names) {
+            tracer.spanBuilder(name).startSpan().end();
+        }
+    }
+
+    private void endChildSpan(Span parent, String name, Status status) {
+        Span span = tracer.spanBuilder(name).setParent(parent).startSpan();
+        span.setStatus(status);
+        span.end();
+    }
+
+    private static SpanData endedSpan(String name) {
+        RecordingSpan span = (RecordingSpan) new TracerSdk().spanBuilder(name).startSpan();
+        span.end();
+        return span.toSpanData();
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.trace.export;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+import com.cuckoo.trace.SpanData;
+
+/**
+ * {@link SpanExporter} that collects the names of the exported spans, and can block or fail
+ * exports.
+ */
+final class CollectingSpanExporter implements SpanExporter {
+    private static final long TIMEOUT_MILLIS = 10000;
+
+    private final List<String> names = new ArrayList<String>();
+    private final CountDownLatch exportStarted = new CountDownLatch(1);
+    private volatile CountDownLatch blocker = new CountDownLatch(0);
+    @Nullable
+    private volatile Error error;
+    volatile boolean shutdown;
+
+    @Override
+    public ResultCode export(List<SpanData> spans) {
+        exportStarted.countDown();
+        try {
+            blocker.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Error toThrow = error;
+        if (toThrow != null) {
+            error = null;
+            throw toThrow;
+        }
+        synchronized (this) {
+            for (SpanData span : spans) {
+                names.add(span.getName());
+            }
+            notifyAll();
+        }
+        return ResultCode.SUCCESS;
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+    }
+
+    void block() {
+        blocker = new CountDownLatch(1);
+    }
+
+    // The next export throws the given error instead of exporting its spans.
+    void failNextExport(Error error) {
+        this.error = error;
+    }
+
+    void release() {
+        blocker.countDown();
+    }
+
+    void awaitExportStarted() throws InterruptedException {
+        assertThat(exportStarted.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)).isTrue();
+    }
+
+    synchronized List<String> awaitSpans(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (names.size() < count && System.currentTimeMillis() < deadline) {
+            wait(TIMEOUT_MILLIS);
+        }
+        return new ArrayList<String>(names);
+    }
+
+    synchronized List<String> names() {
+        return new ArrayList<String>(names);
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.trace.export;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.cuckoo.resources.Resource;
+import com.cuckoo.trace.AttributeValue;
+import com.cuckoo.trace.Link;
+import com.cuckoo.trace.Span.Kind;
+import com.cuckoo.trace.SpanContext;
+import com.cuckoo.trace.SpanData;
+import com.cuckoo.trace.SpanData.TimedEvent;
+import com.cuckoo.trace.SpanData.Timestamp;
+import com.cuckoo.trace.SpanId;
+import com.cuckoo.trace.Status;
+import com.cuckoo.trace.TraceId;
+import com.cuckoo.trace.TraceOptions;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link EncodedSpanData}. */
+@RunWith(JUnit4.class)
+public class EncodedSpanDataTest {
+    private static final SpanContext CONTEXT =
+        SpanContext.create(
+            new TraceId(0x0102030405060708L, 0x90A0B0C0D0E0F000L),
+            new SpanId(0xFEDCBA9876543210L),
+            TraceOptions.SAMPLED);
+    private static final SpanContext LINKED_CONTEXT =
+        SpanContext.create(new TraceId(4, 5), new SpanId(6), TraceOptions.DEFAULT);
+    private static final Timestamp START = Timestamp.create(1000, 1);
+    private static final Timestamp END = Timestamp.create(1001, 999999999);
+
+    private final EncodedSpanData view = new EncodedSpanData();
+
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void roundTrip() {
+        Map<String, AttributeValue> attributes = new HashMap<String, AttributeValue>();
+        attributes.put("string", AttributeValue.stringAttributeValue("héllo 世😀"));
+        attributes.put("boolean", AttributeValue.booleanAttributeValue(true));
+        attributes.put("long", AttributeValue.longAttributeValue(-42));
+        attributes.put("double", AttributeValue.doubleAttributeValue(3.5));
+        Map<String, String> labels = new HashMap<String, String>();
+        labels.put("host", "h1");
+        labels.put("zone", "");
+        SpanData spanData =
+            SpanData.create(
+                CONTEXT,
+                new SpanId(7),
+                Resource.create(labels),
+                "name",
+                Kind.CLIENT,
+                START,
+                attributes,
+                Arrays.asList(
+                    TimedEvent.create(START, SpanData.Event.create("e1")),
+                    TimedEvent.create(END, SpanData.Event.create("e2", attributes))),
+                Collections.singletonList(Link.create(LINKED_CONTEXT, attributes)),
+                Status.NOT_FOUND.withDescrition("missing"),
+                END);
+        // SpanData.equals compares the values returned by the getters of the view.
+        assertThat(spanData).isEqualTo(encodeAndBind(spanData, 3));
+    }
+
+    @Test
+    public void equalsHashCodeAndToString_LikeSpanDataCreate() {
+        Map<String, AttributeValue> attributes =
+            Collections.singletonMap("key", AttributeValue.longAttributeValue(1));
+        SpanData spanData =
+            SpanData.create(
+                CONTEXT,
+                new SpanId(7),
+                Resource.create(Collections.singletonMap("host", "h1")),
+                "name",
+                Kind.SERVER,
+                START,
+                attributes,
+                Collections.singletonList(
+                    TimedEvent.create(END, SpanData.Event.create("event", attributes))),
+                Collections.singletonList(Link.create(LINKED_CONTEXT)),
+                Status.CANCELLED,
+                END);
+        SpanData other =
+            SpanData.create(
+                CONTEXT,
+                null,
+                Resource.getEmpty(),
+                "name",
+                Kind.SERVER,
+                START,
+                attributes,
+                Collections.<TimedEvent>emptyList(),
+                Collections.<Link>emptyList(),
+                Status.OK,
+                END);
+        SpanData encoded = encodeAndBind(spanData, 0);
+        assertThat(encoded.equals(spanData)).isTrue();
+        assertThat(spanData.equals(encoded)).isTrue();
+        assertThat(encoded.hashCode()).isEqualTo(spanData.hashCode());
+        assertThat(encoded.toString()).isEqualTo(spanData.toString());
+        assertThat(encoded.equals(other)).isFalse();
+        assertThat(other.equals(encoded)).isFalse();
+        assertThat(encoded.equals(null)).isFalse();
+    }
+
+    @Test
+    public void roundTrip_Empty() {
+        SpanData spanData =
+            SpanData.create(
+                CONTEXT,
+                null,
+                Resource.getEmpty(),
+                "",
+                Kind.INTERNAL,
+                START,
+                Collections.<String, AttributeValue>emptyMap(),
+                Collections.<TimedEvent>emptyList(),
+                Collections.<Link>emptyList(),
+                Status.OK,
+                END);
+        assertThat(spanData).isEqualTo(encodeAndBind(spanData, 0));
+        assertThat(view.getParentSpanId()).isNull();
+    }
+
+    @Test
+    public void roundTrip_LargerThanEncoderBuffer() {
+        char[] chars = new char[4000];
+        Arrays.fill(chars, '世');
+        SpanData spanData =
+            SpanData.create(
+                CONTEXT,
+                null,
+                Resource.getEmpty(),
+                new String(chars),
+                Kind.SERVER,
+                START,
+                Collections.singletonMap(
+                    "key", AttributeValue.stringAttributeValue(new String(chars))),
+                Collections.<TimedEvent>emptyList(),
+                Collections.<Link>emptyList(),
+                Status.OK,
+                END);
+        assertThat(spanData).isEqualTo(encodeAndBind(spanData, 5));
+    }
+
+    @Test
+    public void unbound() {
+        view.bind(ByteBuffer.allocate(0), 0);
+        view.unbind();
+        thrown.expect(IllegalStateException.class);
+        view.getName();
+    }
+
+    private SpanData encodeAndBind(SpanData spanData, int offset) {
+        EncodedSpanData.Encoder encoder = new EncodedSpanData.Encoder();
+        int size = encoder.encode(spanData);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(offset + size + 1);
+        buffer.put(offset + size, (byte) 42);
+        encoder.copyTo(buffer, offset, size);
+        // The record covers exactly its size.
+        assertThat(buffer.get(offset + size)).isEqualTo(42);
+        assertThat(buffer.position()).isEqualTo(0);
+        view.bind(buffer, offset);
+        return view;
+    }
+}
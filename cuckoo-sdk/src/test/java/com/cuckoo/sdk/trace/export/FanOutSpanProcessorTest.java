@@ -0,0 +1,177 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.trace.export;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import com.cuckoo.sdk.trace.Samplers;
+import com.cuckoo.sdk.trace.TracerSdk;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link FanOutSpanProcessor}. */
+@RunWith(JUnit4.class)
+public class FanOutSpanProcessorTest {
+    private final TracerSdk tracer = new TracerSdk();
+    private final CollectingSpanExporter exporter1 = new CollectingSpanExporter();
+    private final CollectingSpanExporter exporter2 = new CollectingSpanExporter();
+
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    @After
+    public void tearDown() {
+        exporter1.release();
+        exporter2.release();
+        tracer.shutdown();
+    }
+
+    @Test
+    public void exportsToEachExporter() throws InterruptedException {
+        FanOutSpanProcessor processor =
+            FanOutSpanProcessor.newBuilder()
+                .addExporter(exporter1)
+                .addExporter(exporter2)
+                .setMaxExportBatchSize(2)
+                .setScheduleDelay(1, TimeUnit.HOURS)
+                .build();
+        tracer.addSpanProcessor(processor);
+        endSpans("a", "b");
+        assertThat(exporter1.awaitSpans(2)).containsExactly("a", "b").inOrder();
+        assertThat(exporter2.awaitSpans(2)).containsExactly("a", "b").inOrder();
+        tracer.forceFlush();
+        assertThat(processor.getPendingSpans()).isEqualTo(0);
+    }
+
+    @Test
+    public void blockedExporterDoesNotDelayOthers() throws InterruptedException {
+        exporter1.block();
+        FanOutSpanProcessor processor =
+            FanOutSpanProcessor.newBuilder()
+                .addExporter(exporter1)
+                .addExporter(exporter2)
+                .setMaxQueueSize(2)
+                .setMaxExportBatchSize(1)
+                .build();
+        tracer.addSpanProcessor(processor);
+        endSpans("a");
+        exporter1.awaitExportStarted();
+        // Each span reaches the second exporter while the first one is blocked.
+        endSpans("b");
+        assertThat(exporter2.awaitSpans(2)).containsExactly("a", "b").inOrder();
+        endSpans("c");
+        assertThat(exporter2.awaitSpans(3)).containsExactly("a", "b", "c").inOrder();
+        endSpans("d");
+        assertThat(exporter2.awaitSpans(4)).containsExactly("a", "b", "c", "d").inOrder();
+        assertThat(processor.getDroppedSpans(exporter1)).isEqualTo(1);
+        assertThat(processor.getDroppedSpans(exporter2)).isEqualTo(0);
+        // Spans "a" to "c" are still held by the first exporter.
+        assertThat(processor.getPendingSpans()).isAtLeast(3L);
+        exporter1.release();
+        assertThat(exporter1.awaitSpans(3)).containsExactly("a", "b", "c").inOrder();
+        tracer.forceFlush();
+        assertThat(processor.getPendingSpans()).isEqualTo(0);
+    }
+
+    @Test
+    public void interruptsExportThatTimesOut() throws InterruptedException {
+        exporter1.block();
+        FanOutSpanProcessor processor =
+            FanOutSpanProcessor.newBuilder()
+                .addExporter(exporter1)
+                .addExporter(exporter2)
+                .setExportTimeout(10, TimeUnit.MILLISECONDS)
+                .build();
+        tracer.addSpanProcessor(processor);
+        endSpans("a");
+        tracer.forceFlush();
+        assertThat(processor.getTimedOutExports(exporter1)).isEqualTo(1);
+        assertThat(processor.getTimedOutExports(exporter2)).isEqualTo(0);
+        assertThat(exporter2.names()).containsExactly("a");
+        // The blocked export returns once interrupted.
+        assertThat(exporter1.awaitSpans(1)).containsExactly("a");
+    }
+
+    @Test
+    public void shutdownExportsQueuedSpans() {
+        FanOutSpanProcessor processor =
+            FanOutSpanProcessor.newBuilder()
+                .addExporter(exporter1)
+                .addExporter(exporter2)
+                .setScheduleDelay(1, TimeUnit.HOURS)
+                .build();
+        tracer.addSpanProcessor(processor);
+        endSpans("a", "b");
+        tracer.shutdown();
+        assertThat(exporter1.names()).containsExactly("a", "b").inOrder();
+        assertThat(exporter2.names()).containsExactly("a", "b").inOrder();
+        assertThat(exporter1.shutdown).isTrue();
+        assertThat(exporter2.shutdown).isTrue();
+        processor.forceFlush();
+    }
+
+    @Test
+    public void ignoresSpansThatAreNotSampled() {
+        FanOutSpanProcessor processor =
+            FanOutSpanProcessor.newBuilder().addExporter(exporter1).build();
+        tracer.addSpanProcessor(processor);
+        tracer
+            .spanBuilder("a")
+            .setSampler(Samplers.neverSample())
+            .setRecordEvents(true)
+            .startSpan()
+            .end();
+        assertThat(processor.getPendingSpans()).isEqualTo(0);
+        tracer.shutdown();
+        assertThat(exporter1.names()).isEmpty();
+    }
+
+    @Test
+    public void getDroppedSpans_UnknownExporter() {
+        FanOutSpanProcessor processor =
+            FanOutSpanProcessor.newBuilder().addExporter(exporter1).build();
+        tracer.addSpanProcessor(processor);
+        thrown.expect(IllegalArgumentException.class);
+        processor.getDroppedSpans(exporter2);
+    }
+
+    @Test
+    public void addExporter_Twice() {
+        FanOutSpanProcessor.Builder builder =
+            FanOutSpanProcessor.newBuilder().addExporter(exporter1);
+        thrown.expect(IllegalArgumentException.class);
+        builder.addExporter(exporter1);
+    }
+
+    @Test
+    public void build_NoExporter() {
+        thrown.expect(IllegalArgumentException.class);
+        FanOutSpanProcessor.newBuilder().build();
+    }
+
+    private void endSpans(String... names) {
+        for (String name : names) {
+            tracer.spanBuilder(name).startSpan().end();
+        }
+    }
+}
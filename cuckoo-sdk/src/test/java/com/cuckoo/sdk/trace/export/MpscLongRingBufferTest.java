@@ -0,0 +1,83 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.trace.export;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link MpscLongRingBuffer}. */
+@RunWith(JUnit4.class)
+public class MpscLongRingBufferTest {
+    @Test
+    public void fifoAndFull() {
+        MpscLongRingBuffer queue = new MpscLongRingBuffer(2);
+        assertThat(queue.capacity()).isEqualTo(2);
+        assertThat(queue.poll()).isEqualTo(-1);
+        assertThat(queue.offer(0)).isTrue();
+        assertThat(queue.offer(Long.MAX_VALUE)).isTrue();
+        assertThat(queue.offer(3)).isFalse();
+        assertThat(queue.size()).isEqualTo(2);
+        assertThat(queue.poll()).isEqualTo(0);
+        assertThat(queue.offer(3)).isTrue();
+        long[] sink = new long[4];
+        assertThat(queue.drainTo(sink, 1, 3)).isEqualTo(2);
+        assertThat(sink).asList().containsExactly(0L, Long.MAX_VALUE, 3L, 0L).inOrder();
+        assertThat(queue.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void concurrentProducers() throws InterruptedException {
+        final int producers = 4;
+        final int perProducer = 20000;
+        final MpscLongRingBuffer queue = new MpscLongRingBuffer(64);
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            final long producer = p;
+            threads[p] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < perProducer; i++) {
+                        while (!queue.offer(producer << 32 | i)) {
+                            Thread.yield();
+                        }
+                    }
+                }
+            });
+            threads[p].start();
+        }
+        int[] next = new int[producers];
+        int received = 0;
+        while (received < producers * perProducer) {
+            long value = queue.poll();
+            if (value < 0) {
+                Thread.yield();
+                continue;
+            }
+            int producer = (int) (value >>> 32);
+            assertThat((int) value).isEqualTo(next[producer]);
+            next[producer]++;
+            received++;
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(queue.poll()).isEqualTo(-1);
+    }
+}
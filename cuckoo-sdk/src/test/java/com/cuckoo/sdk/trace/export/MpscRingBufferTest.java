@@ -0,0 +1,116 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.trace.export;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link MpscRingBuffer}. */
+@RunWith(JUnit4.class)
+public class MpscRingBufferTest {
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void capacityIsRoundedUp() {
+        assertThat(new MpscRingBuffer<String>(1).capacity()).isEqualTo(1);
+        assertThat(new MpscRingBuffer<String>(5).capacity()).isEqualTo(8);
+        assertThat(new MpscRingBuffer<String>(8).capacity()).isEqualTo(8);
+    }
+
+    @Test
+    public void invalidCapacity() {
+        thrown.expect(IllegalArgumentException.class);
+        new MpscRingBuffer<String>(0);
+    }
+
+    @Test
+    public void fifoAndFull() {
+        MpscRingBuffer<String> queue = new MpscRingBuffer<String>(2);
+        assertThat(queue.poll()).isNull();
+        assertThat(queue.offer("a")).isTrue();
+        assertThat(queue.offer("b")).isTrue();
+        assertThat(queue.offer("c")).isFalse();
+        assertThat(queue.size()).isEqualTo(2);
+        assertThat(queue.poll()).isEqualTo("a");
+        assertThat(queue.offer("c")).isTrue();
+        List<String> sink = new ArrayList<String>();
+        assertThat(queue.drainTo(sink, 10)).isEqualTo(2);
+        assertThat(sink).containsExactly("b", "c").inOrder();
+        assertThat(queue.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void drainTo_MaxElements() {
+        MpscRingBuffer<String> queue = new MpscRingBuffer<String>(4);
+        queue.offer("a");
+        queue.offer("b");
+        queue.offer("c");
+        List<String> sink = new ArrayList<String>();
+        assertThat(queue.drainTo(sink, 2)).isEqualTo(2);
+        assertThat(sink).containsExactly("a", "b").inOrder();
+        assertThat(queue.poll()).isEqualTo("c");
+    }
+
+    @Test
+    public void concurrentProducers() throws InterruptedException {
+        final int producers = 4;
+        final int perProducer = 20000;
+        final MpscRingBuffer<int[]> queue = new MpscRingBuffer<int[]>(64);
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            threads[p] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < perProducer; i++) {
+                        int[] element = {producer, i};
+                        while (!queue.offer(element)) {
+                            Thread.yield();
+                        }
+                    }
+                }
+            });
+            threads[p].start();
+        }
+        int[] next = new int[producers];
+        int received = 0;
+        while (received < producers * perProducer) {
+            int[] element = queue.poll();
+            if (element == null) {
+                Thread.yield();
+                continue;
+            }
+            // Elements of one producer are received in the order they were offered.
+            assertThat(element[1]).isEqualTo(next[element[0]]);
+            next[element[0]]++;
+            received++;
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(queue.poll()).isNull();
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.trace.export;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.cuckoo.sdk.trace.RecordingSpan;
+import com.cuckoo.sdk.trace.TracerSdk;
+import com.cuckoo.trace.AttributeValue;
+import com.cuckoo.trace.Span;
+import com.cuckoo.trace.SpanData;
+import com.cuckoo.trace.Status;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link OffHeapBatchSpanProcessor}. */
+@RunWith(JUnit4.class)
+public class OffHeapBatchSpanProcessorTest {
+    private final TracerSdk tracer = new TracerSdk();
+    private final CollectingSpanExporter exporter = new CollectingSpanExporter();
+
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    @After
+    public void tearDown() {
+        exporter.release();
+        tracer.shutdown();
+    }
+
+    @Test
+    public void exportsDecodedSpans() {
+        final List<SpanData> expected = new ArrayList<SpanData>();
+        final List<SpanData> exported = new ArrayList<SpanData>();
+        SpanExporter copyingExporter =
+            new SpanExporter() {
+                @Override
+                public ResultCode export(List<SpanData> spans) {
+                    for (SpanData span : spans) {
+                        exported.add(copy(span));
+                    }
+                    return ResultCode.SUCCESS;
+                }
+
+                @Override
+                public void shutdown() {}
+            };
+        tracer.addSpanProcessor(OffHeapBatchSpanProcessor.newBuilder(copyingExporter).build());
+        for (int i = 0; i < 3; i++) {
+            RecordingSpan span = (RecordingSpan) tracer.spanBuilder("span" + i).startSpan();
+            span.setAttribute("index", i);
+            span.addEvent(
+                "event",
+                Collections.singletonMap("k", AttributeValue.booleanAttributeValue(true)));
+            span.setStatus(Status.ABORTED.withDescrition("aborted"));
+            span.end();
+            expected.add(span.toSpanData());
+        }
+        tracer.forceFlush();
+        assertThat(exported).containsExactlyElementsIn(expected).inOrder();
+    }
+
+    @Test
+    public void exportsFullBatch() throws InterruptedException {
+        tracer.addSpanProcessor(
+            OffHeapBatchSpanProcessor.newBuilder(exporter)
+                .setMaxExportBatchSize(2)
+                .setScheduleDelay(1, TimeUnit.HOURS)
+                .build());
+        endSpans("a", "b");
+        assertThat(exporter.awaitSpans(2)).containsExactly("a", "b").inOrder();
+    }
+
+    @Test
+    public void dropsWhenBudgetIsExhausted() throws InterruptedException {
+        exporter.block();
+        OffHeapBatchSpanProcessor processor =
+            OffHeapBatchSpanProcessor.newBuilder(exporter)
+                .setMaxExportBatchSize(1)
+                .setSlabSize(128)
+                .setMaxOffHeapBytes(256)
+                .build();
+        tracer.addSpanProcessor(processor);
+        endSpans("a");
+        exporter.awaitExportStarted();
+        // Each span takes 126 bytes, so one slab.
+        endSpans("b", "c");
+        assertThat(processor.getDroppedSpans()).isEqualTo(1);
+        assertThat(processor.getAllocatedOffHeapBytes()).isEqualTo(256);
+        exporter.release();
+        assertThat(exporter.awaitSpans(2)).containsExactly("a", "b").inOrder();
+        // The slabs are reused once their spans are exported.
+        endSpans("d");
+        tracer.forceFlush();
+        assertThat(exporter.names()).containsExactly("a", "b", "d").inOrder();
+        assertThat(processor.getAllocatedOffHeapBytes()).isEqualTo(256);
+    }
+
+    @Test
+    public void spanLargerThanSlabIsDropped() {
+        OffHeapBatchSpanProcessor processor =
+            OffHeapBatchSpanProcessor.newBuilder(exporter).setSlabSize(64).build();
+        tracer.addSpanProcessor(processor);
+        endSpans("a");
+        tracer.forceFlush();
+        assertThat(processor.getDroppedSpans()).isEqualTo(1);
+        assertThat(exporter.names()).isEmpty();
+    }
+
+    @Test
+    public void viewsCannotBeUsedAfterExport() {
+        final List<SpanData> retained = new ArrayList<SpanData>();
+        SpanExporter retainingExporter =
+            new SpanExporter() {
+                @Override
+                public ResultCode export(List<SpanData> spans) {
+                    retained.addAll(spans);
+                    return ResultCode.SUCCESS;
+                }
+
+                @Override
+                public void shutdown() {}
+            };
+        tracer.addSpanProcessor(OffHeapBatchSpanProcessor.newBuilder(retainingExporter).build());
+        endSpans("a");
+        tracer.forceFlush();
+        thrown.expect(IllegalStateException.class);
+        retained.get(0).getName();
+    }
+
+    @Test
+    public void shutdownExportsQueuedSpans() {
+        OffHeapBatchSpanProcessor processor =
+            OffHeapBatchSpanProcessor.newBuilder(exporter)
+                .setScheduleDelay(1, TimeUnit.HOURS)
+                .build();
+        tracer.addSpanProcessor(processor);
+        endSpans("a", "b");
+        tracer.shutdown();
+        assertThat(exporter.names()).containsExactly("a", "b").inOrder();
+        assertThat(exporter.shutdown).isTrue();
+        processor.forceFlush();
+    }
+
+    @Test
+    public void exporterErrorDoesNotStopWorker() {
+        tracer.addSpanProcessor(
+            OffHeapBatchSpanProcessor.newBuilder(exporter)
+                .setScheduleDelay(1, TimeUnit.HOURS)
+                .build());
+        exporter.failNextExport(new AssertionError("export failed"));
+        endSpans("a");
+        tracer.forceFlush();
+        endSpans("b");
+        tracer.forceFlush();
+        assertThat(exporter.names()).containsExactly("b");
+    }
+
+    @Test
+    public void forceFlushAndShutdownTimeOut() throws InterruptedException {
+        exporter.block();
+        tracer.addSpanProcessor(
+            OffHeapBatchSpanProcessor.newBuilder(exporter)
+                .setScheduleDelay(1, TimeUnit.HOURS)
+                .setFlushTimeout(10, TimeUnit.MILLISECONDS)
+                .build());
+        endSpans("a");
+        tracer.forceFlush();
+        exporter.awaitExportStarted();
+        tracer.shutdown();
+        assertThat(exporter.names()).isEmpty();
+        assertThat(exporter.shutdown).isFalse();
+    }
+
+    @Test
+    public void budgetSmallerThanSlab() {
+        thrown.expect(IllegalArgumentException.class);
+        OffHeapBatchSpanProcessor.newBuilder(exporter)
+            .setSlabSize(1024)
+            .setMaxOffHeapBytes(512)
+            .build();
+    }
+
+    private void endSpans(String... names) {
+        for (String name : names) {
+            Span span = tracer.spanBuilder(name).startSpan();
+            span.setAttribute("key", "value");
+            span.end();
+        }
+    }
+
+    private static SpanData copy(SpanData span) {
+        return SpanData.create(
+            span.getContext(),
+            span.getParentSpanId(),
+            span.getResource(),
+            span.getName(),
+            span.getKind(),
+            span.getStartTimestamp(),
+            span.getAttributes(),
+            span.getTimedEvents(),
+            span.getLinks(),
+            span.getStatus(),
+            span.getEndTimestamp());
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.trace.export;
+
+import static com.cuckoo.sdk.trace.export.PriorityOverflowPolicyTest.spanData;
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.cuckoo.trace.Span.Kind;
+import com.cuckoo.trace.SpanData;
+import com.cuckoo.trace.SpanId;
+import com.cuckoo.trace.Status;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link PriorityOverflowBuffer}. */
+@RunWith(JUnit4.class)
+public class PriorityOverflowBufferTest {
+    private static final SpanId PARENT_SPAN_ID = new SpanId(4);
+    private static final SpanData LOW = spanData(Kind.INTERNAL, PARENT_SPAN_ID, Status.OK, 0);
+    private static final SpanData ROOT = spanData(Kind.INTERNAL, null, Status.OK, 0);
+    private static final SpanData SLOW = spanData(Kind.INTERNAL, PARENT_SPAN_ID, Status.OK, 500);
+    private static final SpanData ERROR =
+        spanData(Kind.INTERNAL, PARENT_SPAN_ID, Status.UNKNOWN, 0);
+
+    private final LongAdder droppedSpans = new LongAdder();
+    private final PriorityOverflowBuffer buffer =
+        new PriorityOverflowBuffer(
+            PriorityOverflowPolicy.create(3, 100, TimeUnit.MILLISECONDS), droppedSpans);
+
+    @Test
+    public void keepsSpansWhileNotFull() {
+        buffer.offer(LOW);
+        buffer.offer(LOW);
+        assertThat(buffer.size()).isEqualTo(2);
+        assertThat(droppedSpans.sum()).isEqualTo(0);
+        assertThat(drain()).containsExactly(LOW, LOW);
+        assertThat(buffer.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void evictsLowestPriorityFirst() {
+        buffer.offer(SLOW);
+        buffer.offer(LOW);
+        buffer.offer(ROOT);
+        buffer.offer(ERROR);
+        assertThat(droppedSpans.sum()).isEqualTo(1);
+        assertThat(drain()).containsExactly(SLOW, ROOT, ERROR);
+        buffer.offer(ROOT);
+        buffer.offer(ERROR);
+        buffer.offer(SLOW);
+        buffer.offer(ERROR);
+        buffer.offer(ERROR);
+        assertThat(droppedSpans.sum()).isEqualTo(3);
+        assertThat(drain()).containsExactly(ERROR, ERROR, ERROR);
+    }
+
+    @Test
+    public void dropsNewSpanOfLowestPriority() {
+        buffer.offer(ROOT);
+        buffer.offer(ROOT);
+        buffer.offer(ROOT);
+        buffer.offer(LOW);
+        buffer.offer(ROOT);
+        assertThat(droppedSpans.sum()).isEqualTo(2);
+        assertThat(drain()).containsExactly(ROOT, ROOT, ROOT);
+    }
+
+    @Test
+    public void drainTo_MaxElements() {
+        buffer.offer(LOW);
+        buffer.offer(ROOT);
+        buffer.offer(ERROR);
+        List<SpanData> sink = new ArrayList<SpanData>();
+        assertThat(buffer.drainTo(sink, 2)).isEqualTo(2);
+        assertThat(buffer.drainTo(sink, 0)).isEqualTo(0);
+        assertThat(buffer.drainTo(sink, 2)).isEqualTo(1);
+        assertThat(sink).containsExactly(LOW, ROOT, ERROR);
+    }
+
+    private List<SpanData> drain() {
+        List<SpanData> sink = new ArrayList<SpanData>();
+        buffer.drainTo(sink, Integer.MAX_VALUE);
+        return sink;
+    }
+}
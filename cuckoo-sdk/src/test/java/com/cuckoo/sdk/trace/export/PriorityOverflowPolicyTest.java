@@ -0,0 +1,100 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.trace.export;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+import com.cuckoo.resources.Resource;
+import com.cuckoo.trace.AttributeValue;
+import com.cuckoo.trace.Link;
+import com.cuckoo.trace.Span.Kind;
+import com.cuckoo.trace.SpanContext;
+import com.cuckoo.trace.SpanData;
+import com.cuckoo.trace.SpanData.TimedEvent;
+import com.cuckoo.trace.SpanData.Timestamp;
+import com.cuckoo.trace.SpanId;
+import com.cuckoo.trace.Status;
+import com.cuckoo.trace.TraceId;
+import com.cuckoo.trace.TraceOptions;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link PriorityOverflowPolicy}. */
+@RunWith(JUnit4.class)
+public class PriorityOverflowPolicyTest {
+    private static final SpanContext CONTEXT =
+        SpanContext.create(new TraceId(1, 2), new SpanId(3), TraceOptions.SAMPLED);
+    private static final SpanId PARENT_SPAN_ID = new SpanId(4);
+
+    private final PriorityOverflowPolicy policy =
+        PriorityOverflowPolicy.create(8, 100, TimeUnit.MILLISECONDS);
+
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void getPriority() {
+        assertThat(policy.getPriority(spanData(Kind.INTERNAL, PARENT_SPAN_ID, Status.OK, 10)))
+            .isEqualTo(0);
+        assertThat(policy.getPriority(spanData(Kind.SERVER, PARENT_SPAN_ID, Status.OK, 10)))
+            .isEqualTo(PriorityOverflowPolicy.SERVER_OR_ROOT_PRIORITY);
+        assertThat(policy.getPriority(spanData(Kind.CLIENT, null, Status.OK, 10)))
+            .isEqualTo(PriorityOverflowPolicy.SERVER_OR_ROOT_PRIORITY);
+        assertThat(policy.getPriority(spanData(Kind.INTERNAL, PARENT_SPAN_ID, Status.OK, 100)))
+            .isEqualTo(PriorityOverflowPolicy.SLOW_PRIORITY);
+        assertThat(
+            policy.getPriority(spanData(Kind.INTERNAL, PARENT_SPAN_ID, Status.UNKNOWN, 10)))
+            .isEqualTo(PriorityOverflowPolicy.ERROR_PRIORITY);
+        assertThat(policy.getPriority(spanData(Kind.SERVER, null, Status.UNKNOWN, 2000)))
+            .isEqualTo(7);
+    }
+
+    @Test
+    public void create_NonPositiveMaxBufferedSpans() {
+        thrown.expect(IllegalArgumentException.class);
+        PriorityOverflowPolicy.create(0, 100, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void create_NegativeSlowSpanThreshold() {
+        thrown.expect(IllegalArgumentException.class);
+        PriorityOverflowPolicy.create(8, -1, TimeUnit.MILLISECONDS);
+    }
+
+    static SpanData spanData(
+        Kind kind, @Nullable SpanId parentSpanId, Status status, long durationMillis) {
+        return SpanData.create(
+            CONTEXT,
+            parentSpanId,
+            Resource.getEmpty(),
+            "span",
+            kind,
+            Timestamp.create(1000, 900 * 1000 * 1000),
+            Collections.<String, AttributeValue>emptyMap(),
+            Collections.<TimedEvent>emptyList(),
+            Collections.<Link>emptyList(),
+            status,
+            Timestamp.fromMillis(1000 * 1000 + 900 + durationMillis));
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.trace.export;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+
+import com.cuckoo.sdk.trace.RecordingSpan;
+import com.cuckoo.sdk.trace.Samplers;
+import com.cuckoo.sdk.trace.TracerSdk;
+import com.cuckoo.trace.Span;
+import com.cuckoo.trace.SpanData;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link SimpleSpanProcessor}. */
+@RunWith(JUnit4.class)
+public class SimpleSpanProcessorTest {
+    private final SpanExporter exporter = mock(SpanExporter.class);
+    private final SimpleSpanProcessor processor = new SimpleSpanProcessor(exporter);
+    private final TracerSdk tracer = new TracerSdk();
+
+    @Before
+    public void setUp() {
+        tracer.addSpanProcessor(processor);
+    }
+
+    @Test
+    public void exportsSampledSpans() {
+        assertThat(processor.isStartRequired()).isFalse();
+        Span span = tracer.spanBuilder("span").startSpan();
+        span.end();
+        SpanData spanData = ((RecordingSpan) span).toSpanData();
+        verify(exporter).export(Collections.singletonList(spanData));
+    }
+
+    @Test
+    public void skipsSpansThatAreNotSampled() {
+        Span span =
+            tracer
+                .spanBuilder("span")
+                .setSampler(Samplers.neverSample())
+                .setRecordEvents(true)
+                .startSpan();
+        span.end();
+        verifyZeroInteractions(exporter);
+    }
+
+    @Test
+    public void exporterExceptionIsNotPropagated() {
+        when(exporter.export(anyList())).thenThrow(new IllegalStateException());
+        tracer.spanBuilder("span").startSpan().end();
+    }
+
+    @Test
+    public void shutdown() {
+        tracer.shutdown();
+        verify(exporter).shutdown();
+        tracer.spanBuilder("span").startSpan().end();
+        verifyNoMoreInteractions(exporter);
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.trace.export;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link SlabAllocator}. */
+@RunWith(JUnit4.class)
+public class SlabAllocatorTest {
+    private final SlabAllocator slabs = new SlabAllocator(64, 128);
+
+    @Test
+    public void allocatesFromCurrentSlab() {
+        long first = slabs.allocate(40);
+        long second = slabs.allocate(24);
+        assertThat(SlabAllocator.offset(first)).isEqualTo(0);
+        assertThat(SlabAllocator.offset(second)).isEqualTo(40);
+        assertThat(slabs.buffer(second)).isSameInstanceAs(slabs.buffer(first));
+        assertThat(slabs.getAllocatedBytes()).isEqualTo(64);
+        assertThat(slabs.buffer(first).isDirect()).isTrue();
+    }
+
+    @Test
+    public void respectsBudget() {
+        long first = slabs.allocate(40);
+        long second = slabs.allocate(40);
+        assertThat(slabs.buffer(second)).isNotSameInstanceAs(slabs.buffer(first));
+        assertThat(slabs.allocate(40)).isEqualTo(-1);
+        assertThat(slabs.getAllocatedBytes()).isEqualTo(128);
+    }
+
+    @Test
+    public void recyclesReleasedSlabs() {
+        long first = slabs.allocate(40);
+        long second = slabs.allocate(40);
+        slabs.release(first);
+        // The first slab is free once it is not the current slab and its records are released.
+        long third = slabs.allocate(40);
+        assertThat(slabs.buffer(third)).isSameInstanceAs(slabs.buffer(first));
+        assertThat(SlabAllocator.offset(third)).isEqualTo(0);
+        assertThat(slabs.allocate(40)).isEqualTo(-1);
+        slabs.release(second);
+        assertThat(slabs.buffer(slabs.allocate(40))).isSameInstanceAs(slabs.buffer(second));
+        assertThat(slabs.getAllocatedBytes()).isEqualTo(128);
+    }
+
+    @Test
+    public void currentSlabIsNotRecycled() {
+        long first = slabs.allocate(16);
+        slabs.release(first);
+        long second = slabs.allocate(16);
+        assertThat(slabs.buffer(second)).isSameInstanceAs(slabs.buffer(first));
+        assertThat(SlabAllocator.offset(second)).isEqualTo(16);
+    }
+
+    @Test
+    public void recordLargerThanSlab() {
+        assertThat(slabs.allocate(65)).isEqualTo(-1);
+        assertThat(slabs.getAllocatedBytes()).isEqualTo(0);
+    }
+}
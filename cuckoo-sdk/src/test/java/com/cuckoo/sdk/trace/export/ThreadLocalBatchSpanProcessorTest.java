@@ -0,0 +1,206 @@
+/*
+ * Copyright 2019, OpenCuckoo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.cuckoo.sdk.trace.export;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import com.cuckoo.sdk.trace.RecordingSpan;
+import com.cuckoo.sdk.trace.TracerSdk;
+import com.cuckoo.trace.SpanData;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link ThreadLocalBatchSpanProcessor}. */
+@RunWith(JUnit4.class)
+public class ThreadLocalBatchSpanProcessorTest {
+    private final TracerSdk tracer = new TracerSdk();
+    private final CollectingSpanExporter exporter = new CollectingSpanExporter();
+
+    @After
+    public void tearDown() {
+        exporter.release();
+        tracer.shutdown();
+    }
+
+    @Test
+    public void exportsFullChunks() throws InterruptedException {
+        tracer.addSpanProcessor(
+            ThreadLocalBatchSpanProcessor.newBuilder(exporter)
+                .setChunkSize(2)
+                .setMaxExportBatchSize(2)
+                .setScheduleDelay(1, TimeUnit.HOURS)
+                .build());
+        endSpans("a", "b");
+        assertThat(exporter.awaitSpans(2)).containsExactly("a", "b").inOrder();
+    }
+
+    @Test
+    public void wakesUpWhenChunkCompletesBatch() throws InterruptedException {
+        tracer.addSpanProcessor(
+            ThreadLocalBatchSpanProcessor.newBuilder(exporter)
+                .setChunkSize(2)
+                .setMaxExportBatchSize(3)
+                .setScheduleDelay(1, TimeUnit.HOURS)
+                .build());
+        endSpans("a", "b");
+        // The worker takes the first chunk, then parks with a partial batch.
+        awaitWorkerParked();
+        endSpans("c", "d");
+        assertThat(exporter.awaitSpans(3)).containsExactly("a", "b", "c").inOrder();
+    }
+
+    @Test
+    public void forceFlushCollectsPartialChunks() {
+        tracer.addSpanProcessor(
+            ThreadLocalBatchSpanProcessor.newBuilder(exporter)
+                .setScheduleDelay(1, TimeUnit.HOURS)
+                .build());
+        endSpans("a", "b", "c");
+        tracer.forceFlush();
+        assertThat(exporter.names()).containsExactly("a", "b", "c").inOrder();
+        endSpans("d");
+        tracer.forceFlush();
+        assertThat(exporter.names()).containsExactly("a", "b", "c", "d").inOrder();
+    }
+
+    @Test
+    public void exportsAfterScheduleDelay() throws InterruptedException {
+        tracer.addSpanProcessor(
+            ThreadLocalBatchSpanProcessor.newBuilder(exporter)
+                .setScheduleDelay(10, TimeUnit.MILLISECONDS)
+                .build());
+        endSpans("a");
+        assertThat(exporter.awaitSpans(1)).containsExactly("a");
+    }
+
+    @Test
+    public void collectsSpansOfDeadThreads() throws InterruptedException {
+        ThreadLocalBatchSpanProcessor processor =
+            ThreadLocalBatchSpanProcessor.newBuilder(exporter)
+                .setScheduleDelay(1, TimeUnit.HOURS)
+                .build();
+        tracer.addSpanProcessor(processor);
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                endSpans("a", "b");
+            }
+        });
+        thread.start();
+        thread.join();
+        assertThat(processor.getRegisteredThreads()).isEqualTo(1);
+        tracer.forceFlush();
+        assertThat(exporter.names()).containsExactly("a", "b").inOrder();
+        assertThat(processor.getRegisteredThreads()).isEqualTo(0);
+    }
+
+    @Test
+    public void dropsWhenQueueIsFull() throws InterruptedException {
+        exporter.block();
+        ThreadLocalBatchSpanProcessor processor =
+            ThreadLocalBatchSpanProcessor.newBuilder(exporter)
+                .setChunkSize(1)
+                .setMaxQueuedChunks(1)
+                .setMaxExportBatchSize(1)
+                .setScheduleDelay(1, TimeUnit.HOURS)
+                .build();
+        tracer.addSpanProcessor(processor);
+        endSpans("a");
+        exporter.awaitExportStarted();
+        // "b" waits in the queue, "c" stays in its full chunk, and "d" is dropped.
+        endSpans("b", "c", "d");
+        assertThat(processor.getDroppedSpans()).isEqualTo(1);
+        exporter.release();
+        tracer.forceFlush();
+        assertThat(exporter.names()).containsExactly("a", "b", "c").inOrder();
+    }
+
+    @Test
+    public void shutdownExportsBufferedSpans() {
+        ThreadLocalBatchSpanProcessor processor =
+            ThreadLocalBatchSpanProcessor.newBuilder(exporter)
+                .setScheduleDelay(1, TimeUnit.HOURS)
+                .build();
+        tracer.addSpanProcessor(processor);
+        endSpans("a", "b");
+        tracer.shutdown();
+        assertThat(exporter.names()).containsExactly("a", "b").inOrder();
+        assertThat(exporter.shutdown).isTrue();
+        processor.onEnd(endedSpan("c"));
+        assertThat(processor.getDroppedSpans()).isEqualTo(1);
+        processor.forceFlush();
+    }
+
+    @Test
+    public void exporterErrorDoesNotStopWorker() {
+        tracer.addSpanProcessor(
+            ThreadLocalBatchSpanProcessor.newBuilder(exporter)
+                .setScheduleDelay(1, TimeUnit.HOURS)
+                .build());
+        exporter.failNextExport(new AssertionError("export failed"));
+        endSpans("a");
+        tracer.forceFlush();
+        endSpans("b");
+        tracer.forceFlush();
+        assertThat(exporter.names()).containsExactly("b");
+    }
+
+    @Test
+    public void forceFlushAndShutdownTimeOut() throws InterruptedException {
+        exporter.block();
+        tracer.addSpanProcessor(
+            ThreadLocalBatchSpanProcessor.newBuilder(exporter)
+                .setScheduleDelay(1, TimeUnit.HOURS)
+                .setFlushTimeout(10, TimeUnit.MILLISECONDS)
+                .build());
+        endSpans("a");
+        tracer.forceFlush();
+        exporter.awaitExportStarted();
+        tracer.shutdown();
+        assertThat(exporter.names()).isEmpty();
+        assertThat(exporter.shutdown).isFalse();
+    }
+
+    private void endSpans(String... names) {
+        for (String name : names) {
+            tracer.spanBuilder(name).startSpan().end();
+        }
+    }
+
+    private static void awaitWorkerParked() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (System.currentTimeMillis() < deadline) {
+            for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                if (thread.getName().equals("ThreadLocalBatchSpanProcessor_Worker")
+                    && thread.getState() == Thread.State.TIMED_WAITING) {
+                    return;
+                }
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    private static SpanData endedSpan(String name) {
+        RecordingSpan span = (RecordingSpan) new TracerSdk().spanBuilder(name).startSpan();
+        span.end();
+        return span.toSpanData();
+    }
+}